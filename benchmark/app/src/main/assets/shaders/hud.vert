@@ -0,0 +1,37 @@
+#version 300 es
+/*
+ * Copyright 2021, Brown University, Providence, RI.
+ * Rahul Shahi, Sherief Reda, Seif Abdelaziz
+ *
+ *                        All Rights Reserved
+ *
+ * Permission to use, copy, modify, and distribute this software and
+ * its documentation for any purpose other than its incorporation into a
+ * commercial product or service is hereby granted without fee, provided
+ * that the above copyright notice appear in all copies and that both
+ * that copyright notice and this permission notice appear in supporting
+ * documentation, and that the name of Brown University not be used in
+ * advertising or publicity pertaining to distribution of the software
+ * without specific, written prior permission.
+ *
+ * BROWN UNIVERSITY DISCLAIMS ALL WARRANTIES WITH REGARD TO THIS SOFTWARE,
+ * INCLUDING ALL IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR ANY
+ * PARTICULAR PURPOSE.  IN NO EVENT SHALL BROWN UNIVERSITY BE LIABLE FOR
+ * ANY SPECIAL, INDIRECT OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF
+ * OR IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+
+// Flat-colored 2D geometry of the performance HUD, already in normalized device coordinates.
+
+layout(location = 0) in vec2 a_Position;
+layout(location = 1) in vec4 a_Color;
+
+out vec4 v_Color;
+
+void main() {
+  v_Color = a_Color;
+  gl_Position = vec4(a_Position, 0.0, 1.0);
+}
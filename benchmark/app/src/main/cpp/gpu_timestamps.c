@@ -0,0 +1,57 @@
+/*
+ * Copyright 2021, Brown University, Providence, RI.
+ * Rahul Shahi, Sherief Reda, Seif Abdelaziz
+ *
+ *                        All Rights Reserved
+ *
+ * Permission to use, copy, modify, and distribute this software and
+ * its documentation for any purpose other than its incorporation into a
+ * commercial product or service is hereby granted without fee, provided
+ * that the above copyright notice appear in all copies and that both
+ * that copyright notice and this permission notice appear in supporting
+ * documentation, and that the name of Brown University not be used in
+ * advertising or publicity pertaining to distribution of the software
+ * without specific, written prior permission.
+ *
+ * BROWN UNIVERSITY DISCLAIMS ALL WARRANTIES WITH REGARD TO THIS SOFTWARE,
+ * INCLUDING ALL IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR ANY
+ * PARTICULAR PURPOSE.  IN NO EVENT SHALL BROWN UNIVERSITY BE LIABLE FOR
+ * ANY SPECIAL, INDIRECT OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF
+ * OR IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+
+// Issues and reads GPU timestamp queries of EXT_disjoint_timer_query, whose entry points are not
+// part of GLES30 and have to be looked up with eglGetProcAddress.
+
+#include <EGL/egl.h>
+#include <GLES2/gl2.h>
+#include <GLES2/gl2ext.h>
+#include <jni.h>
+
+static PFNGLQUERYCOUNTEREXTPROC query_counter;
+static PFNGLGETQUERYOBJECTUI64VEXTPROC get_query_object_ui64v;
+
+JNIEXPORT jboolean JNICALL
+Java_benchmark_common_helpers_GpuTimestamps_nativeResolve(JNIEnv *env, jclass clazz) {
+  query_counter = (PFNGLQUERYCOUNTEREXTPROC) eglGetProcAddress("glQueryCounterEXT");
+  get_query_object_ui64v =
+      (PFNGLGETQUERYOBJECTUI64VEXTPROC) eglGetProcAddress("glGetQueryObjectui64vEXT");
+  return query_counter != NULL && get_query_object_ui64v != NULL;
+}
+
+JNIEXPORT void JNICALL
+Java_benchmark_common_helpers_GpuTimestamps_nativeQueryCounter(
+    JNIEnv *env, jclass clazz, jint query) {
+  query_counter((GLuint) query, GL_TIMESTAMP_EXT);
+}
+
+JNIEXPORT jlong JNICALL
+Java_benchmark_common_helpers_GpuTimestamps_nativeGetResult(
+    JNIEnv *env, jclass clazz, jint query) {
+  khronos_uint64_t result = 0;
+  get_query_object_ui64v((GLuint) query, GL_QUERY_RESULT_EXT, &result);
+  return (jlong) result;
+}
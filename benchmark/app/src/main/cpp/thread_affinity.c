@@ -0,0 +1,51 @@
+/*
+ * Copyright 2021, Brown University, Providence, RI.
+ * Rahul Shahi, Sherief Reda, Seif Abdelaziz
+ *
+ *                        All Rights Reserved
+ *
+ * Permission to use, copy, modify, and distribute this software and
+ * its documentation for any purpose other than its incorporation into a
+ * commercial product or service is hereby granted without fee, provided
+ * that the above copyright notice appear in all copies and that both
+ * that copyright notice and this permission notice appear in supporting
+ * documentation, and that the name of Brown University not be used in
+ * advertising or publicity pertaining to distribution of the software
+ * without specific, written prior permission.
+ *
+ * BROWN UNIVERSITY DISCLAIMS ALL WARRANTIES WITH REGARD TO THIS SOFTWARE,
+ * INCLUDING ALL IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR ANY
+ * PARTICULAR PURPOSE.  IN NO EVENT SHALL BROWN UNIVERSITY BE LIABLE FOR
+ * ANY SPECIAL, INDIRECT OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF
+ * OR IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+
+// Restricts threads to a set of CPU cores, which the Android SDK has no call for.
+
+#define _GNU_SOURCE
+#include <errno.h>
+#include <jni.h>
+#include <sched.h>
+
+JNIEXPORT jint JNICALL
+Java_benchmark_common_helpers_ThreadAffinity_nativeSetAffinity(
+    JNIEnv *env, jclass clazz, jintArray cores) {
+  cpu_set_t set;
+  CPU_ZERO(&set);
+  jsize count = (*env)->GetArrayLength(env, cores);
+  jint *values = (*env)->GetIntArrayElements(env, cores, NULL);
+  if (values == NULL) {
+    return ENOMEM;
+  }
+  for (jsize i = 0; i < count; i++) {
+    if (values[i] >= 0 && values[i] < CPU_SETSIZE) {
+      CPU_SET(values[i], &set);
+    }
+  }
+  (*env)->ReleaseIntArrayElements(env, cores, values, JNI_ABORT);
+  // Pid 0 is the calling thread.
+  return sched_setaffinity(0, sizeof(set), &set) == 0 ? 0 : errno;
+}
@@ -74,10 +74,8 @@ import com.google.ar.core.exceptions.UnavailableArcoreNotInstalledException;
 import com.google.ar.core.exceptions.UnavailableSdkTooOldException;
 import com.google.ar.core.exceptions.UnavailableUserDeclinedInstallationException;
 
-import java.io.BufferedWriter;
 import java.io.File;
 import java.io.FileOutputStream;
-import java.io.FileWriter;
 import java.io.IOException;
 import java.io.InputStream;
 import java.nio.IntBuffer;
@@ -87,13 +85,20 @@ import java.util.Map;
 
 import benchmark.benchmark.BenchmarkActivity;
 import benchmark.benchmark.R;
+import benchmark.common.framelog.FrameLog;
+import benchmark.common.framelog.FrameLogWriter;
+import benchmark.common.framelog.FrameTimer;
+import benchmark.common.framelog.StallDetector;
 import benchmark.common.helpers.CameraPermissionHelper;
 import benchmark.common.helpers.DisplayRotationHelper;
 import benchmark.common.helpers.FullScreenHelper;
+import benchmark.common.helpers.SchedulingPolicy;
 import benchmark.common.helpers.SnackbarHelper;
 import benchmark.common.helpers.TrackingStateHelper;
 import benchmark.common.rendering.BackgroundRenderer;
+import benchmark.common.samplerender.FrameProfiler;
 import benchmark.common.samplerender.OffscreenRender;
+import benchmark.common.samplerender.PerformanceHud;
 import benchmark.common.samplerender.SampleRender;
 
 /**
@@ -140,18 +145,11 @@ public class AugmentedImageActivity extends AppCompatActivity implements SampleR
     private int REQUEST_MP4_SELECTOR = 1;
     private boolean hasSetTextureNames = false;
 
-    private BufferedWriter fpsLog;
+    private FrameProfiler profiler;
 
     String fileName;
     int currentPhase = 1;
 
-    private boolean hasTimerExtension;
-    private static final int TIME_ELAPSED_EXT = 0x88BF;
-    private static final int NUM_QUERIES = 10;
-    private int[] timeQueries;
-    private int[] queryBuffer;
-    private int queryIndex;
-
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
@@ -164,7 +162,9 @@ public class AugmentedImageActivity extends AppCompatActivity implements SampleR
         surfaceView.getHolder().addCallback(new SurfaceHolder.Callback() {
             @Override
             public void surfaceCreated(SurfaceHolder holder) {
-                render = new OffscreenRender(surfaceView, AugmentedImageActivity.this, getAssets());
+                render = new OffscreenRender(surfaceView, AugmentedImageActivity.this, getAssets(),
+                        SchedulingPolicy.fromIntent(getIntent()));
+                render.setHud(profiler.getHud());
             }
 
             @Override
@@ -192,6 +192,7 @@ public class AugmentedImageActivity extends AppCompatActivity implements SampleR
         Intent intent = getIntent();
         int activityNumber = intent.getIntExtra(BenchmarkActivity.ACTIVITY_NUMBER, 0);
         fileName = BenchmarkActivity.ACTIVITY_RECORDINGS[activityNumber].getRecordingFileName();
+        String sectionName = BenchmarkActivity.ACTIVITY_RECORDINGS[activityNumber].getSectionName();
         File f = new File(getExternalFilesDir(null) + "/" + fileName);
         if (!f.exists()) try {
             InputStream is = getAssets().open("recordings/" + fileName);
@@ -206,35 +207,28 @@ public class AugmentedImageActivity extends AppCompatActivity implements SampleR
         } catch (Exception e) {
             throw new RuntimeException(e);
         }
+        FrameLogWriter fpsLog = null;
         try {
-            String logPath = getExternalFilesDir(null).getAbsolutePath() + "/frame-log";
-            Log.d(TAG, "Logging FPS to " + logPath);
-            fpsLog = new BufferedWriter(new FileWriter(logPath, true));
-            fpsLog.write("test " + fileName + "\n");
+            File logFile = new File(getExternalFilesDir(null), FrameLog.FILE_NAME);
+            Log.d(TAG, "Logging FPS to " + logFile.getAbsolutePath());
+            fpsLog = new FrameLogWriter(logFile, sectionName, fileName, FrameLog.COLUMN_NAMES);
         } catch (IOException e) {
             messageSnackbarHelper.showError(this, "Could not open file to log FPS");
         }
-
-        timeQueries = new int[NUM_QUERIES];
-        queryBuffer = new int[1];
-        queryBuffer[0] = 0;
-        queryIndex = 0;
-        for (int i=0; i < NUM_QUERIES; i++) {
-            timeQueries[i] = -1;
+        profiler = new FrameProfiler(fpsLog);
+        profiler.enableStallDetection(this, sectionName, fileName, StallDetector.DEFAULT_THRESHOLD);
+        profiler.enableThermalSampling(this, sectionName, fileName);
+        profiler.enablePowerSampling(this, sectionName, fileName);
+        profiler.enableCoreSampling(this, sectionName, fileName);
+        profiler.enableWriterLog(this, sectionName, fileName);
+        if (PerformanceHud.isEnabled(getIntent())) {
+            profiler.setHud(new PerformanceHud());
         }
     }
 
     private void cleanupCollectionResources() {
         try {
-            if (fpsLog != null) {
-                fpsLog.flush();
-                fpsLog.close();
-            }
-            for (int i=0; i < NUM_QUERIES; i++) {
-                if (timeQueries[i] >= 0) {
-                    GLES30.glDeleteQueries(1, timeQueries, i);
-                }
-            }
+            profiler.close();
         } catch (IOException e) {
             Log.e(TAG, "Exception closing frame log: ", e);
         }
@@ -242,12 +236,10 @@ public class AugmentedImageActivity extends AppCompatActivity implements SampleR
 
     @Override
     protected void onDestroy() {
-        if (fpsLog != null) {
-            try {
-                fpsLog.close();
-            } catch (IOException e) {
-                e.printStackTrace();
-            }
+        try {
+            profiler.close();
+        } catch (IOException e) {
+            e.printStackTrace();
         }
 
         if (session != null) {
@@ -381,8 +373,7 @@ public class AugmentedImageActivity extends AppCompatActivity implements SampleR
         } catch (IOException e) {
             Log.e(TAG, "Failed to read an asset file", e);
         }
-        String extensions = GLES30.glGetString(GLES30.GL_EXTENSIONS);
-        hasTimerExtension = extensions.contains(" GL_EXT_disjoint_timer_query ");
+        profiler.onSurfaceCreated();
     }
 
     @Override
@@ -393,7 +384,7 @@ public class AugmentedImageActivity extends AppCompatActivity implements SampleR
 
     @Override
     public void onDrawFrame(SampleRender render) {
-        long frameTime = System.currentTimeMillis();
+        profiler.beginFrame();
         if (session == null) {
             return;
         }
@@ -401,12 +392,9 @@ public class AugmentedImageActivity extends AppCompatActivity implements SampleR
             session.close();
             session = null;
             saveLastFrame(this.render.getViewportWidth(), this.render.getViewportHeight());
+            profiler.release();
             try {
-                if (fpsLog != null) {
-                    fpsLog.flush();
-                    fpsLog.close();
-                    fpsLog = null;
-                }
+                profiler.close();
             } catch (IOException e) {
             }
             setResult(RESULT_OK);
@@ -431,7 +419,7 @@ public class AugmentedImageActivity extends AppCompatActivity implements SampleR
             // Obtain the current frame from ARSession. When the configuration is set to
             // UpdateMode.BLOCKING (it is by default), this will throttle the rendering to the
             // camera framerate.
-            long processTime = System.currentTimeMillis();
+            profiler.begin(FrameTimer.UPDATE);
             frame = session.update();
             Camera camera = frame.getCamera();
 
@@ -449,44 +437,23 @@ public class AugmentedImageActivity extends AppCompatActivity implements SampleR
             final float[] colorCorrectionRgba = new float[4];
             frame.getLightEstimate().getColorCorrection(colorCorrectionRgba, 0);
 
-            processTime = System.currentTimeMillis() - processTime;
+            profiler.end(FrameTimer.UPDATE);
+            profiler.setFrameContext(augmentedImageMap.size(), frame.getTimestamp());
 
             // Keep the screen unlocked while tracking, but allow it to lock when tracking stops.
             trackingStateHelper.updateKeepScreenOnFlag(camera.getTrackingState());
 
             // If frame is ready, render camera preview image to the GL surface.
+            profiler.begin(FrameTimer.BACKGROUND);
             backgroundRenderer.draw(frame);
-
-            if (!hasTimerExtension) {
-                messageSnackbarHelper.showError(this, "OpenGL extension EXT_disjoint_timer_query is unavailable on this device");
-                return;
-            }
-            if (timeQueries[queryIndex] < 0) {
-                GLES30.glGenQueries(1, timeQueries, queryIndex);
-            }
-            if (timeQueries[(queryIndex + 1) % NUM_QUERIES] >= 0) {
-                IntBuffer queryResult = IntBuffer.allocate(1);
-                GLES30.glGetQueryObjectuiv(timeQueries[(queryIndex + 1) % NUM_QUERIES], GLES30.GL_QUERY_RESULT_AVAILABLE, queryResult);
-                if (queryResult.get() == GLES30.GL_TRUE) {
-                    GLES30.glGetQueryObjectuiv(timeQueries[(queryIndex + 1) % NUM_QUERIES], GLES30.GL_QUERY_RESULT, queryBuffer, 0);
-                }
-            }
-            GLES30.glBeginQuery(TIME_ELAPSED_EXT, timeQueries[queryIndex]);
+            profiler.end(FrameTimer.BACKGROUND);
 
             // Visualize augmented images.
+            profiler.begin(FrameTimer.OBJECTS);
             drawAugmentedImages(frame, projectionMatrix, viewMatrix, colorCorrectionRgba);
+            profiler.end(FrameTimer.OBJECTS);
 
-            GLES30.glEndQuery(TIME_ELAPSED_EXT);
-            queryIndex = (queryIndex + 1) % NUM_QUERIES;
-
-            try {
-                if (fpsLog != null) {
-                    fpsLog.write(currentPhase + "," + frameTime + "," + processTime + ",0," + queryBuffer[0] + "," + (System.currentTimeMillis() - frameTime) + "\n");
-                }
-            } catch (IOException e) {
-                Log.e(TAG, "Failed to log frame data", e);
-                messageSnackbarHelper.showError(this, "Failed to log frame data: " + e);
-            }
+            profiler.endFrame(currentPhase);
         } catch (Throwable t) {
             // Avoid crashing the application due to unhandled exceptions.
             Log.e(TAG, "Exception on the OpenGL thread", t);
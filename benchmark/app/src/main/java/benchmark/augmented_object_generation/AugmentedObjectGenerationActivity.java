@@ -87,18 +87,26 @@ import com.google.ar.core.TrackingFailureReason;
 import com.google.ar.core.TrackingState;
 
 import benchmark.benchmark.BenchmarkActivity;
+import benchmark.common.framelog.FrameLog;
+import benchmark.common.framelog.FrameLogWriter;
+import benchmark.common.framelog.FrameTimer;
+import benchmark.common.framelog.StallDetector;
 import benchmark.common.helpers.CameraPermissionHelper;
 import benchmark.common.helpers.DepthSettings;
 import benchmark.common.helpers.DisplayRotationHelper;
 import benchmark.common.helpers.FullScreenHelper;
 import benchmark.common.helpers.InstantPlacementSettings;
+import benchmark.common.helpers.SchedulingPolicy;
 import benchmark.common.helpers.SnackbarHelper;
 import benchmark.common.helpers.TapHelper;
 import benchmark.common.helpers.TrackingStateHelper;
+import benchmark.common.samplerender.FrameProfiler;
 import benchmark.common.samplerender.Framebuffer;
 import benchmark.common.samplerender.GLError;
+import benchmark.common.samplerender.GpuMemory;
 import benchmark.common.samplerender.Mesh;
 import benchmark.common.samplerender.OffscreenRender;
+import benchmark.common.samplerender.PerformanceHud;
 import benchmark.common.samplerender.SampleRender;
 import benchmark.common.samplerender.Shader;
 import benchmark.common.samplerender.Texture;
@@ -116,10 +124,8 @@ import com.google.ar.core.exceptions.UnavailableDeviceNotCompatibleException;
 import com.google.ar.core.exceptions.UnavailableSdkTooOldException;
 import com.google.ar.core.exceptions.UnavailableUserDeclinedInstallationException;
 
-import java.io.BufferedWriter;
 import java.io.File;
 import java.io.FileOutputStream;
-import java.io.FileWriter;
 import java.io.IOException;
 import java.io.InputStream;
 import java.nio.ByteBuffer;
@@ -237,17 +243,9 @@ public class AugmentedObjectGenerationActivity extends AppCompatActivity impleme
   String fileName;
 
   // FPS and Runtime Log
-  private BufferedWriter fpsLog;
+  private FrameProfiler profiler;
   int currentPhase = 1;
 
-  // For GPU timing extension
-  private boolean hasTimerExtension;
-  private static final int TIME_ELAPSED_EXT = 0x88BF;
-  private static final int NUM_QUERIES = 10;
-  private int[] timeQueries;
-  private int[] queryBuffer;
-  private int queryIndex;
-
   @Override
   protected void onCreate(Bundle savedInstanceState) {
     super.onCreate(savedInstanceState);
@@ -264,7 +262,9 @@ public class AugmentedObjectGenerationActivity extends AppCompatActivity impleme
     surfaceView.getHolder().addCallback(new SurfaceHolder.Callback() {
       @Override
       public void surfaceCreated(SurfaceHolder holder) {
-        render = new OffscreenRender(surfaceView, AugmentedObjectGenerationActivity.this, getAssets());
+        render = new OffscreenRender(surfaceView, AugmentedObjectGenerationActivity.this,
+            getAssets(), SchedulingPolicy.fromIntent(getIntent()));
+        render.setHud(profiler.getHud());
       }
 
       @Override
@@ -301,6 +301,7 @@ public class AugmentedObjectGenerationActivity extends AppCompatActivity impleme
     Intent intent = getIntent();
     int activityNumber = intent.getIntExtra(BenchmarkActivity.ACTIVITY_NUMBER, 0);
     fileName = BenchmarkActivity.ACTIVITY_RECORDINGS[activityNumber].getRecordingFileName();
+    String sectionName = BenchmarkActivity.ACTIVITY_RECORDINGS[activityNumber].getSectionName();
     File f = new File(getExternalFilesDir(null)+"/"+fileName);
     // Extract recording from assets into external files directory
     if (!f.exists()) try {
@@ -317,22 +318,23 @@ public class AugmentedObjectGenerationActivity extends AppCompatActivity impleme
     } catch (Exception e) { throw new RuntimeException(e); }
 
     // Setup performance log.
+    FrameLogWriter fpsLog = null;
     try {
-      String logPath = getExternalFilesDir(null).getAbsolutePath() + "/frame-log";
-      Log.d(TAG, "Logging FPS to " + logPath);
-      fpsLog = new BufferedWriter(new FileWriter(logPath, true));
-      fpsLog.write("test " + fileName + "\n");
+      File logFile = new File(getExternalFilesDir(null), FrameLog.FILE_NAME);
+      Log.d(TAG, "Logging FPS to " + logFile.getAbsolutePath());
+      fpsLog = new FrameLogWriter(logFile, sectionName, fileName, FrameLog.COLUMN_NAMES);
     } catch (IOException e) {
       messageSnackbarHelper.showError(this, "Could not open file to log FPS");
     }
-
-    // Queries are initialized in onDrawFrame
-    timeQueries = new int[NUM_QUERIES];
-    queryBuffer = new int[1];
-    queryBuffer[0] = 0;
-    queryIndex = 0;
-    for (int i=0; i < NUM_QUERIES; i++) {
-      timeQueries[i] = -1;
+    // GPU queries are created in onSurfaceCreated
+    profiler = new FrameProfiler(fpsLog);
+    profiler.enableStallDetection(this, sectionName, fileName, StallDetector.DEFAULT_THRESHOLD);
+    profiler.enableThermalSampling(this, sectionName, fileName);
+    profiler.enablePowerSampling(this, sectionName, fileName);
+    profiler.enableCoreSampling(this, sectionName, fileName);
+    profiler.enableWriterLog(this, sectionName, fileName);
+    if (PerformanceHud.isEnabled(getIntent())) {
+      profiler.setHud(new PerformanceHud());
     }
   }
 
@@ -351,15 +353,7 @@ public class AugmentedObjectGenerationActivity extends AppCompatActivity impleme
 
   private void cleanupCollectionResources() {
     try {
-      if (fpsLog != null) {
-        fpsLog.flush();
-        fpsLog.close();
-      }
-      for (int i=0; i < NUM_QUERIES; i++) {
-        if (timeQueries[i] >= 0) {
-          GLES30.glDeleteQueries(1, timeQueries, i);
-        }
-      }
+      profiler.close();
     } catch (IOException e) {
       Log.e(TAG, "Exception closing frame log: ", e);
     }
@@ -529,6 +523,8 @@ public class AugmentedObjectGenerationActivity extends AppCompatActivity impleme
           GLES30.GL_HALF_FLOAT,
           buffer);
       GLError.maybeThrowGLException("Failed to populate DFG texture", "glTexImage2D");
+      dfgTexture.recordAllocation(GpuMemory.Category.TEXTURE, GLES30.GL_RG16F, dfgResolution,
+          dfgResolution, /*mipLevels=*/ 1);
 
       // Point cloud
       pointCloudShader =
@@ -579,8 +575,8 @@ public class AugmentedObjectGenerationActivity extends AppCompatActivity impleme
       Log.e(TAG, "Failed to read a required asset file", e);
       messageSnackbarHelper.showError(this, "Failed to read a required asset file: " + e);
     }
-    String extensions = GLES30.glGetString(GLES30.GL_EXTENSIONS);
-    hasTimerExtension = extensions.contains(" GL_EXT_disjoint_timer_query ");
+    profiler.onSurfaceCreated();
+    profiler.setGpuMemory(render.getGpuMemory());
   }
 
   @Override
@@ -591,7 +587,7 @@ public class AugmentedObjectGenerationActivity extends AppCompatActivity impleme
 
   @Override
   public void onDrawFrame(SampleRender render) {
-    long frameTime = System.currentTimeMillis();
+    profiler.beginFrame();
     if (session == null) {
       return;
     }
@@ -599,13 +595,11 @@ public class AugmentedObjectGenerationActivity extends AppCompatActivity impleme
       session.close();
       session = null;
       saveLastFrame(this.render.getViewportWidth(), this.render.getViewportHeight());
+      profiler.release();
       try {
-        if (fpsLog != null) {
-          fpsLog.flush();
-          fpsLog.close();
-          fpsLog = null;
-        }
+        profiler.close();
       } catch (IOException e) {
+        Log.e(TAG, "Exception closing frame log: ", e);
       }
       setResult(RESULT_OK);
       finish();
@@ -634,7 +628,7 @@ public class AugmentedObjectGenerationActivity extends AppCompatActivity impleme
     // camera framerate.
     Frame frame;
     // ARCore Processing Time
-    long processTime = System.currentTimeMillis();
+    profiler.begin(FrameTimer.UPDATE);
     try {
       frame = session.update();
     } catch (CameraNotAvailableException e) {
@@ -649,14 +643,17 @@ public class AugmentedObjectGenerationActivity extends AppCompatActivity impleme
     // Get camera matrix and draw.
     camera.getViewMatrix(viewMatrix, 0);
     Matrix.multiplyMM(modelViewProjectionMatrix, 0, projectionMatrix, 0, viewMatrix, 0);
-
-    // Input Handling Time
-    long handleInputTime = System.currentTimeMillis();
-    processTime = handleInputTime - processTime;
-
-    // Handle one tap per frame.
-    handleTap(frame, camera);
-    handleInputTime = System.currentTimeMillis() - handleInputTime;
+    profiler.end(FrameTimer.UPDATE);
+    profiler.setFrameContext(anchors.size(), frame.getTimestamp());
+
+    // Input Handling Time, only entered in frames with a tap so that it measures tap latency
+    // rather than idle frames. Handle one tap per frame.
+    MotionEvent tap = pollTap(frame);
+    if (tap != null) {
+      profiler.begin(FrameTimer.INPUT);
+      handleTap(tap, frame, camera);
+      profiler.end(FrameTimer.INPUT);
+    }
 
     // Keep the screen unlocked while tracking, but allow it to lock when tracking stops.
     trackingStateHelper.updateKeepScreenOnFlag(camera.getTrackingState());
@@ -699,11 +696,13 @@ public class AugmentedObjectGenerationActivity extends AppCompatActivity impleme
     }
 
     // -- Draw background
+    profiler.begin(FrameTimer.BACKGROUND);
     if (frame.getTimestamp() != 0) {
       // Suppress rendering if the camera did not produce the first frame yet. This is to avoid
       // drawing possible leftover data from previous sessions if the texture is reused.
       backgroundRenderer.drawBackground(render);
     }
+    profiler.end(FrameTimer.BACKGROUND);
 
     // If not tracking, don't draw 3D objects.
     if (camera.getTrackingState() == TrackingState.PAUSED) {
@@ -714,6 +713,7 @@ public class AugmentedObjectGenerationActivity extends AppCompatActivity impleme
 
     // Visualize tracked points.
     // Use try-with-resources to automatically release the point cloud.
+    profiler.begin(FrameTimer.POINT_CLOUD);
     try (PointCloud pointCloud = frame.acquirePointCloud()) {
       if (pointCloud.getTimestamp() > lastPointCloudTimestamp) {
         pointCloudVertexBuffer.set(pointCloud.getPoints());
@@ -722,40 +722,24 @@ public class AugmentedObjectGenerationActivity extends AppCompatActivity impleme
       pointCloudShader.setMat4("u_ModelViewProjection", modelViewProjectionMatrix);
       render.draw(pointCloudMesh, pointCloudShader);
     }
+    profiler.end(FrameTimer.POINT_CLOUD);
 
     // Visualize planes.
+    profiler.begin(FrameTimer.PLANES);
     planeRenderer.drawPlanes(
         render,
         session.getAllTrackables(Plane.class),
         camera.getDisplayOrientedPose(),
         projectionMatrix);
+    profiler.end(FrameTimer.PLANES);
 
     // -- Draw occluded virtual objects
 
     // Update lighting parameters in the shader
     updateLightEstimation(frame.getLightEstimate(), viewMatrix);
 
-    // Setup OpenGL time queries. Queries are organized in a queueso that new queries can be made while the old result becomes
-    // available.
-    if (!hasTimerExtension) {
-      messageSnackbarHelper.showError(this, "OpenGL extension EXT_disjoint_timer_query is unavailable on this device");
-      return;
-    }
-    if (timeQueries[queryIndex] < 0) {
-      GLES30.glGenQueries(1, timeQueries, queryIndex);
-    }
-    // Pop query off queue and fetch its result.
-    if (timeQueries[(queryIndex + 1) % NUM_QUERIES] >= 0) {
-      IntBuffer queryResult = IntBuffer.allocate(1);
-      GLES30.glGetQueryObjectuiv(timeQueries[(queryIndex + 1) % NUM_QUERIES], GLES30.GL_QUERY_RESULT_AVAILABLE, queryResult);
-      if (queryResult.get() == GLES30.GL_TRUE) {
-        GLES30.glGetQueryObjectuiv(timeQueries[(queryIndex + 1) % NUM_QUERIES], GLES30.GL_QUERY_RESULT, queryBuffer, 0);
-      }
-    }
-    // Begin query for current frame.
-    GLES30.glBeginQuery(TIME_ELAPSED_EXT, timeQueries[queryIndex]);
-
     // Visualize anchors created by touch.
+    profiler.begin(FrameTimer.OBJECTS);
     render.clear(virtualSceneFramebuffer, 0f, 0f, 0f, 0f);
     for (Anchor anchor : anchors) {
       if (anchor.getTrackingState() != TrackingState.TRACKING) {
@@ -775,23 +759,17 @@ public class AugmentedObjectGenerationActivity extends AppCompatActivity impleme
       virtualObjectShader.setMat4("u_ModelViewProjection", modelViewProjectionMatrix);
       render.draw(virtualObjectMesh, virtualObjectShader, virtualSceneFramebuffer);
     }
+    profiler.end(FrameTimer.OBJECTS);
 
     // Compose the virtual scene with the background.
+    profiler.begin(FrameTimer.COMPOSE);
     backgroundRenderer.drawVirtualScene(render, virtualSceneFramebuffer, Z_NEAR, Z_FAR);
-
-    GLES30.glEndQuery(TIME_ELAPSED_EXT);
-    queryIndex = (queryIndex + 1) % NUM_QUERIES;
-    try {
-      if (fpsLog != null) {
-        fpsLog.write(currentPhase + "," + frameTime + "," + processTime + "," + handleInputTime + "," + queryBuffer[0] + "," + (System.currentTimeMillis() - frameTime) + "\n");
-      }
-    } catch (IOException e) {
-      Log.e(TAG, "Failed to log frame data", e);
-    }
+    profiler.end(FrameTimer.COMPOSE);
+    profiler.endFrame(currentPhase);
   }
 
   // Handle only one tap per frame, as taps are usually low frequency compared to frame rate.
-  private void handleTap(Frame frame, Camera camera) {
+  private MotionEvent pollTap(Frame frame) {
     MotionEvent tap;
     if (session.getPlaybackStatus() == PlaybackStatus.OK) {
       tap = null;
@@ -806,11 +784,10 @@ public class AugmentedObjectGenerationActivity extends AppCompatActivity impleme
     } else {
       tap = tapHelper.poll();
     }
+    return tap;
+  }
 
-    if (tap == null) {
-      return;
-    }
-
+  private void handleTap(MotionEvent tap, Frame frame, Camera camera) {
     // Read screen tap data from recording.
     if (session.getRecordingStatus() == RecordingStatus.OK) {
       float[] tapCoords = new float[2];
@@ -987,7 +964,9 @@ public class AugmentedObjectGenerationActivity extends AppCompatActivity impleme
         viewMatrix);
     updateSphericalHarmonicsCoefficients(
         lightEstimate.getEnvironmentalHdrAmbientSphericalHarmonics());
+    profiler.begin(FrameTimer.CUBEMAP_FILTER);
     cubemapFilter.update(lightEstimate.acquireEnvironmentalHdrCubeMap());
+    profiler.end(FrameTimer.CUBEMAP_FILTER);
   }
 
   private void updateMainLight(float[] direction, float[] intensity, float[] viewMatrix) {
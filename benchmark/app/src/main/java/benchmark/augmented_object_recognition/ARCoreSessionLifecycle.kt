@@ -120,7 +120,7 @@ class ARCoreSessionLifecycleHelper(
     } catch (e: CameraNotAvailableException) {
       exceptionCallback?.invoke(e)
     } catch (e: PlaybackFailedException) {
-      viewRecognition.fpsLog?.close()
+      viewRecognition.profiler.close()
       exceptionCallback?.invoke(e)
     }
   }
@@ -130,9 +130,7 @@ class ARCoreSessionLifecycleHelper(
   }
 
   override fun onDestroy(owner: LifecycleOwner) {
-    if (viewRecognition.fpsLog != null) {
-      viewRecognition.fpsLog!!.close()
-    }
+    viewRecognition.profiler.close()
 
     // Explicitly close ARCore Session to release native resources.
     // Review the API reference for important considerations before calling close() in apps with
@@ -54,7 +54,9 @@ import benchmark.augmented_object_recognition.classification.MLKitObjectDetector
 import benchmark.augmented_object_recognition.classification.ObjectDetector
 import benchmark.augmented_object_recognition.render.LabelRender
 import benchmark.augmented_object_recognition.render.PointCloudRender
+import benchmark.common.framelog.FrameTimer
 import benchmark.common.helpers.DisplayRotationHelper
+import benchmark.common.helpers.SystemTrace
 import benchmark.common.helpers.TrackingStateHelper
 import benchmark.common.samplerender.SampleRender
 import benchmark.common.samplerender.arcore.BackgroundRenderer
@@ -63,6 +65,7 @@ import com.google.ar.core.exceptions.*
 import kotlinx.coroutines.CoroutineScope
 import kotlinx.coroutines.Dispatchers
 import kotlinx.coroutines.MainScope
+import kotlinx.coroutines.asCoroutineDispatcher
 import kotlinx.coroutines.launch
 import java.io.File
 import java.io.FileOutputStream
@@ -102,22 +105,16 @@ class AppRenderer(val recognitionActivity: AugmentedObjectRecognitionActivity) :
   var currentAnalyzer: ObjectDetector = mlKitAnalyzer
   var currentPhase = 1
 
-  private var hasTimerExtension = false
-  private val TIME_ELAPSED_EXT = 0x88BF
-  private val NUM_QUERIES = 10
-  private var timeQueries: IntArray = IntArray(NUM_QUERIES)
-  private var queryBuffer: IntArray = IntArray(1)
-  private var queryIndex = 0
+  // Object detection runs on the dedicated thread of the scheduling policy, or on the IO pool.
+  private val mlExecutor = recognitionActivity.schedulingPolicy.newMlExecutor()
+  private val mlDispatcher = mlExecutor?.asCoroutineDispatcher() ?: Dispatchers.IO
+
+  private val profiler get() = viewRecognition.profiler
 
   private fun cleanupCollectionResources() {
     try {
-      viewRecognition.fpsLog?.flush()
-      viewRecognition.fpsLog?.close()
-      for (i in 0 until NUM_QUERIES) {
-        if (timeQueries[i] >= 0) {
-          GLES30.glDeleteQueries(1, timeQueries, i)
-        }
-      }
+      profiler.release()
+      profiler.close()
     } catch (e: IOException) {
       Log.e(TAG, "Exception closing frame log: ", e)
     }
@@ -156,6 +153,10 @@ class AppRenderer(val recognitionActivity: AugmentedObjectRecognitionActivity) :
     displayRotationHelper.onPause()
   }
 
+  override fun onDestroy(owner: LifecycleOwner) {
+    mlExecutor?.shutdown()
+  }
+
   fun bindView(viewRecognition: AugmentedObjectRecognitionActivityView) {
     this.viewRecognition = viewRecognition
 
@@ -169,13 +170,8 @@ class AppRenderer(val recognitionActivity: AugmentedObjectRecognitionActivity) :
     pointCloudRender.onSurfaceCreated(render)
     labelRenderer.onSurfaceCreated(render)
 
-    queryBuffer[0] = 0
-    queryIndex = 0
-    for (i in 0 until NUM_QUERIES) {
-      timeQueries[i] = -1
-    }
-    val extensions = GLES30.glGetString(GLES30.GL_EXTENSIONS)
-    hasTimerExtension = extensions.contains(" GL_EXT_disjoint_timer_query ")
+    profiler.onSurfaceCreated()
+    profiler.setGpuMemory(render.gpuMemory)
   }
 
   override fun onSurfaceChanged(render: SampleRender?, width: Int, height: Int) {
@@ -185,18 +181,15 @@ class AppRenderer(val recognitionActivity: AugmentedObjectRecognitionActivity) :
   var objectResults: List<DetectedObjectResult>? = null
 
   override fun onDrawFrame(render: SampleRender) {
-    val frameTime = System.currentTimeMillis()
+    profiler.beginFrame()
 
     var session = recognitionActivity.arCoreSessionHelper.sessionCache ?: return
     if (session.playbackStatus == PlaybackStatus.FINISHED) {
       recognitionActivity.arCoreSessionHelper.onDestroy(recognitionActivity) // close session
       saveLastFrame(viewRecognition.render!!.viewportWidth, viewRecognition.render!!.viewportHeight)
+      profiler.release()
       try {
-        if (viewRecognition.fpsLog != null) {
-          viewRecognition.fpsLog?.flush()
-          viewRecognition.fpsLog?.close()
-          viewRecognition.fpsLog = null
-        }
+        profiler.close()
       } catch (e: IOException) {
       }
       recognitionActivity.setResult(Activity.RESULT_OK)
@@ -210,7 +203,7 @@ class AppRenderer(val recognitionActivity: AugmentedObjectRecognitionActivity) :
     // the video background can be properly adjusted.
     displayRotationHelper.updateSessionIfNeeded(session)
 
-    var processTime = System.currentTimeMillis()
+    profiler.begin(FrameTimer.UPDATE)
     val frame = try {
       session.update()
     } catch (e: CameraNotAvailableException) {
@@ -225,7 +218,8 @@ class AppRenderer(val recognitionActivity: AugmentedObjectRecognitionActivity) :
     camera.getProjectionMatrix(projectionMatrix, 0, 0.01f, 100.0f)
     Matrix.multiplyMM(viewProjectionMatrix, 0, projectionMatrix, 0, viewMatrix, 0)
 
-    processTime = System.currentTimeMillis() - processTime
+    profiler.end(FrameTimer.UPDATE)
+    profiler.setFrameContext(arLabeledAnchors.size, frame.timestamp)
 
     // Keep the screen unlocked while tracking, but allow it to lock when tracking stops.
     trackingStateHelper.updateKeepScreenOnFlag(camera.trackingState)
@@ -250,28 +244,19 @@ class AppRenderer(val recognitionActivity: AugmentedObjectRecognitionActivity) :
     }
 
     // Read recording scan button input data.
-    if (session.playbackStatus == PlaybackStatus.OK) {
-      if (!frame.getUpdatedTrackData(viewRecognition.SCAN_TRACK_ID).isEmpty()) {
-        scanButtonWasPressed = true
-      }
-    }
+    val scanned = pollScan(frame, session)
 
+    profiler.begin(FrameTimer.BACKGROUND)
     backgroundRenderer.updateDisplayGeometry(frame)
     backgroundRenderer.drawBackground(render)
-
-    var handleInputTime = System.currentTimeMillis()
-    if (scanButtonWasPressed) {
-      scanButtonWasPressed = false
-      val cameraImage = frame.tryAcquireCameraImage()
-      if (cameraImage != null) {
-        // Call our ML model on an IO thread.
-        launch(Dispatchers.IO) {
-          val cameraId = session.cameraConfig.cameraId
-          val imageRotation = displayRotationHelper.getCameraSensorToDisplayRotation(cameraId)
-          objectResults = currentAnalyzer.analyze(cameraImage, imageRotation)
-          cameraImage.close()
-        }
-      }
+    profiler.end(FrameTimer.BACKGROUND)
+
+    // Input Handling Time, only entered in frames with a scan so that it measures tap latency
+    // rather than idle frames.
+    if (scanned) {
+      profiler.begin(FrameTimer.INPUT)
+      handleScan(frame, session)
+      profiler.end(FrameTimer.INPUT)
     }
 
     /** If results were completed this frame, create [Anchor]s from model results. */
@@ -288,44 +273,20 @@ class AppRenderer(val recognitionActivity: AugmentedObjectRecognitionActivity) :
       arLabeledAnchors.addAll(anchors)
     }
 
-    handleInputTime = System.currentTimeMillis() - handleInputTime
-
     // Handle tracking failures.
     if (camera.trackingState != TrackingState.TRACKING) {
       return
     }
 
     // Draw point cloud.
+    profiler.begin(FrameTimer.POINT_CLOUD)
     frame.acquirePointCloud().use { pointCloud ->
       pointCloudRender.drawPointCloud(render, pointCloud, viewProjectionMatrix)
     }
-
-    if (!hasTimerExtension) {
-      showSnackbar("OpenGL extension EXT_disjoint_timer_query is unavailable on this device")
-      return
-    }
-    if (timeQueries[queryIndex] < 0) {
-      GLES30.glGenQueries(1, timeQueries, queryIndex)
-    }
-    if (timeQueries[(queryIndex + 1) % NUM_QUERIES] >= 0) {
-      val queryResult = IntBuffer.allocate(1)
-      GLES30.glGetQueryObjectuiv(
-        timeQueries[(queryIndex + 1) % NUM_QUERIES],
-        GLES30.GL_QUERY_RESULT_AVAILABLE,
-        queryResult
-      )
-      if (queryResult.get() == GLES30.GL_TRUE) {
-        GLES30.glGetQueryObjectuiv(
-          timeQueries[(queryIndex + 1) % NUM_QUERIES],
-          GLES30.GL_QUERY_RESULT,
-          queryBuffer,
-          0
-        )
-      }
-    }
-    GLES30.glBeginQuery(TIME_ELAPSED_EXT, timeQueries[queryIndex])
+    profiler.end(FrameTimer.POINT_CLOUD)
 
     // Draw labels at their anchor position.
+    profiler.begin(FrameTimer.OBJECTS)
     for (arDetectedObject in arLabeledAnchors) {
       val anchor = arDetectedObject.anchor
       if (anchor.trackingState != TrackingState.TRACKING) continue
@@ -338,12 +299,35 @@ class AppRenderer(val recognitionActivity: AugmentedObjectRecognitionActivity) :
       )
     }
 
-    GLES30.glEndQuery(TIME_ELAPSED_EXT)
-    queryIndex = (queryIndex + 1) % NUM_QUERIES
-    if (viewRecognition.fpsLog != null) {
-      val data =
-        currentPhase.toString() + "," + frameTime + "," + processTime + "," + handleInputTime + "," + queryBuffer[0] + "," + (System.currentTimeMillis() - frameTime) + "\n";
-      viewRecognition.fpsLog!!.write(data)
+    profiler.end(FrameTimer.OBJECTS)
+    profiler.endFrame(currentPhase)
+  }
+
+  /** Returns whether the scan button was pressed since the last frame, and clears the press. */
+  private fun pollScan(frame: Frame, session: Session): Boolean {
+    if (session.playbackStatus == PlaybackStatus.OK &&
+      !frame.getUpdatedTrackData(viewRecognition.SCAN_TRACK_ID).isEmpty()
+    ) {
+      scanButtonWasPressed = true
+    }
+    val scanned = scanButtonWasPressed
+    scanButtonWasPressed = false
+    return scanned
+  }
+
+  /** Sends the camera image of the frame to the object detector off the render thread. */
+  private fun handleScan(frame: Frame, session: Session) {
+    val cameraImage = frame.tryAcquireCameraImage() ?: return
+    // Call our ML model off the render thread.
+    launch(mlDispatcher) {
+      // analyze() suspends and may resume on another IO thread.
+      val traceCookie = cameraImage.timestamp.toInt()
+      SystemTrace.beginAsync("ObjectDetector.analyze", traceCookie)
+      val cameraId = session.cameraConfig.cameraId
+      val imageRotation = displayRotationHelper.getCameraSensorToDisplayRotation(cameraId)
+      objectResults = currentAnalyzer.analyze(cameraImage, imageRotation)
+      cameraImage.close()
+      SystemTrace.endAsync("ObjectDetector.analyze", traceCookie)
     }
   }
 
@@ -45,7 +45,13 @@ import android.util.Log
 import android.widget.Toast
 import androidx.appcompat.app.AppCompatActivity
 import benchmark.benchmark.BenchmarkActivity
+import benchmark.common.framelog.FrameLog
+import benchmark.common.framelog.FrameLogWriter
+import benchmark.common.framelog.StallDetector
 import benchmark.common.helpers.FullScreenHelper
+import benchmark.common.helpers.SchedulingPolicy
+import benchmark.common.samplerender.FrameProfiler
+import benchmark.common.samplerender.PerformanceHud
 import com.google.ar.core.CameraConfig
 import com.google.ar.core.CameraConfigFilter
 import com.google.ar.core.Config
@@ -65,6 +71,7 @@ class AugmentedObjectRecognitionActivity : AppCompatActivity() {
 
   var fileName: String? = null
   var currentPhase = 1
+  val schedulingPolicy: SchedulingPolicy by lazy { SchedulingPolicy.fromIntent(intent) }
 
   override fun onCreate(savedInstanceState: Bundle?) {
     super.onCreate(savedInstanceState)
@@ -72,6 +79,7 @@ class AugmentedObjectRecognitionActivity : AppCompatActivity() {
     val intent = getIntent()
     val activityNumber = intent.getIntExtra(BenchmarkActivity.ACTIVITY_NUMBER, 0)
     fileName = BenchmarkActivity.ACTIVITY_RECORDINGS[activityNumber].recordingFileName
+    val sectionName = BenchmarkActivity.ACTIVITY_RECORDINGS[activityNumber].sectionName
     val f = File(getExternalFilesDir(null).toString() + "/" + fileName)
     if (!f.exists()) try {
       val `is`: InputStream = assets.open("recordings/$fileName")
@@ -102,7 +110,7 @@ class AugmentedObjectRecognitionActivity : AppCompatActivity() {
       Log.e(TAG, message, exception)
       Toast.makeText(this, message, Toast.LENGTH_LONG).show()
       setResult(RESULT_CANCELED)
-      viewRecognition.fpsLog?.close()
+      viewRecognition.profiler.close()
       finish()
     }
 
@@ -137,10 +145,24 @@ class AugmentedObjectRecognitionActivity : AppCompatActivity() {
     arCoreSessionHelper.bindView(viewRecognition)
     lifecycle.addObserver(viewRecognition)
 
-    val logPath = getExternalFilesDir(null)!!.getAbsolutePath() + "/frame-log";
-    Log.d(TAG, "Logging FPS to " + logPath);
-    viewRecognition.fpsLog = BufferedWriter(FileWriter(logPath, true));
-    viewRecognition.fpsLog?.write("test " + fileName + "\n")
+    val logFile = File(getExternalFilesDir(null), FrameLog.FILE_NAME)
+    Log.d(TAG, "Logging FPS to " + logFile.absolutePath)
+    var fpsLog: FrameLogWriter? = null
+    try {
+      fpsLog = FrameLogWriter(logFile, sectionName, fileName!!, FrameLog.COLUMN_NAMES)
+    } catch (e: IOException) {
+      viewRecognition.snackbarHelper.showError(this, "Could not open file to log FPS")
+    }
+    viewRecognition.profiler = FrameProfiler(fpsLog)
+    viewRecognition.profiler.enableStallDetection(
+      this, sectionName, fileName!!, StallDetector.DEFAULT_THRESHOLD)
+    viewRecognition.profiler.enableThermalSampling(this, sectionName, fileName!!)
+    viewRecognition.profiler.enablePowerSampling(this, sectionName, fileName!!)
+    viewRecognition.profiler.enableCoreSampling(this, sectionName, fileName!!)
+    viewRecognition.profiler.enableWriterLog(this, sectionName, fileName!!)
+    if (PerformanceHud.isEnabled(intent)) {
+      viewRecognition.profiler.setHud(PerformanceHud())
+    }
   }
 
   override fun onRequestPermissionsResult(
@@ -49,11 +49,11 @@ import androidx.lifecycle.DefaultLifecycleObserver
 import androidx.lifecycle.LifecycleOwner
 import benchmark.benchmark.R
 import benchmark.common.helpers.SnackbarHelper
+import benchmark.common.samplerender.FrameProfiler
 import benchmark.common.samplerender.OffscreenRender
 import benchmark.common.samplerender.SampleRender
 import com.google.ar.core.Session
 import com.google.ar.core.exceptions.*
-import java.io.BufferedWriter
 import java.util.*
 
 /**
@@ -72,8 +72,10 @@ class AugmentedObjectRecognitionActivityView(val recognitionActivity: AugmentedO
             render = OffscreenRender(
                 surfaceView,
                 renderer,
-                recognitionActivity.assets
+                recognitionActivity.assets,
+                recognitionActivity.schedulingPolicy
             )
+            render.setHud(profiler.hud)
         }
         override fun surfaceChanged(holder: SurfaceHolder, format: Int, width: Int, height: Int) {}
         override fun surfaceDestroyed(holder: SurfaceHolder) {
@@ -103,7 +105,7 @@ class AugmentedObjectRecognitionActivityView(val recognitionActivity: AugmentedO
     public val PHASE_TRACK_ID = UUID.fromString("53069eb5-21ef-4946-b71c-6ac4979216a7")
     private val PHASE_TRACK_MIME_TYPE = "application/recording-playback-phase"
 
-    var fpsLog: BufferedWriter? = null
+    var profiler = FrameProfiler(null)
 
     override fun onResume(owner: LifecycleOwner) {
       //surfaceView.onResume()
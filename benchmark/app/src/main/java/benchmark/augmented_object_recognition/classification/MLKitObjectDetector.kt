@@ -23,6 +23,7 @@ import android.media.Image
 import benchmark.augmented_object_recognition.classification.ObjectDetector
 import benchmark.augmented_object_recognition.classification.utils.ImageUtils
 import benchmark.augmented_object_recognition.classification.utils.VertexUtils.rotateCoordinates
+import benchmark.common.helpers.SystemTrace
 import com.google.mlkit.common.model.LocalModel
 import com.google.mlkit.vision.common.InputImage
 import com.google.mlkit.vision.objects.ObjectDetection
@@ -50,6 +51,7 @@ class MLKitObjectDetector(context: Activity) : ObjectDetector(context) {
     private val detector = ObjectDetection.getClient(options)
 
     override suspend fun analyze(image: Image, imageRotation: Int): List<DetectedObjectResult> {
+        SystemTrace.begin("MLKitObjectDetector.prepare")
         // `image` is in YUV (https://developers.google.com/ar/reference/java/com/google/ar/core/Frame#acquireCameraImage()),
         val convertYuv = convertYuv(image)
 
@@ -57,6 +59,7 @@ class MLKitObjectDetector(context: Activity) : ObjectDetector(context) {
         val rotatedImage = ImageUtils.rotateBitmap(convertYuv, imageRotation)
 
         val inputImage = InputImage.fromBitmap(rotatedImage, 0)
+        SystemTrace.end()
 
         val mlKitDetectedObjects = detector.process(inputImage).asDeferred().await()
         return mlKitDetectedObjects.mapNotNull { obj ->
@@ -22,6 +22,7 @@ import android.graphics.Paint
 import android.graphics.Typeface
 import android.opengl.GLES30
 import benchmark.common.samplerender.GLError
+import benchmark.common.samplerender.GpuMemory
 import benchmark.common.samplerender.SampleRender
 import benchmark.common.samplerender.Texture
 import java.nio.ByteBuffer
@@ -70,6 +71,14 @@ class TextTextureCache {
     GLError.maybeThrowGLException("Failed to populate texture data", "glTexImage2D")
     GLES30.glGenerateMipmap(GLES30.GL_TEXTURE_2D)
     GLError.maybeThrowGLException("Failed to generate mipmaps", "glGenerateMipmap")
+    // Entries are never evicted, so this category only grows with the number of distinct labels.
+    texture.recordAllocation(
+      GpuMemory.Category.LABEL_CACHE,
+      GLES30.GL_RGBA8,
+      bitmap.width,
+      bitmap.height,
+      GpuMemory.fullMipLevels(bitmap.width, bitmap.height)
+    )
 
     return texture
   }
@@ -33,29 +33,68 @@ import android.graphics.BitmapFactory;
 import android.hardware.Camera;
 import android.opengl.GLSurfaceView;
 import android.os.Bundle;
+import android.os.Handler;
+import android.os.Looper;
 import android.util.Log;
 import android.view.View;
+import android.widget.ArrayAdapter;
+import android.widget.Button;
 import android.widget.CheckBox;
 import android.widget.FrameLayout;
 import android.widget.ImageView;
 import android.widget.LinearLayout;
+import android.widget.Spinner;
 import android.widget.TextView;
+import android.widget.Toast;
 
 import androidx.appcompat.app.AlertDialog;
 import androidx.appcompat.app.AppCompatActivity;
 import androidx.appcompat.widget.SwitchCompat;
 import androidx.core.app.ActivityCompat;
 
-import java.io.BufferedReader;
 import java.io.File;
 import java.io.FileInputStream;
-import java.io.FileNotFoundException;
-import java.io.FileReader;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.text.DecimalFormat;
+import java.text.DecimalFormatSymbols;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
 
 import benchmark.augmented_faces.AugmentedFacesActivity;
 import benchmark.augmented_image.AugmentedImageActivity;
 import benchmark.augmented_object_recognition.AugmentedObjectRecognitionActivity;
+import benchmark.common.analysis.BenchmarkScore;
+import benchmark.common.analysis.CoreLogAnalyzer;
+import benchmark.common.analysis.FrameBound;
+import benchmark.common.analysis.FrameLogAnalyzer;
+import benchmark.common.analysis.LogHistogram;
+import benchmark.common.analysis.Metric;
+import benchmark.common.analysis.PhaseComparison;
+import benchmark.common.analysis.PhaseResult;
+import benchmark.common.analysis.PowerLogAnalyzer;
+import benchmark.common.analysis.ReferenceProfile;
+import benchmark.common.analysis.ResultBundle;
+import benchmark.common.analysis.RepeatedSectionResult;
+import benchmark.common.analysis.RunComparison;
+import benchmark.common.analysis.SectionResult;
+import benchmark.common.analysis.SideLogAnalyzer;
+import benchmark.common.analysis.ThermalLogAnalyzer;
+import benchmark.common.analysis.TraceExporter;
+import benchmark.common.framelog.CoreLog;
+import benchmark.common.framelog.FrameLog;
+import benchmark.common.framelog.PowerLog;
+import benchmark.common.framelog.StallDetector;
+import benchmark.common.framelog.ThermalLog;
+import benchmark.common.framelog.WriterLog;
+import benchmark.common.helpers.DeviceInfo;
+import benchmark.common.helpers.SchedulingPolicy;
+import benchmark.common.samplerender.PerformanceHud;
 import benchmark.common.samplerender.SampleRender;
 import benchmark.augmented_object_generation.AugmentedObjectGenerationActivity;
 
@@ -73,6 +112,30 @@ public class BenchmarkActivity extends AppCompatActivity {
             new ActivityRecording(AugmentedObjectRecognitionActivity.class, "aug-obj-rcg-1.mp4", "Object Recognition"),
     };
 
+    // Frame stages listed in the stage breakdowns of the results.
+    private static final Metric[] STAGE_METRICS = {
+            Metric.UPDATE_TIME, Metric.INPUT_TIME, Metric.BACKGROUND_TIME, Metric.PLANES_TIME,
+            Metric.POINT_CLOUD_TIME, Metric.CUBEMAP_FILTER_TIME, Metric.OBJECTS_TIME, Metric.COMPOSE_TIME,
+    };
+    private static final Metric[] GPU_STAGE_METRICS = {
+            Metric.GPU_BACKGROUND_TIME, Metric.GPU_PLANES_TIME, Metric.GPU_POINT_CLOUD_TIME,
+            Metric.GPU_CUBEMAP_FILTER_TIME, Metric.GPU_OBJECTS_TIME, Metric.GPU_COMPOSE_TIME,
+    };
+    /** The frame log and its side logs, removed before every run. */
+    private static final String[] LOG_FILE_NAMES = {
+            FrameLog.FILE_NAME, StallDetector.FILE_NAME, ThermalLog.FILE_NAME, PowerLog.FILE_NAME,
+            CoreLog.FILE_NAME, WriterLog.FILE_NAME,
+    };
+    // Choices for repeating every section until its frame rate is stable: the most passes, the
+    // largest coefficient of variation of the FPS of any phase, and the pause before every pass.
+    private static final int[] MAX_PASSES = {1, 5, 10, 20};
+    private static final double[] MAX_VARIATIONS = {0.01, 0.02, 0.05};
+    private static final int[] COOL_DOWN_SECONDS = {0, 30, 60, 120};
+    private static final Metric[] GPU_MEMORY_METRICS = {
+            Metric.GPU_BUFFER_MEMORY, Metric.GPU_TEXTURE_MEMORY, Metric.GPU_FRAMEBUFFER_MEMORY,
+            Metric.GPU_CUBEMAP_FILTER_MEMORY, Metric.GPU_LABEL_CACHE_MEMORY,
+    };
+
     private LinearLayout resultsDisplay;
 
     private Camera camera;
@@ -81,6 +144,22 @@ public class BenchmarkActivity extends AppCompatActivity {
     private CameraPreview cameraPreview;
     private FrameLayout preview;
     private CheckBox[] sectionCheckBoxes;
+    private Spinner prioritySpinner;
+    private Spinner affinitySpinner;
+    private CheckBox dedicatedMlThreadCheckBox;
+    private CheckBox hudCheckBox;
+    private Spinner maxPassesSpinner;
+    private Spinner maxVariationSpinner;
+    private Spinner coolDownSpinner;
+    // Passes of the running section that have finished.
+    private int passCount;
+    // Results of the passes of the running section that logged frames, kept so that deciding
+    // whether to repeat it only has to analyze the section its latest pass added to the frame log.
+    private final List<SectionResult> passResults = new ArrayList<>();
+    // Sections of the frame log that were analyzed. The last pass of a section is not analyzed
+    // until the next check, which leaves out its section by the recording name.
+    private int loggedSectionCount;
+    private final Handler handler = new Handler(Looper.getMainLooper());
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
@@ -102,6 +181,50 @@ public class BenchmarkActivity extends AppCompatActivity {
             resultsDisplay.addView(checkBox);
         }
 
+        TextView schedulingText = new TextView(this);
+        schedulingText.setText("Scheduling policy:");
+        resultsDisplay.addView(schedulingText);
+        SchedulingPolicy.Priority[] priorities = SchedulingPolicy.Priority.values();
+        String[] priorityLabels = new String[priorities.length];
+        for (int i = 0; i < priorities.length; i++) {
+            priorityLabels[i] = priorities[i].getLabel();
+        }
+        prioritySpinner = addSpinner(priorityLabels);
+        SchedulingPolicy.Affinity[] affinities = SchedulingPolicy.Affinity.values();
+        String[] affinityLabels = new String[affinities.length];
+        for (int i = 0; i < affinities.length; i++) {
+            affinityLabels[i] = affinities[i].getLabel();
+        }
+        affinitySpinner = addSpinner(affinityLabels);
+        dedicatedMlThreadCheckBox = new CheckBox(this);
+        dedicatedMlThreadCheckBox.setText("Dedicated ML thread");
+        resultsDisplay.addView(dedicatedMlThreadCheckBox);
+        hudCheckBox = new CheckBox(this);
+        hudCheckBox.setText("Show performance HUD");
+        resultsDisplay.addView(hudCheckBox);
+
+        TextView repetitionText = new TextView(this);
+        repetitionText.setText("Repetition:");
+        resultsDisplay.addView(repetitionText);
+        String[] maxPassesLabels = new String[MAX_PASSES.length];
+        for (int i = 0; i < MAX_PASSES.length; i++) {
+            maxPassesLabels[i] =
+                    MAX_PASSES[i] == 1 ? "Single pass" : "Up to " + MAX_PASSES[i] + " passes";
+        }
+        maxPassesSpinner = addSpinner(maxPassesLabels);
+        String[] maxVariationLabels = new String[MAX_VARIATIONS.length];
+        for (int i = 0; i < MAX_VARIATIONS.length; i++) {
+            maxVariationLabels[i] = String.format(Locale.US, "Until FPS varies by less than %.0f%%",
+                    MAX_VARIATIONS[i] * 100);
+        }
+        maxVariationSpinner = addSpinner(maxVariationLabels);
+        String[] coolDownLabels = new String[COOL_DOWN_SECONDS.length];
+        for (int i = 0; i < COOL_DOWN_SECONDS.length; i++) {
+            coolDownLabels[i] = COOL_DOWN_SECONDS[i] == 0
+                    ? "No cool-down" : COOL_DOWN_SECONDS[i] + " s cool-down between passes";
+        }
+        coolDownSpinner = addSpinner(coolDownLabels);
+
         int permission = ActivityCompat.checkSelfPermission(this, Manifest.permission.CAMERA);
         if (permission != PackageManager.PERMISSION_GRANTED) {
             ActivityCompat.requestPermissions(this, new String[]{Manifest.permission.CAMERA}, 1);
@@ -128,25 +251,112 @@ public class BenchmarkActivity extends AppCompatActivity {
     }
 
     public void onStartBenchmark(View view) {
-        File previousLog = new File(getExternalFilesDir(null).getAbsolutePath() + "/frame-log");
-        if (previousLog.exists() && !previousLog.delete()) {
-            new AlertDialog.Builder(this).setMessage("Failed to remove previous benchmark results").show();
+        for (String logName : LOG_FILE_NAMES) {
+            File previousLog = new File(getExternalFilesDir(null), logName);
+            if (previousLog.exists() && !previousLog.delete()) {
+                new AlertDialog.Builder(this).setMessage("Failed to remove previous benchmark results").show();
+                break;
+            }
         }
 
         for (int i = 0; i < ACTIVITY_RECORDINGS.length; i++) {
             ACTIVITY_RECORDINGS[i].setEnabled(sectionCheckBoxes[i].isChecked());
         }
 
+        passCount = 0;
+        passResults.clear();
+        loggedSectionCount = 0;
         for (int i = 0; i < ACTIVITY_RECORDINGS.length; i++) {
             if (ACTIVITY_RECORDINGS[i].isEnabled()) {
-                Intent intent = new Intent(this, ACTIVITY_RECORDINGS[i].getActivity());
-                intent.putExtra(ACTIVITY_NUMBER, i);
-                startActivityForResult(intent, i);
+                startSection(i);
                 break;
             }
         }
     }
 
+    /** Starts a pass of the section with the given index in ACTIVITY_RECORDINGS. */
+    private void startSection(int section) {
+        Intent intent = new Intent(this, ACTIVITY_RECORDINGS[section].getActivity());
+        intent.putExtra(ACTIVITY_NUMBER, section);
+        getSchedulingPolicy().putExtras(intent);
+        intent.putExtra(PerformanceHud.EXTRA_ENABLED, hudCheckBox.isChecked());
+        startActivityForResult(intent, section);
+    }
+
+    /** Starts a section once the selected cool-down has passed, to let the device cool off. */
+    private void startSectionAfterCoolDown(int section) {
+        int seconds = COOL_DOWN_SECONDS[coolDownSpinner.getSelectedItemPosition()];
+        if (seconds == 0) {
+            startSection(section);
+            return;
+        }
+        Toast.makeText(this, "Cooling down for " + seconds + " s", Toast.LENGTH_LONG).show();
+        handler.postDelayed(() -> startSection(section), seconds * 1000L);
+    }
+
+    /**
+     * Analyzes the sections that the pass that just finished added to the frame log, skipping the
+     * ones that were already analyzed. Returns null if the log could not be read. Called off the
+     * UI thread.
+     */
+    private static List<SectionResult> analyzeNewSections(File logFile, int firstSection) {
+        try {
+            return new FrameLogAnalyzer().analyze(logFile, firstSection);
+        } catch (IOException e) {
+            Log.e(TAG, "Failed to analyze frame log", e);
+            return null;
+        }
+    }
+
+    /**
+     * Adds the sections that the pass that just finished logged to the results of the running
+     * section, and returns whether it needs another pass, because the FPS of one of its phases
+     * still varies more than the given coefficient of variation between its passes.
+     */
+    private boolean needsAnotherPass(
+            List<SectionResult> newSections, String recordingName, double maxVariation) {
+        if (newSections == null) {
+            Log.i(TAG, "Not repeating " + recordingName + " without its results");
+            return false;
+        }
+        loggedSectionCount += newSections.size();
+        boolean logged = false;
+        for (SectionResult section : newSections) {
+            if (section.getRecordingName().equals(recordingName)) {
+                passResults.add(section);
+                logged = true;
+            }
+        }
+        if (!logged) {
+            // The pass did not log any frames.
+            return false;
+        }
+        RepeatedSectionResult run = new RepeatedSectionResult(passResults);
+        Log.i(TAG, String.format(Locale.US, "%s pass %d: FPS varies by up to %.1f%%",
+                run.getSectionName(), run.getPassCount(),
+                run.getMaxCoefficientOfVariation() * 100));
+        return !run.isStable(maxVariation);
+    }
+
+    /** Adds a drop-down list of the given choices to the start screen, with the first selected. */
+    private Spinner addSpinner(String[] labels) {
+        Spinner spinner = new Spinner(this);
+        ArrayAdapter<String> adapter =
+                new ArrayAdapter<>(this, android.R.layout.simple_spinner_item, labels);
+        adapter.setDropDownViewResource(android.R.layout.simple_spinner_dropdown_item);
+        spinner.setAdapter(adapter);
+        resultsDisplay.addView(spinner);
+        return spinner;
+    }
+
+    /** Returns the scheduling policy selected on the start screen. */
+    private SchedulingPolicy getSchedulingPolicy() {
+        return new SchedulingPolicy(
+                SchedulingPolicy.Priority.values()[prioritySpinner.getSelectedItemPosition()],
+                SchedulingPolicy.Affinity.values()[affinitySpinner.getSelectedItemPosition()],
+                dedicatedMlThreadCheckBox.isChecked());
+    }
+
     private void turnCameraOn() {
         camera = Camera.open(0);
         cameraPreview.setSurfaceTextureListener(cameraPreview);
@@ -169,12 +379,41 @@ public class BenchmarkActivity extends AppCompatActivity {
             new AlertDialog.Builder(this).setMessage("Test " + requestCode + " did not complete").show();
         }
 
+        passCount++;
+        if (resultCode == RESULT_CANCELED
+                || passCount >= MAX_PASSES[maxPassesSpinner.getSelectedItemPosition()]) {
+            startNextSection(requestCode);
+            return;
+        }
+        // Analyzing a pass takes a while for long sections, so it is kept off the UI thread.
+        File logFile = new File(getExternalFilesDir(null), FrameLog.FILE_NAME);
+        String recordingName = ACTIVITY_RECORDINGS[requestCode].getRecordingFileName();
+        double maxVariation = MAX_VARIATIONS[maxVariationSpinner.getSelectedItemPosition()];
+        int firstSection = loggedSectionCount;
+        new Thread(() -> {
+            List<SectionResult> newSections = analyzeNewSections(logFile, firstSection);
+            runOnUiThread(() -> {
+                if (isDestroyed()) {
+                    return;
+                }
+                if (needsAnotherPass(newSections, recordingName, maxVariation)) {
+                    startSectionAfterCoolDown(requestCode);
+                } else {
+                    startNextSection(requestCode);
+                }
+            });
+        }, "StabilityCheck").start();
+    }
+
+    /** Starts the first enabled section after the given one, or reports the results. */
+    private void startNextSection(int section) {
+        passCount = 0;
+        passResults.clear();
+
         boolean flag = false;
-        for (int i = requestCode + 1; i < ACTIVITY_RECORDINGS.length; i++) {
+        for (int i = section + 1; i < ACTIVITY_RECORDINGS.length; i++) {
             if (ACTIVITY_RECORDINGS[i].isEnabled()) {
-                Intent intent = new Intent(this, ACTIVITY_RECORDINGS[i].getActivity());
-                intent.putExtra(ACTIVITY_NUMBER, i);
-                startActivityForResult(intent, i);
+                startSectionAfterCoolDown(i);
                 flag = true;
                 break;
             }
@@ -185,107 +424,574 @@ public class BenchmarkActivity extends AppCompatActivity {
         }
     }
 
+    /**
+     * Analyzes the frame log and its side logs and exports the trace on a background thread, as
+     * both take a while for long runs, then shows the results.
+     */
     private void reportResults() {
-        BufferedReader fpsLog;
-        String logPath = getExternalFilesDir(null).getAbsolutePath() + "/frame-log";
-        try {
-            fpsLog = new BufferedReader(new FileReader(logPath));
-        } catch (FileNotFoundException e) {
-            new AlertDialog.Builder(this).setMessage("Could not access logged frame data").show();
-            return;
-        }
+        TextView analyzing = new TextView(this);
+        analyzing.setText("Analyzing results");
+        resultsDisplay.addView(analyzing);
+        File logFile = new File(getExternalFilesDir(null), FrameLog.FILE_NAME);
+        File traceFile = new File(getExternalFilesDir(null), TraceExporter.FILE_NAME);
+        new Thread(() -> {
+            List<SectionResult> sections;
+            try {
+                sections = new FrameLogAnalyzer().analyze(logFile);
+            } catch (IOException e) {
+                Log.e(TAG, "Failed to analyze frame log", e);
+                runOnUiThread(() -> {
+                    resultsDisplay.removeView(analyzing);
+                    if (!isDestroyed()) {
+                        new AlertDialog.Builder(this).setMessage("Error reading frame data").show();
+                    }
+                });
+                return;
+            }
+            analyzeSideLog(new ThermalLogAnalyzer(), ThermalLog.FILE_NAME, sections);
+            analyzeSideLog(new PowerLogAnalyzer(), PowerLog.FILE_NAME, sections);
+            analyzeSideLog(new CoreLogAnalyzer(), CoreLog.FILE_NAME, sections);
 
-        String line;
-        try {
-            line = fpsLog.readLine();
-        } catch (IOException e) {
-            new AlertDialog.Builder(this).setMessage("Error reading frame data").show();
-            return;
+            // Chrome trace of all frames, for Perfetto or chrome://tracing.
+            boolean traced;
+            try {
+                new TraceExporter().export(logFile, traceFile);
+                traced = true;
+            } catch (IOException e) {
+                Log.e(TAG, "Failed to export trace", e);
+                traced = false;
+            }
+            boolean hasTrace = traced;
+            runOnUiThread(() -> {
+                resultsDisplay.removeView(analyzing);
+                if (!isDestroyed()) {
+                    showResults(logFile, sections, hasTrace ? traceFile : null);
+                }
+            });
+        }, "ResultAnalysis").start();
+    }
+
+    /** Adds the analyzed results to the results screen. */
+    private void showResults(File logFile, List<SectionResult> sections, File traceFile) {
+        BenchmarkScore score = reportScore(sections);
+
+        if (traceFile != null) {
+            TextView trace = new TextView(this);
+            trace.setTextIsSelectable(true);
+            trace.setText("Trace: " + traceFile.getAbsolutePath());
+            resultsDisplay.addView(trace);
         }
+
+        TextView policy = new TextView(this);
+        policy.setText("Scheduling policy: " + getSchedulingPolicy());
+        resultsDisplay.addView(policy);
+
+        writeResultBundle(sections, score);
+        compareWithBaseline(logFile);
+
+        List<RepeatedSectionResult> runs = RepeatedSectionResult.group(sections);
+        int runIndex = 0;
         for (int testNumber=0; testNumber < ACTIVITY_RECORDINGS.length; testNumber++) {
             if (!ACTIVITY_RECORDINGS[testNumber].isEnabled()) {
                 continue;
             }
             String recordingName = ACTIVITY_RECORDINGS[testNumber].getRecordingFileName();
             String sectionName = ACTIVITY_RECORDINGS[testNumber].getSectionName();
-            int currentPhase = 1;
-            long startTime = 0, t = 0;
-            long process = 0, maxInput = 0, total = 0;
-            float renderObjects = 0.f;
-            try {
-                if (line == null || !line.equals("test " + recordingName)) {
-                    new AlertDialog.Builder(this).setMessage("No frame data for test " + testNumber+1).show();
-                    continue;
-                } else {
-                    line = fpsLog.readLine();
-                    startTime = Long.decode(line.split(",")[1]);
-                }
-                ImageView previewImage = new ImageView(this);
-                File imageFile = new File(getExternalFilesDir(null) + "/" + recordingName.replace(".mp4", ".jpg"));
-                FileInputStream fis = new FileInputStream(imageFile);
+            if (runIndex >= runs.size()
+                    || !runs.get(runIndex).getRecordingName().equals(recordingName)) {
+                new AlertDialog.Builder(this).setMessage("No frame data for test " + (testNumber + 1)).show();
+                continue;
+            }
+            RepeatedSectionResult run = runs.get(runIndex++);
+            ImageView previewImage = new ImageView(this);
+            File imageFile = new File(getExternalFilesDir(null) + "/" + recordingName.replace(".mp4", ".jpg"));
+            try (FileInputStream fis = new FileInputStream(imageFile)) {
                 Bitmap bitmap = BitmapFactory.decodeStream(fis);
                 previewImage.setImageBitmap(bitmap);
                 resultsDisplay.addView(previewImage);
-                int i = 0;
-                while (true) {
-                    if (line != null && !line.startsWith("test ")) {
-                        String[] times = line.split(",");
-                        if (times.length < 6) {
-                            line = fpsLog.readLine();
-                            continue;
-                        }
-                        int phase = Integer.decode(times[0]);
-                        if (phase != currentPhase) {
-                            float fps = 1000.f * (i - 1) / (t - startTime);
-                            TextView results = new TextView(this);
-                            results.setText(
-                                    "FPS and Runtimes - " + sectionName + " Phase " + currentPhase + "\n"
-                                            + "File name: " + recordingName + "\n"
-                                            + "FPS: " + fps + "\n"
-                                            + "ARCore Processing Time: " + (float) process / i + "\n"
-                                            + "Max Input Handling Time: " + maxInput + "\n"
-                                            + "GPU Object Rendering Time: " + renderObjects / i + "\n"
-                                            + "Total CPU Runtime per frame: " + (float) total / i + "\n");
-                            resultsDisplay.addView(results);
-                            startTime = Long.decode(times[1]);
-                            currentPhase = phase;
-                            process = 0;
-                            maxInput = 0;
-                            renderObjects = 0;
-                            total = 0;
-                            i = 0;
-                        }
-                        t = Long.decode(times[1]);
-                        process += Integer.decode(times[2]);
-                        maxInput = Math.max(maxInput, Integer.decode(times[3]));
-                        renderObjects += Float.parseFloat(times[4])/1e6;
-                        total += Integer.decode(times[5]);
-                        i++;
-                    } else {
-                        float fps = 1000.f * (i - 1) / (t - startTime);
-                        TextView results = new TextView(this);
-                        results.setTextIsSelectable(true);
-                        results.setText(
-                                "FPS and Runtimes - " + sectionName + " Phase " + currentPhase + "\n"
-                                        + "File name: " + recordingName + "\n"
-                                        + "FPS: " + fps + "\n"
-                                        + "ARCore Processing Time: " + (float) process / i + "\n"
-                                        + "Max Input Handling Time: " + maxInput + "\n"
-                                        + "GPU Object Rendering Time: " + renderObjects / i + "\n"
-                                        + "Total CPU Runtime per frame: " + (float) total / i + "\n");
-                        resultsDisplay.addView(results);
-                        break;
-                    }
-                    line = fpsLog.readLine();
-                }
             } catch (IOException e) {
-                new AlertDialog.Builder(this).setMessage("Error reading frame data").show();
+                Log.w(TAG, "No preview image for " + recordingName, e);
+            }
+            if (run.getPassCount() > 1) {
+                TextView repetition = new TextView(this);
+                repetition.setTextIsSelectable(true);
+                repetition.setText(formatRepetition(run));
+                resultsDisplay.addView(repetition);
+            }
+            for (int pass = 0; pass < run.getPassCount(); pass++) {
+                String passName =
+                        run.getPassCount() > 1 ? sectionName + " Pass " + (pass + 1) : sectionName;
+                reportPass(run.getPasses().get(pass), passName, recordingName);
+            }
+        }
+    }
+
+    /**
+     * Adds the score of the run, normalized to the reference profile in the assets, and returns it,
+     * or null if the profile could not be read.
+     */
+    private BenchmarkScore reportScore(List<SectionResult> sections) {
+        TextView scoreText = new TextView(this);
+        scoreText.setTextIsSelectable(true);
+        resultsDisplay.addView(scoreText);
+        try (InputStream in = getAssets().open(ReferenceProfile.ASSET_NAME)) {
+            BenchmarkScore score = BenchmarkScore.compute(sections, ReferenceProfile.load(in));
+            scoreText.setText(formatScore(score));
+            return score;
+        } catch (IOException | IllegalArgumentException e) {
+            Log.e(TAG, "Failed to read reference profile", e);
+            scoreText.setText("ARBench score: failed to read the reference profile");
+            return null;
+        }
+    }
+
+    /**
+     * Writes the result bundle with the device, the settings and all results of the run next to the
+     * frame log. Runs on a background thread, which has no GL context for reading the GL strings.
+     */
+    private void writeResultBundle(List<SectionResult> sections, BenchmarkScore score) {
+        TextView bundleText = new TextView(this);
+        bundleText.setTextIsSelectable(true);
+        bundleText.setText("Result bundle: writing");
+        resultsDisplay.addView(bundleText);
+
+        SchedulingPolicy policy = getSchedulingPolicy();
+        ResultBundle bundle = new ResultBundle(sections)
+                .putSetting("scheduling_priority", policy.getPriority().name())
+                .putSetting("scheduling_affinity", policy.getAffinity().name())
+                .putSetting("dedicated_ml_thread", policy.isDedicatedMlThread())
+                .putSetting("hud", hudCheckBox.isChecked())
+                .setRepetition(MAX_PASSES[maxPassesSpinner.getSelectedItemPosition()],
+                        MAX_VARIATIONS[maxVariationSpinner.getSelectedItemPosition()],
+                        COOL_DOWN_SECONDS[coolDownSpinner.getSelectedItemPosition()])
+                .setScore(score);
+        for (ActivityRecording recording : ACTIVITY_RECORDINGS) {
+            if (recording.isEnabled()) {
+                bundle.addEnabledSection(
+                        recording.getSectionName(), recording.getRecordingFileName());
+            }
+        }
+        File directory = getExternalFilesDir(null);
+        for (String logName : LOG_FILE_NAMES) {
+            bundle.addLogFile(logName, new File(directory, logName));
+        }
+        bundle.addLogFile(TraceExporter.FILE_NAME, new File(directory, TraceExporter.FILE_NAME));
+
+        new Thread(() -> {
+            String text;
+            try {
+                DeviceInfo.addTo(bundle, getApplicationContext());
+                text = "Result bundle: " + bundle.write(directory).getAbsolutePath();
+            } catch (IOException e) {
+                Log.e(TAG, "Failed to write result bundle", e);
+                text = "Result bundle: failed to write";
+            }
+            String result = text;
+            runOnUiThread(() -> bundleText.setText(result));
+        }, "ResultBundle").start();
+    }
+
+    /**
+     * Formats a score, e.g. "ARBench score: 1234 (Tracking 1101, Rendering 1402, Interaction 1213)
+     * relative to nominal-30fps".
+     */
+    private static String formatScore(BenchmarkScore score) {
+        StringBuilder text = new StringBuilder("ARBench score: ")
+                .append(formatScoreValue(score.getScore())).append(" (");
+        for (BenchmarkScore.Category category : BenchmarkScore.Category.values()) {
+            if (category.ordinal() > 0) {
+                text.append(", ");
+            }
+            text.append(category.getLabel()).append(' ')
+                    .append(formatScoreValue(score.getScore(category)));
+        }
+        text.append(") relative to ").append(score.getProfileName());
+        if (!score.isComplete()) {
+            text.append("\nIncomplete: not comparable with complete runs");
+            if (!score.getMissingRecordings().isEmpty()) {
+                text.append(", missing ").append(String.join(", ", score.getMissingRecordings()));
+            }
+        }
+        return text.toString();
+    }
+
+    private static String formatScoreValue(double value) {
+        return Double.isNaN(value) ? "n/a" : String.format(Locale.US, "%.0f", value);
+    }
+
+    /**
+     * Formats the FPS of every phase over the passes of a section, e.g.
+     * "Phase 1: 29.41 FPS, SD 0.27, 95% CI 29.08-29.74, CV 0.9%".
+     */
+    private String formatRepetition(RepeatedSectionResult run) {
+        StringBuilder text = new StringBuilder("FPS over " + run.getPassCount() + " passes - "
+                + run.getSectionName() + "\n");
+        for (int phase = 0; phase < run.getPhaseCount(); phase++) {
+            double mean = run.getMean(phase);
+            double halfWidth = run.getConfidenceHalfWidth(phase);
+            text.append(String.format(Locale.US,
+                    "Phase %d: %.2f FPS, SD %.2f, 95%% CI %.2f-%.2f, CV %.1f%%\n",
+                    run.getPhase(phase), mean, run.getStandardDeviation(phase),
+                    mean - halfWidth, mean + halfWidth, run.getCoefficientOfVariation(phase) * 100));
+        }
+        double maxVariation = MAX_VARIATIONS[maxVariationSpinner.getSelectedItemPosition()];
+        if (!run.isStable(maxVariation)) {
+            text.append(String.format(Locale.US,
+                    "Not stable: FPS varied by more than %.0f%% after %d passes\n",
+                    maxVariation * 100, run.getPassCount()));
+        }
+        return text.toString();
+    }
+
+    /** Adds the results of one pass of a section. */
+    @SuppressLint("SetTextI18n")
+    private void reportPass(SectionResult section, String sectionName, String recordingName) {
+        if (section.getDroppedCount() > 0) {
+            // The writer thread fell behind, so these frames are missing from the statistics below.
+            TextView dropped = new TextView(this);
+            dropped.setText("Frames missing from log: " + section.getDroppedCount()
+                    + " (" + section.getOverflowCount() + " overflows)");
+            resultsDisplay.addView(dropped);
+        }
+        if (section.getMax(Metric.GPU_MEMORY_PEAK) > 0) {
+            TextView gpuMemory = new TextView(this);
+            gpuMemory.setText(String.format(Locale.US, "Peak GPU memory of %s: %.1f MB",
+                    sectionName, section.getMax(Metric.GPU_MEMORY_PEAK) / (1024.0 * 1024)));
+            resultsDisplay.addView(gpuMemory);
+        }
+
+        for (PhaseResult phase : section.getPhases()) {
+            TextView results = new TextView(this);
+            results.setTextIsSelectable(true);
+            results.setText(
+                    "FPS and Runtimes - " + sectionName + " Phase " + phase.getPhase() + "\n"
+                            + "File name: " + recordingName + "\n"
+                            + "FPS: " + (float) phase.getFps() + "\n"
+                            + "ARCore Processing Time: " + meanMillis(phase, Metric.UPDATE_TIME) + "\n"
+                            + "Max Input Handling Time: " + maxMillis(phase, Metric.INPUT_TIME) + "\n"
+                            + "GPU Rendering Time: " + meanMillis(phase, Metric.GPU_TIME) + "\n"
+                            + formatUnavailable(phase, Metric.GPU_TIME)
+                            + "Total CPU Runtime per frame: " + meanMillis(phase, Metric.TOTAL_TIME) + "\n"
+                            + "CPU Time per frame, all threads: " + meanMillis(phase, Metric.PROCESS_CPU_TIME)
+                            + " (render thread " + meanMillis(phase, Metric.THREAD_CPU_TIME)
+                            + ", coroutine workers " + meanMillis(phase, Metric.WORKER_CPU_TIME) + ")\n"
+                            + formatQuantiles(phase, Metric.FRAME_TIME)
+                            + formatQuantiles(phase, Metric.UPDATE_TIME)
+                            + formatQuantiles(phase, Metric.GPU_TIME)
+                            + formatBounds(phase)
+                            + formatThermal(phase)
+                            + formatPower(phase)
+                            + formatClusters(phase)
+                            + formatHud(phase)
+                            + formatMemory(phase)
+                            + formatGpuMemory(phase)
+                            + formatStages(phase, "Stage breakdown", STAGE_METRICS)
+                            + formatStages(phase, "GPU stage breakdown", GPU_STAGE_METRICS));
+            resultsDisplay.addView(results);
+        }
+    }
+
+    /**
+     * Compares the run with the frame logs in the baseline directory, if there are any, and adds
+     * the verdict and a button to make this run the baseline to the results. The comparison runs on
+     * a background thread because its bootstrap takes a while.
+     */
+    private void compareWithBaseline(File logFile) {
+        TextView comparisonText = new TextView(this);
+        comparisonText.setTextIsSelectable(true);
+        resultsDisplay.addView(comparisonText);
+        File[] baselineLogs = getExternalFilesDir(RunComparison.BASELINE_DIRECTORY).listFiles();
+        if (baselineLogs == null || baselineLogs.length == 0) {
+            comparisonText.setText("Baseline comparison: no baseline saved");
+        } else {
+            comparisonText.setText("Baseline comparison: running");
+            File comparisonFile = new File(getExternalFilesDir(null), RunComparison.FILE_NAME);
+            new Thread(() -> {
+                String text;
+                try {
+                    RunComparison comparison =
+                            new RunComparison(RunComparison.Thresholds.defaults());
+                    List<PhaseComparison> results = comparison.compare(
+                            Arrays.asList(baselineLogs), Collections.singletonList(logFile));
+                    comparison.writeJson(results, comparisonFile);
+                    text = formatComparison(results)
+                            + "Comparison: " + comparisonFile.getAbsolutePath();
+                } catch (IOException e) {
+                    Log.e(TAG, "Failed to compare with baseline", e);
+                    text = "Baseline comparison: failed to read the logs";
+                }
+                String result = text;
+                runOnUiThread(() -> comparisonText.setText(result));
+            }, "RunComparison").start();
+        }
+
+        Button saveBaselineButton = new Button(this);
+        saveBaselineButton.setText("Save as baseline");
+        saveBaselineButton.setOnClickListener(v -> saveBaseline(logFile));
+        resultsDisplay.addView(saveBaselineButton);
+    }
+
+    /** Replaces the frame logs in the baseline directory with the given one. */
+    private void saveBaseline(File logFile) {
+        File directory = getExternalFilesDir(RunComparison.BASELINE_DIRECTORY);
+        File[] previousLogs = directory.listFiles();
+        if (previousLogs != null) {
+            for (File previousLog : previousLogs) {
+                if (!previousLog.delete()) {
+                    Log.w(TAG, "Failed to remove baseline " + previousLog);
+                }
+            }
+        }
+        try (InputStream in = new FileInputStream(logFile);
+                OutputStream out = new FileOutputStream(new File(directory, FrameLog.FILE_NAME))) {
+            byte[] buffer = new byte[64 * 1024];
+            int length;
+            while ((length = in.read(buffer)) > 0) {
+                out.write(buffer, 0, length);
+            }
+        } catch (IOException e) {
+            Log.e(TAG, "Failed to save baseline", e);
+            new AlertDialog.Builder(this).setMessage("Failed to save baseline").show();
+            return;
+        }
+        Toast.makeText(this, "Saved as baseline", Toast.LENGTH_SHORT).show();
+    }
+
+    /**
+     * Formats the verdict of a baseline comparison and every phase that changed, e.g.
+     * "Scene Overloading Phase 2: Frame Time +7.3% (CI +6.1% to +8.4%, p=0.0012) regressed".
+     */
+    private static String formatComparison(List<PhaseComparison> comparisons) {
+        StringBuilder text = new StringBuilder("Baseline comparison: ")
+                .append(RunComparison.isPassed(comparisons) ? "PASS" : "FAIL").append('\n');
+        int changes = 0;
+        for (PhaseComparison comparison : comparisons) {
+            String phaseName = comparison.getSectionName() + " Phase " + comparison.getPhase();
+            if (comparison.isMissing()) {
+                text.append(phaseName).append(": missing\n");
+                changes++;
+            }
+            for (PhaseComparison.MetricComparison metric : comparison.getMetrics()) {
+                if (metric.getVerdict() == PhaseComparison.Verdict.UNCHANGED) {
+                    continue;
+                }
+                text.append(String.format(Locale.US,
+                        "%s: %s %+.1f%% (CI %+.1f%% to %+.1f%%, p=%.2g) %s\n",
+                        phaseName, metric.getMetric().getLabel(), metric.getRelativeChange() * 100,
+                        metric.getConfidenceLow() * 100, metric.getConfidenceHigh() * 100,
+                        metric.getPValue(), metric.getVerdict().name().toLowerCase(Locale.ROOT)));
+                changes++;
+            }
+        }
+        if (changes == 0) {
+            text.append("No significant changes\n");
+        }
+        return text.toString();
+    }
+
+    /** Adds what a side log recorded to the results, if the sections wrote one. */
+    private void analyzeSideLog(SideLogAnalyzer analyzer, String logName, List<SectionResult> sections) {
+        File logFile = new File(getExternalFilesDir(null), logName);
+        if (!logFile.exists()) {
+            return;
+        }
+        try {
+            analyzer.analyze(logFile, sections);
+        } catch (IOException e) {
+            Log.e(TAG, "Failed to analyze " + logName, e);
+        }
+    }
+
+    private static float meanMillis(PhaseResult phase, Metric metric) {
+        return (float) (phase.getHistogram(metric).getMean() / 1e6);
+    }
+
+    private static float maxMillis(PhaseResult phase, Metric metric) {
+        return (float) (phase.getHistogram(metric).getMax() / 1e6);
+    }
+
+    /** Notes how many frames of the phase the metric could not be measured for, if any. */
+    private static String formatUnavailable(PhaseResult phase, Metric metric) {
+        long unavailable = phase.getUnavailableCount(metric);
+        if (unavailable == 0) {
+            return "";
+        }
+        return metric.getLabel() + " unavailable for " + unavailable + " of " + phase.getFrameCount()
+                + " frames\n";
+    }
+
+    /** Formats a line like "Frames bound by: ARCore 40% / CPU render 10% / GPU 30% / Pacing 20%". */
+    private static String formatBounds(PhaseResult phase) {
+        if (Double.isNaN(phase.getBoundFraction(FrameBound.PACING))) {
+            return "";
+        }
+        StringBuilder bounds = new StringBuilder("Frames bound by: ");
+        for (FrameBound bound : FrameBound.values()) {
+            if (bound.ordinal() > 0) {
+                bounds.append(" / ");
+            }
+            bounds.append(bound.getLabel()).append(' ')
+                    .append(Math.round(100 * phase.getBoundFraction(bound))).append('%');
+        }
+        return bounds.append('\n').toString();
+    }
+
+    /**
+     * Formats the temperature and CPU clock limit of the phase, flagging it if the device throttled,
+     * followed by the fastest CPU clock, which the governor also lowers when there is little to do.
+     */
+    private static String formatThermal(PhaseResult phase) {
+        if (phase.getThermalSampleCount() == 0) {
+            return "";
+        }
+        StringBuilder thermal = new StringBuilder("Thermal:");
+        if (phase.getMaxTemperature() != FrameLog.UNAVAILABLE) {
+            thermal.append(String.format(Locale.US, " max %.1f C,", phase.getMaxTemperature() / 1000.0));
+        }
+        if (phase.getMaxThermalStatus() != FrameLog.UNAVAILABLE) {
+            thermal.append(" status ").append(phase.getMaxThermalStatus()).append(',');
+        }
+        if (!Double.isNaN(phase.getClockLimitRatio())) {
+            thermal.append(String.format(Locale.US, " clock limit %d%% of peak,",
+                    Math.round(100 * phase.getClockLimitRatio())));
+        }
+        if (phase.isThrottled()) {
+            thermal.setLength(thermal.length() - 1);
+            thermal.append(" - THROTTLED,");
+        }
+        if (!Double.isNaN(phase.getClockRatio())) {
+            thermal.append(String.format(Locale.US, " fastest CPU clock %d%% of peak,",
+                    Math.round(100 * phase.getClockRatio())));
+        }
+        if (thermal.charAt(thermal.length() - 1) != ',') {
+            // Nothing could be read on this device.
+            return "";
+        }
+        thermal.setLength(thermal.length() - 1);
+        return thermal.append('\n').toString();
+    }
+
+    /** Formats the energy of the phase, e.g. "Energy: 12.5 mJ/frame, 26.7 FPS/W (2.25 W average)". */
+    private static String formatPower(PhaseResult phase) {
+        if (Double.isNaN(phase.getEnergyPerFrame())) {
+            return phase.wasPlugged() ? "Energy: not measured, charger plugged in\n" : "";
+        }
+        return String.format(Locale.US, "Energy: %.1f mJ/frame, %.1f FPS/W (%.2f W average)%s\n",
+                phase.getEnergyPerFrame() * 1000, phase.getFramesPerJoule(), phase.getAveragePower(),
+                phase.wasPlugged() ? " - PARTLY ON CHARGER" : "");
+    }
+
+    /** Notes the time spent drawing the performance HUD, which the frame times leave out. */
+    private static String formatHud(PhaseResult phase) {
+        if (phase.getHudTime() == 0 || phase.getFrameCount() < 2) {
+            return "";
+        }
+        return String.format(Locale.US, "Performance HUD: %.2f ms/frame, not in the frame times\n",
+                phase.getHudTime() / 1e6 / (phase.getFrameCount() - 1));
+    }
+
+    /**
+     * Formats where the threads of the phase ran, e.g.
+     * "CPU clusters: render thread 80% little-cpu0-3, 20% big-cpu4-7; workers 100% big-cpu4-7".
+     */
+    private static String formatClusters(PhaseResult phase) {
+        if (phase.getClusterNames().size() < 2) {
+            return "";
+        }
+        StringBuilder clusters = new StringBuilder("CPU clusters:");
+        String[] roleNames = {" render thread", " workers", " OCR thread"};
+        for (int role = 0; role < CoreLog.ROLES.length; role++) {
+            if (Double.isNaN(phase.getClusterResidency(role, 0))) {
+                continue;
+            }
+            clusters.append(roleNames[role]);
+            for (int cluster = 0; cluster < phase.getClusterNames().size(); cluster++) {
+                double residency = phase.getClusterResidency(role, cluster);
+                if (residency > 0) {
+                    clusters.append(String.format(Locale.US, " %d%% %s,",
+                            Math.round(residency * 100), phase.getClusterNames().get(cluster)));
+                }
+            }
+            clusters.setCharAt(clusters.length() - 1, ';');
+        }
+        if (clusters.charAt(clusters.length() - 1) == ':') {
+            return "";
+        }
+        clusters.setLength(clusters.length() - 1);
+        return clusters.append('\n').toString();
+    }
+
+    /** Formats the allocation rate of the render thread and how garbage collection slowed frames. */
+    private static String formatMemory(PhaseResult phase) {
+        StringBuilder memory = new StringBuilder();
+        LogHistogram allocated = phase.getHistogram(Metric.ALLOC_SIZE);
+        if (allocated.getCount() > 0) {
+            memory.append(String.format(Locale.US, "Render thread allocations: %.1f KB/frame, %.2f MB/s\n",
+                    allocated.getMean() / 1024, allocated.getMean() * phase.getFps() / (1024 * 1024)));
+        }
+        LogHistogram gcFrames = phase.getHistogram(Metric.GC_FRAME_TIME);
+        if (gcFrames.getCount() > 0) {
+            LogHistogram blockingGc = phase.getHistogram(Metric.GC_BLOCKING_TIME);
+            memory.append(String.format(Locale.US,
+                    "Frames with GC: %d (blocking GC %.1f ms in total), p99 Frame Time %.2f ms vs %.2f ms overall\n",
+                    gcFrames.getCount(), blockingGc.getMean() * blockingGc.getCount() / 1e6,
+                    gcFrames.getValueAtQuantile(0.99) / 1e6,
+                    phase.getHistogram(Metric.FRAME_TIME).getValueAtQuantile(0.99) / 1e6));
+        }
+        return memory.toString();
+    }
+
+    /** Formats the GPU memory at the end of the phase, its peak, and where the memory went. */
+    private static String formatGpuMemory(PhaseResult phase) {
+        if (phase.getHistogram(Metric.GPU_MEMORY).getCount() == 0) {
+            return "";
+        }
+        StringBuilder memory = new StringBuilder(String.format(Locale.US,
+                "GPU memory: %.1f MB at end, %.1f MB peak\n",
+                phase.getLastValue(Metric.GPU_MEMORY) / (1024.0 * 1024),
+                phase.getHistogram(Metric.GPU_MEMORY_PEAK).getMax() / (1024.0 * 1024)));
+        for (Metric metric : GPU_MEMORY_METRICS) {
+            if (phase.getHistogram(metric).getMax() > 0) {
+                memory.append(String.format(Locale.US, "  %s: %.2f MB at end, %.2f MB peak\n",
+                        metric.getLabel(), phase.getLastValue(metric) / (1024.0 * 1024),
+                        phase.getHistogram(metric).getMax() / (1024.0 * 1024)));
+            }
+        }
+        return memory.toString();
+    }
+
+    /** Lists the mean time of every frame stage the section went through. */
+    private static String formatStages(PhaseResult phase, String title, Metric[] metrics) {
+        StringBuilder stages = new StringBuilder(title).append(" (mean ms):\n");
+        for (Metric metric : metrics) {
+            if (phase.getHistogram(metric).getMax() > 0) {
+                stages.append("  ").append(metric.getLabel()).append(": ")
+                        .append(String.format(Locale.US, "%.3f", meanMillis(phase, metric))).append('\n');
+            }
+        }
+        return stages.toString();
+    }
+
+    /** Formats a line like "Frame Time p50/p90/p99/p99.9: 16.6 / 17.1 / 33.2 / 40.0 ms". */
+    private static String formatQuantiles(PhaseResult phase, Metric metric) {
+        LogHistogram histogram = phase.getHistogram(metric);
+        StringBuilder names = new StringBuilder();
+        StringBuilder values = new StringBuilder();
+        for (double quantile : FrameLogAnalyzer.REPORTED_QUANTILES) {
+            if (names.length() > 0) {
+                names.append('/');
+                values.append(" / ");
             }
+            names.append('p').append(new DecimalFormat("0.#", DecimalFormatSymbols.getInstance(Locale.US))
+                    .format(quantile * 100));
+            values.append(String.format(Locale.US, "%.2f", histogram.getValueAtQuantile(quantile) / 1e6));
         }
+        return metric.getLabel() + " " + names + ": " + values + " ms\n";
     }
 
     protected void onDestroy() {
 //        turnCameraOff();
+        handler.removeCallbacksAndMessages(null);
         super.onDestroy();
     }
 }
\ No newline at end of file
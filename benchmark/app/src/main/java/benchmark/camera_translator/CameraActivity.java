@@ -106,18 +106,25 @@ import java.io.OutputStream;
 import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import benchmark.benchmark.R;
+import benchmark.common.framelog.FrameTimer;
 import benchmark.common.helpers.CameraPermissionHelper;
 import benchmark.common.helpers.DepthSettings;
 import benchmark.common.helpers.DisplayRotationHelper;
 import benchmark.common.helpers.FullScreenHelper;
 import benchmark.common.helpers.InstantPlacementSettings;
 import benchmark.common.helpers.SnackbarHelper;
+import benchmark.common.helpers.SystemTrace;
 import benchmark.common.helpers.TapHelper;
 import benchmark.common.helpers.TrackingStateHelper;
+import benchmark.common.samplerender.FrameProfiler;
 import benchmark.common.samplerender.Framebuffer;
 import benchmark.common.samplerender.GLError;
+import benchmark.common.samplerender.GpuMemory;
 import benchmark.common.samplerender.Mesh;
 import benchmark.common.samplerender.SampleRender;
 import benchmark.common.samplerender.Shader;
@@ -126,6 +133,7 @@ import benchmark.common.samplerender.VertexBuffer;
 import benchmark.common.samplerender.arcore.BackgroundRenderer;
 import benchmark.common.samplerender.arcore.PlaneRenderer;
 import benchmark.common.samplerender.arcore.SpecularCubemapFilter;
+import benchmark.common.sampling.CoreSampler;
 
 /**
  * This is a simple example that shows how to create an augmented reality (AR) application using the
@@ -170,6 +178,8 @@ public class CameraActivity extends AppCompatActivity implements SampleRender.Re
     private final TrackingStateHelper trackingStateHelper = new TrackingStateHelper(this);
     private TapHelper tapHelper;
     private SampleRender render;
+    // Not part of the benchmark yet, so frames are measured but not logged.
+    private final FrameProfiler profiler = new FrameProfiler(null);
 
     private PlaneRenderer planeRenderer;
     private BackgroundRenderer backgroundRenderer;
@@ -220,6 +230,11 @@ public class CameraActivity extends AppCompatActivity implements SampleRender.Re
 
     private TessBaseAPI tessBaseAPI;
     private Translator englishSpanishTranslator;
+    // Recognizes text off the render thread, one tap at a time. The thread is named so that the
+    // CPU samplers track it.
+    private final ExecutorService ocrExecutor = Executors.newSingleThreadExecutor(
+            runnable -> new Thread(runnable, CoreSampler.OCR_THREAD_NAME));
+    private final AtomicBoolean recognizing = new AtomicBoolean();
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
@@ -308,6 +323,7 @@ public class CameraActivity extends AppCompatActivity implements SampleRender.Re
             session.close();
             session = null;
         }
+        ocrExecutor.shutdown();
 
         super.onDestroy();
     }
@@ -459,6 +475,8 @@ public class CameraActivity extends AppCompatActivity implements SampleRender.Re
                     GLES30.GL_HALF_FLOAT,
                     buffer);
             GLError.maybeThrowGLException("Failed to populate DFG texture", "glTexImage2D");
+            dfgTexture.recordAllocation(GpuMemory.Category.TEXTURE, GLES30.GL_RG16F, dfgResolution,
+                    dfgResolution, /*mipLevels=*/ 1);
 
             // Point cloud
             pointCloudShader =
@@ -509,6 +527,7 @@ public class CameraActivity extends AppCompatActivity implements SampleRender.Re
             Log.e(TAG, "Failed to read a required asset file", e);
             messageSnackbarHelper.showError(this, "Failed to read a required asset file: " + e);
         }
+        profiler.onSurfaceCreated();
     }
 
     @Override
@@ -519,6 +538,7 @@ public class CameraActivity extends AppCompatActivity implements SampleRender.Re
 
     @Override
     public void onDrawFrame(SampleRender render) {
+        profiler.beginFrame();
         if (session == null) {
             return;
         }
@@ -542,8 +562,8 @@ public class CameraActivity extends AppCompatActivity implements SampleRender.Re
         // UpdateMode.BLOCKING (it is by default), this will throttle the rendering to the
         // camera framerate.
         Frame frame;
+        profiler.begin(FrameTimer.UPDATE);
         try {
-
             frame = session.update();
         } catch (CameraNotAvailableException e) {
             Log.e(TAG, "Camera not available during onDrawFrame", e);
@@ -551,6 +571,7 @@ public class CameraActivity extends AppCompatActivity implements SampleRender.Re
             return;
         }
         Camera camera = frame.getCamera();
+        profiler.end(FrameTimer.UPDATE);
 
         // Update BackgroundRenderer state to match the depth settings.
         try {
@@ -577,7 +598,14 @@ public class CameraActivity extends AppCompatActivity implements SampleRender.Re
             }
         }
 
-        handleTap(frame, camera);
+        // Input Handling Time, only entered in frames with a tap so that it measures tap latency
+        // rather than idle frames. Handle one tap per frame.
+        MotionEvent tap = tapHelper.poll();
+        if (tap != null) {
+            profiler.begin(FrameTimer.INPUT);
+            handleTap(tap, frame, camera);
+            profiler.end(FrameTimer.INPUT);
+        }
 
         // Keep the screen unlocked while tracking, but allow it to lock when tracking stops.
         trackingStateHelper.updateKeepScreenOnFlag(camera.getTrackingState());
@@ -606,11 +634,13 @@ public class CameraActivity extends AppCompatActivity implements SampleRender.Re
 
         // -- Draw background
 
+        profiler.begin(FrameTimer.BACKGROUND);
         if (frame.getTimestamp() != 0) {
             // Suppress rendering if the camera did not produce the first frame yet. This is to avoid
             // drawing possible leftover data from previous sessions if the texture is reused.
             backgroundRenderer.drawBackground(render);
         }
+        profiler.end(FrameTimer.BACKGROUND);
 
         // If not tracking, don't draw 3D objects.
         if (camera.getTrackingState() == TrackingState.PAUSED) {
@@ -627,6 +657,7 @@ public class CameraActivity extends AppCompatActivity implements SampleRender.Re
 
         // Visualize tracked points.
         // Use try-with-resources to automatically release the point cloud.
+        profiler.begin(FrameTimer.POINT_CLOUD);
         try (PointCloud pointCloud = frame.acquirePointCloud()) {
             if (pointCloud.getTimestamp() > lastPointCloudTimestamp) {
                 pointCloudVertexBuffer.set(pointCloud.getPoints());
@@ -636,13 +667,16 @@ public class CameraActivity extends AppCompatActivity implements SampleRender.Re
             pointCloudShader.setMat4("u_ModelViewProjection", modelViewProjectionMatrix);
             render.draw(pointCloudMesh, pointCloudShader);
         }
+        profiler.end(FrameTimer.POINT_CLOUD);
 
         // Visualize planes.
+        profiler.begin(FrameTimer.PLANES);
         planeRenderer.drawPlanes(
                 render,
                 session.getAllTrackables(Plane.class),
                 camera.getDisplayOrientedPose(),
                 projectionMatrix);
+        profiler.end(FrameTimer.PLANES);
 
         // -- Draw occluded virtual objects
 
@@ -650,6 +684,7 @@ public class CameraActivity extends AppCompatActivity implements SampleRender.Re
         updateLightEstimation(frame.getLightEstimate(), viewMatrix);
 
         // Visualize anchors created by touch.
+        profiler.begin(FrameTimer.OBJECTS);
         render.clear(virtualSceneFramebuffer, 0f, 0f, 0f, 0f);
         for (Anchor anchor : anchors) {
             if (anchor.getTrackingState() != TrackingState.TRACKING) {
@@ -669,15 +704,20 @@ public class CameraActivity extends AppCompatActivity implements SampleRender.Re
             virtualObjectShader.setMat4("u_ModelViewProjection", modelViewProjectionMatrix);
             render.draw(virtualObjectMesh, virtualObjectShader, virtualSceneFramebuffer);
         }
+        profiler.end(FrameTimer.OBJECTS);
 
         // Compose the virtual scene with the background.
+        profiler.begin(FrameTimer.COMPOSE);
         backgroundRenderer.drawVirtualScene(render, virtualSceneFramebuffer, Z_NEAR, Z_FAR);
+        profiler.end(FrameTimer.COMPOSE);
+        profiler.endFrame(0);
     }
 
     // Handle only one tap per frame, as taps are usually low frequency compared to frame rate.
-    private void handleTap(Frame frame, Camera camera) {
-        MotionEvent tap = tapHelper.poll();
-        if (tap != null && camera.getTrackingState() == TrackingState.TRACKING) {
+    private void handleTap(MotionEvent tap, Frame frame, Camera camera) {
+        if (camera.getTrackingState() == TrackingState.TRACKING) {
+            // Taps while the previous text is still being recognized are ignored.
+            if (recognizing.get()) return;
             Image image = null;
             try {
                 image = frame.acquireCameraImage();
@@ -689,54 +729,72 @@ public class CameraActivity extends AppCompatActivity implements SampleRender.Re
             Bitmap bitmapImage = rotateBitmap(imageToBitmap(image));
             ImageView frameImage = new ImageView(this);
             frameImage.setImageBitmap(bitmapImage);
-            tessBaseAPI.setImage(bitmapImage);
+            int imageWidth = image.getWidth();
+            int imageHeight = image.getHeight();
+            image.close();
+
+            recognizing.set(true);
+            ocrExecutor.execute(() -> {
+                try {
+                    recognizeText(bitmapImage, frameImage, imageWidth, imageHeight);
+                } finally {
+                    recognizing.set(false);
+                }
+            });
+        }
+    }
+
+    // Runs on the OCR thread: finds the text of the camera image, then translates it.
+    private void recognizeText(
+            Bitmap bitmapImage, ImageView frameImage, int imageWidth, int imageHeight) {
+        SystemTrace.begin("Tesseract");
+        tessBaseAPI.setImage(bitmapImage);
 
-            final String ocrText = tessBaseAPI.getUTF8Text();
-            Pixa words = tessBaseAPI.getTextlines();
+        final String ocrText = tessBaseAPI.getUTF8Text();
+        Pixa words = tessBaseAPI.getTextlines();
+        SystemTrace.end();
 //        float r1 = image.getWidth()/bitmapImage.getWidth();
 //        float r2 = image.getHeight()/bitmapImage.getHeight();
 
-            float xPos = 0;
-            float yPos = 0;
-            int width = 0;
+        float xPos = 0;
+        float yPos = 0;
+        int width = 0;
 
-            if (words.size() > 0) {
-                int x = words.getBoxRect(0).left;
-                int y = words.getBoxRect(0).top;
-                Log.i("TESSERACT", "TEXT POSITION: (" + x + ", " + y + ")");
+        if (words.size() > 0) {
+            int x = words.getBoxRect(0).left;
+            int y = words.getBoxRect(0).top;
+            Log.i("TESSERACT", "TEXT POSITION: (" + x + ", " + y + ")");
 
-                xPos = (float) ((float) x / (image.getWidth() * 1.1));
-                yPos = (float) ((float) y / (image.getHeight() * 1.2));
-                width = words.getWidth();
-            }
+            xPos = (float) ((float) x / (imageWidth * 1.1));
+            yPos = (float) ((float) y / (imageHeight * 1.2));
+            width = words.getWidth();
+        }
 
-            float finalXPos = xPos;
-            float finalYPos = yPos;
-            int finalWidth = width;
-            englishSpanishTranslator.translate(ocrText)
-                    .addOnSuccessListener(
-                            new OnSuccessListener() {
-                                @Override
-                                public void onSuccess(Object o) {
-                                    Log.i("TRANSLATED TEXT", o.toString());
+        float finalXPos = xPos;
+        float finalYPos = yPos;
+        int finalWidth = width;
+        englishSpanishTranslator.translate(ocrText)
+                .addOnSuccessListener(
+                        new OnSuccessListener() {
+                            @Override
+                            public void onSuccess(Object o) {
+                                Log.i("TRANSLATED TEXT", o.toString());
 //                                runOnUiThread(() -> showFrameAlertDialog(frameImage, ocrText, o.toString()));
-                                    addTextToScene(o.toString(), finalXPos, finalYPos, finalWidth);
-                                }
-                            })
-                    .addOnFailureListener(
-                            new OnFailureListener() {
-                                @Override
-                                public void onFailure(@NonNull Exception e) {
-                                    Log.i("FAILURE", "FAILED TO TRANSLATE TEXT");
+                                addTextToScene(o.toString(), finalXPos, finalYPos, finalWidth);
+                            }
+                        })
+                .addOnFailureListener(
+                        new OnFailureListener() {
+                            @Override
+                            public void onFailure(@NonNull Exception e) {
+                                Log.i("FAILURE", "FAILED TO TRANSLATE TEXT");
 
-                                    runOnUiThread(() -> showFrameAlertDialog(frameImage, ocrText, "FAILED TO TRANSLATE TEXT"));
-                                }
-                            });
+                                runOnUiThread(() -> showFrameAlertDialog(frameImage, ocrText, "FAILED TO TRANSLATE TEXT"));
+                            }
+                        });
 
-            image.close();
-            tessBaseAPI.clear();
-            words.recycle();
-        }
+        tessBaseAPI.clear();
+        words.recycle();
     }
 
     private void addTextToScene(String translatedText, float x, float y, int width) {
@@ -916,7 +974,9 @@ public class CameraActivity extends AppCompatActivity implements SampleRender.Re
                 viewMatrix);
         updateSphericalHarmonicsCoefficients(
                 lightEstimate.getEnvironmentalHdrAmbientSphericalHarmonics());
+        profiler.begin(FrameTimer.CUBEMAP_FILTER);
         cubemapFilter.update(lightEstimate.acquireEnvironmentalHdrCubeMap());
+        profiler.end(FrameTimer.CUBEMAP_FILTER);
     }
 
     private void updateMainLight(float[] direction, float[] intensity, float[] viewMatrix) {
@@ -0,0 +1,288 @@
+/*
+ * Copyright 2021, Brown University, Providence, RI.
+ * Rahul Shahi, Sherief Reda, Seif Abdelaziz
+ *
+ *                        All Rights Reserved
+ *
+ * Permission to use, copy, modify, and distribute this software and
+ * its documentation for any purpose other than its incorporation into a
+ * commercial product or service is hereby granted without fee, provided
+ * that the above copyright notice appear in all copies and that both
+ * that copyright notice and this permission notice appear in supporting
+ * documentation, and that the name of Brown University not be used in
+ * advertising or publicity pertaining to distribution of the software
+ * without specific, written prior permission.
+ *
+ * BROWN UNIVERSITY DISCLAIMS ALL WARRANTIES WITH REGARD TO THIS SOFTWARE,
+ * INCLUDING ALL IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR ANY
+ * PARTICULAR PURPOSE.  IN NO EVENT SHALL BROWN UNIVERSITY BE LIABLE FOR
+ * ANY SPECIAL, INDIRECT OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF
+ * OR IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+
+package benchmark.common.analysis;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * A single number that ranks devices, computed like Geekbench scores: every phase of every
+ * recording is scored by how much faster it ran than on the reference device of a {@link
+ * ReferenceProfile}, and the scores are combined by weighted geometric means.
+ *
+ * <p>A phase scores {@link #REFERENCE_SCORE} times the reference time divided by the measured time
+ * of a category, pooled over all passes, so twice as fast scores twice as much. The time is a
+ * {@link Category#getQuantile() quantile} of the category's per-frame metric: the median for
+ * tracking and rendering, and a high percentile of the frames that handled a tap for interaction.
+ * The score of a category is the geometric mean of its phase scores, where every recording weighs
+ * its profile weight, split evenly over its scored phases. The score is the geometric mean of the
+ * category scores weighted by the profile. Quantiles and fixed weights make the score
+ * reproducible: the same frame log and profile always give the same score, and single slow frames
+ * do not move it.
+ *
+ * <p>Phases the profile has no reference for, and phases without any frame of a category, such as
+ * phases without taps for interaction, are not scored for it. Categories that a device could
+ * not measure, e.g. GPU time without timer queries, are left out of the score. Such scores, and
+ * scores of runs that skipped recordings of the profile, are {@link #isComplete() incomplete} and
+ * should not be ranked against complete ones.
+ */
+public class BenchmarkScore {
+  /** The score of the reference device in every category. */
+  public static final double REFERENCE_SCORE = 1000;
+
+  /** The sub-scores, each of a per-frame time. */
+  public enum Category {
+    /** ARCore processing of camera frames and motion tracking. */
+    TRACKING("Tracking", Metric.UPDATE_TIME, 0.5),
+    /** GPU time of all render stages. */
+    RENDERING("Rendering", Metric.GPU_TIME, 0.5),
+    /**
+     * Handling of recorded taps, such as placing objects. Taps are rare, so the slow end of the
+     * frames that handled one is what a user notices.
+     */
+    INTERACTION("Interaction", Metric.INPUT_EVENT_TIME, 0.9);
+
+    private final String label;
+    private final Metric metric;
+    private final double quantile;
+
+    Category(String label, Metric metric, double quantile) {
+      this.label = label;
+      this.metric = metric;
+      this.quantile = quantile;
+    }
+
+    public String getLabel() {
+      return label;
+    }
+
+    /** Returns the per-frame time the category scores. */
+    public Metric getMetric() {
+      return metric;
+    }
+
+    /** Returns the quantile of the metric's frames that the category scores. */
+    public double getQuantile() {
+      return quantile;
+    }
+
+    /** Returns the scored time of a histogram of the category's metric, or 0 if it is empty. */
+    long measure(LogHistogram histogram) {
+      return histogram.getCount() == 0 ? 0 : histogram.getValueAtQuantile(quantile);
+    }
+
+    /** Returns the name of the category in reference profiles and JSON. */
+    public String getKey() {
+      return name().toLowerCase(Locale.ROOT);
+    }
+  }
+
+  /** The scores of one phase, pooled over all passes. */
+  public static class PhaseScore {
+    private final String sectionName;
+    private final String recordingName;
+    private final int phase;
+    private final Map<Category, Double> scores = new EnumMap<>(Category.class);
+
+    PhaseScore(String sectionName, String recordingName, int phase) {
+      this.sectionName = sectionName;
+      this.recordingName = recordingName;
+      this.phase = phase;
+    }
+
+    public String getSectionName() {
+      return sectionName;
+    }
+
+    public String getRecordingName() {
+      return recordingName;
+    }
+
+    public int getPhase() {
+      return phase;
+    }
+
+    /** Returns the score of a category in this phase, or NaN if it was not scored. */
+    public double getScore(Category category) {
+      Double score = scores.get(category);
+      return score == null ? Double.NaN : score;
+    }
+  }
+
+  private final String profileName;
+  private final List<PhaseScore> phaseScores;
+  private final Map<Category, Double> categoryScores;
+  private final double score;
+  private final List<String> missingRecordings;
+
+  private BenchmarkScore(String profileName, List<PhaseScore> phaseScores,
+      Map<Category, Double> categoryScores, double score, List<String> missingRecordings) {
+    this.profileName = profileName;
+    this.phaseScores = phaseScores;
+    this.categoryScores = categoryScores;
+    this.score = score;
+    this.missingRecordings = missingRecordings;
+  }
+
+  /** Scores a run, given as the sections of all its passes, against a reference profile. */
+  public static BenchmarkScore compute(List<SectionResult> sections, ReferenceProfile profile) {
+    List<PhaseScore> phaseScores = new ArrayList<>();
+    for (PooledPhase phase : PooledPhase.pool(sections).values()) {
+      PhaseScore phaseScore = new PhaseScore(phase.sectionName, phase.recordingName, phase.phase);
+      for (Category category : Category.values()) {
+        double reference = profile.getReference(phase.recordingName, phase.phase, category);
+        long time = category.measure(phase.histograms.get(category.getMetric()));
+        if (reference > 0 && time > 0) {
+          phaseScore.scores.put(category, REFERENCE_SCORE * reference / time);
+        }
+      }
+      phaseScores.add(phaseScore);
+    }
+
+    Map<Category, Double> categoryScores = new EnumMap<>(Category.class);
+    double logSum = 0;
+    double weightSum = 0;
+    for (Category category : Category.values()) {
+      double categoryScore = categoryScore(phaseScores, category, profile);
+      double weight = profile.getWeight(category);
+      if (Double.isNaN(categoryScore) || weight <= 0) {
+        continue;
+      }
+      categoryScores.put(category, categoryScore);
+      logSum += weight * Math.log(categoryScore);
+      weightSum += weight;
+    }
+    double score = weightSum == 0 ? Double.NaN : Math.exp(logSum / weightSum);
+
+    List<String> missingRecordings = new ArrayList<>();
+    for (String recordingName : profile.getRecordings()) {
+      boolean found = false;
+      for (PhaseScore phaseScore : phaseScores) {
+        found |= phaseScore.recordingName.equals(recordingName);
+      }
+      if (!found) {
+        missingRecordings.add(recordingName);
+      }
+    }
+    return new BenchmarkScore(
+        profile.getName(), phaseScores, categoryScores, score, missingRecordings);
+  }
+
+  /** Returns the weighted geometric mean of the phase scores of a category, or NaN. */
+  private static double categoryScore(
+      List<PhaseScore> phaseScores, Category category, ReferenceProfile profile) {
+    Map<String, Integer> scoredPhases = new LinkedHashMap<>();
+    for (PhaseScore phaseScore : phaseScores) {
+      if (!Double.isNaN(phaseScore.getScore(category))) {
+        scoredPhases.merge(phaseScore.recordingName, 1, Integer::sum);
+      }
+    }
+    double logSum = 0;
+    double weightSum = 0;
+    for (PhaseScore phaseScore : phaseScores) {
+      double phaseValue = phaseScore.getScore(category);
+      if (Double.isNaN(phaseValue)) {
+        continue;
+      }
+      double weight = profile.getRecordingWeight(phaseScore.recordingName)
+          / scoredPhases.get(phaseScore.recordingName);
+      logSum += weight * Math.log(phaseValue);
+      weightSum += weight;
+    }
+    return weightSum <= 0 ? Double.NaN : Math.exp(logSum / weightSum);
+  }
+
+  /** Returns the name of the reference profile the score is normalized to. */
+  public String getProfileName() {
+    return profileName;
+  }
+
+  /** Returns the score, or NaN if no category could be scored. */
+  public double getScore() {
+    return score;
+  }
+
+  /** Returns the score of a category, or NaN if it could not be scored. */
+  public double getScore(Category category) {
+    Double categoryScore = categoryScores.get(category);
+    return categoryScore == null ? Double.NaN : categoryScore;
+  }
+
+  /** Returns the scores of every phase in the order of the run. */
+  public List<PhaseScore> getPhaseScores() {
+    return Collections.unmodifiableList(phaseScores);
+  }
+
+  /** Returns the recordings of the profile that the run did not play back. */
+  public List<String> getMissingRecordings() {
+    return Collections.unmodifiableList(missingRecordings);
+  }
+
+  /**
+   * Returns whether the run played back every recording of the profile and every category was
+   * scored.
+   */
+  public boolean isComplete() {
+    return missingRecordings.isEmpty() && categoryScores.size() == Category.values().length;
+  }
+
+  /** Writes the score, the category scores and the scores of every phase as a JSON object. */
+  public void writeJson(JsonWriter json) throws IOException {
+    json.beginObject();
+    json.name("profile").value(profileName);
+    json.name("score").value(score);
+    json.name("complete").value(isComplete());
+    json.name("categories").beginObject();
+    for (Category category : Category.values()) {
+      json.name(category.getKey()).value(getScore(category));
+    }
+    json.endObject();
+    json.name("missing_recordings").beginArray();
+    for (String recordingName : missingRecordings) {
+      json.value(recordingName);
+    }
+    json.endArray();
+    json.name("phases").beginArray();
+    for (PhaseScore phaseScore : phaseScores) {
+      json.beginObject();
+      json.name("section").value(phaseScore.sectionName);
+      json.name("recording").value(phaseScore.recordingName);
+      json.name("phase").value(phaseScore.phase);
+      for (Category category : Category.values()) {
+        json.name(category.getKey()).value(phaseScore.getScore(category));
+      }
+      json.endObject();
+    }
+    json.endArray();
+    json.endObject();
+  }
+}
@@ -0,0 +1,75 @@
+/*
+ * Copyright 2021, Brown University, Providence, RI.
+ * Rahul Shahi, Sherief Reda, Seif Abdelaziz
+ *
+ *                        All Rights Reserved
+ *
+ * Permission to use, copy, modify, and distribute this software and
+ * its documentation for any purpose other than its incorporation into a
+ * commercial product or service is hereby granted without fee, provided
+ * that the above copyright notice appear in all copies and that both
+ * that copyright notice and this permission notice appear in supporting
+ * documentation, and that the name of Brown University not be used in
+ * advertising or publicity pertaining to distribution of the software
+ * without specific, written prior permission.
+ *
+ * BROWN UNIVERSITY DISCLAIMS ALL WARRANTIES WITH REGARD TO THIS SOFTWARE,
+ * INCLUDING ALL IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR ANY
+ * PARTICULAR PURPOSE.  IN NO EVENT SHALL BROWN UNIVERSITY BE LIABLE FOR
+ * ANY SPECIAL, INDIRECT OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF
+ * OR IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+
+package benchmark.common.analysis;
+
+import benchmark.common.framelog.CoreLog;
+import benchmark.common.framelog.FrameLogReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Adds up the CPU time per thread role and core cluster recorded in a {@link CoreLog} over every
+ * phase of a frame log analyzed by {@link FrameLogAnalyzer}, so that the results show whether a
+ * phase ran on little or on big cores.
+ */
+public class CoreLogAnalyzer extends SideLogAnalyzer {
+  @Override
+  protected void analyzeSection(
+      FrameLogReader reader, FrameLogReader.Section section, SectionResult result)
+      throws IOException {
+    List<PhaseResult> phases = result.getPhases();
+    int columnCount = section.getColumnCount();
+    int clusterCount = (columnCount - CoreLog.FIRST_CLUSTER) / CoreLog.ROLES.length;
+    // The cluster names are the columns of the first role without role and unit.
+    String prefix = CoreLog.ROLES[0] + "_";
+    List<String> clusterNames = new ArrayList<>();
+    for (int i = 0; i < clusterCount; i++) {
+      String name = section.getColumnName(CoreLog.FIRST_CLUSTER + i);
+      if (name.startsWith(prefix) && name.endsWith(CoreLog.CLUSTER_SUFFIX)) {
+        name = name.substring(prefix.length(), name.length() - CoreLog.CLUSTER_SUFFIX.length());
+      }
+      clusterNames.add(name);
+    }
+    clusterNames = Collections.unmodifiableList(clusterNames);
+
+    long[][] times = new long[phases.size()][clusterCount * CoreLog.ROLES.length];
+    long[] record = new long[columnCount];
+    while (reader.nextRecord(record)) {
+      int phase = findPhase(phases, record[CoreLog.TIME]);
+      if (phase < 0) {
+        continue;
+      }
+      for (int i = 0; i < times[phase].length; i++) {
+        times[phase][i] += record[CoreLog.FIRST_CLUSTER + i];
+      }
+    }
+    for (int i = 0; i < phases.size(); i++) {
+      phases.get(i).setClusterTimes(clusterNames, times[i]);
+    }
+  }
+}
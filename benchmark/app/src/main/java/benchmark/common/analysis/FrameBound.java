@@ -0,0 +1,74 @@
+/*
+ * Copyright 2021, Brown University, Providence, RI.
+ * Rahul Shahi, Sherief Reda, Seif Abdelaziz
+ *
+ *                        All Rights Reserved
+ *
+ * Permission to use, copy, modify, and distribute this software and
+ * its documentation for any purpose other than its incorporation into a
+ * commercial product or service is hereby granted without fee, provided
+ * that the above copyright notice appear in all copies and that both
+ * that copyright notice and this permission notice appear in supporting
+ * documentation, and that the name of Brown University not be used in
+ * advertising or publicity pertaining to distribution of the software
+ * without specific, written prior permission.
+ *
+ * BROWN UNIVERSITY DISCLAIMS ALL WARRANTIES WITH REGARD TO THIS SOFTWARE,
+ * INCLUDING ALL IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR ANY
+ * PARTICULAR PURPOSE.  IN NO EVENT SHALL BROWN UNIVERSITY BE LIABLE FOR
+ * ANY SPECIAL, INDIRECT OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF
+ * OR IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+
+package benchmark.common.analysis;
+
+/**
+ * What limited the rate of a frame, decided by {@link #classify} from the CPU and GPU time of the
+ * frame and the interval to the next one.
+ */
+public enum FrameBound {
+  /** The CPU was busiest and most of its time went into {@code session.update()}. */
+  ARCORE("ARCore"),
+  /** The CPU was busiest and most of its time went into input handling and draw submission. */
+  CPU_RENDER("CPU render"),
+  /** The GPU took longer than the CPU. */
+  GPU("GPU"),
+  /** Neither CPU nor GPU was busy for most of the interval, the frame waited for the display. */
+  PACING("Pacing");
+
+  /** Fraction of the frame interval below which neither CPU nor GPU is considered the limit. */
+  public static final double BUSY_THRESHOLD = 0.8;
+
+  private final String label;
+
+  FrameBound(String label) {
+    this.label = label;
+  }
+
+  /** Returns the name shown on the results screen. */
+  public String getLabel() {
+    return label;
+  }
+
+  /**
+   * Classifies one frame. All times are in nanoseconds; pass 0 for a GPU time that was not
+   * measured, which makes the frame count against the CPU.
+   *
+   * @param interval time from the start of the frame to the start of the next one
+   * @param cpuTime CPU time of the whole frame on the render thread
+   * @param updateTime part of cpuTime spent in {@code session.update()}
+   * @param gpuTime GPU time of the frame
+   */
+  public static FrameBound classify(long interval, long cpuTime, long updateTime, long gpuTime) {
+    if (Math.max(cpuTime, gpuTime) < BUSY_THRESHOLD * interval) {
+      return PACING;
+    }
+    if (gpuTime > cpuTime) {
+      return GPU;
+    }
+    return updateTime >= cpuTime - updateTime ? ARCORE : CPU_RENDER;
+  }
+}
@@ -0,0 +1,191 @@
+/*
+ * Copyright 2021, Brown University, Providence, RI.
+ * Rahul Shahi, Sherief Reda, Seif Abdelaziz
+ *
+ *                        All Rights Reserved
+ *
+ * Permission to use, copy, modify, and distribute this software and
+ * its documentation for any purpose other than its incorporation into a
+ * commercial product or service is hereby granted without fee, provided
+ * that the above copyright notice appear in all copies and that both
+ * that copyright notice and this permission notice appear in supporting
+ * documentation, and that the name of Brown University not be used in
+ * advertising or publicity pertaining to distribution of the software
+ * without specific, written prior permission.
+ *
+ * BROWN UNIVERSITY DISCLAIMS ALL WARRANTIES WITH REGARD TO THIS SOFTWARE,
+ * INCLUDING ALL IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR ANY
+ * PARTICULAR PURPOSE.  IN NO EVENT SHALL BROWN UNIVERSITY BE LIABLE FOR
+ * ANY SPECIAL, INDIRECT OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF
+ * OR IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package benchmark.common.analysis;
+
+import benchmark.common.framelog.FrameLog;
+import benchmark.common.framelog.FrameLogReader;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Computes per-section and per-phase statistics from a frame log in a single streaming pass.
+ *
+ * <p>Memory use depends only on the number of phases, never on the number of frames: every metric
+ * is folded into a {@link LogHistogram} as soon as its record is read, and every frame is counted
+ * towards the {@link FrameBound} that limited it.
+ */
+public class FrameLogAnalyzer {
+  /** Quantiles shown on the results screen and in exports. */
+  public static final double[] REPORTED_QUANTILES = {0.5, 0.9, 0.99, 0.999};
+
+  /** Analyzes every section of the given log file. */
+  public List<SectionResult> analyze(File logFile) throws IOException {
+    try (FrameLogReader reader = new FrameLogReader(logFile)) {
+      return analyze(reader);
+    }
+  }
+
+  /**
+   * Analyzes the sections of the given log file from the given index on. The records of the
+   * sections before it are skipped without being read, so a log that grows by a section at a time
+   * can be analyzed a section at a time.
+   */
+  public List<SectionResult> analyze(File logFile, int firstSection) throws IOException {
+    try (FrameLogReader reader = new FrameLogReader(logFile)) {
+      for (int i = 0; i < firstSection; i++) {
+        if (reader.nextSection() == null) {
+          return new ArrayList<>();
+        }
+      }
+      return analyze(reader);
+    }
+  }
+
+  /** Analyzes every remaining section of the given reader. */
+  public List<SectionResult> analyze(FrameLogReader reader) throws IOException {
+    List<SectionResult> results = new ArrayList<>();
+    FrameLogReader.Section section;
+    while ((section = reader.nextSection()) != null) {
+      results.add(analyzeSection(reader, section));
+    }
+    return results;
+  }
+
+  /**
+   * Analyzes the records of the section that the reader is positioned at.
+   *
+   * <p>A new {@link PhaseResult} is started whenever the phase number changes between consecutive
+   * frames.
+   */
+  public SectionResult analyzeSection(FrameLogReader reader, FrameLogReader.Section section)
+      throws IOException {
+    SectionResult result = new SectionResult(section.getSectionName(), section.getRecordingName(),
+        section.getDroppedCount(), section.getOverflowCount());
+    int phaseColumn = section.getColumnIndex(FrameLog.COLUMN_NAMES[FrameLog.PHASE]);
+    int frameStartColumn = findTimeColumn(section, "frame_start");
+    if (phaseColumn < 0 || frameStartColumn < 0) {
+      throw new IOException("Frame log section " + section.getSectionName() + " has no frame times");
+    }
+    long frameStartScale = FrameLog.nanosPerUnit(section.getColumnName(frameStartColumn));
+
+    Map<Metric, Integer> columns = new EnumMap<>(Metric.class);
+    Map<Metric, Long> scales = new EnumMap<>(Metric.class);
+    for (Metric metric : Metric.values()) {
+      if (metric.getColumn() == null) {
+        continue;
+      }
+      int column = metric.isTime()
+          ? findTimeColumn(section, metric.getColumn())
+          : section.getColumnIndex(metric.getColumn());
+      if (column >= 0) {
+        columns.put(metric, column);
+        scales.put(
+            metric, metric.isTime() ? FrameLog.nanosPerUnit(section.getColumnName(column)) : 1L);
+      }
+    }
+    // Resolve the lookups once instead of per record.
+    Metric[] metrics = columns.keySet().toArray(new Metric[0]);
+    int[] metricColumns = new int[metrics.length];
+    long[] metricScales = new long[metrics.length];
+    for (int i = 0; i < metrics.length; i++) {
+      metricColumns[i] = columns.get(metrics[i]);
+      metricScales[i] = scales.get(metrics[i]);
+    }
+    // The time spent drawing the HUD is left out of the frame intervals.
+    int hudColumn = columns.getOrDefault(Metric.HUD_TIME, -1);
+    long hudScale = scales.getOrDefault(Metric.HUD_TIME, 0L);
+
+    // Frames that entered the input stage handled input.
+    int inputStartColumn = findTimeColumn(section, "input_start");
+    int inputColumn = columns.getOrDefault(Metric.INPUT_TIME, -1);
+    long inputScale = scales.getOrDefault(Metric.INPUT_TIME, 0L);
+
+    // Frames can only be classified when their CPU times were logged.
+    boolean classifyFrames =
+        columns.containsKey(Metric.TOTAL_TIME) && columns.containsKey(Metric.UPDATE_TIME);
+    // Times of the current and the previous frame, indexed by metric. A frame is classified once
+    // the next one starts and its interval is known.
+    long[] values = new long[Metric.values().length];
+    long[] previousValues = new long[values.length];
+
+    long[] record = new long[section.getColumnCount()];
+    PhaseResult phase = null;
+    while (reader.nextRecord(record)) {
+      int phaseNumber = (int) record[phaseColumn];
+      if (phase == null || phase.getPhase() != phaseNumber) {
+        phase = new PhaseResult(phaseNumber);
+        result.addPhase(phase);
+      }
+      long hudTime = hudColumn < 0 ? 0L : Math.max(record[hudColumn], 0L) * hudScale;
+      long interval = phase.addFrame(record[frameStartColumn] * frameStartScale, hudTime);
+      for (int i = 0; i < metrics.length; i++) {
+        long value = record[metricColumns[i]];
+        if (value == FrameLog.UNAVAILABLE) {
+          phase.addUnavailable(metrics[i]);
+          values[metrics[i].ordinal()] = 0;
+        } else {
+          values[metrics[i].ordinal()] = value * metricScales[i];
+          phase.getHistogram(metrics[i]).record(values[metrics[i].ordinal()]);
+          phase.setLastValue(metrics[i], values[metrics[i].ordinal()]);
+        }
+      }
+      if (classifyFrames && interval > 0) {
+        phase.addBound(FrameBound.classify(interval,
+            previousValues[Metric.TOTAL_TIME.ordinal()],
+            previousValues[Metric.UPDATE_TIME.ordinal()],
+            previousValues[Metric.GPU_TIME.ordinal()]));
+      }
+      if (inputStartColumn >= 0 && inputColumn >= 0
+          && record[inputStartColumn] != FrameLog.UNAVAILABLE
+          && record[inputColumn] != FrameLog.UNAVAILABLE) {
+        phase.getHistogram(Metric.INPUT_EVENT_TIME).record(record[inputColumn] * inputScale);
+      }
+      if (interval > 0 && previousValues[Metric.GC_COUNT.ordinal()] > 0) {
+        phase.getHistogram(Metric.GC_FRAME_TIME).record(interval);
+      }
+      long[] swap = previousValues;
+      previousValues = values;
+      values = swap;
+    }
+    return result;
+  }
+
+  /** Finds the column holding the given quantity in any time unit, or returns -1. */
+  private static int findTimeColumn(FrameLogReader.Section section, String name) {
+    for (int i = 0; i < section.getColumnCount(); i++) {
+      String column = section.getColumnName(i);
+      if (column.startsWith(name + "_")
+          && column.length() == name.length() + 3
+          && FrameLog.nanosPerUnit(column) != 0) {
+        return i;
+      }
+    }
+    return -1;
+  }
+}
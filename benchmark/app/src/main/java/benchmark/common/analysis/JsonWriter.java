@@ -0,0 +1,218 @@
+/*
+ * Copyright 2021, Brown University, Providence, RI.
+ * Rahul Shahi, Sherief Reda, Seif Abdelaziz
+ *
+ *                        All Rights Reserved
+ *
+ * Permission to use, copy, modify, and distribute this software and
+ * its documentation for any purpose other than its incorporation into a
+ * commercial product or service is hereby granted without fee, provided
+ * that the above copyright notice appear in all copies and that both
+ * that copyright notice and this permission notice appear in supporting
+ * documentation, and that the name of Brown University not be used in
+ * advertising or publicity pertaining to distribution of the software
+ * without specific, written prior permission.
+ *
+ * BROWN UNIVERSITY DISCLAIMS ALL WARRANTIES WITH REGARD TO THIS SOFTWARE,
+ * INCLUDING ALL IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR ANY
+ * PARTICULAR PURPOSE.  IN NO EVENT SHALL BROWN UNIVERSITY BE LIABLE FOR
+ * ANY SPECIAL, INDIRECT OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF
+ * OR IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+
+package benchmark.common.analysis;
+
+import java.io.Closeable;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.Writer;
+import java.math.BigDecimal;
+
+/**
+ * Streams JSON text to a {@link Writer} for the export formats.
+ *
+ * <p>The analysis code also runs on desktop JVMs, so it cannot use {@code android.util.JsonWriter}.
+ * Calls are chained and only checked as far as needed to place commas:
+ *
+ * <pre>
+ *   json.beginObject().name("frames").value(120).endObject();
+ * </pre>
+ */
+public class JsonWriter implements Closeable, Flushable {
+  private static final int MAX_DEPTH = 32;
+
+  private final Writer out;
+  private final String indent;
+  // Whether the object or array at each nesting level already holds a value.
+  private final boolean[] hasValue = new boolean[MAX_DEPTH];
+  private int depth;
+  private boolean afterName;
+
+  /** Creates a writer that puts everything on one line. */
+  public JsonWriter(Writer out) {
+    this(out, null);
+  }
+
+  /** @param indent indentation per nesting level, or null to put everything on one line */
+  public JsonWriter(Writer out, String indent) {
+    this.out = out;
+    this.indent = indent;
+  }
+
+  public JsonWriter beginObject() throws IOException {
+    return open('{');
+  }
+
+  public JsonWriter endObject() throws IOException {
+    return close('}');
+  }
+
+  public JsonWriter beginArray() throws IOException {
+    return open('[');
+  }
+
+  public JsonWriter endArray() throws IOException {
+    return close(']');
+  }
+
+  /** Writes the name of the next member of the current object. */
+  public JsonWriter name(String name) throws IOException {
+    beforeValue();
+    writeString(name);
+    out.write(indent == null ? ":" : ": ");
+    afterName = true;
+    return this;
+  }
+
+  public JsonWriter value(String value) throws IOException {
+    if (value == null) {
+      return nullValue();
+    }
+    beforeValue();
+    writeString(value);
+    return this;
+  }
+
+  public JsonWriter value(long value) throws IOException {
+    beforeValue();
+    out.write(Long.toString(value));
+    return this;
+  }
+
+  /** Writes a number without exponent. NaN and infinite values become null. */
+  public JsonWriter value(double value) throws IOException {
+    if (Double.isNaN(value) || Double.isInfinite(value)) {
+      return nullValue();
+    }
+    beforeValue();
+    out.write(BigDecimal.valueOf(value).stripTrailingZeros().toPlainString());
+    return this;
+  }
+
+  public JsonWriter value(boolean value) throws IOException {
+    beforeValue();
+    out.write(value ? "true" : "false");
+    return this;
+  }
+
+  public JsonWriter nullValue() throws IOException {
+    beforeValue();
+    out.write("null");
+    return this;
+  }
+
+  @Override
+  public void flush() throws IOException {
+    out.flush();
+  }
+
+  /** Closes the underlying writer. Fails if an object or array is still open. */
+  @Override
+  public void close() throws IOException {
+    out.close();
+    if (depth != 0) {
+      throw new IOException("Incomplete JSON document, " + depth + " levels still open");
+    }
+  }
+
+  private JsonWriter open(char bracket) throws IOException {
+    if (depth == MAX_DEPTH) {
+      throw new IllegalStateException("JSON nested deeper than " + MAX_DEPTH);
+    }
+    beforeValue();
+    out.write(bracket);
+    hasValue[depth++] = false;
+    return this;
+  }
+
+  private JsonWriter close(char bracket) throws IOException {
+    if (depth == 0) {
+      throw new IllegalStateException("No open object or array to close");
+    }
+    depth--;
+    if (hasValue[depth]) {
+      newline();
+    }
+    out.write(bracket);
+    return this;
+  }
+
+  /** Writes the comma and line break that separate a value from the previous one. */
+  private void beforeValue() throws IOException {
+    if (afterName) {
+      afterName = false;
+      return;
+    }
+    if (depth > 0) {
+      if (hasValue[depth - 1]) {
+        out.write(',');
+      }
+      hasValue[depth - 1] = true;
+      newline();
+    }
+  }
+
+  private void newline() throws IOException {
+    if (indent == null) {
+      return;
+    }
+    out.write('\n');
+    for (int i = 0; i < depth; i++) {
+      out.write(indent);
+    }
+  }
+
+  private void writeString(String value) throws IOException {
+    out.write('"');
+    for (int i = 0; i < value.length(); i++) {
+      char c = value.charAt(i);
+      switch (c) {
+        case '"':
+          out.write("\\\"");
+          break;
+        case '\\':
+          out.write("\\\\");
+          break;
+        case '\n':
+          out.write("\\n");
+          break;
+        case '\r':
+          out.write("\\r");
+          break;
+        case '\t':
+          out.write("\\t");
+          break;
+        default:
+          if (c < 0x20) {
+            out.write(String.format("\\u%04x", (int) c));
+          } else {
+            out.write(c);
+          }
+      }
+    }
+    out.write('"');
+  }
+}
@@ -0,0 +1,209 @@
+/*
+ * Copyright 2021, Brown University, Providence, RI.
+ * Rahul Shahi, Sherief Reda, Seif Abdelaziz
+ *
+ *                        All Rights Reserved
+ *
+ * Permission to use, copy, modify, and distribute this software and
+ * its documentation for any purpose other than its incorporation into a
+ * commercial product or service is hereby granted without fee, provided
+ * that the above copyright notice appear in all copies and that both
+ * that copyright notice and this permission notice appear in supporting
+ * documentation, and that the name of Brown University not be used in
+ * advertising or publicity pertaining to distribution of the software
+ * without specific, written prior permission.
+ *
+ * BROWN UNIVERSITY DISCLAIMS ALL WARRANTIES WITH REGARD TO THIS SOFTWARE,
+ * INCLUDING ALL IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR ANY
+ * PARTICULAR PURPOSE.  IN NO EVENT SHALL BROWN UNIVERSITY BE LIABLE FOR
+ * ANY SPECIAL, INDIRECT OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF
+ * OR IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package benchmark.common.analysis;
+
+/**
+ * Histogram of non-negative long values with logarithmically sized buckets.
+ *
+ * <p>Each power of two is split into {@code 2^precisionBits} linear sub-buckets, in the manner of
+ * HdrHistogram, so quantiles are reported with a relative error of at most {@code
+ * 2^-precisionBits} while the memory footprint stays fixed no matter how many values are recorded.
+ * Buckets are only allocated for the range of powers of two that values were recorded in, so a
+ * histogram that stays empty costs next to nothing. Values above the highest trackable value are
+ * clamped into the last bucket; the exact minimum, maximum and sum are kept separately.
+ */
+public class LogHistogram {
+  /** Default precision: 128 sub-buckets per power of two, i.e. better than 1% relative error. */
+  public static final int DEFAULT_PRECISION_BITS = 7;
+  /** Default range: about two minutes when recording nanoseconds. */
+  public static final long DEFAULT_HIGHEST_TRACKABLE_VALUE = 1L << 37;
+
+  private final int precisionBits;
+  private final long highestTrackableValue;
+  private final int bucketCount;
+  // Counts of the buckets from firstBucket on, grown one power of two at a time as values arrive.
+  private long[] counts = new long[0];
+  private int firstBucket;
+  private long count;
+  private long sum;
+  private long min = Long.MAX_VALUE;
+  private long max = Long.MIN_VALUE;
+
+  public LogHistogram() {
+    this(DEFAULT_PRECISION_BITS, DEFAULT_HIGHEST_TRACKABLE_VALUE);
+  }
+
+  public LogHistogram(int precisionBits, long highestTrackableValue) {
+    if (precisionBits < 1 || precisionBits > 16) {
+      throw new IllegalArgumentException("precisionBits must be between 1 and 16");
+    }
+    if (highestTrackableValue < 1) {
+      throw new IllegalArgumentException("highestTrackableValue must be positive");
+    }
+    this.precisionBits = precisionBits;
+    this.highestTrackableValue = highestTrackableValue;
+    this.bucketCount = bucketIndex(highestTrackableValue) + 1;
+  }
+
+  /** Records a single value. Negative values are ignored. */
+  public void record(long value) {
+    if (value < 0) {
+      return;
+    }
+    int bucket = bucketIndex(Math.min(value, highestTrackableValue));
+    ensureBuckets(bucket, bucket);
+    counts[bucket - firstBucket]++;
+    count++;
+    sum += value;
+    min = Math.min(min, value);
+    max = Math.max(max, value);
+  }
+
+  /** Adds all values recorded by another histogram with the same configuration. */
+  public void add(LogHistogram other) {
+    if (other.precisionBits != precisionBits
+        || other.highestTrackableValue != highestTrackableValue) {
+      throw new IllegalArgumentException("Histograms must share precision and range");
+    }
+    if (other.counts.length > 0) {
+      ensureBuckets(other.firstBucket, other.firstBucket + other.counts.length - 1);
+      for (int i = 0; i < other.counts.length; i++) {
+        counts[other.firstBucket - firstBucket + i] += other.counts[i];
+      }
+    }
+    count += other.count;
+    sum += other.sum;
+    min = Math.min(min, other.min);
+    max = Math.max(max, other.max);
+  }
+
+  public long getCount() {
+    return count;
+  }
+
+  /** Returns the arithmetic mean of all recorded values, or NaN if there are none. */
+  public double getMean() {
+    return count == 0 ? Double.NaN : (double) sum / count;
+  }
+
+  /** Returns the smallest recorded value, or 0 if there are none. */
+  public long getMin() {
+    return count == 0 ? 0 : min;
+  }
+
+  /** Returns the largest recorded value, or 0 if there are none. */
+  public long getMax() {
+    return count == 0 ? 0 : max;
+  }
+
+  /**
+   * Returns the value at the given quantile.
+   *
+   * <p>The result is the upper bound of the bucket that contains the requested rank, capped by the
+   * exact maximum, so it never underestimates tail latency by more than the bucket resolution.
+   *
+   * @param quantile quantile between 0 and 1, e.g. 0.99 for the 99th percentile
+   * @return the value at the quantile, or 0 if nothing was recorded
+   */
+  public long getValueAtQuantile(double quantile) {
+    if (count == 0) {
+      return 0;
+    }
+    if (quantile <= 0) {
+      return min;
+    }
+    long rank = Math.max(1, (long) Math.ceil(Math.min(quantile, 1.0) * count));
+    long seen = 0;
+    for (int i = 0; i < counts.length; i++) {
+      seen += counts[i];
+      if (seen >= rank) {
+        return Math.max(min, Math.min(max, bucketUpperBound(firstBucket + i)));
+      }
+    }
+    return max;
+  }
+
+  /** Returns the number of buckets; bucket indices range from 0 to this value minus one. */
+  public int getBucketCount() {
+    return bucketCount;
+  }
+
+  /** Returns the number of values recorded in the given bucket. */
+  public long getBucketCountAt(int bucket) {
+    int index = bucket - firstBucket;
+    return index >= 0 && index < counts.length ? counts[index] : 0;
+  }
+
+  /** Returns the smallest value that falls into the given bucket. */
+  public long bucketLowerBound(int bucket) {
+    int subBucketCount = 1 << precisionBits;
+    if (bucket < subBucketCount) {
+      return bucket;
+    }
+    int shift = (bucket >> precisionBits) - 1;
+    long mantissa = subBucketCount + (bucket & (subBucketCount - 1));
+    return mantissa << shift;
+  }
+
+  /** Returns the largest value that falls into the given bucket. */
+  public long bucketUpperBound(int bucket) {
+    int subBucketCount = 1 << precisionBits;
+    if (bucket < subBucketCount) {
+      return bucket;
+    }
+    int shift = (bucket >> precisionBits) - 1;
+    return bucketLowerBound(bucket) + (1L << shift) - 1;
+  }
+
+  /** Grows the bucket array to whole powers of two so that it covers the buckets lo to hi. */
+  private void ensureBuckets(int lo, int hi) {
+    if (counts.length > 0 && lo >= firstBucket && hi < firstBucket + counts.length) {
+      return;
+    }
+    if (counts.length > 0) {
+      lo = Math.min(lo, firstBucket);
+      hi = Math.max(hi, firstBucket + counts.length - 1);
+    }
+    int subBucketCount = 1 << precisionBits;
+    int newFirst = lo & -subBucketCount;
+    int newLast = Math.min(bucketCount - 1, hi | (subBucketCount - 1));
+    long[] newCounts = new long[newLast - newFirst + 1];
+    if (counts.length > 0) {
+      System.arraycopy(counts, 0, newCounts, firstBucket - newFirst, counts.length);
+    }
+    counts = newCounts;
+    firstBucket = newFirst;
+  }
+
+  private int bucketIndex(long value) {
+    int subBucketCount = 1 << precisionBits;
+    if (value < subBucketCount) {
+      return (int) value;
+    }
+    int shift = 63 - Long.numberOfLeadingZeros(value) - precisionBits;
+    int subBucket = (int) (value >>> shift) - subBucketCount;
+    return ((shift + 1) << precisionBits) + subBucket;
+  }
+}
@@ -0,0 +1,112 @@
+/*
+ * Copyright 2021, Brown University, Providence, RI.
+ * Rahul Shahi, Sherief Reda, Seif Abdelaziz
+ *
+ *                        All Rights Reserved
+ *
+ * Permission to use, copy, modify, and distribute this software and
+ * its documentation for any purpose other than its incorporation into a
+ * commercial product or service is hereby granted without fee, provided
+ * that the above copyright notice appear in all copies and that both
+ * that copyright notice and this permission notice appear in supporting
+ * documentation, and that the name of Brown University not be used in
+ * advertising or publicity pertaining to distribution of the software
+ * without specific, written prior permission.
+ *
+ * BROWN UNIVERSITY DISCLAIMS ALL WARRANTIES WITH REGARD TO THIS SOFTWARE,
+ * INCLUDING ALL IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR ANY
+ * PARTICULAR PURPOSE.  IN NO EVENT SHALL BROWN UNIVERSITY BE LIABLE FOR
+ * ANY SPECIAL, INDIRECT OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF
+ * OR IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package benchmark.common.analysis;
+
+/**
+ * Per-frame quantities that {@link FrameLogAnalyzer} keeps a histogram of. Times are in nanoseconds,
+ * counts as logged.
+ */
+public enum Metric {
+  /** Time between the start of a frame and the start of the next one. */
+  FRAME_TIME("Frame Time", null),
+  /** CPU wall-clock time of the whole frame on the render thread. */
+  TOTAL_TIME("Total CPU Runtime per frame", "total"),
+  /** GPU time of all render stages measured with timer queries. */
+  GPU_TIME("GPU Rendering Time", "gpu"),
+  // Frame stages, see benchmark.common.framelog.FrameTimer.
+  UPDATE_TIME("ARCore Processing Time", "update"),
+  INPUT_TIME("Input Handling Time", "input"),
+  BACKGROUND_TIME("Background Time", "background"),
+  PLANES_TIME("Planes Time", "planes"),
+  POINT_CLOUD_TIME("Point Cloud Time", "point_cloud"),
+  CUBEMAP_FILTER_TIME("Cubemap Filter Time", "cubemap_filter"),
+  OBJECTS_TIME("Objects Time", "objects"),
+  COMPOSE_TIME("Compose Time", "compose"),
+  // GPU time of the render stages.
+  GPU_BACKGROUND_TIME("GPU Background Time", "gpu_background"),
+  GPU_PLANES_TIME("GPU Planes Time", "gpu_planes"),
+  GPU_POINT_CLOUD_TIME("GPU Point Cloud Time", "gpu_point_cloud"),
+  GPU_CUBEMAP_FILTER_TIME("GPU Cubemap Filter Time", "gpu_cubemap_filter"),
+  GPU_OBJECTS_TIME("GPU Objects Time", "gpu_objects"),
+  GPU_COMPOSE_TIME("GPU Compose Time", "gpu_compose"),
+  // CPU time of threads between the ends of consecutive frames.
+  THREAD_CPU_TIME("Render Thread CPU Time", "thread_cpu"),
+  PROCESS_CPU_TIME("Process CPU Time", "process_cpu"),
+  WORKER_CPU_TIME("Coroutine Worker CPU Time", "worker_cpu"),
+  // Allocations on the render thread and garbage collections between the ends of frames.
+  ALLOC_COUNT("Allocations", "alloc_count", false),
+  ALLOC_SIZE("Allocated Bytes", "alloc_bytes", false),
+  GC_COUNT("Garbage Collections", "gc_count", false),
+  GC_BLOCKING_TIME("Blocking GC Time", "gc_blocking"),
+  // GPU memory allocated by the section, in bytes.
+  GPU_MEMORY("GPU Memory", "gpu_memory_bytes", false),
+  GPU_MEMORY_PEAK("Peak GPU Memory", "gpu_memory_peak_bytes", false),
+  GPU_BUFFER_MEMORY("Buffers", "gpu_buffer_bytes", false),
+  GPU_TEXTURE_MEMORY("Textures", "gpu_texture_bytes", false),
+  GPU_FRAMEBUFFER_MEMORY("Framebuffers", "gpu_framebuffer_bytes", false),
+  GPU_CUBEMAP_FILTER_MEMORY("Cubemap Filter", "gpu_cubemap_filter_bytes", false),
+  GPU_LABEL_CACHE_MEMORY("Label Cache", "gpu_label_cache_bytes", false),
+  /** Time spent drawing the performance HUD, already subtracted from {@link #FRAME_TIME}. */
+  HUD_TIME("Performance HUD Time", "hud"),
+  /** Frame time of the frames during which a garbage collection ran. */
+  GC_FRAME_TIME("Frame Time with GC", null),
+  /**
+   * {@link #INPUT_TIME} of the frames that handled input. Frames without input do not enter the
+   * input stage, so their input time says nothing about input latency.
+   */
+  INPUT_EVENT_TIME("Input Handling Time per Tap", null);
+
+  private final String label;
+  private final String column;
+  private final boolean time;
+
+  Metric(String label, String column) {
+    this(label, column, true);
+  }
+
+  Metric(String label, String column, boolean time) {
+    this.label = label;
+    this.column = column;
+    this.time = time;
+  }
+
+  /** Returns the name shown on the results screen. */
+  public String getLabel() {
+    return label;
+  }
+
+  /**
+   * Returns the frame log column name without its unit suffix, or null if the metric is derived
+   * from other columns.
+   */
+  public String getColumn() {
+    return column;
+  }
+
+  /** Returns whether the metric is a time, whose column name carries a unit suffix. */
+  public boolean isTime() {
+    return time;
+  }
+}
@@ -0,0 +1,189 @@
+/*
+ * Copyright 2021, Brown University, Providence, RI.
+ * Rahul Shahi, Sherief Reda, Seif Abdelaziz
+ *
+ *                        All Rights Reserved
+ *
+ * Permission to use, copy, modify, and distribute this software and
+ * its documentation for any purpose other than its incorporation into a
+ * commercial product or service is hereby granted without fee, provided
+ * that the above copyright notice appear in all copies and that both
+ * that copyright notice and this permission notice appear in supporting
+ * documentation, and that the name of Brown University not be used in
+ * advertising or publicity pertaining to distribution of the software
+ * without specific, written prior permission.
+ *
+ * BROWN UNIVERSITY DISCLAIMS ALL WARRANTIES WITH REGARD TO THIS SOFTWARE,
+ * INCLUDING ALL IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR ANY
+ * PARTICULAR PURPOSE.  IN NO EVENT SHALL BROWN UNIVERSITY BE LIABLE FOR
+ * ANY SPECIAL, INDIRECT OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF
+ * OR IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+
+package benchmark.common.analysis;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Comparison of one phase of a baseline run with the same phase of a candidate run, filled in by
+ * {@link RunComparison}. Phases are matched by recording and phase number, and the passes of a
+ * repeated section are pooled.
+ */
+public class PhaseComparison {
+  /** Outcome of a comparison, from the best to the worst. */
+  public enum Verdict {
+    IMPROVED,
+    UNCHANGED,
+    REGRESSED,
+    /** The candidate did not reach the phase. */
+    MISSING;
+
+    /** Returns whether a run with this outcome fails the regression gate. */
+    public boolean isFailure() {
+      return this == REGRESSED || this == MISSING;
+    }
+  }
+
+  /** Comparison of one metric of the phase. Times are in nanoseconds. */
+  public static class MetricComparison {
+    private final Metric metric;
+    private final long baselineCount;
+    private final long candidateCount;
+    private final double baselineMean;
+    private final double candidateMean;
+    private final double confidenceLow;
+    private final double confidenceHigh;
+    private final double pValue;
+    private final double probabilitySlower;
+    private final Verdict verdict;
+
+    MetricComparison(Metric metric, long baselineCount, long candidateCount, double baselineMean,
+        double candidateMean, double confidenceLow, double confidenceHigh, double pValue,
+        double probabilitySlower, Verdict verdict) {
+      this.metric = metric;
+      this.baselineCount = baselineCount;
+      this.candidateCount = candidateCount;
+      this.baselineMean = baselineMean;
+      this.candidateMean = candidateMean;
+      this.confidenceLow = confidenceLow;
+      this.confidenceHigh = confidenceHigh;
+      this.pValue = pValue;
+      this.probabilitySlower = probabilitySlower;
+      this.verdict = verdict;
+    }
+
+    public Metric getMetric() {
+      return metric;
+    }
+
+    /** Returns the number of frames of the baseline the metric was measured for. */
+    public long getBaselineCount() {
+      return baselineCount;
+    }
+
+    /** Returns the number of frames of the candidate the metric was measured for. */
+    public long getCandidateCount() {
+      return candidateCount;
+    }
+
+    public double getBaselineMean() {
+      return baselineMean;
+    }
+
+    public double getCandidateMean() {
+      return candidateMean;
+    }
+
+    /**
+     * Returns the change of the mean relative to the baseline, positive if the candidate is slower.
+     */
+    public double getRelativeChange() {
+      return candidateMean / baselineMean - 1;
+    }
+
+    /** Returns the lower end of the bootstrap confidence interval of the relative change. */
+    public double getConfidenceLow() {
+      return confidenceLow;
+    }
+
+    /** Returns the upper end of the bootstrap confidence interval of the relative change. */
+    public double getConfidenceHigh() {
+      return confidenceHigh;
+    }
+
+    /** Returns the two-sided p-value of the Mann-Whitney U test of the two distributions. */
+    public double getPValue() {
+      return pValue;
+    }
+
+    /**
+     * Returns the probability that a frame of the candidate takes longer than a frame of the
+     * baseline, counting ties as half, which is 0.5 if neither is slower.
+     */
+    public double getProbabilitySlower() {
+      return probabilitySlower;
+    }
+
+    public Verdict getVerdict() {
+      return verdict;
+    }
+  }
+
+  private final String sectionName;
+  private final String recordingName;
+  private final int phase;
+  private final List<MetricComparison> metrics;
+
+  PhaseComparison(
+      String sectionName, String recordingName, int phase, List<MetricComparison> metrics) {
+    this.sectionName = sectionName;
+    this.recordingName = recordingName;
+    this.phase = phase;
+    this.metrics = metrics;
+  }
+
+  public String getSectionName() {
+    return sectionName;
+  }
+
+  public String getRecordingName() {
+    return recordingName;
+  }
+
+  /** Returns the phase number stored in the recording. */
+  public int getPhase() {
+    return phase;
+  }
+
+  /** Returns whether the candidate reached the phase. */
+  public boolean isMissing() {
+    return metrics == null;
+  }
+
+  /** Returns the compared metrics, or an empty list if the candidate did not reach the phase. */
+  public List<MetricComparison> getMetrics() {
+    return metrics == null ? Collections.emptyList() : Collections.unmodifiableList(metrics);
+  }
+
+  /**
+   * Returns {@link Verdict#MISSING} if the candidate did not reach the phase, otherwise the worst
+   * verdict of its metrics.
+   */
+  public Verdict getVerdict() {
+    if (metrics == null) {
+      return Verdict.MISSING;
+    }
+    boolean improved = false;
+    for (MetricComparison metric : metrics) {
+      if (metric.getVerdict() == Verdict.REGRESSED) {
+        return Verdict.REGRESSED;
+      }
+      improved |= metric.getVerdict() == Verdict.IMPROVED;
+    }
+    return improved ? Verdict.IMPROVED : Verdict.UNCHANGED;
+  }
+}
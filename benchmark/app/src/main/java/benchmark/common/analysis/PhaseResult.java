@@ -0,0 +1,314 @@
+/*
+ * Copyright 2021, Brown University, Providence, RI.
+ * Rahul Shahi, Sherief Reda, Seif Abdelaziz
+ *
+ *                        All Rights Reserved
+ *
+ * Permission to use, copy, modify, and distribute this software and
+ * its documentation for any purpose other than its incorporation into a
+ * commercial product or service is hereby granted without fee, provided
+ * that the above copyright notice appear in all copies and that both
+ * that copyright notice and this permission notice appear in supporting
+ * documentation, and that the name of Brown University not be used in
+ * advertising or publicity pertaining to distribution of the software
+ * without specific, written prior permission.
+ *
+ * BROWN UNIVERSITY DISCLAIMS ALL WARRANTIES WITH REGARD TO THIS SOFTWARE,
+ * INCLUDING ALL IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR ANY
+ * PARTICULAR PURPOSE.  IN NO EVENT SHALL BROWN UNIVERSITY BE LIABLE FOR
+ * ANY SPECIAL, INDIRECT OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF
+ * OR IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package benchmark.common.analysis;
+
+import benchmark.common.framelog.FrameLog;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+/** Statistics of one phase of a benchmark section, filled in by {@link FrameLogAnalyzer}. */
+public class PhaseResult {
+  private final int phase;
+  private final Map<Metric, LogHistogram> histograms = new EnumMap<>(Metric.class);
+  private final Map<Metric, Long> unavailableCounts = new EnumMap<>(Metric.class);
+  private final long[] boundCounts = new long[FrameBound.values().length];
+  private final long[] lastValues = new long[Metric.values().length];
+  private long frameCount;
+  private long firstFrameStart;
+  private long lastFrameStart;
+  private long hudTime;
+  // Thermal state, filled in by ThermalLogAnalyzer.
+  private long thermalSampleCount;
+  private long maxThermalStatus = FrameLog.UNAVAILABLE;
+  private long maxTemperature = FrameLog.UNAVAILABLE;
+  private double clockRatio = Double.NaN;
+  private double clockLimitRatio = Double.NaN;
+  // Battery power, filled in by PowerLogAnalyzer.
+  private long powerSampleCount;
+  private long pluggedSampleCount;
+  private double averagePower = Double.NaN;
+  // CPU time per thread role and core cluster, filled in by CoreLogAnalyzer.
+  private List<String> clusterNames = Collections.emptyList();
+  private long[] clusterTimes = new long[0];
+
+  PhaseResult(int phase) {
+    this.phase = phase;
+    for (Metric metric : Metric.values()) {
+      histograms.put(metric, new LogHistogram());
+    }
+  }
+
+  /**
+   * Adds a frame and returns the time since the previous frame of the phase without the time spent
+   * drawing the performance HUD in between, or -1 for the first frame.
+   */
+  /* package-private */ long addFrame(long frameStart, long hudTime) {
+    long interval = -1;
+    if (frameCount == 0) {
+      firstFrameStart = frameStart;
+    } else {
+      interval = frameStart - lastFrameStart - hudTime;
+      this.hudTime += hudTime;
+      histograms.get(Metric.FRAME_TIME).record(interval);
+    }
+    lastFrameStart = frameStart;
+    frameCount++;
+    return interval;
+  }
+
+  /* package-private */ void addBound(FrameBound bound) {
+    boundCounts[bound.ordinal()]++;
+  }
+
+  /* package-private */ void setLastValue(Metric metric, long value) {
+    lastValues[metric.ordinal()] = value;
+  }
+
+  /* package-private */ void addThermalSample(long thermalStatus, long temperature) {
+    thermalSampleCount++;
+    maxThermalStatus = Math.max(maxThermalStatus, thermalStatus);
+    maxTemperature = Math.max(maxTemperature, temperature);
+  }
+
+  /* package-private */ void setClockRatios(double clockRatio, double clockLimitRatio) {
+    this.clockRatio = clockRatio;
+    this.clockLimitRatio = clockLimitRatio;
+  }
+
+  /* package-private */ void setPower(
+      long sampleCount, long pluggedSampleCount, double averagePower) {
+    this.powerSampleCount = sampleCount;
+    this.pluggedSampleCount = pluggedSampleCount;
+    this.averagePower = averagePower;
+  }
+
+  /* package-private */ void setClusterTimes(List<String> clusterNames, long[] clusterTimes) {
+    this.clusterNames = clusterNames;
+    this.clusterTimes = clusterTimes;
+  }
+
+  /* package-private */ void addUnavailable(Metric metric) {
+    unavailableCounts.merge(metric, 1L, Long::sum);
+  }
+
+  /** Returns the phase number stored in the recording. */
+  public int getPhase() {
+    return phase;
+  }
+
+  public long getFrameCount() {
+    return frameCount;
+  }
+
+  /** Returns the start of the first frame of the phase, see {@link FrameLog#FRAME_START}. */
+  public long getFirstFrameStart() {
+    return firstFrameStart;
+  }
+
+  /** Returns the start of the last frame of the phase, see {@link FrameLog#FRAME_START}. */
+  public long getLastFrameStart() {
+    return lastFrameStart;
+  }
+
+  /**
+   * Returns the time between the first and the last frame of the phase in nanoseconds, without the
+   * time spent drawing the performance HUD.
+   */
+  public long getDuration() {
+    return lastFrameStart - firstFrameStart - hudTime;
+  }
+
+  /** Returns the time spent drawing the performance HUD during the phase in nanoseconds. */
+  public long getHudTime() {
+    return hudTime;
+  }
+
+  /** Returns the average frame rate over the phase, or NaN for fewer than two frames. */
+  public double getFps() {
+    if (frameCount < 2 || getDuration() <= 0) {
+      return Double.NaN;
+    }
+    return 1e9 * (frameCount - 1) / getDuration();
+  }
+
+  /** Returns the histogram of the given metric in nanoseconds. */
+  public LogHistogram getHistogram(Metric metric) {
+    return histograms.get(metric);
+  }
+
+  /**
+   * Returns the value of the metric in the last frame of the phase it was available for, or 0. For
+   * the GPU memory metrics this is what was still allocated when the phase ended.
+   */
+  public long getLastValue(Metric metric) {
+    return lastValues[metric.ordinal()];
+  }
+
+  /** Returns the number of frames of the phase that were limited by the given resource. */
+  public long getBoundCount(FrameBound bound) {
+    return boundCounts[bound.ordinal()];
+  }
+
+  /**
+   * Returns the fraction of classified frames that were limited by the given resource, or NaN if
+   * no frame could be classified.
+   */
+  public double getBoundFraction(FrameBound bound) {
+    long classified = 0;
+    for (long count : boundCounts) {
+      classified += count;
+    }
+    return classified == 0 ? Double.NaN : (double) getBoundCount(bound) / classified;
+  }
+
+  /** Returns the number of thermal log samples taken during the phase. */
+  public long getThermalSampleCount() {
+    return thermalSampleCount;
+  }
+
+  /** Returns the highest thermal status during the phase, or {@link FrameLog#UNAVAILABLE}. */
+  public long getMaxThermalStatus() {
+    return maxThermalStatus;
+  }
+
+  /**
+   * Returns the highest temperature of any thermal zone during the phase in millidegrees Celsius,
+   * or {@link FrameLog#UNAVAILABLE}.
+   */
+  public long getMaxTemperature() {
+    return maxTemperature;
+  }
+
+  /**
+   * Returns the fastest CPU clock reached during the phase as a fraction of the fastest clock
+   * reached anywhere in the thermal log, or NaN if no clock was sampled. A low ratio may just mean
+   * that the phase needed less CPU, so it does not count as throttling.
+   */
+  public double getClockRatio() {
+    return clockRatio;
+  }
+
+  /**
+   * Returns the lowest clock limit of any core during the phase as a fraction of that core's
+   * highest limit in the thermal log, or NaN if no limit was sampled.
+   */
+  public double getClockLimitRatio() {
+    return clockLimitRatio;
+  }
+
+  /**
+   * Returns whether the device throttled during the phase: a CPU clock limit dropped compared to
+   * the rest of the thermal log, see {@link ThermalLogAnalyzer#THROTTLE_RATIO}, or the thermal
+   * status rose, see {@link ThermalLogAnalyzer#THROTTLE_STATUS}.
+   */
+  public boolean isThrottled() {
+    return clockLimitRatio < ThermalLogAnalyzer.THROTTLE_RATIO
+        || maxThermalStatus >= ThermalLogAnalyzer.THROTTLE_STATUS;
+  }
+
+  /** Returns the number of battery readings taken on battery during the phase. */
+  public long getPowerSampleCount() {
+    return powerSampleCount;
+  }
+
+  /**
+   * Returns the number of battery readings of the phase left out because a charger was plugged in.
+   */
+  public long getPluggedSampleCount() {
+    return pluggedSampleCount;
+  }
+
+  /**
+   * Returns whether a charger was plugged in during part of the phase, so that its power only
+   * covers the rest of it, if any.
+   */
+  public boolean wasPlugged() {
+    return pluggedSampleCount > 0;
+  }
+
+  /** Returns the average battery power during the phase in watts, or NaN if it was not read. */
+  public double getAveragePower() {
+    return averagePower;
+  }
+
+  /** Returns the energy drawn from the battery during the phase in joules, or NaN. */
+  public double getEnergy() {
+    return averagePower * getDuration() / 1e9;
+  }
+
+  /** Returns the energy per frame in joules, or NaN. */
+  public double getEnergyPerFrame() {
+    return averagePower / getFps();
+  }
+
+  /**
+   * Returns the frames rendered per joule, which equals the frame rate per watt of power, or NaN.
+   */
+  public double getFramesPerJoule() {
+    return getFps() / averagePower;
+  }
+
+  /**
+   * Returns the names of the CPU core clusters from the slowest to the fastest, or an empty list if
+   * no core log was read.
+   */
+  public List<String> getClusterNames() {
+    return clusterNames;
+  }
+
+  /**
+   * Returns the CPU time in nanoseconds that the threads of a role used on a cluster during the
+   * phase.
+   *
+   * @param role {@link benchmark.common.framelog.CoreLog#RENDER} or {@link
+   *     benchmark.common.framelog.CoreLog#WORKER}
+   */
+  public long getClusterTime(int role, int cluster) {
+    return clusterTimes[role * clusterNames.size() + cluster];
+  }
+
+  /**
+   * Returns the share of the CPU time of a role's threads that they used on a cluster, or NaN if
+   * they did not run during the phase.
+   */
+  public double getClusterResidency(int role, int cluster) {
+    long total = 0;
+    for (int i = 0; i < clusterNames.size(); i++) {
+      total += getClusterTime(role, i);
+    }
+    return total == 0 ? Double.NaN : (double) getClusterTime(role, cluster) / total;
+  }
+
+  /**
+   * Returns the number of frames for which the given metric was logged as {@link
+   * benchmark.common.framelog.FrameLog#UNAVAILABLE}. These frames are not part of its histogram.
+   */
+  public long getUnavailableCount(Metric metric) {
+    Long count = unavailableCounts.get(metric);
+    return count == null ? 0L : count;
+  }
+}
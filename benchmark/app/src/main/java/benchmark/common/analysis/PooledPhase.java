@@ -0,0 +1,75 @@
+/*
+ * Copyright 2021, Brown University, Providence, RI.
+ * Rahul Shahi, Sherief Reda, Seif Abdelaziz
+ *
+ *                        All Rights Reserved
+ *
+ * Permission to use, copy, modify, and distribute this software and
+ * its documentation for any purpose other than its incorporation into a
+ * commercial product or service is hereby granted without fee, provided
+ * that the above copyright notice appear in all copies and that both
+ * that copyright notice and this permission notice appear in supporting
+ * documentation, and that the name of Brown University not be used in
+ * advertising or publicity pertaining to distribution of the software
+ * without specific, written prior permission.
+ *
+ * BROWN UNIVERSITY DISCLAIMS ALL WARRANTIES WITH REGARD TO THIS SOFTWARE,
+ * INCLUDING ALL IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR ANY
+ * PARTICULAR PURPOSE.  IN NO EVENT SHALL BROWN UNIVERSITY BE LIABLE FOR
+ * ANY SPECIAL, INDIRECT OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF
+ * OR IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+
+package benchmark.common.analysis;
+
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/** The histograms of one phase, merged over all passes of a run. */
+/* package-private */ class PooledPhase {
+  final String sectionName;
+  final String recordingName;
+  final int phase;
+  final Map<Metric, LogHistogram> histograms = new EnumMap<>(Metric.class);
+
+  PooledPhase(String sectionName, String recordingName, int phase) {
+    this.sectionName = sectionName;
+    this.recordingName = recordingName;
+    this.phase = phase;
+    for (Metric metric : Metric.values()) {
+      histograms.put(metric, new LogHistogram());
+    }
+  }
+
+  /**
+   * Merges the histograms of the phases of all passes of a run, keyed by {@link #key} in the order
+   * of the run.
+   */
+  static Map<String, PooledPhase> pool(List<SectionResult> sections) {
+    Map<String, PooledPhase> phases = new LinkedHashMap<>();
+    for (SectionResult section : sections) {
+      for (PhaseResult phase : section.getPhases()) {
+        String key = key(section.getRecordingName(), phase.getPhase());
+        PooledPhase pooled = phases.get(key);
+        if (pooled == null) {
+          pooled = new PooledPhase(
+              section.getSectionName(), section.getRecordingName(), phase.getPhase());
+          phases.put(key, pooled);
+        }
+        for (Metric metric : Metric.values()) {
+          pooled.histograms.get(metric).add(phase.getHistogram(metric));
+        }
+      }
+    }
+    return phases;
+  }
+
+  static String key(String recordingName, int phase) {
+    return recordingName + '\n' + phase;
+  }
+}
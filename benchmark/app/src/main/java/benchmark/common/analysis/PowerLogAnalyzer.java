@@ -0,0 +1,104 @@
+/*
+ * Copyright 2021, Brown University, Providence, RI.
+ * Rahul Shahi, Sherief Reda, Seif Abdelaziz
+ *
+ *                        All Rights Reserved
+ *
+ * Permission to use, copy, modify, and distribute this software and
+ * its documentation for any purpose other than its incorporation into a
+ * commercial product or service is hereby granted without fee, provided
+ * that the above copyright notice appear in all copies and that both
+ * that copyright notice and this permission notice appear in supporting
+ * documentation, and that the name of Brown University not be used in
+ * advertising or publicity pertaining to distribution of the software
+ * without specific, written prior permission.
+ *
+ * BROWN UNIVERSITY DISCLAIMS ALL WARRANTIES WITH REGARD TO THIS SOFTWARE,
+ * INCLUDING ALL IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR ANY
+ * PARTICULAR PURPOSE.  IN NO EVENT SHALL BROWN UNIVERSITY BE LIABLE FOR
+ * ANY SPECIAL, INDIRECT OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF
+ * OR IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+
+package benchmark.common.analysis;
+
+import benchmark.common.framelog.FrameLog;
+import benchmark.common.framelog.FrameLogReader;
+import benchmark.common.framelog.PowerLog;
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Integrates the battery power recorded in a {@link PowerLog} over every phase of a frame log
+ * analyzed by {@link FrameLogAnalyzer}.
+ *
+ * <p>Power is integrated with the trapezoidal rule between consecutive readings of the same phase,
+ * and divided by the time the readings span to give the phase's average power. Energy per frame
+ * and frames per joule follow from the average power and the phase's frame rate.
+ *
+ * <p>While a charger is plugged in, the battery current no longer measures what the device draws.
+ * Readings taken while plugged in are left out and counted, so that phases can be flagged; a phase
+ * that was plugged in throughout has no power. Logs without the plugged column count as on
+ * battery.
+ */
+public class PowerLogAnalyzer extends SideLogAnalyzer {
+  @Override
+  protected void analyzeSection(
+      FrameLogReader reader, FrameLogReader.Section section, SectionResult result)
+      throws IOException {
+    List<PhaseResult> phases = result.getPhases();
+    // Per phase: readings, energy in joules between the first and last reading, and their span.
+    long[] counts = new long[phases.size()];
+    double[] energies = new double[phases.size()];
+    long[] spans = new long[phases.size()];
+    double[] firstPowers = new double[phases.size()];
+    long[] pluggedCounts = new long[phases.size()];
+    int pluggedColumn = section.getColumnIndex(PowerLog.COLUMN_NAMES[PowerLog.PLUGGED]);
+
+    long[] record = new long[section.getColumnCount()];
+    int lastPhase = -1;
+    long lastTime = 0;
+    double lastPower = 0;
+    while (reader.nextRecord(record)) {
+      long time = record[PowerLog.TIME];
+      int phase = findPhase(phases, time);
+      if (phase < 0
+          || record[PowerLog.CURRENT] == FrameLog.UNAVAILABLE
+          || record[PowerLog.VOLTAGE] == FrameLog.UNAVAILABLE) {
+        lastPhase = -1;
+        continue;
+      }
+      if (pluggedColumn >= 0 && record[pluggedColumn] == 1) {
+        pluggedCounts[phase]++;
+        lastPhase = -1;
+        continue;
+      }
+      // Microamperes times microvolts.
+      double power = Math.abs((double) record[PowerLog.CURRENT]) * record[PowerLog.VOLTAGE] * 1e-12;
+      if (counts[phase] == 0) {
+        firstPowers[phase] = power;
+      }
+      if (phase == lastPhase) {
+        energies[phase] += (lastPower + power) / 2 * (time - lastTime) * 1e-9;
+        spans[phase] += time - lastTime;
+      }
+      counts[phase]++;
+      lastPhase = phase;
+      lastTime = time;
+      lastPower = power;
+    }
+
+    for (int i = 0; i < phases.size(); i++) {
+      double averagePower;
+      if (spans[i] > 0) {
+        averagePower = energies[i] / (spans[i] * 1e-9);
+      } else {
+        averagePower = counts[i] > 0 ? firstPowers[i] : Double.NaN;
+      }
+      phases.get(i).setPower(counts[i], pluggedCounts[i], averagePower);
+    }
+  }
+}
@@ -0,0 +1,177 @@
+/*
+ * Copyright 2021, Brown University, Providence, RI.
+ * Rahul Shahi, Sherief Reda, Seif Abdelaziz
+ *
+ *                        All Rights Reserved
+ *
+ * Permission to use, copy, modify, and distribute this software and
+ * its documentation for any purpose other than its incorporation into a
+ * commercial product or service is hereby granted without fee, provided
+ * that the above copyright notice appear in all copies and that both
+ * that copyright notice and this permission notice appear in supporting
+ * documentation, and that the name of Brown University not be used in
+ * advertising or publicity pertaining to distribution of the software
+ * without specific, written prior permission.
+ *
+ * BROWN UNIVERSITY DISCLAIMS ALL WARRANTIES WITH REGARD TO THIS SOFTWARE,
+ * INCLUDING ALL IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR ANY
+ * PARTICULAR PURPOSE.  IN NO EVENT SHALL BROWN UNIVERSITY BE LIABLE FOR
+ * ANY SPECIAL, INDIRECT OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF
+ * OR IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+
+package benchmark.common.analysis;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Properties;
+
+/**
+ * Per-frame times of a reference device that {@link BenchmarkScore} normalizes scores to, read from
+ * a properties file. The file checked in as the asset {@link #ASSET_NAME} makes scores comparable
+ * across devices and releases; changing it rescales every score.
+ *
+ * <p>Keys, with times in nanoseconds:
+ *
+ * <ul>
+ *   <li>{@code name}: the name reported with every score;
+ *   <li>{@code recordings}: the comma separated recordings a complete run plays back;
+ *   <li>{@code weight.<category>}: the weight of a {@link BenchmarkScore.Category} in the score;
+ *   <li>{@code <recording>.weight}: the weight of a recording in every category;
+ *   <li>{@code <recording>.<phase>.<category>_ns}: the scored time of a phase of a recording,
+ *       see {@link BenchmarkScore.Category#getQuantile()};
+ *   <li>{@code <recording>.<category>_ns}: the scored time of the phases without their own key.
+ * </ul>
+ *
+ * Weights default to 1.
+ */
+public class ReferenceProfile {
+  /** Name of the reference profile in the app's assets. */
+  public static final String ASSET_NAME = "reference-profile.properties";
+
+  private static final String TIME_SUFFIX = "_ns";
+
+  private final Properties properties;
+
+  private ReferenceProfile(Properties properties) {
+    this.properties = properties;
+  }
+
+  /** Reads a profile from a properties file in UTF-8. */
+  public static ReferenceProfile load(InputStream in) throws IOException {
+    Properties properties = new Properties();
+    properties.load(new InputStreamReader(in, StandardCharsets.UTF_8));
+    return new ReferenceProfile(properties);
+  }
+
+  /**
+   * Creates a profile from the results of a run on the reference device, pooling the passes of
+   * every phase, so that this device scores {@link BenchmarkScore#REFERENCE_SCORE} in every
+   * category it measured.
+   */
+  public static ReferenceProfile fromResults(String name, List<SectionResult> sections) {
+    Properties properties = new Properties();
+    properties.setProperty("name", name);
+    List<String> recordings = new ArrayList<>();
+    for (PooledPhase phase : PooledPhase.pool(sections).values()) {
+      if (!recordings.contains(phase.recordingName)) {
+        recordings.add(phase.recordingName);
+      }
+      for (BenchmarkScore.Category category : BenchmarkScore.Category.values()) {
+        long time = category.measure(phase.histograms.get(category.getMetric()));
+        if (time > 0) {
+          properties.setProperty(
+              phase.recordingName + '.' + phase.phase + '.' + category.getKey() + TIME_SUFFIX,
+              Long.toString(time));
+        }
+      }
+    }
+    properties.setProperty("recordings", String.join(",", recordings));
+    return new ReferenceProfile(properties);
+  }
+
+  /**
+   * Writes the profile in sorted key order and without the timestamp of {@link
+   * Properties#store}, so that profiles of the same results are identical.
+   */
+  public void store(Writer out) throws IOException {
+    StringWriter escaped = new StringWriter();
+    properties.store(escaped, null);
+    List<String> lines = new ArrayList<>();
+    for (String line : escaped.toString().split("\r?\n")) {
+      if (!line.startsWith("#")) {
+        lines.add(line);
+      }
+    }
+    Collections.sort(lines);
+    out.write("# ARBench reference profile, see ReferenceProfile.java\n");
+    for (String line : lines) {
+      out.write(line + "\n");
+    }
+    out.flush();
+  }
+
+  public String getName() {
+    return properties.getProperty("name", "unnamed");
+  }
+
+  /** Returns the recordings a complete run plays back. */
+  public List<String> getRecordings() {
+    String recordings = properties.getProperty("recordings", "").trim();
+    if (recordings.isEmpty()) {
+      return Collections.emptyList();
+    }
+    List<String> names = new ArrayList<>();
+    for (String name : recordings.split(",")) {
+      names.add(name.trim());
+    }
+    return names;
+  }
+
+  /** Returns the weight of a category in the score. */
+  public double getWeight(BenchmarkScore.Category category) {
+    return getDouble("weight." + category.getKey(), 1);
+  }
+
+  /** Returns the weight of a recording in every category. */
+  public double getRecordingWeight(String recordingName) {
+    return getDouble(recordingName + ".weight", 1);
+  }
+
+  /**
+   * Returns the scored time of a category in a phase of a recording on the reference device in
+   * nanoseconds, or NaN if the profile does not score it.
+   */
+  public double getReference(String recordingName, int phase, BenchmarkScore.Category category) {
+    String suffix = category.getKey() + TIME_SUFFIX;
+    double reference = getDouble(recordingName + '.' + phase + '.' + suffix, Double.NaN);
+    if (Double.isNaN(reference)) {
+      reference = getDouble(recordingName + '.' + suffix, Double.NaN);
+    }
+    return reference;
+  }
+
+  private double getDouble(String key, double defaultValue) {
+    String value = properties.getProperty(key);
+    if (value == null) {
+      return defaultValue;
+    }
+    try {
+      return Double.parseDouble(value.trim());
+    } catch (NumberFormatException e) {
+      throw new IllegalArgumentException(
+          String.format(Locale.US, "Reference profile key %s is not a number: %s", key, value));
+    }
+  }
+}
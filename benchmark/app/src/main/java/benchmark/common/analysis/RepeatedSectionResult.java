@@ -0,0 +1,218 @@
+/*
+ * Copyright 2021, Brown University, Providence, RI.
+ * Rahul Shahi, Sherief Reda, Seif Abdelaziz
+ *
+ *                        All Rights Reserved
+ *
+ * Permission to use, copy, modify, and distribute this software and
+ * its documentation for any purpose other than its incorporation into a
+ * commercial product or service is hereby granted without fee, provided
+ * that the above copyright notice appear in all copies and that both
+ * that copyright notice and this permission notice appear in supporting
+ * documentation, and that the name of Brown University not be used in
+ * advertising or publicity pertaining to distribution of the software
+ * without specific, written prior permission.
+ *
+ * BROWN UNIVERSITY DISCLAIMS ALL WARRANTIES WITH REGARD TO THIS SOFTWARE,
+ * INCLUDING ALL IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR ANY
+ * PARTICULAR PURPOSE.  IN NO EVENT SHALL BROWN UNIVERSITY BE LIABLE FOR
+ * ANY SPECIAL, INDIRECT OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF
+ * OR IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+
+package benchmark.common.analysis;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedSet;
+import java.util.TreeSet;
+
+/**
+ * Frame rate of every phase of a section over repeated passes, and whether it has settled.
+ *
+ * <p>Every pass of a section adds a {@link SectionResult} to the frame log. Passes are compared
+ * phase by phase, matching phases by their number in the recording and using the average frame
+ * rate of each phase. The spread over
+ * the passes is given as the sample standard deviation, the coefficient of variation and a 95%
+ * confidence interval of the mean from Student's t distribution, since there are only a few
+ * passes. A phase that a pass did not reach is left out of that phase's statistics.
+ */
+public class RepeatedSectionResult {
+  /** Fewest passes whose coefficient of variation is trusted to decide that a section is stable. */
+  public static final int MIN_STABLE_PASSES = 3;
+
+  // Two-sided 97.5% quantiles of Student's t distribution by degrees of freedom, starting at 1.
+  private static final double[] T_QUANTILES = {
+    12.706, 4.303, 3.182, 2.776, 2.571, 2.447, 2.365, 2.306, 2.262, 2.228,
+    2.201, 2.179, 2.160, 2.145, 2.131, 2.120, 2.110, 2.101, 2.093, 2.086,
+    2.080, 2.074, 2.069, 2.064, 2.060, 2.056, 2.052, 2.048, 2.045, 2.042,
+  };
+  // Quantile of the normal distribution, used beyond the table.
+  private static final double Z_QUANTILE = 1.960;
+
+  private final List<SectionResult> passes;
+  // Average frame rate of every phase in every pass, NaN where a pass has no such phase.
+  private final double[][] fps;
+  private final int[] phaseNumbers;
+
+  /** @param passes results of the passes of one section, in the order they ran */
+  public RepeatedSectionResult(List<SectionResult> passes) {
+    if (passes.isEmpty()) {
+      throw new IllegalArgumentException("A repeated section needs at least one pass");
+    }
+    this.passes = new ArrayList<>(passes);
+    SortedSet<Integer> numbers = new TreeSet<>();
+    for (SectionResult pass : passes) {
+      for (PhaseResult phase : pass.getPhases()) {
+        numbers.add(phase.getPhase());
+      }
+    }
+    phaseNumbers = new int[numbers.size()];
+    Map<Integer, Integer> indices = new HashMap<>();
+    for (int number : numbers) {
+      indices.put(number, indices.size());
+      phaseNumbers[indices.size() - 1] = number;
+    }
+    fps = new double[phaseNumbers.length][passes.size()];
+    for (double[] phaseFps : fps) {
+      Arrays.fill(phaseFps, Double.NaN);
+    }
+    for (int i = 0; i < passes.size(); i++) {
+      for (PhaseResult phase : passes.get(i).getPhases()) {
+        fps[indices.get(phase.getPhase())][i] = phase.getFps();
+      }
+    }
+  }
+
+  /**
+   * Groups the sections of a frame log into repeated sections. Consecutive sections of the same
+   * recording are passes of one repeated section.
+   */
+  public static List<RepeatedSectionResult> group(List<SectionResult> sections) {
+    List<RepeatedSectionResult> groups = new ArrayList<>();
+    int start = 0;
+    for (int i = 1; i <= sections.size(); i++) {
+      if (i == sections.size()
+          || !sections.get(i).getRecordingName().equals(sections.get(start).getRecordingName())) {
+        groups.add(new RepeatedSectionResult(sections.subList(start, i)));
+        start = i;
+      }
+    }
+    return groups;
+  }
+
+  public String getSectionName() {
+    return passes.get(0).getSectionName();
+  }
+
+  public String getRecordingName() {
+    return passes.get(0).getRecordingName();
+  }
+
+  /** Returns the results of the passes in the order they ran. */
+  public List<SectionResult> getPasses() {
+    return Collections.unmodifiableList(passes);
+  }
+
+  public int getPassCount() {
+    return passes.size();
+  }
+
+  /** Returns the number of distinct phases reached by any pass. */
+  public int getPhaseCount() {
+    return phaseNumbers.length;
+  }
+
+  /** Returns the phase number stored in the recording for a phase index, in ascending order. */
+  public int getPhase(int phase) {
+    return phaseNumbers[phase];
+  }
+
+  /** Returns the number of passes with a frame rate for the phase. */
+  public int getSampleCount(int phase) {
+    int count = 0;
+    for (double value : fps[phase]) {
+      if (!Double.isNaN(value)) {
+        count++;
+      }
+    }
+    return count;
+  }
+
+  /** Returns the mean frame rate of the phase over the passes, or NaN. */
+  public double getMean(int phase) {
+    double sum = 0;
+    for (double value : fps[phase]) {
+      if (!Double.isNaN(value)) {
+        sum += value;
+      }
+    }
+    return sum / getSampleCount(phase);
+  }
+
+  /** Returns the sample standard deviation of the phase's frame rate, or NaN for one pass. */
+  public double getStandardDeviation(int phase) {
+    int count = getSampleCount(phase);
+    if (count < 2) {
+      return Double.NaN;
+    }
+    double mean = getMean(phase);
+    double squares = 0;
+    for (double value : fps[phase]) {
+      if (!Double.isNaN(value)) {
+        squares += (value - mean) * (value - mean);
+      }
+    }
+    return Math.sqrt(squares / (count - 1));
+  }
+
+  /** Returns the standard deviation of the phase's frame rate relative to its mean, or NaN. */
+  public double getCoefficientOfVariation(int phase) {
+    return getStandardDeviation(phase) / getMean(phase);
+  }
+
+  /**
+   * Returns half the width of the 95% confidence interval of the phase's mean frame rate, or NaN
+   * for one pass. The interval is the mean plus or minus this value.
+   */
+  public double getConfidenceHalfWidth(int phase) {
+    int count = getSampleCount(phase);
+    if (count < 2) {
+      return Double.NaN;
+    }
+    double quantile = count - 1 <= T_QUANTILES.length ? T_QUANTILES[count - 2] : Z_QUANTILE;
+    return quantile * getStandardDeviation(phase) / Math.sqrt(count);
+  }
+
+  /**
+   * Returns the largest coefficient of variation of any phase, or NaN if a phase has fewer than
+   * two frame rates.
+   */
+  public double getMaxCoefficientOfVariation() {
+    double max = 0;
+    for (int phase = 0; phase < getPhaseCount(); phase++) {
+      double variation = getCoefficientOfVariation(phase);
+      if (Double.isNaN(variation)) {
+        return Double.NaN;
+      }
+      max = Math.max(max, variation);
+    }
+    return max;
+  }
+
+  /**
+   * Returns whether there are at least {@link #MIN_STABLE_PASSES} passes and the frame rate of
+   * every phase varies by at most the given coefficient of variation.
+   */
+  public boolean isStable(double maxCoefficientOfVariation) {
+    return passes.size() >= MIN_STABLE_PASSES
+        && getMaxCoefficientOfVariation() <= maxCoefficientOfVariation;
+  }
+}
@@ -0,0 +1,242 @@
+/*
+ * Copyright 2021, Brown University, Providence, RI.
+ * Rahul Shahi, Sherief Reda, Seif Abdelaziz
+ *
+ *                        All Rights Reserved
+ *
+ * Permission to use, copy, modify, and distribute this software and
+ * its documentation for any purpose other than its incorporation into a
+ * commercial product or service is hereby granted without fee, provided
+ * that the above copyright notice appear in all copies and that both
+ * that copyright notice and this permission notice appear in supporting
+ * documentation, and that the name of Brown University not be used in
+ * advertising or publicity pertaining to distribution of the software
+ * without specific, written prior permission.
+ *
+ * BROWN UNIVERSITY DISCLAIMS ALL WARRANTIES WITH REGARD TO THIS SOFTWARE,
+ * INCLUDING ALL IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR ANY
+ * PARTICULAR PURPOSE.  IN NO EVENT SHALL BROWN UNIVERSITY BE LIABLE FOR
+ * ANY SPECIAL, INDIRECT OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF
+ * OR IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+
+package benchmark.common.analysis;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TimeZone;
+
+/**
+ * A self-describing JSON record of one benchmark run: the device and its software, the settings of
+ * the run, the sections it played back, and the analyzed results with every histogram. A bundle can
+ * be diffed against others and loaded without the device or the app, and names the frame log and
+ * side logs it was computed from.
+ *
+ * <p>Device and setting values are strings or booleans chosen by the caller, so this class does not
+ * depend on Android. Unknown values are left out rather than guessed.
+ */
+public class ResultBundle {
+  /** Name of the bundle in the app's external files directory, next to the frame log. */
+  public static final String FILE_NAME = "result-bundle.json";
+  /** Version of the layout, raised when keys are removed or change meaning. */
+  public static final int FORMAT_VERSION = 1;
+
+  private final Map<String, Object> device = new LinkedHashMap<>();
+  private final Map<String, Object> settings = new LinkedHashMap<>();
+  private final List<String[]> enabledSections = new ArrayList<>();
+  private final Map<String, File> logFiles = new LinkedHashMap<>();
+  private final List<SectionResult> sections;
+  private BenchmarkScore score;
+  private int maxPasses = 1;
+  private double maxVariation = Double.NaN;
+  private int coolDownSeconds;
+
+  /** @param sections the analyzed sections of all passes of the run */
+  public ResultBundle(List<SectionResult> sections) {
+    this.sections = sections;
+  }
+
+  /** Adds a fact about the device, e.g. its model or GL renderer. Null values are left out. */
+  public ResultBundle putDevice(String key, String value) {
+    if (value != null) {
+      device.put(key, value);
+    }
+    return this;
+  }
+
+  /** Adds a setting of the run. */
+  public ResultBundle putSetting(String key, String value) {
+    settings.put(key, value);
+    return this;
+  }
+
+  /** Adds a setting of the run. */
+  public ResultBundle putSetting(String key, boolean value) {
+    settings.put(key, value);
+    return this;
+  }
+
+  /** Adds a section that was selected to run, in the order they ran. */
+  public ResultBundle addEnabledSection(String sectionName, String recordingName) {
+    enabledSections.add(new String[] {sectionName, recordingName});
+    return this;
+  }
+
+  /** Adds a log the results were computed from, if it exists. */
+  public ResultBundle addLogFile(String name, File file) {
+    if (file.exists()) {
+      logFiles.put(name, file);
+    }
+    return this;
+  }
+
+  public ResultBundle setScore(BenchmarkScore score) {
+    this.score = score;
+    return this;
+  }
+
+  /**
+   * Sets how sections were repeated, see {@link RepeatedSectionResult}.
+   *
+   * @param maxVariation the largest coefficient of variation of the FPS of a stable section
+   */
+  public ResultBundle setRepetition(int maxPasses, double maxVariation, int coolDownSeconds) {
+    this.maxPasses = maxPasses;
+    this.maxVariation = maxVariation;
+    this.coolDownSeconds = coolDownSeconds;
+    return this;
+  }
+
+  /**
+   * Writes the bundle into the given directory. It is written to a temporary file first and renamed
+   * over {@link #FILE_NAME}, so readers either see the previous bundle or the complete new one,
+   * never a partial file.
+   *
+   * @return the bundle file
+   */
+  public File write(File directory) throws IOException {
+    File file = new File(directory, FILE_NAME);
+    File temporaryFile = File.createTempFile(FILE_NAME, ".tmp", directory);
+    try {
+      try (FileOutputStream out = new FileOutputStream(temporaryFile)) {
+        Writer writer =
+            new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+        writeJson(writer);
+        writer.flush();
+        // Makes the contents durable before the rename makes them visible.
+        out.getFD().sync();
+      }
+      if (!temporaryFile.renameTo(file)) {
+        throw new IOException("Failed to rename " + temporaryFile + " to " + file);
+      }
+    } finally {
+      if (temporaryFile.exists() && !temporaryFile.delete()) {
+        temporaryFile.deleteOnExit();
+      }
+    }
+    return file;
+  }
+
+  /** Writes the bundle as a JSON object. */
+  public void writeJson(Writer out) throws IOException {
+    JsonWriter json = new JsonWriter(out, "  ");
+    json.beginObject();
+    json.name("format_version").value(FORMAT_VERSION);
+    SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss'Z'", Locale.US);
+    dateFormat.setTimeZone(TimeZone.getTimeZone("UTC"));
+    json.name("created").value(dateFormat.format(new Date()));
+    writeMap(json.name("device"), device);
+    writeMap(json.name("settings"), settings);
+
+    json.name("enabled_sections").beginArray();
+    for (String[] section : enabledSections) {
+      json.beginObject();
+      json.name("section").value(section[0]);
+      json.name("recording").value(section[1]);
+      json.endObject();
+    }
+    json.endArray();
+
+    json.name("logs").beginObject();
+    for (Map.Entry<String, File> entry : logFiles.entrySet()) {
+      json.name(entry.getKey()).value(entry.getValue().getAbsolutePath());
+    }
+    json.endObject();
+
+    json.name("score");
+    if (score == null) {
+      json.nullValue();
+    } else {
+      score.writeJson(json);
+    }
+
+    writeRepetition(json);
+
+    json.name("sections");
+    new ResultExporter().writeJson(sections, true, json);
+    json.endObject();
+    json.flush();
+  }
+
+  /** Writes the repetition settings and the FPS statistics of every repeated section. */
+  private void writeRepetition(JsonWriter json) throws IOException {
+    json.name("repetition").beginObject();
+    json.name("max_passes").value(maxPasses);
+    json.name("max_variation").value(maxVariation);
+    json.name("cool_down_s").value(coolDownSeconds);
+    json.name("sections").beginArray();
+    for (RepeatedSectionResult run : RepeatedSectionResult.group(sections)) {
+      json.beginObject();
+      json.name("section").value(run.getSectionName());
+      json.name("recording").value(run.getRecordingName());
+      json.name("passes").value(run.getPassCount());
+      if (Double.isNaN(maxVariation)) {
+        json.name("stable").nullValue();
+      } else {
+        json.name("stable").value(run.isStable(maxVariation));
+      }
+      json.name("phases").beginArray();
+      for (int phase = 0; phase < run.getPhaseCount(); phase++) {
+        json.beginObject();
+        json.name("phase").value(run.getPhase(phase));
+        json.name("mean_fps").value(run.getMean(phase));
+        json.name("sd_fps").value(run.getStandardDeviation(phase));
+        json.name("cv").value(run.getCoefficientOfVariation(phase));
+        json.name("ci95_half_width_fps").value(run.getConfidenceHalfWidth(phase));
+        json.endObject();
+      }
+      json.endArray();
+      json.endObject();
+    }
+    json.endArray();
+    json.endObject();
+  }
+
+  private static void writeMap(JsonWriter json, Map<String, Object> values) throws IOException {
+    json.beginObject();
+    for (Map.Entry<String, Object> entry : values.entrySet()) {
+      json.name(entry.getKey());
+      if (entry.getValue() instanceof Boolean) {
+        json.value((Boolean) entry.getValue());
+      } else {
+        json.value((String) entry.getValue());
+      }
+    }
+    json.endObject();
+  }
+}
@@ -0,0 +1,247 @@
+/*
+ * Copyright 2021, Brown University, Providence, RI.
+ * Rahul Shahi, Sherief Reda, Seif Abdelaziz
+ *
+ *                        All Rights Reserved
+ *
+ * Permission to use, copy, modify, and distribute this software and
+ * its documentation for any purpose other than its incorporation into a
+ * commercial product or service is hereby granted without fee, provided
+ * that the above copyright notice appear in all copies and that both
+ * that copyright notice and this permission notice appear in supporting
+ * documentation, and that the name of Brown University not be used in
+ * advertising or publicity pertaining to distribution of the software
+ * without specific, written prior permission.
+ *
+ * BROWN UNIVERSITY DISCLAIMS ALL WARRANTIES WITH REGARD TO THIS SOFTWARE,
+ * INCLUDING ALL IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR ANY
+ * PARTICULAR PURPOSE.  IN NO EVENT SHALL BROWN UNIVERSITY BE LIABLE FOR
+ * ANY SPECIAL, INDIRECT OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF
+ * OR IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+
+package benchmark.common.analysis;
+
+import benchmark.common.framelog.CoreLog;
+import benchmark.common.framelog.FrameLog;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Writes analyzed sections as CSV rows with one row per phase, or as JSON with every metric, so
+ * that tools off the device report exactly what the results screen shows.
+ *
+ * <p>In CSV, times are in milliseconds and empty cells mark values that were not measured. In JSON,
+ * times are in nanoseconds, other metrics are as logged, and values that were not measured are
+ * null. Metrics and frame bounds are named by the lower case names of their constants.
+ */
+public class ResultExporter {
+  // Metrics with a mean column in the CSV, after the frame time quantiles.
+  private static final Metric[] CSV_METRICS = {
+    Metric.UPDATE_TIME, Metric.INPUT_TIME, Metric.GPU_TIME, Metric.TOTAL_TIME,
+    Metric.THREAD_CPU_TIME, Metric.PROCESS_CPU_TIME, Metric.WORKER_CPU_TIME, Metric.HUD_TIME,
+  };
+
+  /** Writes the header of the CSV rows written by {@link #writeCsv}. */
+  public void writeCsvHeader(Writer out) throws IOException {
+    StringBuilder header = new StringBuilder("run,section,recording,pass,phase,frames,fps");
+    for (double quantile : FrameLogAnalyzer.REPORTED_QUANTILES) {
+      header.append(",frame_time_").append(quantileName(quantile)).append("_ms");
+    }
+    for (Metric metric : CSV_METRICS) {
+      header.append(',').append(lowerCase(metric)).append("_mean_ms");
+    }
+    for (FrameBound bound : FrameBound.values()) {
+      header.append(",bound_").append(lowerCase(bound));
+    }
+    header.append(",max_temperature_c,throttled,average_power_w,energy_per_frame_mj,plugged");
+    out.write(header.append('\n').toString());
+  }
+
+  /**
+   * Writes one CSV row per phase of the given sections. Passes count the sections of each
+   * recording within the run, starting at 1.
+   */
+  public void writeCsv(String run, List<SectionResult> sections, Writer out) throws IOException {
+    Map<String, Integer> passes = new HashMap<>();
+    for (SectionResult section : sections) {
+      int pass = passes.merge(section.getRecordingName(), 1, Integer::sum);
+      for (PhaseResult phase : section.getPhases()) {
+        StringBuilder row = new StringBuilder();
+        row.append(csvText(run)).append(',')
+            .append(csvText(section.getSectionName())).append(',')
+            .append(csvText(section.getRecordingName())).append(',')
+            .append(pass).append(',')
+            .append(phase.getPhase()).append(',')
+            .append(phase.getFrameCount()).append(',')
+            .append(csvNumber(phase.getFps()));
+        LogHistogram frameTimes = phase.getHistogram(Metric.FRAME_TIME);
+        for (double quantile : FrameLogAnalyzer.REPORTED_QUANTILES) {
+          row.append(',').append(frameTimes.getCount() == 0
+              ? "" : csvNumber(frameTimes.getValueAtQuantile(quantile) / 1e6));
+        }
+        for (Metric metric : CSV_METRICS) {
+          row.append(',').append(csvNumber(phase.getHistogram(metric).getMean() / 1e6));
+        }
+        for (FrameBound bound : FrameBound.values()) {
+          row.append(',').append(csvNumber(phase.getBoundFraction(bound)));
+        }
+        row.append(',').append(phase.getMaxTemperature() == FrameLog.UNAVAILABLE
+            ? "" : csvNumber(phase.getMaxTemperature() / 1000.0));
+        row.append(',').append(phase.getThermalSampleCount() == 0 ? "" : phase.isThrottled());
+        row.append(',').append(csvNumber(phase.getAveragePower()));
+        row.append(',').append(csvNumber(phase.getEnergyPerFrame() * 1000));
+        row.append(',').append(phase.wasPlugged());
+        out.write(row.append('\n').toString());
+      }
+    }
+  }
+
+  /**
+   * Writes the given sections as a JSON array.
+   *
+   * @param histograms whether to include the non-empty buckets of every histogram as {@code
+   *     [lowest value, highest value, count]} triples, from which any statistic can be recomputed
+   */
+  public void writeJson(List<SectionResult> sections, boolean histograms, JsonWriter json)
+      throws IOException {
+    json.beginArray();
+    for (SectionResult section : sections) {
+      json.beginObject();
+      json.name("section").value(section.getSectionName());
+      json.name("recording").value(section.getRecordingName());
+      json.name("dropped_frames").value(section.getDroppedCount());
+      json.name("overflows").value(section.getOverflowCount());
+      json.name("phases").beginArray();
+      for (PhaseResult phase : section.getPhases()) {
+        writePhase(phase, histograms, json);
+      }
+      json.endArray();
+      json.endObject();
+    }
+    json.endArray();
+  }
+
+  private void writePhase(PhaseResult phase, boolean histograms, JsonWriter json)
+      throws IOException {
+    json.beginObject();
+    json.name("phase").value(phase.getPhase());
+    json.name("frames").value(phase.getFrameCount());
+    json.name("fps").value(phase.getFps());
+    json.name("duration_ns").value(phase.getDuration());
+    json.name("hud_ns").value(phase.getHudTime());
+
+    json.name("bounds").beginObject();
+    for (FrameBound bound : FrameBound.values()) {
+      json.name(lowerCase(bound)).value(phase.getBoundFraction(bound));
+    }
+    json.endObject();
+
+    json.name("thermal").beginObject();
+    json.name("samples").value(phase.getThermalSampleCount());
+    writeAvailable(json.name("max_temperature_mc"), phase.getMaxTemperature());
+    writeAvailable(json.name("max_thermal_status"), phase.getMaxThermalStatus());
+    json.name("clock_ratio").value(phase.getClockRatio());
+    json.name("clock_limit_ratio").value(phase.getClockLimitRatio());
+    if (phase.getThermalSampleCount() == 0) {
+      json.name("throttled").nullValue();
+    } else {
+      json.name("throttled").value(phase.isThrottled());
+    }
+    json.endObject();
+
+    json.name("power").beginObject();
+    json.name("samples").value(phase.getPowerSampleCount());
+    json.name("plugged_samples").value(phase.getPluggedSampleCount());
+    json.name("average_w").value(phase.getAveragePower());
+    json.name("energy_per_frame_j").value(phase.getEnergyPerFrame());
+    json.name("frames_per_joule").value(phase.getFramesPerJoule());
+    json.endObject();
+
+    json.name("clusters").beginObject();
+    for (int role = 0; role < CoreLog.ROLES.length; role++) {
+      json.name(CoreLog.ROLES[role]).beginObject();
+      for (int cluster = 0; cluster < phase.getClusterNames().size(); cluster++) {
+        json.name(phase.getClusterNames().get(cluster))
+            .value(phase.getClusterTime(role, cluster));
+      }
+      json.endObject();
+    }
+    json.endObject();
+
+    json.name("metrics").beginObject();
+    for (Metric metric : Metric.values()) {
+      LogHistogram histogram = phase.getHistogram(metric);
+      long unavailable = phase.getUnavailableCount(metric);
+      if (histogram.getCount() == 0 && unavailable == 0) {
+        continue;
+      }
+      json.name(lowerCase(metric)).beginObject();
+      json.name("count").value(histogram.getCount());
+      json.name("unavailable").value(unavailable);
+      json.name("mean").value(histogram.getMean());
+      json.name("min").value(histogram.getMin());
+      json.name("max").value(histogram.getMax());
+      json.name("quantiles").beginObject();
+      for (double quantile : FrameLogAnalyzer.REPORTED_QUANTILES) {
+        json.name(quantileName(quantile)).value(histogram.getValueAtQuantile(quantile));
+      }
+      json.endObject();
+      if (histograms) {
+        json.name("histogram").beginArray();
+        for (int bucket = 0; bucket < histogram.getBucketCount(); bucket++) {
+          long count = histogram.getBucketCountAt(bucket);
+          if (count > 0) {
+            json.beginArray()
+                .value(histogram.bucketLowerBound(bucket))
+                .value(histogram.bucketUpperBound(bucket))
+                .value(count)
+                .endArray();
+          }
+        }
+        json.endArray();
+      }
+      json.endObject();
+    }
+    json.endObject();
+    json.endObject();
+  }
+
+  private static void writeAvailable(JsonWriter json, long value) throws IOException {
+    if (value == FrameLog.UNAVAILABLE) {
+      json.nullValue();
+    } else {
+      json.value(value);
+    }
+  }
+
+  /** Returns a name like p50 or p99_9 for a quantile. */
+  private static String quantileName(double quantile) {
+    String percent = String.format(Locale.US, "%.1f", quantile * 100);
+    return "p" + (percent.endsWith(".0")
+        ? percent.substring(0, percent.length() - 2) : percent.replace('.', '_'));
+  }
+
+  private static String lowerCase(Enum<?> constant) {
+    return constant.name().toLowerCase(Locale.ROOT);
+  }
+
+  private static String csvNumber(double value) {
+    return Double.isNaN(value) || Double.isInfinite(value)
+        ? "" : String.format(Locale.US, "%.4f", value);
+  }
+
+  private static String csvText(String text) {
+    if (text.indexOf(',') < 0 && text.indexOf('"') < 0 && text.indexOf('\n') < 0) {
+      return text;
+    }
+    return '"' + text.replace("\"", "\"\"") + '"';
+  }
+}
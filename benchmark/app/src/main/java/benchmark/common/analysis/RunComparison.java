@@ -0,0 +1,416 @@
+/*
+ * Copyright 2021, Brown University, Providence, RI.
+ * Rahul Shahi, Sherief Reda, Seif Abdelaziz
+ *
+ *                        All Rights Reserved
+ *
+ * Permission to use, copy, modify, and distribute this software and
+ * its documentation for any purpose other than its incorporation into a
+ * commercial product or service is hereby granted without fee, provided
+ * that the above copyright notice appear in all copies and that both
+ * that copyright notice and this permission notice appear in supporting
+ * documentation, and that the name of Brown University not be used in
+ * advertising or publicity pertaining to distribution of the software
+ * without specific, written prior permission.
+ *
+ * BROWN UNIVERSITY DISCLAIMS ALL WARRANTIES WITH REGARD TO THIS SOFTWARE,
+ * INCLUDING ALL IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR ANY
+ * PARTICULAR PURPOSE.  IN NO EVENT SHALL BROWN UNIVERSITY BE LIABLE FOR
+ * ANY SPECIAL, INDIRECT OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF
+ * OR IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+
+package benchmark.common.analysis;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.SplittableRandom;
+
+/**
+ * Compares a candidate run with a baseline run, e.g. before and after an OS or driver update, and
+ * decides whether the candidate regressed.
+ *
+ * <p>Each run is one or more frame logs. The passes of every phase are pooled by recording and
+ * phase number, merging their histograms, and the gated {@link Metric metrics} of every phase of
+ * the baseline are compared in two ways, both computed from the histograms so that memory does not
+ * grow with the number of frames:
+ *
+ * <ul>
+ *   <li>a Mann-Whitney U test of the two distributions, with ties within a histogram bucket;
+ *   <li>a bootstrap confidence interval of the relative change of the mean, resampling the frames
+ *       of both runs from their histograms, at most {@link #MAX_RESAMPLE_SIZE} of them per
+ *       resample.
+ * </ul>
+ *
+ * <p>A metric regressed if its mean got slower by more than its threshold, the U test is
+ * significant and the confidence interval lies above zero; it improved in the mirrored case. A
+ * candidate fails if any metric regressed or any phase of the baseline is missing. Consecutive
+ * frames are not independent, so the tests are only as good as the runs are long.
+ *
+ * <p>The comparison does not depend on Android and runs on desktop JVMs too.
+ */
+public class RunComparison {
+  /** Name of the comparison file in the app's external files directory. */
+  public static final String FILE_NAME = "comparison.json";
+  /** Directory in the app's external files directory holding the frame logs of the baseline. */
+  public static final String BASELINE_DIRECTORY = "baseline";
+  /**
+   * Most frames drawn per bootstrap resample. Runs with more frames are resampled m out of n, and
+   * the spread of the resampled means is scaled down by sqrt(m / n) to that of n frames, so that
+   * the cost of the bootstrap no longer grows with the length of the runs.
+   */
+  public static final int MAX_RESAMPLE_SIZE = 10_000;
+
+  /** Metrics to compare and when a change fails the gate. */
+  public static class Thresholds {
+    private final Map<Metric, Double> maxIncreases = new EnumMap<>(Metric.class);
+    private double alpha = 0.05;
+    private int bootstrapSamples = 1000;
+    private long seed = 1;
+
+    /** Gates the frame time at a 5% increase, and the ARCore and GPU times at 10%. */
+    public static Thresholds defaults() {
+      return new Thresholds()
+          .setMaxIncrease(Metric.FRAME_TIME, 0.05)
+          .setMaxIncrease(Metric.UPDATE_TIME, 0.10)
+          .setMaxIncrease(Metric.GPU_TIME, 0.10);
+    }
+
+    /**
+     * Compares the given time metric, failing if its mean increases by more than the given
+     * fraction of the baseline.
+     */
+    public Thresholds setMaxIncrease(Metric metric, double maxIncrease) {
+      if (!metric.isTime()) {
+        throw new IllegalArgumentException(metric + " is not a time");
+      }
+      maxIncreases.put(metric, maxIncrease);
+      return this;
+    }
+
+    /**
+     * Sets the significance level of the U test. The bootstrap interval covers 1 - alpha of the
+     * resampled changes.
+     */
+    public Thresholds setAlpha(double alpha) {
+      this.alpha = alpha;
+      return this;
+    }
+
+    public Thresholds setBootstrapSamples(int bootstrapSamples) {
+      this.bootstrapSamples = bootstrapSamples;
+      return this;
+    }
+
+    /** Sets the seed of the bootstrap, so that a comparison can be reproduced exactly. */
+    public Thresholds setSeed(long seed) {
+      this.seed = seed;
+      return this;
+    }
+
+    public Map<Metric, Double> getMaxIncreases() {
+      return maxIncreases;
+    }
+
+    public double getAlpha() {
+      return alpha;
+    }
+
+    public int getBootstrapSamples() {
+      return bootstrapSamples;
+    }
+
+    public long getSeed() {
+      return seed;
+    }
+  }
+
+  private final Thresholds thresholds;
+
+  public RunComparison(Thresholds thresholds) {
+    this.thresholds = thresholds;
+  }
+
+  /** Analyzes and compares two runs, each given as the frame logs of its passes. */
+  public List<PhaseComparison> compare(List<File> baselineLogs, List<File> candidateLogs)
+      throws IOException {
+    return compareResults(analyze(baselineLogs), analyze(candidateLogs));
+  }
+
+  /** Compares every phase of the baseline with the same phase of the candidate. */
+  public List<PhaseComparison> compareResults(
+      List<SectionResult> baseline, List<SectionResult> candidate) {
+    Map<String, PooledPhase> candidatePhases = PooledPhase.pool(candidate);
+    List<PhaseComparison> comparisons = new ArrayList<>();
+    for (PooledPhase base : PooledPhase.pool(baseline).values()) {
+      PooledPhase other = candidatePhases.get(PooledPhase.key(base.recordingName, base.phase));
+      List<PhaseComparison.MetricComparison> metrics = null;
+      if (other != null) {
+        metrics = new ArrayList<>();
+        for (Map.Entry<Metric, Double> entry : thresholds.getMaxIncreases().entrySet()) {
+          LogHistogram baseHistogram = base.histograms.get(entry.getKey());
+          LogHistogram otherHistogram = other.histograms.get(entry.getKey());
+          // Metrics that one of the runs could not measure, e.g. GPU times, are not compared.
+          if (baseHistogram.getCount() > 1 && otherHistogram.getCount() > 1) {
+            metrics.add(
+                compareMetric(entry.getKey(), entry.getValue(), baseHistogram, otherHistogram));
+          }
+        }
+      }
+      comparisons.add(
+          new PhaseComparison(base.sectionName, base.recordingName, base.phase, metrics));
+    }
+    return comparisons;
+  }
+
+  /** Returns whether none of the compared phases failed. */
+  public static boolean isPassed(List<PhaseComparison> comparisons) {
+    for (PhaseComparison comparison : comparisons) {
+      if (comparison.getVerdict().isFailure()) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /** Writes the verdict, the thresholds and every comparison to a JSON file. */
+  public void writeJson(List<PhaseComparison> comparisons, File file) throws IOException {
+    try (Writer out = new BufferedWriter(
+        new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8))) {
+      writeJson(comparisons, out);
+    }
+  }
+
+  /**
+   * Writes the verdict, the thresholds and every comparison as JSON. Times are in nanoseconds,
+   * metrics and verdicts are lower case names of their constants.
+   */
+  public void writeJson(List<PhaseComparison> comparisons, Writer out) throws IOException {
+    JsonWriter json = new JsonWriter(out, "  ");
+    json.beginObject();
+    json.name("verdict").value(isPassed(comparisons) ? "pass" : "fail");
+    json.name("thresholds").beginObject();
+    json.name("alpha").value(thresholds.getAlpha());
+    json.name("bootstrap_samples").value(thresholds.getBootstrapSamples());
+    json.name("seed").value(thresholds.getSeed());
+    json.name("max_increase").beginObject();
+    for (Map.Entry<Metric, Double> entry : thresholds.getMaxIncreases().entrySet()) {
+      json.name(lowerCase(entry.getKey())).value(entry.getValue());
+    }
+    json.endObject();
+    json.endObject();
+    json.name("phases").beginArray();
+    for (PhaseComparison comparison : comparisons) {
+      json.beginObject();
+      json.name("section").value(comparison.getSectionName());
+      json.name("recording").value(comparison.getRecordingName());
+      json.name("phase").value(comparison.getPhase());
+      json.name("verdict").value(lowerCase(comparison.getVerdict()));
+      json.name("metrics").beginArray();
+      for (PhaseComparison.MetricComparison metric : comparison.getMetrics()) {
+        json.beginObject();
+        json.name("metric").value(lowerCase(metric.getMetric()));
+        json.name("baseline_count").value(metric.getBaselineCount());
+        json.name("candidate_count").value(metric.getCandidateCount());
+        json.name("baseline_mean_ns").value(metric.getBaselineMean());
+        json.name("candidate_mean_ns").value(metric.getCandidateMean());
+        json.name("relative_change").value(metric.getRelativeChange());
+        json.name("ci_low").value(metric.getConfidenceLow());
+        json.name("ci_high").value(metric.getConfidenceHigh());
+        json.name("p_value").value(metric.getPValue());
+        json.name("probability_slower").value(metric.getProbabilitySlower());
+        json.name("verdict").value(lowerCase(metric.getVerdict()));
+        json.endObject();
+      }
+      json.endArray();
+      json.endObject();
+    }
+    json.endArray();
+    json.endObject();
+    json.flush();
+  }
+
+  private PhaseComparison.MetricComparison compareMetric(
+      Metric metric, double maxIncrease, LogHistogram baseline, LogHistogram candidate) {
+    double[] interval = bootstrapInterval(baseline, candidate);
+    // U statistic of the candidate: pairs in which the candidate frame is slower, ties count half.
+    double u = 0;
+    long baselineBelow = 0;
+    double tieTerm = 0;
+    for (int bucket = 0; bucket < baseline.getBucketCount(); bucket++) {
+      long baselineCount = baseline.getBucketCountAt(bucket);
+      long candidateCount = candidate.getBucketCountAt(bucket);
+      u += candidateCount * (baselineBelow + 0.5 * baselineCount);
+      baselineBelow += baselineCount;
+      double tied = baselineCount + candidateCount;
+      tieTerm += tied * tied * tied - tied;
+    }
+    double n1 = baseline.getCount();
+    double n2 = candidate.getCount();
+    double n = n1 + n2;
+    double variance = n1 * n2 / 12 * ((n + 1) - tieTerm / (n * (n - 1)));
+    double pValue =
+        variance <= 0 ? 1.0 : normalTail(Math.abs(u - n1 * n2 / 2) / Math.sqrt(variance));
+
+    double change = candidate.getMean() / baseline.getMean() - 1;
+    PhaseComparison.Verdict verdict = PhaseComparison.Verdict.UNCHANGED;
+    if (pValue < thresholds.getAlpha()) {
+      if (change > maxIncrease && interval[0] > 0) {
+        verdict = PhaseComparison.Verdict.REGRESSED;
+      } else if (change < -maxIncrease && interval[1] < 0) {
+        verdict = PhaseComparison.Verdict.IMPROVED;
+      }
+    }
+    return new PhaseComparison.MetricComparison(metric, baseline.getCount(), candidate.getCount(),
+        baseline.getMean(), candidate.getMean(), interval[0], interval[1], pValue,
+        u / (n1 * n2), verdict);
+  }
+
+  /**
+   * Returns the percentile bootstrap interval of the relative change of the mean, resampling as
+   * many frames as each run has from its histogram, up to {@link #MAX_RESAMPLE_SIZE}.
+   */
+  private double[] bootstrapInterval(LogHistogram baseline, LogHistogram candidate) {
+    int samples = thresholds.getBootstrapSamples();
+    if (samples < 2) {
+      return new double[] {Double.NaN, Double.NaN};
+    }
+    SplittableRandom random = new SplittableRandom(thresholds.getSeed());
+    HistogramSampler baselineSampler = new HistogramSampler(baseline);
+    HistogramSampler candidateSampler = new HistogramSampler(candidate);
+    double[] changes = new double[samples];
+    for (int i = 0; i < samples; i++) {
+      changes[i] = candidateSampler.resampleMean(random) / baselineSampler.resampleMean(random) - 1;
+    }
+    Arrays.sort(changes);
+    double tail = thresholds.getAlpha() / 2;
+    return new double[] {
+      changes[(int) Math.floor(tail * (samples - 1))],
+      changes[(int) Math.ceil((1 - tail) * (samples - 1))],
+    };
+  }
+
+  /**
+   * Draws values from the distribution of a histogram in constant time with Vose's alias method.
+   * Every value of a bucket is represented by the middle of the bucket.
+   */
+  /* package-private */ static class HistogramSampler {
+    private final long count;
+    private final int resampleSize;
+    private final double mean;
+    // Scales the deviation of a mean of resampleSize values to that of a mean of count values.
+    private final double spreadScale;
+    private final double[] values;
+    private final double[] probabilities;
+    private final int[] aliases;
+
+    HistogramSampler(LogHistogram histogram) {
+      count = histogram.getCount();
+      int used = 0;
+      for (int bucket = 0; bucket < histogram.getBucketCount(); bucket++) {
+        if (histogram.getBucketCountAt(bucket) > 0) {
+          used++;
+        }
+      }
+      values = new double[used];
+      probabilities = new double[used];
+      aliases = new int[used];
+      int next = 0;
+      double sum = 0;
+      for (int bucket = 0; bucket < histogram.getBucketCount(); bucket++) {
+        long bucketCount = histogram.getBucketCountAt(bucket);
+        if (bucketCount > 0) {
+          values[next] =
+              (histogram.bucketLowerBound(bucket) + histogram.bucketUpperBound(bucket)) / 2.0;
+          sum += values[next] * bucketCount;
+          probabilities[next++] = (double) bucketCount * used / count;
+        }
+      }
+      mean = sum / count;
+      resampleSize = (int) Math.min(count, MAX_RESAMPLE_SIZE);
+      spreadScale = Math.sqrt((double) resampleSize / count);
+      int[] small = new int[used];
+      int[] large = new int[used];
+      int smallCount = 0;
+      int largeCount = 0;
+      for (int i = 0; i < used; i++) {
+        if (probabilities[i] < 1) {
+          small[smallCount++] = i;
+        } else {
+          large[largeCount++] = i;
+        }
+      }
+      while (smallCount > 0 && largeCount > 0) {
+        int less = small[--smallCount];
+        int more = large[--largeCount];
+        aliases[less] = more;
+        probabilities[more] += probabilities[less] - 1;
+        if (probabilities[more] < 1) {
+          small[smallCount++] = more;
+        } else {
+          large[largeCount++] = more;
+        }
+      }
+      // What is left is 1 up to rounding errors.
+      while (largeCount > 0) {
+        probabilities[large[--largeCount]] = 1;
+      }
+      while (smallCount > 0) {
+        probabilities[small[--smallCount]] = 1;
+      }
+    }
+
+    /**
+     * Returns the mean of values drawn with replacement, as many as the histogram holds up to
+     * {@link #MAX_RESAMPLE_SIZE}, with its deviation from the histogram's mean scaled to that of
+     * as many values as the histogram holds.
+     */
+    double resampleMean(SplittableRandom random) {
+      double sum = 0;
+      for (int i = 0; i < resampleSize; i++) {
+        int column = random.nextInt(values.length);
+        sum += values[random.nextDouble() < probabilities[column] ? column : aliases[column]];
+      }
+      return mean + (sum / resampleSize - mean) * spreadScale;
+    }
+  }
+
+  private static List<SectionResult> analyze(List<File> logs) throws IOException {
+    List<SectionResult> sections = new ArrayList<>();
+    FrameLogAnalyzer analyzer = new FrameLogAnalyzer();
+    for (File log : logs) {
+      sections.addAll(analyzer.analyze(log));
+    }
+    return sections;
+  }
+
+  private static String lowerCase(Enum<?> constant) {
+    return constant.name().toLowerCase(Locale.ROOT);
+  }
+
+  /**
+   * Returns the probability that a standard normal variable is further than z from zero, using the
+   * approximation 7.1.26 of Abramowitz and Stegun, accurate to about 1e-7.
+   */
+  private static double normalTail(double z) {
+    double x = z / Math.sqrt(2);
+    double t = 1 / (1 + 0.3275911 * x);
+    double polynomial = t * (0.254829592 + t * (-0.284496736
+        + t * (1.421413741 + t * (-1.453152027 + t * 1.061405429))));
+    return polynomial * Math.exp(-x * x);
+  }
+}
@@ -0,0 +1,81 @@
+/*
+ * Copyright 2021, Brown University, Providence, RI.
+ * Rahul Shahi, Sherief Reda, Seif Abdelaziz
+ *
+ *                        All Rights Reserved
+ *
+ * Permission to use, copy, modify, and distribute this software and
+ * its documentation for any purpose other than its incorporation into a
+ * commercial product or service is hereby granted without fee, provided
+ * that the above copyright notice appear in all copies and that both
+ * that copyright notice and this permission notice appear in supporting
+ * documentation, and that the name of Brown University not be used in
+ * advertising or publicity pertaining to distribution of the software
+ * without specific, written prior permission.
+ *
+ * BROWN UNIVERSITY DISCLAIMS ALL WARRANTIES WITH REGARD TO THIS SOFTWARE,
+ * INCLUDING ALL IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR ANY
+ * PARTICULAR PURPOSE.  IN NO EVENT SHALL BROWN UNIVERSITY BE LIABLE FOR
+ * ANY SPECIAL, INDIRECT OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF
+ * OR IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package benchmark.common.analysis;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/** Results of one section of the frame log, split into the phases of its recording. */
+public class SectionResult {
+  private final String sectionName;
+  private final String recordingName;
+  private final long droppedCount;
+  private final long overflowCount;
+  private final List<PhaseResult> phases = new ArrayList<>();
+
+  SectionResult(String sectionName, String recordingName, long droppedCount, long overflowCount) {
+    this.sectionName = sectionName;
+    this.recordingName = recordingName;
+    this.droppedCount = droppedCount;
+    this.overflowCount = overflowCount;
+  }
+
+  /* package-private */ void addPhase(PhaseResult phase) {
+    phases.add(phase);
+  }
+
+  public String getSectionName() {
+    return sectionName;
+  }
+
+  public String getRecordingName() {
+    return recordingName;
+  }
+
+  /** Returns the number of frames that were not logged because the writer fell behind. */
+  public long getDroppedCount() {
+    return droppedCount;
+  }
+
+  /** Returns how many times the writer fell behind. */
+  public long getOverflowCount() {
+    return overflowCount;
+  }
+
+  /** Returns the largest value of the metric in any phase, or 0 if it was never recorded. */
+  public long getMax(Metric metric) {
+    long max = 0;
+    for (PhaseResult phase : phases) {
+      max = Math.max(max, phase.getHistogram(metric).getMax());
+    }
+    return max;
+  }
+
+  /** Returns the phases in the order they were played back. */
+  public List<PhaseResult> getPhases() {
+    return Collections.unmodifiableList(phases);
+  }
+}
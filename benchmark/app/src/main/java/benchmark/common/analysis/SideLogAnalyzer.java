@@ -0,0 +1,78 @@
+/*
+ * Copyright 2021, Brown University, Providence, RI.
+ * Rahul Shahi, Sherief Reda, Seif Abdelaziz
+ *
+ *                        All Rights Reserved
+ *
+ * Permission to use, copy, modify, and distribute this software and
+ * its documentation for any purpose other than its incorporation into a
+ * commercial product or service is hereby granted without fee, provided
+ * that the above copyright notice appear in all copies and that both
+ * that copyright notice and this permission notice appear in supporting
+ * documentation, and that the name of Brown University not be used in
+ * advertising or publicity pertaining to distribution of the software
+ * without specific, written prior permission.
+ *
+ * BROWN UNIVERSITY DISCLAIMS ALL WARRANTIES WITH REGARD TO THIS SOFTWARE,
+ * INCLUDING ALL IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR ANY
+ * PARTICULAR PURPOSE.  IN NO EVENT SHALL BROWN UNIVERSITY BE LIABLE FOR
+ * ANY SPECIAL, INDIRECT OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF
+ * OR IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+
+package benchmark.common.analysis;
+
+import benchmark.common.framelog.FrameLogReader;
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Base of the analyzers of side logs, which samplers write next to the frame log in the same file
+ * format with one section per benchmark section. Adds what a side log recorded during each phase to
+ * the results of {@link FrameLogAnalyzer}.
+ */
+public abstract class SideLogAnalyzer {
+  /**
+   * Analyzes every section of the side log together with the frame log results it belongs to.
+   * Sections are matched by recording name, in order; side log sections without results are
+   * skipped.
+   */
+  public void analyze(File logFile, List<SectionResult> sections) throws IOException {
+    try (FrameLogReader reader = new FrameLogReader(logFile)) {
+      int next = 0;
+      FrameLogReader.Section section;
+      while ((section = reader.nextSection()) != null) {
+        int match = next;
+        while (match < sections.size()
+            && !sections.get(match).getRecordingName().equals(section.getRecordingName())) {
+          match++;
+        }
+        if (match == sections.size()) {
+          continue;
+        }
+        next = match + 1;
+        analyzeSection(reader, section, sections.get(match));
+      }
+    }
+  }
+
+  /** Reads the records of the side log section the reader is positioned at. */
+  protected abstract void analyzeSection(
+      FrameLogReader reader, FrameLogReader.Section section, SectionResult result)
+      throws IOException;
+
+  /** Returns the index of the phase whose frames span the given time, or -1 if there is none. */
+  protected static int findPhase(List<PhaseResult> phases, long time) {
+    for (int i = 0; i < phases.size(); i++) {
+      PhaseResult phase = phases.get(i);
+      if (phase.getFirstFrameStart() <= time && time <= phase.getLastFrameStart()) {
+        return i;
+      }
+    }
+    return -1;
+  }
+}
@@ -0,0 +1,156 @@
+/*
+ * Copyright 2021, Brown University, Providence, RI.
+ * Rahul Shahi, Sherief Reda, Seif Abdelaziz
+ *
+ *                        All Rights Reserved
+ *
+ * Permission to use, copy, modify, and distribute this software and
+ * its documentation for any purpose other than its incorporation into a
+ * commercial product or service is hereby granted without fee, provided
+ * that the above copyright notice appear in all copies and that both
+ * that copyright notice and this permission notice appear in supporting
+ * documentation, and that the name of Brown University not be used in
+ * advertising or publicity pertaining to distribution of the software
+ * without specific, written prior permission.
+ *
+ * BROWN UNIVERSITY DISCLAIMS ALL WARRANTIES WITH REGARD TO THIS SOFTWARE,
+ * INCLUDING ALL IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR ANY
+ * PARTICULAR PURPOSE.  IN NO EVENT SHALL BROWN UNIVERSITY BE LIABLE FOR
+ * ANY SPECIAL, INDIRECT OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF
+ * OR IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+
+package benchmark.common.analysis;
+
+import benchmark.common.framelog.FrameLog;
+import benchmark.common.framelog.FrameLogReader;
+import benchmark.common.framelog.ThermalLog;
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Adds the thermal state recorded in a {@link ThermalLog} to the phases of a frame log analyzed by
+ * {@link FrameLogAnalyzer}, and flags the phases that ran on a throttled CPU.
+ *
+ * <p>Clocks are compared against the whole log rather than within a section, because it is the
+ * later sections that run on a warmer device. Two signs of throttling are checked: a core's clock
+ * limit is lowered, which is how the kernel's thermal governor throttles, and the thermal status
+ * rises to {@link #THROTTLE_STATUS}, which covers throttling the platform does in other ways.
+ *
+ * <p>The fastest clock any core reached is reported as well, relative to the fastest clock reached
+ * anywhere in the log. It is not a sign of throttling on its own: the governor also lowers the
+ * clocks of phases that simply need less CPU.
+ */
+public class ThermalLogAnalyzer extends SideLogAnalyzer {
+  /** A phase is throttled when a core's clock limit falls below this fraction of its highest. */
+  public static final double THROTTLE_RATIO = 0.9;
+  /**
+   * A phase is throttled when the thermal status reaches this level, {@code
+   * PowerManager.THERMAL_STATUS_LIGHT}, at which the platform starts to throttle.
+   */
+  public static final long THROTTLE_STATUS = 1;
+
+  // Range of plausible temperatures in millidegrees; some zones report nonsense or other units.
+  private static final long MIN_TEMPERATURE = 1;
+  private static final long MAX_TEMPERATURE = 150_000;
+
+  // The fastest clock and the highest clock limit of every core over the whole log, by column, and
+  // the fastest clock of any core.
+  private final Map<String, Long> fastest = new HashMap<>();
+  private long fastestClock;
+
+  /**
+   * Annotates the phases of the given sections with the samples of the thermal log that fall
+   * between their first and last frame.
+   */
+  @Override
+  public void analyze(File thermalLog, List<SectionResult> sections) throws IOException {
+    fastest.clear();
+    try (FrameLogReader reader = new FrameLogReader(thermalLog)) {
+      FrameLogReader.Section section;
+      while ((section = reader.nextSection()) != null) {
+        long[] record = new long[section.getColumnCount()];
+        while (reader.nextRecord(record)) {
+          for (int i = ThermalLog.FIRST_SOURCE; i < record.length; i++) {
+            String column = section.getColumnName(i);
+            if (isClock(column) && record[i] != FrameLog.UNAVAILABLE) {
+              fastest.merge(column, record[i], Math::max);
+            }
+          }
+        }
+      }
+    }
+    fastestClock = 0;
+    for (Map.Entry<String, Long> entry : fastest.entrySet()) {
+      if (entry.getKey().endsWith(ThermalLog.FREQUENCY_SUFFIX)) {
+        fastestClock = Math.max(fastestClock, entry.getValue());
+      }
+    }
+
+    super.analyze(thermalLog, sections);
+  }
+
+  @Override
+  protected void analyzeSection(
+      FrameLogReader reader, FrameLogReader.Section section, SectionResult result)
+      throws IOException {
+    int columnCount = section.getColumnCount();
+    long[] reference = new long[columnCount];
+    for (int i = ThermalLog.FIRST_SOURCE; i < columnCount; i++) {
+      Long value = fastest.get(section.getColumnName(i));
+      reference[i] = value == null ? 0 : value;
+    }
+    List<PhaseResult> phases = result.getPhases();
+    // Per phase: the fastest clock reached and the lowest clock limit relative to its reference.
+    long[] phaseClocks = new long[phases.size()];
+    double[] phaseLimitRatios = new double[phases.size()];
+    Arrays.fill(phaseLimitRatios, Double.NaN);
+
+    long[] record = new long[columnCount];
+    while (reader.nextRecord(record)) {
+      int phaseIndex = findPhase(phases, record[ThermalLog.TIME]);
+      if (phaseIndex < 0) {
+        continue;
+      }
+      long temperature = FrameLog.UNAVAILABLE;
+      for (int i = ThermalLog.FIRST_SOURCE; i < columnCount; i++) {
+        long value = record[i];
+        String column = section.getColumnName(i);
+        if (value == FrameLog.UNAVAILABLE) {
+          continue;
+        } else if (column.endsWith(ThermalLog.TEMPERATURE_SUFFIX)) {
+          if (value >= MIN_TEMPERATURE && value <= MAX_TEMPERATURE) {
+            temperature = Math.max(temperature, value);
+          }
+        } else if (column.endsWith(ThermalLog.FREQUENCY_SUFFIX)) {
+          phaseClocks[phaseIndex] = Math.max(phaseClocks[phaseIndex], value);
+        } else if (column.endsWith(ThermalLog.MAX_FREQUENCY_SUFFIX) && reference[i] > 0) {
+          double ratio = (double) value / reference[i];
+          if (!(ratio >= phaseLimitRatios[phaseIndex])) {
+            phaseLimitRatios[phaseIndex] = ratio;
+          }
+        }
+      }
+      phases.get(phaseIndex).addThermalSample(record[ThermalLog.THERMAL_STATUS], temperature);
+    }
+
+    for (int i = 0; i < phases.size(); i++) {
+      double clockRatio = phaseClocks[i] > 0 && fastestClock > 0
+          ? (double) phaseClocks[i] / fastestClock
+          : Double.NaN;
+      phases.get(i).setClockRatios(clockRatio, phaseLimitRatios[i]);
+    }
+  }
+
+  private static boolean isClock(String column) {
+    return column.endsWith(ThermalLog.FREQUENCY_SUFFIX)
+        || column.endsWith(ThermalLog.MAX_FREQUENCY_SUFFIX);
+  }
+}
@@ -0,0 +1,395 @@
+/*
+ * Copyright 2021, Brown University, Providence, RI.
+ * Rahul Shahi, Sherief Reda, Seif Abdelaziz
+ *
+ *                        All Rights Reserved
+ *
+ * Permission to use, copy, modify, and distribute this software and
+ * its documentation for any purpose other than its incorporation into a
+ * commercial product or service is hereby granted without fee, provided
+ * that the above copyright notice appear in all copies and that both
+ * that copyright notice and this permission notice appear in supporting
+ * documentation, and that the name of Brown University not be used in
+ * advertising or publicity pertaining to distribution of the software
+ * without specific, written prior permission.
+ *
+ * BROWN UNIVERSITY DISCLAIMS ALL WARRANTIES WITH REGARD TO THIS SOFTWARE,
+ * INCLUDING ALL IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR ANY
+ * PARTICULAR PURPOSE.  IN NO EVENT SHALL BROWN UNIVERSITY BE LIABLE FOR
+ * ANY SPECIAL, INDIRECT OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF
+ * OR IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+
+package benchmark.common.analysis;
+
+import benchmark.common.framelog.CoreLog;
+import benchmark.common.framelog.FrameLog;
+import benchmark.common.framelog.FrameLogReader;
+import benchmark.common.framelog.FrameTimer;
+import benchmark.common.framelog.WriterLog;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Converts a frame log into the Chrome trace-event JSON format, which Perfetto and chrome://tracing
+ * can open.
+ *
+ * <p>Every section becomes a process with these tracks:
+ *
+ * <ul>
+ *   <li>the GL thread, with one span per frame and the {@link FrameTimer} stages nested inside it,
+ *   <li>the GPU, with the GPU time of every render stage and, with the GPU timeline, a span per
+ *       frame up to when the GPU finished it,
+ *   <li>a counter of the CPU cores the worker threads kept busy during every frame, from the
+ *       worker CPU time of the frame log,
+ *   <li>with a {@link CoreLog}, counters of the CPU cores the render thread, the ML worker threads
+ *       and the OCR thread kept busy per core cluster, one per sample,
+ *   <li>with a {@link WriterLog}, the thread that writes the frame log, with a span for every time
+ *       it wrote records,
+ *   <li>instant events marking the start of every phase of the recording.
+ * </ul>
+ *
+ * <p>The worker threads are the threads the samplers track: the coroutine workers and the ML
+ * thread, which run e.g. object detection, and the thread that recognizes text. The logs only hold
+ * their CPU time, not when they ran, so they are counters rather than spans.
+ *
+ * <p>GPU spans start where the timestamp queries of the GPU timeline placed their stage, measured
+ * from the GPU clock read at the start of the frame. Frames logged without the timeline only hold
+ * the GPU time of each render stage, so their GPU spans are placed at the CPU start of their stage
+ * or at the end of the previous GPU span, whichever is later, which is the earliest the GPU could
+ * have run them. The name of the GPU track says when placements were estimated.
+ *
+ * <p>A stage entered more than once in a frame is drawn as one span from its first entry, so it
+ * may overlap the stages that ran in between.
+ */
+public class TraceExporter {
+  /** Name of the trace file in the app's external files directory. */
+  public static final String FILE_NAME = "frame-trace.json";
+
+  private static final int GL_THREAD = 1;
+  private static final int GPU_TRACK = 2;
+  private static final int WRITER_THREAD = 3;
+  /** Names of the counters of the core log, indexed by {@link CoreLog} role. */
+  private static final String[] ROLE_LABELS =
+      {"Render thread", "ML worker threads", "OCR thread"};
+
+  /**
+   * Exports every section of the given log file, together with the {@link CoreLog} and the {@link
+   * WriterLog} next to it if there are.
+   */
+  public void export(File logFile, File traceFile) throws IOException {
+    File directory = logFile.getAbsoluteFile().getParentFile();
+    File coreLogFile = new File(directory, CoreLog.FILE_NAME);
+    File writerLogFile = new File(directory, WriterLog.FILE_NAME);
+    try (FrameLogReader reader = new FrameLogReader(logFile);
+        FrameLogReader coreReader =
+            coreLogFile.exists() ? new FrameLogReader(coreLogFile) : null;
+        FrameLogReader writerReader =
+            writerLogFile.exists() ? new FrameLogReader(writerLogFile) : null;
+        Writer out = new BufferedWriter(
+            new OutputStreamWriter(new FileOutputStream(traceFile), StandardCharsets.UTF_8))) {
+      export(reader, coreReader, writerReader, out);
+    }
+  }
+
+  /** Exports every remaining section of the given reader. */
+  public void export(FrameLogReader reader, Writer out) throws IOException {
+    export(reader, null, null, out);
+  }
+
+  /**
+   * Exports every remaining section of the given reader, the sections of a core log reader, or
+   * null, as counters of the frame log sections of the same recording, and the sections of a writer
+   * log reader, or null, as the writer thread of those sections. Sections are matched like {@link
+   * SideLogAnalyzer} matches them.
+   */
+  public void export(FrameLogReader reader, FrameLogReader coreReader,
+      FrameLogReader writerReader, Writer out) throws IOException {
+    JsonWriter json = new JsonWriter(out);
+    json.beginObject();
+    json.name("displayTimeUnit").value("ms");
+    json.name("traceEvents").beginArray();
+    List<String> recordingNames = new ArrayList<>();
+    FrameLogReader.Section section;
+    while ((section = reader.nextSection()) != null) {
+      recordingNames.add(section.getRecordingName());
+      exportSection(reader, section, recordingNames.size(), json);
+    }
+    if (coreReader != null) {
+      exportSideLog(coreReader, recordingNames, this::exportCoreSection, json);
+    }
+    if (writerReader != null) {
+      exportSideLog(writerReader, recordingNames, this::exportWriterSection, json);
+    }
+    json.endArray();
+    json.endObject();
+    json.flush();
+  }
+
+  private void exportSection(
+      FrameLogReader reader, FrameLogReader.Section section, int process, JsonWriter json)
+      throws IOException {
+    writeMetadata(json, process, 0, "process_name",
+        section.getSectionName() + " (" + section.getRecordingName() + ")");
+    writeMetadata(json, process, GL_THREAD, "thread_name", "GL thread");
+
+    int phaseColumn = column(section, FrameLog.PHASE);
+    int frameIdColumn = column(section, FrameLog.FRAME_ID);
+    int frameStartColumn = column(section, FrameLog.FRAME_START);
+    int totalColumn = column(section, FrameLog.TOTAL_TIME);
+    int workerColumn = column(section, FrameLog.WORKER_CPU);
+    int gpuClockBeginColumn = column(section, FrameLog.GPU_CLOCK_BEGIN);
+    int gpuClockEndColumn = column(section, FrameLog.GPU_CLOCK_END);
+    if (phaseColumn < 0 || frameStartColumn < 0 || totalColumn < 0) {
+      throw new IOException(
+          "Frame log section " + section.getSectionName() + " has no frame times");
+    }
+    int stageCount = FrameTimer.STAGE_NAMES.length;
+    int[] stageColumns = new int[stageCount];
+    int[] stageStartColumns = new int[stageCount];
+    int[] gpuStageColumns = new int[stageCount];
+    int[] gpuStageStartColumns = new int[stageCount];
+    for (int stage = 0; stage < stageCount; stage++) {
+      stageColumns[stage] = column(section, FrameLog.FIRST_STAGE + stage);
+      stageStartColumns[stage] = column(section, FrameLog.FIRST_STAGE_START + stage);
+      int renderStage = stage - FrameTimer.FIRST_RENDER_STAGE;
+      gpuStageColumns[stage] =
+          renderStage < 0 ? -1 : column(section, FrameLog.FIRST_GPU_STAGE + renderStage);
+      gpuStageStartColumns[stage] =
+          renderStage < 0 ? -1 : column(section, FrameLog.FIRST_GPU_STAGE_START + renderStage);
+    }
+    // GPU spans of the current frame, written once all of them are known.
+    long[] gpuStarts = new long[stageCount];
+    long[] gpuTimes = new long[stageCount];
+    long measuredCount = 0;
+    long estimatedCount = 0;
+
+    long[] record = new long[section.getColumnCount()];
+    long phase = Long.MIN_VALUE;
+    long gpuEnd = Long.MIN_VALUE;
+    long lastFrameStart = Long.MIN_VALUE;
+    while (reader.nextRecord(record)) {
+      long frameStart = record[frameStartColumn];
+      // The worker CPU time of a frame was used since the previous frame started.
+      if (workerColumn >= 0 && record[workerColumn] != FrameLog.UNAVAILABLE
+          && lastFrameStart != Long.MIN_VALUE && frameStart > lastFrameStart) {
+        json.beginObject();
+        json.name("name").value("Worker threads (busy cores)");
+        json.name("ph").value("C");
+        json.name("pid").value(process);
+        json.name("ts").value(micros(lastFrameStart));
+        json.name("args").beginObject();
+        json.name("all").value((double) record[workerColumn] / (frameStart - lastFrameStart));
+        json.endObject();
+        json.endObject();
+      }
+      lastFrameStart = frameStart;
+      if (record[phaseColumn] != phase) {
+        phase = record[phaseColumn];
+        json.beginObject();
+        json.name("name").value("Phase " + phase);
+        json.name("ph").value("i");
+        json.name("s").value("p");
+        json.name("pid").value(process);
+        json.name("tid").value(GL_THREAD);
+        json.name("ts").value(micros(frameStart));
+        json.endObject();
+      }
+      long frameId = frameIdColumn < 0 ? FrameLog.UNAVAILABLE : record[frameIdColumn];
+      writeSpan(json, process, GL_THREAD, "frame", "Frame", frameStart, record[totalColumn],
+          phase, frameId);
+
+      boolean measured = true;
+      long gpuFrameStart = Long.MAX_VALUE;
+      for (int stage = 0; stage < stageCount; stage++) {
+        gpuTimes[stage] = 0;
+        if (stageColumns[stage] < 0 || stageStartColumns[stage] < 0
+            || record[stageStartColumns[stage]] == FrameLog.UNAVAILABLE) {
+          continue;
+        }
+        long stageStart = frameStart + record[stageStartColumns[stage]];
+        writeSpan(json, process, GL_THREAD, "cpu", FrameTimer.STAGE_NAMES[stage], stageStart,
+            record[stageColumns[stage]], phase, frameId);
+
+        long gpuTime = gpuStageColumns[stage] < 0 ? 0L : record[gpuStageColumns[stage]];
+        if (gpuTime > 0) {
+          long gpuStageStart = gpuStageStartColumns[stage] < 0
+              ? FrameLog.UNAVAILABLE
+              : record[gpuStageStartColumns[stage]];
+          long gpuStart;
+          if (gpuStageStart != FrameLog.UNAVAILABLE) {
+            gpuStart = frameStart + gpuStageStart;
+            measuredCount++;
+          } else {
+            gpuStart = Math.max(stageStart, gpuEnd);
+            measured = false;
+            estimatedCount++;
+          }
+          gpuStarts[stage] = gpuStart;
+          gpuTimes[stage] = gpuTime;
+          gpuFrameStart = Math.min(gpuFrameStart, gpuStart);
+          gpuEnd = gpuStart + gpuTime;
+        }
+      }
+      // The end of the frame was timestamped after all of its stages, so they nest inside it.
+      if (measured && gpuFrameStart != Long.MAX_VALUE && gpuClockBeginColumn >= 0
+          && gpuClockEndColumn >= 0 && record[gpuClockBeginColumn] != FrameLog.UNAVAILABLE
+          && record[gpuClockEndColumn] != FrameLog.UNAVAILABLE) {
+        long gpuFrameEnd = frameStart + record[gpuClockEndColumn] - record[gpuClockBeginColumn];
+        if (gpuFrameEnd > gpuFrameStart) {
+          writeSpan(json, process, GPU_TRACK, "gpu", "Frame", gpuFrameStart,
+              gpuFrameEnd - gpuFrameStart, phase, frameId);
+        }
+      }
+      for (int stage = 0; stage < stageCount; stage++) {
+        if (gpuTimes[stage] > 0) {
+          writeSpan(json, process, GPU_TRACK, "gpu", FrameTimer.STAGE_NAMES[stage],
+              gpuStarts[stage], gpuTimes[stage], phase, frameId);
+        }
+      }
+    }
+    String gpuTrackName = "GPU";
+    if (estimatedCount > 0) {
+      gpuTrackName = measuredCount > 0 ? "GPU (partly estimated placement)"
+          : "GPU (estimated placement)";
+    }
+    writeMetadata(json, process, GPU_TRACK, "thread_name", gpuTrackName);
+  }
+
+  /** Exports the sections of a side log to the processes of the matching frame log sections. */
+  private static void exportSideLog(FrameLogReader reader, List<String> recordingNames,
+      SectionExporter exporter, JsonWriter json) throws IOException {
+    int next = 0;
+    FrameLogReader.Section section;
+    while ((section = reader.nextSection()) != null) {
+      int match =
+          recordingNames.subList(next, recordingNames.size()).indexOf(section.getRecordingName());
+      if (match < 0) {
+        continue;
+      }
+      next += match + 1;
+      exporter.export(reader, section, next, json);
+    }
+  }
+
+  /**
+   * Writes the passes of the writer log section the reader is positioned at as spans of the writer
+   * thread of the process of its frame log section.
+   */
+  private void exportWriterSection(
+      FrameLogReader reader, FrameLogReader.Section section, int process, JsonWriter json)
+      throws IOException {
+    writeMetadata(json, process, WRITER_THREAD, "thread_name", "Frame log writer");
+    long[] record = new long[section.getColumnCount()];
+    while (reader.nextRecord(record)) {
+      json.beginObject();
+      json.name("name").value("write");
+      json.name("cat").value("io");
+      json.name("ph").value("X");
+      json.name("pid").value(process);
+      json.name("tid").value(WRITER_THREAD);
+      json.name("ts").value(micros(record[WriterLog.START]));
+      json.name("dur").value(micros(record[WriterLog.END] - record[WriterLog.START]));
+      json.name("args").beginObject().name("records").value(record[WriterLog.RECORDS]).endObject();
+      json.endObject();
+    }
+  }
+
+  /**
+   * Writes the samples of the core log section the reader is positioned at as counters of the
+   * process of its frame log section, one per thread role with one series per cluster.
+   */
+  private void exportCoreSection(
+      FrameLogReader reader, FrameLogReader.Section section, int process, JsonWriter json)
+      throws IOException {
+    int clusterCount = (section.getColumnCount() - CoreLog.FIRST_CLUSTER) / CoreLog.ROLES.length;
+    String[] clusterNames = new String[clusterCount];
+    String prefix = CoreLog.ROLES[0] + "_";
+    for (int i = 0; i < clusterCount; i++) {
+      String name = section.getColumnName(CoreLog.FIRST_CLUSTER + i);
+      if (name.startsWith(prefix) && name.endsWith(CoreLog.CLUSTER_SUFFIX)) {
+        name = name.substring(prefix.length(), name.length() - CoreLog.CLUSTER_SUFFIX.length());
+      }
+      clusterNames[i] = name;
+    }
+    long[] record = new long[section.getColumnCount()];
+    long lastTime = Long.MIN_VALUE;
+    while (reader.nextRecord(record)) {
+      long time = record[CoreLog.TIME];
+      // The CPU time of a sample was used since the previous sample.
+      if (lastTime != Long.MIN_VALUE && time > lastTime) {
+        for (int role = 0; role < CoreLog.ROLES.length; role++) {
+          json.beginObject();
+          json.name("name").value(ROLE_LABELS[role] + " by cluster (busy cores)");
+          json.name("ph").value("C");
+          json.name("pid").value(process);
+          json.name("ts").value(micros(lastTime));
+          json.name("args").beginObject();
+          for (int i = 0; i < clusterCount; i++) {
+            long cpuTime = record[CoreLog.FIRST_CLUSTER + role * clusterCount + i];
+            json.name(clusterNames[i]).value((double) cpuTime / (time - lastTime));
+          }
+          json.endObject();
+          json.endObject();
+        }
+      }
+      lastTime = time;
+    }
+  }
+
+  private static void writeMetadata(
+      JsonWriter json, int process, int thread, String name, String value) throws IOException {
+    json.beginObject();
+    json.name("name").value(name);
+    json.name("ph").value("M");
+    json.name("pid").value(process);
+    json.name("tid").value(thread);
+    json.name("args").beginObject().name("name").value(value).endObject();
+    json.endObject();
+  }
+
+  private static void writeSpan(JsonWriter json, int process, int thread, String category,
+      String name, long start, long duration, long phase, long frameId) throws IOException {
+    json.beginObject();
+    json.name("name").value(name);
+    json.name("cat").value(category);
+    json.name("ph").value("X");
+    json.name("pid").value(process);
+    json.name("tid").value(thread);
+    json.name("ts").value(micros(start));
+    json.name("dur").value(micros(duration));
+    json.name("args").beginObject();
+    json.name("phase").value(phase);
+    if (frameId != FrameLog.UNAVAILABLE) {
+      json.name("frame_id").value(frameId);
+    }
+    json.endObject();
+    json.endObject();
+  }
+
+  /** Exports a side log section to the process of its frame log section. */
+  private interface SectionExporter {
+    void export(FrameLogReader reader, FrameLogReader.Section section, int process, JsonWriter json)
+        throws IOException;
+  }
+
+  /** Finds a column of the current frame log layout by name, or returns -1. */
+  private static int column(FrameLogReader.Section section, int column) {
+    return section.getColumnIndex(FrameLog.COLUMN_NAMES[column]);
+  }
+
+  /** Trace timestamps are in microseconds; keeps the nanoseconds as fraction. */
+  private static double micros(long nanos) {
+    return nanos / 1000.0;
+  }
+}
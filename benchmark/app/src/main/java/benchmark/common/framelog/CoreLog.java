@@ -0,0 +1,64 @@
+/*
+ * Copyright 2021, Brown University, Providence, RI.
+ * Rahul Shahi, Sherief Reda, Seif Abdelaziz
+ *
+ *                        All Rights Reserved
+ *
+ * Permission to use, copy, modify, and distribute this software and
+ * its documentation for any purpose other than its incorporation into a
+ * commercial product or service is hereby granted without fee, provided
+ * that the above copyright notice appear in all copies and that both
+ * that copyright notice and this permission notice appear in supporting
+ * documentation, and that the name of Brown University not be used in
+ * advertising or publicity pertaining to distribution of the software
+ * without specific, written prior permission.
+ *
+ * BROWN UNIVERSITY DISCLAIMS ALL WARRANTIES WITH REGARD TO THIS SOFTWARE,
+ * INCLUDING ALL IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR ANY
+ * PARTICULAR PURPOSE.  IN NO EVENT SHALL BROWN UNIVERSITY BE LIABLE FOR
+ * ANY SPECIAL, INDIRECT OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF
+ * OR IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+
+package benchmark.common.framelog;
+
+/**
+ * Layout of the core log, a side log of the frame log written by {@code
+ * benchmark.common.sampling.CoreSampler} in the {@link FrameLog} file format.
+ *
+ * <p>Every record is one sample of where the benchmark's threads ran. The CPU cores of
+ * heterogeneous SoCs form clusters of equal cores, e.g. little and big ones, and their number
+ * differs between devices. After the time, the record holds one column per thread role and cluster:
+ * the CPU time the threads of the role used since the previous sample, attributed to the cluster of
+ * the core each thread last ran on. Columns are named {@code <role>_<cluster>_ns}, roles in the
+ * order of {@link #ROLES} and clusters from the slowest to the fastest. Sample times use the clock
+ * of {@link FrameLog#FRAME_START}, so samples can be matched to frames.
+ *
+ * <p>This class only contains constants and is not meant to be instantiated.
+ */
+public final class CoreLog {
+  /** Name of the core log file in the app's external files directory. */
+  public static final String FILE_NAME = "core-log";
+
+  public static final int TIME = 0;
+  /** Column of the first cluster of the first role. */
+  public static final int FIRST_CLUSTER = 1;
+
+  /** The thread that renders the section's frames. */
+  public static final int RENDER = 0;
+  /** The coroutine worker threads, which run work such as object detection off the render thread. */
+  public static final int WORKER = 1;
+  /** The thread that recognizes text with Tesseract off the render thread. */
+  public static final int OCR = 2;
+  /** Prefixes of the column names of each role, indexed by role. */
+  public static final String[] ROLES = {"render", "worker", "ocr"};
+
+  public static final String TIME_COLUMN = "time_ns";
+  /** Suffix of the per-cluster CPU time columns. */
+  public static final String CLUSTER_SUFFIX = "_ns";
+
+  private CoreLog() {}
+}
@@ -0,0 +1,173 @@
+/*
+ * Copyright 2021, Brown University, Providence, RI.
+ * Rahul Shahi, Sherief Reda, Seif Abdelaziz
+ *
+ *                        All Rights Reserved
+ *
+ * Permission to use, copy, modify, and distribute this software and
+ * its documentation for any purpose other than its incorporation into a
+ * commercial product or service is hereby granted without fee, provided
+ * that the above copyright notice appear in all copies and that both
+ * that copyright notice and this permission notice appear in supporting
+ * documentation, and that the name of Brown University not be used in
+ * advertising or publicity pertaining to distribution of the software
+ * without specific, written prior permission.
+ *
+ * BROWN UNIVERSITY DISCLAIMS ALL WARRANTIES WITH REGARD TO THIS SOFTWARE,
+ * INCLUDING ALL IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR ANY
+ * PARTICULAR PURPOSE.  IN NO EVENT SHALL BROWN UNIVERSITY BE LIABLE FOR
+ * ANY SPECIAL, INDIRECT OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF
+ * OR IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package benchmark.common.framelog;
+
+import java.nio.ByteOrder;
+
+/**
+ * Layout of the binary frame log shared by {@link FrameLogWriter} and {@link FrameLogReader}.
+ *
+ * <p>The log is a sequence of sections, one per benchmark section run. Each section starts with a
+ * header followed by fixed-width records. All values are little-endian.
+ *
+ * <pre>
+ *   int    magic          "ARFL"
+ *   int    version
+ *   int    header size    in bytes, including padding
+ *   int    column count
+ *   long   record count   updated by the writer after every record
+ *   long   overflow count times the writer's queue was full, see {@link FrameLogWriter}
+ *   long   dropped count  records lost because the queue was full
+ *   utf    section name   (u16 length followed by UTF-8 bytes)
+ *   utf    recording name
+ *   utf    column names   (column count entries)
+ *   ...    zero padding   up to a multiple of 8 bytes
+ *   long[column count]    one record per frame
+ * </pre>
+ *
+ * <p>This class only contains constants and is not meant to be instantiated.
+ */
+public final class FrameLog {
+  /** Name of the log file in the app's external files directory. */
+  public static final String FILE_NAME = "frame-log";
+
+  public static final int MAGIC = 0x4C465241; // "ARFL" in little-endian byte order
+  public static final int VERSION = 2;
+  public static final ByteOrder BYTE_ORDER = ByteOrder.LITTLE_ENDIAN;
+
+  /* package-private */ static final int RECORD_COUNT_OFFSET = 16;
+  /* package-private */ static final int OVERFLOW_COUNT_OFFSET = 24;
+  /* package-private */ static final int DROPPED_COUNT_OFFSET = 32;
+  /* package-private */ static final int FIXED_HEADER_SIZE = 40;
+
+  // Column indices of the default frame record. Durations carry their unit in the column name.
+  public static final int PHASE = 0;
+  /** Sequence number of the frame within the section, used to join results measured later. */
+  public static final int FRAME_ID = 1;
+  public static final int FRAME_START = 2;
+  public static final int TOTAL_TIME = 3;
+  public static final int GPU_TIME = 4;
+  /** Column of the first {@link FrameTimer} stage, the other stages follow in order. */
+  public static final int FIRST_STAGE = 5;
+  /**
+   * Column of the GPU time of {@link FrameTimer#FIRST_RENDER_STAGE}, the other render stages follow
+   * in order. {@link #GPU_TIME} is the sum of these columns.
+   */
+  public static final int FIRST_GPU_STAGE = FIRST_STAGE + FrameTimer.STAGE_NAMES.length;
+  /** 1 if a disjoint event invalidated the GPU measurements of the frame, 0 otherwise. */
+  public static final int GPU_DISJOINT =
+      FIRST_GPU_STAGE + FrameTimer.STAGE_NAMES.length - FrameTimer.FIRST_RENDER_STAGE;
+  /**
+   * GPU clock when the frame started, read together with the CPU clock, and when the GPU finished
+   * the commands of the frame, from a timestamp query. The difference of the begin clock to {@link
+   * #FRAME_START} aligns the GPU timeline with the CPU stages of the frame.
+   */
+  public static final int GPU_CLOCK_BEGIN = GPU_DISJOINT + 1;
+  public static final int GPU_CLOCK_END = GPU_DISJOINT + 2;
+  /**
+   * Column of the time from the frame start to the first entry of the first {@link FrameTimer}
+   * stage, the other stages follow in order. {@link #UNAVAILABLE} for stages the frame skipped.
+   */
+  public static final int FIRST_STAGE_START = GPU_CLOCK_END + 1;
+  /**
+   * CPU time since the previous frame of the render thread, of the whole process in milliseconds,
+   * and of the coroutine worker threads. Unlike {@link #TOTAL_TIME} these include time between
+   * frames and exclude time the render thread spent waiting.
+   */
+  public static final int THREAD_CPU = FIRST_STAGE_START + FrameTimer.STAGE_NAMES.length;
+  public static final int PROCESS_CPU = THREAD_CPU + 1;
+  public static final int WORKER_CPU = THREAD_CPU + 2;
+  /**
+   * Objects and bytes allocated by the render thread since the previous frame, or {@link
+   * #UNAVAILABLE} unless allocation counting is enabled.
+   */
+  public static final int ALLOC_COUNT = WORKER_CPU + 1;
+  public static final int ALLOC_SIZE = WORKER_CPU + 2;
+  /** Garbage collections since the previous frame, and the time blocking collections took. */
+  public static final int GC_COUNT = WORKER_CPU + 3;
+  public static final int GC_BLOCKING_TIME = WORKER_CPU + 4;
+  /**
+   * GPU memory allocated by the section at the end of the frame, and the most it allocated at once
+   * since the previous frame. {@link #UNAVAILABLE} for sections that do not track their GPU memory.
+   */
+  public static final int GPU_MEMORY = GC_BLOCKING_TIME + 1;
+  public static final int GPU_MEMORY_PEAK = GC_BLOCKING_TIME + 2;
+  /**
+   * Column of the GPU memory of the first allocation category at the end of the frame, the other
+   * categories follow in the order of {@code benchmark.common.samplerender.GpuMemory.Category}.
+   */
+  public static final int FIRST_GPU_MEMORY_CATEGORY = GC_BLOCKING_TIME + 3;
+  /**
+   * Time the render thread spent drawing the performance HUD since the previous frame, 0 when the
+   * HUD is off. The analysis subtracts it from the frame interval.
+   */
+  public static final int HUD_TIME = FIRST_GPU_MEMORY_CATEGORY + 5;
+  /**
+   * Column of the time from the frame start to when the GPU started {@link
+   * FrameTimer#FIRST_RENDER_STAGE}, from a timestamp query on the clock of {@link
+   * #GPU_CLOCK_BEGIN}; the other render stages follow in order. {@link #UNAVAILABLE} for stages
+   * that were not timed on the GPU.
+   */
+  public static final int FIRST_GPU_STAGE_START = HUD_TIME + 1;
+
+  /** Value of a measurement that could not be taken for a frame, e.g. a GPU time. */
+  public static final long UNAVAILABLE = -1L;
+
+  public static final String[] COLUMN_NAMES = {
+    "phase", "frame_id", "frame_start_ns", "total_ns", "gpu_ns",
+    "update_ns", "input_ns", "background_ns", "planes_ns", "point_cloud_ns", "cubemap_filter_ns",
+    "objects_ns", "compose_ns",
+    "gpu_background_ns", "gpu_planes_ns", "gpu_point_cloud_ns", "gpu_cubemap_filter_ns",
+    "gpu_objects_ns", "gpu_compose_ns",
+    "gpu_disjoint", "gpu_clock_begin_ns", "gpu_clock_end_ns",
+    "update_start_ns", "input_start_ns", "background_start_ns", "planes_start_ns",
+    "point_cloud_start_ns", "cubemap_filter_start_ns", "objects_start_ns", "compose_start_ns",
+    "thread_cpu_ns", "process_cpu_ms", "worker_cpu_ns",
+    "alloc_count", "alloc_bytes", "gc_count", "gc_blocking_ms",
+    "gpu_memory_bytes", "gpu_memory_peak_bytes",
+    "gpu_buffer_bytes", "gpu_texture_bytes", "gpu_framebuffer_bytes", "gpu_cubemap_filter_bytes",
+    "gpu_label_cache_bytes",
+    "hud_ns",
+    "gpu_background_start_ns", "gpu_planes_start_ns", "gpu_point_cloud_start_ns",
+    "gpu_cubemap_filter_start_ns", "gpu_objects_start_ns", "gpu_compose_start_ns",
+  };
+
+  /**
+   * Returns the number of nanoseconds in one unit of a time column, derived from the unit suffix of
+   * its name ({@code _ns}, {@code _us} or {@code _ms}), or 0 if the column does not hold a time.
+   */
+  public static long nanosPerUnit(String columnName) {
+    if (columnName.endsWith("_ns")) {
+      return 1L;
+    } else if (columnName.endsWith("_us")) {
+      return 1_000L;
+    } else if (columnName.endsWith("_ms")) {
+      return 1_000_000L;
+    }
+    return 0L;
+  }
+
+  private FrameLog() {}
+}
@@ -0,0 +1,174 @@
+/*
+ * Copyright 2021, Brown University, Providence, RI.
+ * Rahul Shahi, Sherief Reda, Seif Abdelaziz
+ *
+ *                        All Rights Reserved
+ *
+ * Permission to use, copy, modify, and distribute this software and
+ * its documentation for any purpose other than its incorporation into a
+ * commercial product or service is hereby granted without fee, provided
+ * that the above copyright notice appear in all copies and that both
+ * that copyright notice and this permission notice appear in supporting
+ * documentation, and that the name of Brown University not be used in
+ * advertising or publicity pertaining to distribution of the software
+ * without specific, written prior permission.
+ *
+ * BROWN UNIVERSITY DISCLAIMS ALL WARRANTIES WITH REGARD TO THIS SOFTWARE,
+ * INCLUDING ALL IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR ANY
+ * PARTICULAR PURPOSE.  IN NO EVENT SHALL BROWN UNIVERSITY BE LIABLE FOR
+ * ANY SPECIAL, INDIRECT OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF
+ * OR IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package benchmark.common.framelog;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Appends one section of fixed-width frame records to the frame log file.
+ *
+ * <p>Records are written into a memory-mapped window of the log file. When the window is full the
+ * next window is mapped, so a record only costs a few stores into mapped memory. The record count
+ * in the section header is kept up to date after every record, so a log is readable even if the
+ * process dies before {@link #close()}.
+ *
+ * <p>Not thread-safe; used only by the writer thread of {@link FrameLogWriter}.
+ */
+class FrameLogFile implements Closeable {
+  // Size of each mapped region of the file. Rounded down to a whole number of records.
+  private static final int WINDOW_SIZE = 1 << 20;
+
+  private final RandomAccessFile file;
+  private final FileChannel channel;
+  private final MappedByteBuffer header;
+  private final long sectionStart;
+  private final long recordsStart;
+  private final int columnCount;
+  private final int recordSize;
+  private final int windowSize;
+
+  private MappedByteBuffer window;
+  private long windowStart;
+  private int windowPosition;
+  private long recordCount;
+
+  /**
+   * Opens the log file and appends a new section header to it.
+   *
+   * @param logFile file to append to, created if it does not exist
+   * @param sectionName human readable name of the benchmark section
+   * @param recordingName name of the recording that is played back
+   * @param columns names of the columns of each record, see {@link FrameLog#COLUMN_NAMES}
+   */
+  FrameLogFile(File logFile, String sectionName, String recordingName, String[] columns)
+      throws IOException {
+    this.columnCount = columns.length;
+    this.recordSize = columns.length * Long.BYTES;
+    this.windowSize = Math.max(1, WINDOW_SIZE / recordSize) * recordSize;
+
+    byte[] headerBytes = encodeHeader(sectionName, recordingName, columns);
+    file = new RandomAccessFile(logFile, "rw");
+    try {
+      channel = file.getChannel();
+      sectionStart = channel.size();
+      recordsStart = sectionStart + headerBytes.length;
+      header = channel.map(FileChannel.MapMode.READ_WRITE, sectionStart, headerBytes.length);
+      header.order(FrameLog.BYTE_ORDER);
+      header.put(headerBytes);
+      mapWindow(recordsStart);
+    } catch (IOException | RuntimeException e) {
+      file.close();
+      throw e;
+    }
+  }
+
+  /** Appends the record stored at the given offset of the array to the log. */
+  void append(long[] values, int offset) throws IOException {
+    if (window == null) {
+      throw new IOException("Frame log is closed");
+    }
+    if (windowPosition + recordSize > windowSize) {
+      mapWindow(windowStart + windowSize);
+    }
+    for (int i = 0; i < columnCount; i++) {
+      window.putLong(windowPosition + i * Long.BYTES, values[offset + i]);
+    }
+    windowPosition += recordSize;
+    recordCount++;
+    header.putLong(FrameLog.RECORD_COUNT_OFFSET, recordCount);
+  }
+
+  /** Stores the counters of records that did not make it into the log in the section header. */
+  void setDropCounters(long overflowCount, long droppedCount) {
+    header.putLong(FrameLog.OVERFLOW_COUNT_OFFSET, overflowCount);
+    header.putLong(FrameLog.DROPPED_COUNT_OFFSET, droppedCount);
+  }
+
+  /** Returns the number of records written so far. */
+  long getRecordCount() {
+    return recordCount;
+  }
+
+  /** Trims the unused part of the last mapped window and closes the file. */
+  @Override
+  public void close() throws IOException {
+    if (window == null) {
+      return;
+    }
+    window = null;
+    try {
+      header.putLong(FrameLog.RECORD_COUNT_OFFSET, recordCount);
+      header.force();
+      channel.truncate(recordsStart + recordCount * recordSize);
+    } finally {
+      file.close();
+    }
+  }
+
+  private void mapWindow(long start) throws IOException {
+    window = channel.map(FileChannel.MapMode.READ_WRITE, start, windowSize);
+    window.order(FrameLog.BYTE_ORDER);
+    windowStart = start;
+    windowPosition = 0;
+  }
+
+  private static byte[] encodeHeader(String sectionName, String recordingName, String[] columns) {
+    byte[][] strings = new byte[columns.length + 2][];
+    strings[0] = sectionName.getBytes(StandardCharsets.UTF_8);
+    strings[1] = recordingName.getBytes(StandardCharsets.UTF_8);
+    for (int i = 0; i < columns.length; i++) {
+      strings[i + 2] = columns[i].getBytes(StandardCharsets.UTF_8);
+    }
+    int size = FrameLog.FIXED_HEADER_SIZE;
+    for (byte[] string : strings) {
+      if (string.length > 0xFFFF) {
+        throw new IllegalArgumentException("Frame log header string is too long");
+      }
+      size += 2 + string.length;
+    }
+    size = (size + Long.BYTES - 1) / Long.BYTES * Long.BYTES;
+
+    ByteBuffer buffer = ByteBuffer.allocate(size).order(FrameLog.BYTE_ORDER);
+    buffer.putInt(FrameLog.MAGIC);
+    buffer.putInt(FrameLog.VERSION);
+    buffer.putInt(size);
+    buffer.putInt(columns.length);
+    buffer.putLong(0);  // record count
+    buffer.putLong(0);  // overflow count
+    buffer.putLong(0);  // dropped count
+    for (byte[] string : strings) {
+      buffer.putShort((short) string.length);
+      buffer.put(string);
+    }
+    return buffer.array();
+  }
+}
@@ -0,0 +1,248 @@
+/*
+ * Copyright 2021, Brown University, Providence, RI.
+ * Rahul Shahi, Sherief Reda, Seif Abdelaziz
+ *
+ *                        All Rights Reserved
+ *
+ * Permission to use, copy, modify, and distribute this software and
+ * its documentation for any purpose other than its incorporation into a
+ * commercial product or service is hereby granted without fee, provided
+ * that the above copyright notice appear in all copies and that both
+ * that copyright notice and this permission notice appear in supporting
+ * documentation, and that the name of Brown University not be used in
+ * advertising or publicity pertaining to distribution of the software
+ * without specific, written prior permission.
+ *
+ * BROWN UNIVERSITY DISCLAIMS ALL WARRANTIES WITH REGARD TO THIS SOFTWARE,
+ * INCLUDING ALL IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR ANY
+ * PARTICULAR PURPOSE.  IN NO EVENT SHALL BROWN UNIVERSITY BE LIABLE FOR
+ * ANY SPECIAL, INDIRECT OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF
+ * OR IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package benchmark.common.framelog;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Streams sections and records out of a frame log written by {@link FrameLogWriter}.
+ *
+ * <p>Only a small fixed-size buffer is held in memory, so arbitrarily large logs can be read. Usage:
+ *
+ * <pre>
+ *   try (FrameLogReader reader = new FrameLogReader(file)) {
+ *     FrameLogReader.Section section;
+ *     while ((section = reader.nextSection()) != null) {
+ *       long[] record = new long[section.getColumnCount()];
+ *       while (reader.nextRecord(record)) {
+ *         ...
+ *       }
+ *     }
+ *   }
+ * </pre>
+ */
+public class FrameLogReader implements Closeable {
+  private static final int BUFFER_SIZE = 64 * 1024;
+
+  private final FileInputStream stream;
+  private final FileChannel channel;
+  private final ByteBuffer buffer;
+
+  private Section section;
+  private long remainingRecords;
+
+  public FrameLogReader(File logFile) throws IOException {
+    stream = new FileInputStream(logFile);
+    channel = stream.getChannel();
+    buffer = ByteBuffer.allocate(BUFFER_SIZE).order(FrameLog.BYTE_ORDER);
+    buffer.limit(0);
+  }
+
+  /**
+   * Advances to the next section of the log, skipping any unread records of the current one.
+   *
+   * @return the header of the next section, or null at the end of the log
+   */
+  public Section nextSection() throws IOException {
+    if (remainingRecords > 0) {
+      skip((long) section.recordSize * remainingRecords);
+      remainingRecords = 0;
+    }
+    section = null;
+
+    // A writer that did not shut down cleanly may leave zero filled space behind its last record.
+    int magic;
+    do {
+      if (!fill(Long.BYTES)) {
+        return null;
+      }
+      magic = buffer.getInt(buffer.position());
+      if (magic == 0) {
+        buffer.position(buffer.position() + Long.BYTES);
+      }
+    } while (magic == 0);
+
+    if (!fill(FrameLog.FIXED_HEADER_SIZE)) {
+      throw new EOFException("Truncated frame log header");
+    }
+    if (magic != FrameLog.MAGIC) {
+      throw new IOException("Not a frame log section at offset " + offsetOf(buffer.position()));
+    }
+    int version = buffer.getInt(buffer.position() + 4);
+    if (version != FrameLog.VERSION) {
+      throw new IOException("Unsupported frame log version " + version);
+    }
+    int headerSize = buffer.getInt(buffer.position() + 8);
+    if (headerSize < FrameLog.FIXED_HEADER_SIZE || headerSize > BUFFER_SIZE || !fill(headerSize)) {
+      throw new EOFException("Truncated frame log header");
+    }
+    int headerStart = buffer.position();
+    buffer.position(headerStart + 12);
+    int columnCount = buffer.getInt();
+    long recordCount = buffer.getLong();
+    long overflowCount = buffer.getLong();
+    long droppedCount = buffer.getLong();
+    String sectionName = readString();
+    String recordingName = readString();
+    String[] columns = new String[columnCount];
+    for (int i = 0; i < columnCount; i++) {
+      columns[i] = readString();
+    }
+    buffer.position(headerStart + headerSize);
+
+    section = new Section(sectionName, recordingName, columns, recordCount, overflowCount,
+        droppedCount);
+    remainingRecords = recordCount;
+    return section;
+  }
+
+  /**
+   * Reads the next record of the current section.
+   *
+   * @param record array of at least {@link Section#getColumnCount()} entries that receives the values
+   * @return false if there are no more records in the current section
+   */
+  public boolean nextRecord(long[] record) throws IOException {
+    if (remainingRecords == 0) {
+      return false;
+    }
+    if (!fill(section.recordSize)) {
+      // The section was cut short, e.g. the device ran out of storage.
+      remainingRecords = 0;
+      return false;
+    }
+    for (int i = 0; i < section.columns.length; i++) {
+      record[i] = buffer.getLong();
+    }
+    remainingRecords--;
+    return true;
+  }
+
+  @Override
+  public void close() throws IOException {
+    stream.close();
+  }
+
+  /** Makes sure at least count bytes are buffered. Returns false at the end of the file. */
+  private boolean fill(int count) throws IOException {
+    if (buffer.remaining() >= count) {
+      return true;
+    }
+    buffer.compact();
+    while (buffer.position() < count) {
+      if (channel.read(buffer) < 0) {
+        buffer.flip();
+        return false;
+      }
+    }
+    buffer.flip();
+    return true;
+  }
+
+  private void skip(long count) throws IOException {
+    long buffered = Math.min(count, buffer.remaining());
+    buffer.position(buffer.position() + (int) buffered);
+    if (count > buffered) {
+      channel.position(Math.min(channel.size(), channel.position() + count - buffered));
+    }
+  }
+
+  private String readString() {
+    int length = buffer.getShort() & 0xFFFF;
+    String value = new String(buffer.array(), buffer.position(), length, StandardCharsets.UTF_8);
+    buffer.position(buffer.position() + length);
+    return value;
+  }
+
+  private long offsetOf(int bufferIndex) throws IOException {
+    return channel.position() - buffer.limit() + bufferIndex;
+  }
+
+  /** Header of one section of the frame log. */
+  public static class Section {
+    private final String sectionName;
+    private final String recordingName;
+    private final String[] columns;
+    private final long recordCount;
+    private final long overflowCount;
+    private final long droppedCount;
+    private final int recordSize;
+
+    Section(String sectionName, String recordingName, String[] columns, long recordCount,
+        long overflowCount, long droppedCount) {
+      this.sectionName = sectionName;
+      this.recordingName = recordingName;
+      this.columns = columns;
+      this.recordCount = recordCount;
+      this.overflowCount = overflowCount;
+      this.droppedCount = droppedCount;
+      this.recordSize = columns.length * Long.BYTES;
+    }
+
+    public String getSectionName() {
+      return sectionName;
+    }
+
+    public String getRecordingName() {
+      return recordingName;
+    }
+
+    public int getColumnCount() {
+      return columns.length;
+    }
+
+    public String getColumnName(int column) {
+      return columns[column];
+    }
+
+    /** Returns the index of the column with the given name, or -1 if the section lacks it. */
+    public int getColumnIndex(String name) {
+      return Arrays.asList(columns).indexOf(name);
+    }
+
+    /** Returns the number of records the writer reported for this section. */
+    public long getRecordCount() {
+      return recordCount;
+    }
+
+    /** Returns how many times the writer's queue overflowed while recording this section. */
+    public long getOverflowCount() {
+      return overflowCount;
+    }
+
+    /** Returns the number of records that were dropped because the writer's queue was full. */
+    public long getDroppedCount() {
+      return droppedCount;
+    }
+  }
+}
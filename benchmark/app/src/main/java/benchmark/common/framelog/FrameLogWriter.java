@@ -0,0 +1,259 @@
+/*
+ * Copyright 2021, Brown University, Providence, RI.
+ * Rahul Shahi, Sherief Reda, Seif Abdelaziz
+ *
+ *                        All Rights Reserved
+ *
+ * Permission to use, copy, modify, and distribute this software and
+ * its documentation for any purpose other than its incorporation into a
+ * commercial product or service is hereby granted without fee, provided
+ * that the above copyright notice appear in all copies and that both
+ * that copyright notice and this permission notice appear in supporting
+ * documentation, and that the name of Brown University not be used in
+ * advertising or publicity pertaining to distribution of the software
+ * without specific, written prior permission.
+ *
+ * BROWN UNIVERSITY DISCLAIMS ALL WARRANTIES WITH REGARD TO THIS SOFTWARE,
+ * INCLUDING ALL IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR ANY
+ * PARTICULAR PURPOSE.  IN NO EVENT SHALL BROWN UNIVERSITY BE LIABLE FOR
+ * ANY SPECIAL, INDIRECT OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF
+ * OR IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package benchmark.common.framelog;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Appends one section of fixed-width frame records to the frame log without doing any I/O on the
+ * thread that produces the records.
+ *
+ * <p>{@link #commit()} copies the staged record into a single-producer/single-consumer lock-free
+ * ring of primitive records. A low-priority writer thread drains the ring into the log file. The
+ * producer never blocks, allocates or makes a system call: if the ring is full the record is
+ * dropped, and the section header counts how often the ring overflowed and how many records were
+ * lost.
+ *
+ * <p>With {@link #setDrainLog} the writer thread also records when it wrote records, so that its
+ * activity can be told apart from the benchmark's in a trace.
+ *
+ * <p>{@link #set(int, long)} and {@link #commit()} must always be called from the same thread,
+ * normally the render thread.
+ */
+public class FrameLogWriter implements Closeable {
+  /** Default number of records the ring holds, a few seconds of frames at 60 FPS. */
+  public static final int DEFAULT_CAPACITY = 1024;
+
+  // How long the writer thread sleeps when the ring is empty.
+  private static final long DRAIN_INTERVAL_NANOS = 50_000_000L;
+
+  private final FrameLogFile file;
+  private final String[] columns;
+  private final long[] record;
+  private final long[] ring;
+  private final int capacity;
+  private final Thread writerThread;
+
+  // Index of the next record to publish, only advanced by the producer.
+  private final AtomicLong tail = new AtomicLong();
+  // Index of the next record to write to the file, only advanced by the writer thread.
+  private final AtomicLong head = new AtomicLong();
+  // Producer's last view of head, refreshed only when the ring looks full.
+  private long cachedHead;
+
+  // Written by the producer only.
+  private volatile long overflowCount;
+  private volatile long droppedCount;
+  private boolean overflowing;
+
+  private volatile boolean closed;
+  private volatile IOException failure;
+  // Set by setDrainLog, dropped by the writer thread if committing to it fails.
+  private volatile FrameLogWriter drainLog;
+
+  /**
+   * Opens the log file, appends a new section header to it and starts the writer thread.
+   *
+   * @param logFile file to append to, created if it does not exist
+   * @param sectionName human readable name of the benchmark section
+   * @param recordingName name of the recording that is played back
+   * @param columns names of the columns of each record, see {@link FrameLog#COLUMN_NAMES}
+   */
+  public FrameLogWriter(File logFile, String sectionName, String recordingName, String[] columns)
+      throws IOException {
+    this(logFile, sectionName, recordingName, columns, DEFAULT_CAPACITY);
+  }
+
+  /**
+   * Same as {@link #FrameLogWriter(File, String, String, String[])} with a ring of the given number
+   * of records, rounded up to a power of two.
+   */
+  public FrameLogWriter(
+      File logFile, String sectionName, String recordingName, String[] columns, int capacity)
+      throws IOException {
+    if (capacity <= 0 || capacity > 1 << 20) {
+      throw new IllegalArgumentException("Invalid frame log capacity " + capacity);
+    }
+    this.columns = columns.clone();
+    this.record = new long[columns.length];
+    int size = 1;
+    while (size < capacity) {
+      size <<= 1;
+    }
+    this.capacity = size;
+    this.ring = new long[this.capacity * columns.length];
+    this.file = new FrameLogFile(logFile, sectionName, recordingName, columns);
+    writerThread = new Thread(this::drain, "FrameLogWriter");
+    writerThread.setPriority(Thread.MIN_PRIORITY);
+    writerThread.setDaemon(true);
+    writerThread.start();
+  }
+
+  /** Returns the index of the column with the given name, or -1 if there is no such column. */
+  public int getColumnIndex(String name) {
+    return Arrays.asList(columns).indexOf(name);
+  }
+
+  /** Sets a value of the record that is committed by the next call to {@link #commit()}. */
+  public void set(int column, long value) {
+    record[column] = value;
+  }
+
+  /**
+   * Queues the current record for the writer thread and resets all of its values to zero. The
+   * record is dropped if the queue is full.
+   *
+   * @throws IOException if the log is closed or the writer thread failed to write to the file
+   */
+  public void commit() throws IOException {
+    if (failure != null) {
+      throw failure;
+    }
+    if (closed) {
+      throw new IOException("Frame log is closed");
+    }
+    long index = tail.get();
+    if (index - cachedHead == capacity) {
+      cachedHead = head.get();
+      if (index - cachedHead == capacity) {
+        if (!overflowing) {
+          overflowing = true;
+          overflowCount++;
+        }
+        droppedCount++;
+        Arrays.fill(record, 0L);
+        return;
+      }
+    }
+    overflowing = false;
+    System.arraycopy(record, 0, ring, slotOffset(index), record.length);
+    Arrays.fill(record, 0L);
+    tail.lazySet(index + 1);
+  }
+
+  /**
+   * Records every pass of the writer thread that writes records as a {@link WriterLog} record into
+   * the given log, from then on. The writer thread becomes the only producer of that log. The
+   * caller keeps ownership of it and closes it after this log, so that the last passes are kept.
+   */
+  public void setDrainLog(FrameLogWriter drainLog) {
+    this.drainLog = drainLog;
+  }
+
+  /** Returns the number of records that were dropped because the queue was full. */
+  public long getDroppedCount() {
+    return droppedCount;
+  }
+
+  /** Returns how many times the queue overflowed. */
+  public long getOverflowCount() {
+    return overflowCount;
+  }
+
+  /**
+   * Waits for the writer thread to write all queued records, then closes the file. Records
+   * committed concurrently with this call may be lost.
+   */
+  @Override
+  public void close() throws IOException {
+    if (closed) {
+      return;
+    }
+    closed = true;
+    LockSupport.unpark(writerThread);
+    try {
+      writerThread.join();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Interrupted while closing the frame log");
+    }
+    if (failure != null) {
+      throw failure;
+    }
+  }
+
+  private int slotOffset(long index) {
+    return (int) (index & (capacity - 1)) * record.length;
+  }
+
+  /** Logs a pass of the writer thread that started at the given time into the drain log. */
+  private void logDrain(long passStart, long records) {
+    FrameLogWriter drainLog = this.drainLog;
+    if (drainLog == null) {
+      return;
+    }
+    drainLog.set(WriterLog.START, passStart);
+    drainLog.set(WriterLog.END, System.nanoTime());
+    drainLog.set(WriterLog.RECORDS, records);
+    try {
+      drainLog.commit();
+    } catch (IOException e) {
+      // The drain log is closed or broken, which must not stop this log.
+      this.drainLog = null;
+    }
+  }
+
+  /** Body of the writer thread. */
+  private void drain() {
+    try {
+      long index = head.get();
+      while (true) {
+        // Read closed before tail, so that everything committed before close() is seen.
+        boolean stopping = closed;
+        long end = tail.get();
+        long passStart = System.nanoTime();
+        long first = index;
+        for (; index < end; index++) {
+          file.append(ring, slotOffset(index));
+          head.lazySet(index + 1);
+        }
+        file.setDropCounters(overflowCount, droppedCount);
+        if (index > first) {
+          logDrain(passStart, index - first);
+        }
+        if (stopping) {
+          break;
+        }
+        LockSupport.parkNanos(this, DRAIN_INTERVAL_NANOS);
+      }
+    } catch (IOException e) {
+      failure = e;
+    } finally {
+      try {
+        file.close();
+      } catch (IOException e) {
+        if (failure == null) {
+          failure = e;
+        }
+      }
+    }
+  }
+}
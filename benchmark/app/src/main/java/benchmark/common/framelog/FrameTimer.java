@@ -0,0 +1,144 @@
+/*
+ * Copyright 2021, Brown University, Providence, RI.
+ * Rahul Shahi, Sherief Reda, Seif Abdelaziz
+ *
+ *                        All Rights Reserved
+ *
+ * Permission to use, copy, modify, and distribute this software and
+ * its documentation for any purpose other than its incorporation into a
+ * commercial product or service is hereby granted without fee, provided
+ * that the above copyright notice appear in all copies and that both
+ * that copyright notice and this permission notice appear in supporting
+ * documentation, and that the name of Brown University not be used in
+ * advertising or publicity pertaining to distribution of the software
+ * without specific, written prior permission.
+ *
+ * BROWN UNIVERSITY DISCLAIMS ALL WARRANTIES WITH REGARD TO THIS SOFTWARE,
+ * INCLUDING ALL IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR ANY
+ * PARTICULAR PURPOSE.  IN NO EVENT SHALL BROWN UNIVERSITY BE LIABLE FOR
+ * ANY SPECIAL, INDIRECT OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF
+ * OR IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package benchmark.common.framelog;
+
+import java.util.Arrays;
+
+/**
+ * Measures the CPU time of the stages of one frame with {@link System#nanoTime()}.
+ *
+ * <p>Stages are identified by the constants of this class and can be nested, for example the
+ * objects stage can contain the compose stage. A stage that is entered more than once in a frame,
+ * such as the objects stage of a section that draws one object at a time, accumulates its time.
+ * Durations are inclusive of nested stages.
+ *
+ * <p>All state is kept in preallocated primitive arrays, so timing a frame does not allocate. Not
+ * thread-safe; all calls are expected on the render thread.
+ */
+public class FrameTimer {
+  // Stages of a frame. Sections that do not have a stage leave it at zero.
+  public static final int UPDATE = 0;
+  public static final int INPUT = 1;
+  public static final int BACKGROUND = 2;
+  public static final int PLANES = 3;
+  public static final int POINT_CLOUD = 4;
+  public static final int CUBEMAP_FILTER = 5;
+  public static final int OBJECTS = 6;
+  public static final int COMPOSE = 7;
+
+  /** Stages from this one on submit GPU work and are also timed on the GPU when supported. */
+  public static final int FIRST_RENDER_STAGE = BACKGROUND;
+
+  public static final String[] STAGE_NAMES = {
+    "update", "input", "background", "planes", "point_cloud", "cubemap_filter", "objects",
+    "compose",
+  };
+
+  private static final int MAX_DEPTH = 8;
+
+  private final long[] stageDurations = new long[STAGE_NAMES.length];
+  // Offset of the first entry of each stage from the frame start, or FrameLog.UNAVAILABLE.
+  private final long[] stageStarts = new long[STAGE_NAMES.length];
+  private final int[] openStages = new int[MAX_DEPTH];
+  private final long[] openStarts = new long[MAX_DEPTH];
+  private int depth;
+  private long frameStart;
+  private long frameDuration;
+
+  /** Starts a new frame, discarding the stage times and any stage left open by the last frame. */
+  public void beginFrame() {
+    Arrays.fill(stageDurations, 0L);
+    Arrays.fill(stageStarts, FrameLog.UNAVAILABLE);
+    depth = 0;
+    frameDuration = 0L;
+    frameStart = System.nanoTime();
+  }
+
+  /** Enters a stage. Must be matched by {@link #end(int)} with the same stage. */
+  public void begin(int stage) {
+    if (depth == MAX_DEPTH) {
+      throw new IllegalStateException("Stages nested deeper than " + MAX_DEPTH);
+    }
+    long now = System.nanoTime();
+    openStages[depth] = stage;
+    openStarts[depth] = now;
+    depth++;
+    if (stageStarts[stage] == FrameLog.UNAVAILABLE) {
+      stageStarts[stage] = now - frameStart;
+    }
+  }
+
+  /** Leaves the innermost stage, which has to be the given stage. */
+  public void end(int stage) {
+    long now = System.nanoTime();
+    if (depth == 0 || openStages[depth - 1] != stage) {
+      throw new IllegalStateException("Stage " + STAGE_NAMES[stage] + " is not the innermost stage");
+    }
+    depth--;
+    stageDurations[stage] += now - openStarts[depth];
+  }
+
+  /** Ends the frame. Stages that are still open are not counted. */
+  public void endFrame() {
+    frameDuration = System.nanoTime() - frameStart;
+    depth = 0;
+  }
+
+  /** Returns the {@link System#nanoTime()} at which the frame began. */
+  public long getFrameStart() {
+    return frameStart;
+  }
+
+  /** Returns the CPU time of the whole frame in nanoseconds, valid after {@link #endFrame()}. */
+  public long getFrameDuration() {
+    return frameDuration;
+  }
+
+  /** Returns the accumulated time of a stage in the current frame in nanoseconds. */
+  public long getStageDuration(int stage) {
+    return stageDurations[stage];
+  }
+
+  /**
+   * Returns the time from the frame start to the first entry of a stage in nanoseconds, or {@link
+   * FrameLog#UNAVAILABLE} if the stage was not entered in the current frame.
+   */
+  public long getStageStart(int stage) {
+    return stageStarts[stage];
+  }
+
+  /**
+   * Stores the frame start, frame duration, stage times and stage starts in a record with the
+   * {@link FrameLog#COLUMN_NAMES} layout that starts at the given offset of the array.
+   */
+  public void writeTo(long[] records, int offset) {
+    records[offset + FrameLog.FRAME_START] = frameStart;
+    records[offset + FrameLog.TOTAL_TIME] = frameDuration;
+    for (int stage = 0; stage < stageDurations.length; stage++) {
+      records[offset + FrameLog.FIRST_STAGE + stage] = stageDurations[stage];
+      records[offset + FrameLog.FIRST_STAGE_START + stage] = stageStarts[stage];
+    }
+  }
+}
@@ -0,0 +1,54 @@
+/*
+ * Copyright 2021, Brown University, Providence, RI.
+ * Rahul Shahi, Sherief Reda, Seif Abdelaziz
+ *
+ *                        All Rights Reserved
+ *
+ * Permission to use, copy, modify, and distribute this software and
+ * its documentation for any purpose other than its incorporation into a
+ * commercial product or service is hereby granted without fee, provided
+ * that the above copyright notice appear in all copies and that both
+ * that copyright notice and this permission notice appear in supporting
+ * documentation, and that the name of Brown University not be used in
+ * advertising or publicity pertaining to distribution of the software
+ * without specific, written prior permission.
+ *
+ * BROWN UNIVERSITY DISCLAIMS ALL WARRANTIES WITH REGARD TO THIS SOFTWARE,
+ * INCLUDING ALL IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR ANY
+ * PARTICULAR PURPOSE.  IN NO EVENT SHALL BROWN UNIVERSITY BE LIABLE FOR
+ * ANY SPECIAL, INDIRECT OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF
+ * OR IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+
+package benchmark.common.framelog;
+
+/**
+ * Layout of the power log, a side log of the frame log written by {@code
+ * benchmark.common.sampling.PowerSampler} in the {@link FrameLog} file format.
+ *
+ * <p>Every record is one reading of the battery. Sample times use the clock of {@link
+ * FrameLog#FRAME_START}. Depending on the device, a discharging battery reports a positive or a
+ * negative current; readers use its magnitude. Readings only measure the app while the device runs
+ * on battery, so every record also holds whether a charger was plugged in.
+ *
+ * <p>This class only contains constants and is not meant to be instantiated.
+ */
+public final class PowerLog {
+  /** Name of the power log file in the app's external files directory. */
+  public static final String FILE_NAME = "power-log";
+
+  public static final int TIME = 0;
+  /** Battery current in microamperes. */
+  public static final int CURRENT = 1;
+  /** Battery voltage in microvolts. */
+  public static final int VOLTAGE = 2;
+  /** 1 if the device ran on external power, 0 if it ran on battery. */
+  public static final int PLUGGED = 3;
+
+  public static final String[] COLUMN_NAMES = {"time_ns", "current_ua", "voltage_uv", "plugged"};
+
+  private PowerLog() {}
+}
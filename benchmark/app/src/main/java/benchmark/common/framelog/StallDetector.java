@@ -0,0 +1,174 @@
+/*
+ * Copyright 2021, Brown University, Providence, RI.
+ * Rahul Shahi, Sherief Reda, Seif Abdelaziz
+ *
+ *                        All Rights Reserved
+ *
+ * Permission to use, copy, modify, and distribute this software and
+ * its documentation for any purpose other than its incorporation into a
+ * commercial product or service is hereby granted without fee, provided
+ * that the above copyright notice appear in all copies and that both
+ * that copyright notice and this permission notice appear in supporting
+ * documentation, and that the name of Brown University not be used in
+ * advertising or publicity pertaining to distribution of the software
+ * without specific, written prior permission.
+ *
+ * BROWN UNIVERSITY DISCLAIMS ALL WARRANTIES WITH REGARD TO THIS SOFTWARE,
+ * INCLUDING ALL IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR ANY
+ * PARTICULAR PURPOSE.  IN NO EVENT SHALL BROWN UNIVERSITY BE LIABLE FOR
+ * ANY SPECIAL, INDIRECT OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF
+ * OR IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+
+package benchmark.common.framelog;
+
+import java.util.Arrays;
+
+/**
+ * Flags frames that take much longer than the frames before them.
+ *
+ * <p>The detector keeps rolling medians of the frame interval and of every {@link FrameTimer}
+ * stage over the last frames. A frame whose interval exceeds a multiple of the median interval is a
+ * stall; the stage that exceeded its own median by the most time is reported as its cause. Medians
+ * follow slow changes such as a heavier phase of the recording, so only sudden hitches are flagged.
+ *
+ * <p>Stalls are meant to be written to a side log with the {@link #COLUMN_NAMES} layout, together
+ * with context that only the caller knows. Does not allocate after construction. Not thread-safe.
+ */
+public class StallDetector {
+  /** Name of the stall log file in the app's external files directory. */
+  public static final String FILE_NAME = "stall-log";
+
+  /** Default multiple of the median interval above which a frame is a stall. */
+  public static final double DEFAULT_THRESHOLD = 2.5;
+  /** Number of frames the medians are taken over. */
+  public static final int WINDOW = 61;
+  // Frames needed before the median is trusted.
+  private static final int MIN_FRAMES = 15;
+
+  // Column indices of a stall record.
+  public static final int PHASE = 0;
+  public static final int FRAME_ID = 1;
+  public static final int INTERVAL = 2;
+  public static final int MEDIAN_INTERVAL = 3;
+  /** Index into {@link FrameTimer#STAGE_NAMES} of the stage that blew up, or -1. */
+  public static final int STAGE = 4;
+  public static final int STAGE_TIME = 5;
+  public static final int STAGE_MEDIAN = 6;
+  public static final int ANCHOR_COUNT = 7;
+  /** Garbage collections since the previous frame. */
+  public static final int GC_COUNT = 8;
+  public static final int THERMAL_STATUS = 9;
+  /** 1 if the update stage blew up while returning a new camera image, i.e. it waited for it. */
+  public static final int CAMERA_WAIT = 10;
+
+  public static final String[] COLUMN_NAMES = {
+    "phase", "frame_id", "interval_ns", "median_interval_ns", "stage", "stage_ns",
+    "stage_median_ns", "anchor_count", "gc_count", "thermal_status", "camera_wait",
+  };
+
+  private final double threshold;
+  private final RollingMedian intervals = new RollingMedian(WINDOW);
+  private final RollingMedian[] stages = new RollingMedian[FrameTimer.STAGE_NAMES.length];
+  private long medianInterval;
+  private int stalledStage = -1;
+  private long stalledStageMedian;
+
+  /** @param threshold multiple of the median interval above which a frame is a stall */
+  public StallDetector(double threshold) {
+    if (threshold <= 1.0) {
+      throw new IllegalArgumentException("Stall threshold must be above 1, got " + threshold);
+    }
+    this.threshold = threshold;
+    for (int stage = 0; stage < stages.length; stage++) {
+      stages[stage] = new RollingMedian(WINDOW);
+    }
+  }
+
+  /**
+   * Adds a finished frame and returns whether it is a stall. The stage getters then describe the
+   * stall.
+   *
+   * @param interval time from the start of the frame to the start of the next one in nanoseconds
+   * @param timer timer still holding the stage times of the frame
+   */
+  public boolean onFrame(long interval, FrameTimer timer) {
+    medianInterval = intervals.get();
+    boolean stall = intervals.size() >= MIN_FRAMES && interval > threshold * medianInterval;
+    intervals.add(interval);
+
+    stalledStage = -1;
+    stalledStageMedian = 0L;
+    long largestExcess = 0L;
+    for (int stage = 0; stage < stages.length; stage++) {
+      long duration = timer.getStageDuration(stage);
+      long median = stages[stage].get();
+      if (stall && duration - median > largestExcess) {
+        largestExcess = duration - median;
+        stalledStage = stage;
+        stalledStageMedian = median;
+      }
+      stages[stage].add(duration);
+    }
+    return stall;
+  }
+
+  /** Returns the median interval of the frames before the last one, in nanoseconds. */
+  public long getMedianInterval() {
+    return medianInterval;
+  }
+
+  /**
+   * Returns the stage that exceeded its median by the most time in the last stall, or -1 if no
+   * stage grew, e.g. when the time went into waiting for the display.
+   */
+  public int getStalledStage() {
+    return stalledStage;
+  }
+
+  /** Returns the median time of {@link #getStalledStage()} before the stall, in nanoseconds. */
+  public long getStalledStageMedian() {
+    return stalledStageMedian;
+  }
+
+  /** Median of the last values added, kept in a ring plus a sorted copy of the ring. */
+  private static final class RollingMedian {
+    private final long[] ring;
+    private final long[] sorted;
+    private int size;
+    private int next;
+
+    RollingMedian(int window) {
+      ring = new long[window];
+      sorted = new long[window];
+    }
+
+    int size() {
+      return size;
+    }
+
+    long get() {
+      return size == 0 ? 0L : sorted[size / 2];
+    }
+
+    void add(long value) {
+      if (size == ring.length) {
+        int oldest = Arrays.binarySearch(sorted, 0, size, ring[next]);
+        System.arraycopy(sorted, oldest + 1, sorted, oldest, size - oldest - 1);
+        size--;
+      }
+      int insert = Arrays.binarySearch(sorted, 0, size, value);
+      if (insert < 0) {
+        insert = -insert - 1;
+      }
+      System.arraycopy(sorted, insert, sorted, insert + 1, size - insert);
+      sorted[insert] = value;
+      size++;
+      ring[next] = value;
+      next = (next + 1) % ring.length;
+    }
+  }
+}
@@ -0,0 +1,62 @@
+/*
+ * Copyright 2021, Brown University, Providence, RI.
+ * Rahul Shahi, Sherief Reda, Seif Abdelaziz
+ *
+ *                        All Rights Reserved
+ *
+ * Permission to use, copy, modify, and distribute this software and
+ * its documentation for any purpose other than its incorporation into a
+ * commercial product or service is hereby granted without fee, provided
+ * that the above copyright notice appear in all copies and that both
+ * that copyright notice and this permission notice appear in supporting
+ * documentation, and that the name of Brown University not be used in
+ * advertising or publicity pertaining to distribution of the software
+ * without specific, written prior permission.
+ *
+ * BROWN UNIVERSITY DISCLAIMS ALL WARRANTIES WITH REGARD TO THIS SOFTWARE,
+ * INCLUDING ALL IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR ANY
+ * PARTICULAR PURPOSE.  IN NO EVENT SHALL BROWN UNIVERSITY BE LIABLE FOR
+ * ANY SPECIAL, INDIRECT OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF
+ * OR IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+
+package benchmark.common.framelog;
+
+/**
+ * Layout of the thermal log, a side log of the frame log written by {@code
+ * benchmark.common.sampling.ThermalSampler} in the {@link FrameLog} file format.
+ *
+ * <p>Every record is one sample of the device's thermal state. The number of thermal zones and CPU
+ * cores differs between devices, so only the first columns are fixed; the others are recognized by
+ * the suffix of their name. Sample times use the clock of {@link FrameLog#FRAME_START}, so samples
+ * can be matched to frames. Values that could not be read are {@link FrameLog#UNAVAILABLE}.
+ *
+ * <p>This class only contains constants and is not meant to be instantiated.
+ */
+public final class ThermalLog {
+  /** Name of the thermal log file in the app's external files directory. */
+  public static final String FILE_NAME = "thermal-log";
+
+  public static final int TIME = 0;
+  /** {@code PowerManager.getCurrentThermalStatus()}, from 0 (none) to 6 (shutdown). */
+  public static final int THERMAL_STATUS = 1;
+  /** Column of the first thermal zone or CPU core. */
+  public static final int FIRST_SOURCE = 2;
+
+  public static final String TIME_COLUMN = "time_ns";
+  public static final String THERMAL_STATUS_COLUMN = "thermal_status";
+  /** Suffix of the temperature columns, in millidegrees Celsius, one per thermal zone. */
+  public static final String TEMPERATURE_SUFFIX = "_temp_mc";
+  /** Suffix of the current clock columns, in kHz, one per CPU core. */
+  public static final String FREQUENCY_SUFFIX = "_cur_freq_khz";
+  /**
+   * Suffix of the clock limit columns, in kHz, one per CPU core. Thermal throttling lowers the
+   * limit.
+   */
+  public static final String MAX_FREQUENCY_SUFFIX = "_max_freq_khz";
+
+  private ThermalLog() {}
+}
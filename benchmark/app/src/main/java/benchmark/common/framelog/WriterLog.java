@@ -0,0 +1,48 @@
+/*
+ * Copyright 2021, Brown University, Providence, RI.
+ * Rahul Shahi, Sherief Reda, Seif Abdelaziz
+ *
+ *                        All Rights Reserved
+ *
+ * Permission to use, copy, modify, and distribute this software and
+ * its documentation for any purpose other than its incorporation into a
+ * commercial product or service is hereby granted without fee, provided
+ * that the above copyright notice appear in all copies and that both
+ * that copyright notice and this permission notice appear in supporting
+ * documentation, and that the name of Brown University not be used in
+ * advertising or publicity pertaining to distribution of the software
+ * without specific, written prior permission.
+ *
+ * BROWN UNIVERSITY DISCLAIMS ALL WARRANTIES WITH REGARD TO THIS SOFTWARE,
+ * INCLUDING ALL IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR ANY
+ * PARTICULAR PURPOSE.  IN NO EVENT SHALL BROWN UNIVERSITY BE LIABLE FOR
+ * ANY SPECIAL, INDIRECT OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF
+ * OR IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package benchmark.common.framelog;
+
+/**
+ * Layout of the writer log, a side log of the frame log that its {@link FrameLogWriter} fills from
+ * its own writer thread, see {@link FrameLogWriter#setDrainLog}.
+ *
+ * <p>Every record is one pass of the writer thread that wrote records to the frame log: when the
+ * pass started and ended, on the clock of {@link FrameLog#FRAME_START}, and how many records it
+ * wrote. Passes that found nothing to write are not logged.
+ *
+ * <p>This class only contains constants and is not meant to be instantiated.
+ */
+public final class WriterLog {
+  /** Name of the writer log file in the app's external files directory. */
+  public static final String FILE_NAME = "writer-log";
+
+  public static final int START = 0;
+  public static final int END = 1;
+  public static final int RECORDS = 2;
+
+  public static final String[] COLUMN_NAMES = {"start_ns", "end_ns", "records"};
+
+  private WriterLog() {}
+}
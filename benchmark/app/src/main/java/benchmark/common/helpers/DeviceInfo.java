@@ -0,0 +1,144 @@
+/*
+ * Copyright 2021, Brown University, Providence, RI.
+ * Rahul Shahi, Sherief Reda, Seif Abdelaziz
+ *
+ *                        All Rights Reserved
+ *
+ * Permission to use, copy, modify, and distribute this software and
+ * its documentation for any purpose other than its incorporation into a
+ * commercial product or service is hereby granted without fee, provided
+ * that the above copyright notice appear in all copies and that both
+ * that copyright notice and this permission notice appear in supporting
+ * documentation, and that the name of Brown University not be used in
+ * advertising or publicity pertaining to distribution of the software
+ * without specific, written prior permission.
+ *
+ * BROWN UNIVERSITY DISCLAIMS ALL WARRANTIES WITH REGARD TO THIS SOFTWARE,
+ * INCLUDING ALL IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR ANY
+ * PARTICULAR PURPOSE.  IN NO EVENT SHALL BROWN UNIVERSITY BE LIABLE FOR
+ * ANY SPECIAL, INDIRECT OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF
+ * OR IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+
+package benchmark.common.helpers;
+
+import android.content.Context;
+import android.content.pm.PackageManager;
+import android.opengl.EGL14;
+import android.opengl.EGLConfig;
+import android.opengl.EGLContext;
+import android.opengl.EGLDisplay;
+import android.opengl.EGLExt;
+import android.opengl.EGLSurface;
+import android.opengl.GLES30;
+import android.os.Build;
+import benchmark.common.analysis.ResultBundle;
+
+/** Adds what identifies the device and its graphics and AR stacks to a {@link ResultBundle}. */
+public final class DeviceInfo {
+  private static final String ARCORE_PACKAGE = "com.google.ar.core";
+
+  /**
+   * Adds the device, Android, GL and ARCore versions to the bundle. Creates a temporary GL context
+   * to read the GL strings, so it must be called from a thread without a current context.
+   */
+  public static void addTo(ResultBundle bundle, Context context) {
+    bundle.putDevice("manufacturer", Build.MANUFACTURER)
+        .putDevice("model", Build.MODEL)
+        .putDevice("device", Build.DEVICE)
+        .putDevice("board", Build.BOARD)
+        .putDevice("hardware", Build.HARDWARE)
+        // Build.SOC_MANUFACTURER and Build.SOC_MODEL were added in Android 12.
+        .putDevice("soc_manufacturer", getBuildField("SOC_MANUFACTURER"))
+        .putDevice("soc_model", getBuildField("SOC_MODEL"))
+        .putDevice("android_version", Build.VERSION.RELEASE)
+        .putDevice("sdk_int", Integer.toString(Build.VERSION.SDK_INT))
+        .putDevice("security_patch", Build.VERSION.SECURITY_PATCH)
+        .putDevice("fingerprint", Build.FINGERPRINT)
+        .putDevice("arcore_version", getVersionName(context, ARCORE_PACKAGE))
+        .putDevice("app_version", getVersionName(context, context.getPackageName()));
+    String[] glStrings = readGlStrings();
+    if (glStrings != null) {
+      bundle.putDevice("gl_vendor", glStrings[0])
+          .putDevice("gl_renderer", glStrings[1])
+          .putDevice("gl_version", glStrings[2])
+          .putDevice("glsl_version", glStrings[3]);
+    }
+  }
+
+  /** Returns a static string field of {@link Build}, or null if this Android version lacks it. */
+  private static String getBuildField(String name) {
+    try {
+      Object value = Build.class.getField(name).get(null);
+      return value instanceof String ? (String) value : null;
+    } catch (ReflectiveOperationException e) {
+      return null;
+    }
+  }
+
+  /** Returns the version name of an installed package, or null if it is not installed. */
+  private static String getVersionName(Context context, String packageName) {
+    try {
+      return context.getPackageManager().getPackageInfo(packageName, 0).versionName;
+    } catch (PackageManager.NameNotFoundException e) {
+      return null;
+    }
+  }
+
+  /**
+   * Returns the GL vendor, renderer, version and shading language version of an OpenGL ES 3
+   * context like the one the sections render with, or null if none could be created.
+   */
+  private static String[] readGlStrings() {
+    EGLDisplay display = EGL14.eglGetDisplay(EGL14.EGL_DEFAULT_DISPLAY);
+    int[] version = new int[2];
+    if (display == EGL14.EGL_NO_DISPLAY || !EGL14.eglInitialize(display, version, 0, version, 1)) {
+      return null;
+    }
+    int[] configAttributes = {
+      EGL14.EGL_RENDERABLE_TYPE, EGLExt.EGL_OPENGL_ES3_BIT_KHR,
+      EGL14.EGL_SURFACE_TYPE, EGL14.EGL_PBUFFER_BIT,
+      EGL14.EGL_NONE,
+    };
+    EGLConfig[] configs = new EGLConfig[1];
+    int[] configCount = new int[1];
+    if (!EGL14.eglChooseConfig(
+            display, configAttributes, 0, configs, 0, configs.length, configCount, 0)
+        || configCount[0] == 0) {
+      return null;
+    }
+    int[] contextAttributes = {EGL14.EGL_CONTEXT_CLIENT_VERSION, 3, EGL14.EGL_NONE};
+    EGLContext context = EGL14.eglCreateContext(
+        display, configs[0], EGL14.EGL_NO_CONTEXT, contextAttributes, 0);
+    if (context == EGL14.EGL_NO_CONTEXT) {
+      return null;
+    }
+    int[] surfaceAttributes = {EGL14.EGL_WIDTH, 1, EGL14.EGL_HEIGHT, 1, EGL14.EGL_NONE};
+    EGLSurface surface = EGL14.eglCreatePbufferSurface(display, configs[0], surfaceAttributes, 0);
+    try {
+      if (surface == EGL14.EGL_NO_SURFACE
+          || !EGL14.eglMakeCurrent(display, surface, surface, context)) {
+        return null;
+      }
+      String[] strings = {
+        GLES30.glGetString(GLES30.GL_VENDOR),
+        GLES30.glGetString(GLES30.GL_RENDERER),
+        GLES30.glGetString(GLES30.GL_VERSION),
+        GLES30.glGetString(GLES30.GL_SHADING_LANGUAGE_VERSION),
+      };
+      EGL14.eglMakeCurrent(
+          display, EGL14.EGL_NO_SURFACE, EGL14.EGL_NO_SURFACE, EGL14.EGL_NO_CONTEXT);
+      return strings;
+    } finally {
+      if (surface != EGL14.EGL_NO_SURFACE) {
+        EGL14.eglDestroySurface(display, surface);
+      }
+      EGL14.eglDestroyContext(display, context);
+    }
+  }
+
+  private DeviceInfo() {}
+}
@@ -0,0 +1,73 @@
+/*
+ * Copyright 2021, Brown University, Providence, RI.
+ * Rahul Shahi, Sherief Reda, Seif Abdelaziz
+ *
+ *                        All Rights Reserved
+ *
+ * Permission to use, copy, modify, and distribute this software and
+ * its documentation for any purpose other than its incorporation into a
+ * commercial product or service is hereby granted without fee, provided
+ * that the above copyright notice appear in all copies and that both
+ * that copyright notice and this permission notice appear in supporting
+ * documentation, and that the name of Brown University not be used in
+ * advertising or publicity pertaining to distribution of the software
+ * without specific, written prior permission.
+ *
+ * BROWN UNIVERSITY DISCLAIMS ALL WARRANTIES WITH REGARD TO THIS SOFTWARE,
+ * INCLUDING ALL IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR ANY
+ * PARTICULAR PURPOSE.  IN NO EVENT SHALL BROWN UNIVERSITY BE LIABLE FOR
+ * ANY SPECIAL, INDIRECT OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF
+ * OR IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package benchmark.common.helpers;
+
+/**
+ * Issues and reads the GPU timestamp queries of the EXT_disjoint_timer_query extension, whose entry
+ * points GLES30 does not expose, through the small native library built from {@code src/main/cpp}.
+ *
+ * <p>All methods must be called on a GL thread with a current context that has the extension.
+ */
+public final class GpuTimestamps {
+  private static final boolean LOADED = loadLibrary();
+
+  /**
+   * Looks up the entry points of the extension. Returns whether the native library could be loaded
+   * and both entry points were found; the other methods may only be called if it did.
+   */
+  public static boolean resolve() {
+    return LOADED && nativeResolve();
+  }
+
+  /**
+   * Records the GPU clock into the given query object once the GPU has finished all commands
+   * issued before, without waiting for it.
+   */
+  public static void queryCounter(int query) {
+    nativeQueryCounter(query);
+  }
+
+  /** Returns the GPU clock recorded by a timestamp query, waiting for it if needed. */
+  public static long getResult(int query) {
+    return nativeGetResult(query);
+  }
+
+  private static boolean loadLibrary() {
+    try {
+      System.loadLibrary("gpu_timestamps");
+      return true;
+    } catch (UnsatisfiedLinkError e) {
+      return false;
+    }
+  }
+
+  private static native boolean nativeResolve();
+
+  private static native void nativeQueryCounter(int query);
+
+  private static native long nativeGetResult(int query);
+
+  private GpuTimestamps() {}
+}
@@ -0,0 +1,204 @@
+/*
+ * Copyright 2021, Brown University, Providence, RI.
+ * Rahul Shahi, Sherief Reda, Seif Abdelaziz
+ *
+ *                        All Rights Reserved
+ *
+ * Permission to use, copy, modify, and distribute this software and
+ * its documentation for any purpose other than its incorporation into a
+ * commercial product or service is hereby granted without fee, provided
+ * that the above copyright notice appear in all copies and that both
+ * that copyright notice and this permission notice appear in supporting
+ * documentation, and that the name of Brown University not be used in
+ * advertising or publicity pertaining to distribution of the software
+ * without specific, written prior permission.
+ *
+ * BROWN UNIVERSITY DISCLAIMS ALL WARRANTIES WITH REGARD TO THIS SOFTWARE,
+ * INCLUDING ALL IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR ANY
+ * PARTICULAR PURPOSE.  IN NO EVENT SHALL BROWN UNIVERSITY BE LIABLE FOR
+ * ANY SPECIAL, INDIRECT OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF
+ * OR IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+
+package benchmark.common.helpers;
+
+import android.content.Intent;
+import android.os.Process;
+import android.util.Log;
+import benchmark.common.sampling.CpuClusters;
+import benchmark.common.sampling.ThermalSampler;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * How a benchmark run schedules its threads: the priority and CPU cores of the render thread, and
+ * whether object detection gets a thread of its own instead of sharing the coroutine IO pool.
+ *
+ * <p>The policy is chosen on the start screen, passed to every section in its intent and shown with
+ * the results, so that runs differing only in their policy tell how much scheduling matters on a
+ * SoC. Where a part of the policy cannot be applied, e.g. an affinity without the native library,
+ * the section logs a warning and runs without it; the core log shows where threads actually ran.
+ */
+public final class SchedulingPolicy {
+  private static final String TAG = SchedulingPolicy.class.getSimpleName();
+
+  public static final String EXTRA_PRIORITY = "benchmark.SCHEDULING_PRIORITY";
+  public static final String EXTRA_AFFINITY = "benchmark.SCHEDULING_AFFINITY";
+  public static final String EXTRA_DEDICATED_ML_THREAD = "benchmark.DEDICATED_ML_THREAD";
+  /**
+   * Name of the dedicated ML thread, which the samplers track as a worker, see {@code
+   * benchmark.common.sampling.CoreSampler#WORKER_NAME_PREFIXES}.
+   */
+  public static final String ML_THREAD_NAME = "MLWorker";
+
+  /** What the sections did before policies existed. */
+  public static final SchedulingPolicy DEFAULT =
+      new SchedulingPolicy(Priority.DEFAULT, Affinity.ANY, false);
+
+  /** Priority of the render thread, as a Linux nice value set with {@link Process}. */
+  public enum Priority {
+    DEFAULT("Default priority", Process.THREAD_PRIORITY_DEFAULT),
+    DISPLAY("Display priority", Process.THREAD_PRIORITY_DISPLAY),
+    URGENT_DISPLAY("Urgent display priority", Process.THREAD_PRIORITY_URGENT_DISPLAY);
+
+    private final String label;
+    private final int niceValue;
+
+    Priority(String label, int niceValue) {
+      this.label = label;
+      this.niceValue = niceValue;
+    }
+
+    public String getLabel() {
+      return label;
+    }
+
+    public int getNiceValue() {
+      return niceValue;
+    }
+  }
+
+  /** CPU cores the render thread may run on, see {@link CpuClusters}. */
+  public enum Affinity {
+    ANY("Any core"),
+    LITTLE("Little cores"),
+    BIG("Big cores");
+
+    private final String label;
+
+    Affinity(String label) {
+      this.label = label;
+    }
+
+    public String getLabel() {
+      return label;
+    }
+
+    /** Returns the cores of the slowest or fastest cluster, or null for any core. */
+    private int[] getCores(CpuClusters clusters) {
+      if (this == ANY || clusters.getCount() == 0) {
+        return null;
+      }
+      return clusters.getCores(this == LITTLE ? 0 : clusters.getCount() - 1);
+    }
+  }
+
+  private final Priority priority;
+  private final Affinity affinity;
+  private final boolean dedicatedMlThread;
+
+  public SchedulingPolicy(Priority priority, Affinity affinity, boolean dedicatedMlThread) {
+    this.priority = priority;
+    this.affinity = affinity;
+    this.dedicatedMlThread = dedicatedMlThread;
+  }
+
+  /** Returns the policy passed to a section, or {@link #DEFAULT} if the intent carries none. */
+  public static SchedulingPolicy fromIntent(Intent intent) {
+    String priority = intent.getStringExtra(EXTRA_PRIORITY);
+    String affinity = intent.getStringExtra(EXTRA_AFFINITY);
+    try {
+      return new SchedulingPolicy(
+          priority == null ? Priority.DEFAULT : Priority.valueOf(priority),
+          affinity == null ? Affinity.ANY : Affinity.valueOf(affinity),
+          intent.getBooleanExtra(EXTRA_DEDICATED_ML_THREAD, false));
+    } catch (IllegalArgumentException e) {
+      Log.w(TAG, "Unknown scheduling policy, using the default", e);
+      return DEFAULT;
+    }
+  }
+
+  /** Passes the policy to the section the intent starts. */
+  public void putExtras(Intent intent) {
+    intent.putExtra(EXTRA_PRIORITY, priority.name());
+    intent.putExtra(EXTRA_AFFINITY, affinity.name());
+    intent.putExtra(EXTRA_DEDICATED_ML_THREAD, dedicatedMlThread);
+  }
+
+  public Priority getPriority() {
+    return priority;
+  }
+
+  public Affinity getAffinity() {
+    return affinity;
+  }
+
+  public boolean isDedicatedMlThread() {
+    return dedicatedMlThread;
+  }
+
+  /**
+   * Sets the priority and CPU affinity of the calling thread, which must be the render thread.
+   * Threads it starts afterwards inherit the affinity.
+   */
+  public void applyToRenderThread() {
+    if (priority != Priority.DEFAULT) {
+      try {
+        Process.setThreadPriority(priority.getNiceValue());
+      } catch (IllegalArgumentException | SecurityException e) {
+        Log.w(TAG, "Failed to set the render thread priority to " + priority, e);
+      }
+    }
+    if (affinity == Affinity.ANY) {
+      return;
+    }
+    int[] cores = affinity.getCores(new CpuClusters(ThermalSampler.SYSFS_ROOT));
+    if (cores == null) {
+      Log.w(TAG, "No CPU clusters found, the render thread may run on any core");
+    } else if (!ThreadAffinity.isAvailable()) {
+      Log.w(TAG, "Native library missing, the render thread may run on any core");
+    } else {
+      int error = ThreadAffinity.setForCurrentThread(cores);
+      if (error != 0) {
+        Log.w(TAG, "sched_setaffinity failed with errno " + error
+            + ", the render thread may run on any core");
+      }
+    }
+  }
+
+  /**
+   * Returns a new executor with the dedicated thread for object detection, or null if the policy
+   * shares the coroutine IO pool. The caller shuts the executor down.
+   */
+  public ExecutorService newMlExecutor() {
+    if (!dedicatedMlThread) {
+      return null;
+    }
+    return Executors.newSingleThreadExecutor(runnable -> {
+      Thread thread = new Thread(runnable, ML_THREAD_NAME);
+      thread.setDaemon(true);
+      return thread;
+    });
+  }
+
+  /** Describes the policy, e.g. "Urgent display priority, big cores, dedicated ML thread". */
+  @Override
+  public String toString() {
+    return priority.getLabel() + ", " + affinity.getLabel().toLowerCase(Locale.US)
+        + (dedicatedMlThread ? ", dedicated ML thread" : ", shared ML threads");
+  }
+}
@@ -0,0 +1,77 @@
+/*
+ * Copyright 2021, Brown University, Providence, RI.
+ * Rahul Shahi, Sherief Reda, Seif Abdelaziz
+ *
+ *                        All Rights Reserved
+ *
+ * Permission to use, copy, modify, and distribute this software and
+ * its documentation for any purpose other than its incorporation into a
+ * commercial product or service is hereby granted without fee, provided
+ * that the above copyright notice appear in all copies and that both
+ * that copyright notice and this permission notice appear in supporting
+ * documentation, and that the name of Brown University not be used in
+ * advertising or publicity pertaining to distribution of the software
+ * without specific, written prior permission.
+ *
+ * BROWN UNIVERSITY DISCLAIMS ALL WARRANTIES WITH REGARD TO THIS SOFTWARE,
+ * INCLUDING ALL IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR ANY
+ * PARTICULAR PURPOSE.  IN NO EVENT SHALL BROWN UNIVERSITY BE LIABLE FOR
+ * ANY SPECIAL, INDIRECT OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF
+ * OR IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+
+package benchmark.common.helpers;
+
+import android.os.Build;
+import android.os.Trace;
+import benchmark.benchmark.BuildConfig;
+
+/**
+ * Marks sections of the benchmark in systrace and Perfetto captures with {@link Trace}.
+ *
+ * <p>Markers are only emitted when the app is built with the {@code TRACE_ENABLED} build config
+ * field set. The switch is a compile-time constant, so with it off every call reduces to an empty
+ * method that the compiler and JIT remove, and the measured frames pay nothing for it.
+ *
+ * <p>Like {@link Trace}, {@link #begin} and {@link #end} must be called in pairs on the same
+ * thread. Work that may move between threads, such as a coroutine, uses {@link #beginAsync}.
+ */
+public final class SystemTrace {
+  public static final boolean ENABLED = BuildConfig.TRACE_ENABLED;
+
+  /** Begins a section on the calling thread. Names longer than 127 characters are truncated. */
+  public static void begin(String name) {
+    if (ENABLED) {
+      Trace.beginSection(name);
+    }
+  }
+
+  /** Ends the innermost section begun on the calling thread. */
+  public static void end() {
+    if (ENABLED) {
+      Trace.endSection();
+    }
+  }
+
+  /**
+   * Begins a section that may end on another thread. The cookie tells overlapping sections of the
+   * same name apart. Only emitted on Android 10 and later.
+   */
+  public static void beginAsync(String name, int cookie) {
+    if (ENABLED && Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q) {
+      Trace.beginAsyncSection(name, cookie);
+    }
+  }
+
+  /** Ends a section begun with {@link #beginAsync} with the same name and cookie. */
+  public static void endAsync(String name, int cookie) {
+    if (ENABLED && Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q) {
+      Trace.endAsyncSection(name, cookie);
+    }
+  }
+
+  private SystemTrace() {}
+}
@@ -0,0 +1,67 @@
+/*
+ * Copyright 2021, Brown University, Providence, RI.
+ * Rahul Shahi, Sherief Reda, Seif Abdelaziz
+ *
+ *                        All Rights Reserved
+ *
+ * Permission to use, copy, modify, and distribute this software and
+ * its documentation for any purpose other than its incorporation into a
+ * commercial product or service is hereby granted without fee, provided
+ * that the above copyright notice appear in all copies and that both
+ * that copyright notice and this permission notice appear in supporting
+ * documentation, and that the name of Brown University not be used in
+ * advertising or publicity pertaining to distribution of the software
+ * without specific, written prior permission.
+ *
+ * BROWN UNIVERSITY DISCLAIMS ALL WARRANTIES WITH REGARD TO THIS SOFTWARE,
+ * INCLUDING ALL IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR ANY
+ * PARTICULAR PURPOSE.  IN NO EVENT SHALL BROWN UNIVERSITY BE LIABLE FOR
+ * ANY SPECIAL, INDIRECT OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF
+ * OR IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+
+package benchmark.common.helpers;
+
+/**
+ * Restricts the calling thread to a set of CPU cores with {@code sched_setaffinity}, which the
+ * Android SDK does not expose, through the small native library built from {@code src/main/cpp}.
+ */
+public final class ThreadAffinity {
+  private static final boolean LOADED = loadLibrary();
+
+  /** Returns whether the native library could be loaded. */
+  public static boolean isAvailable() {
+    return LOADED;
+  }
+
+  /**
+   * Restricts the calling thread to the given cores. Threads the calling thread starts afterwards
+   * inherit the restriction.
+   *
+   * @return 0 on success, or the errno of the failed call, e.g. EINVAL if none of the cores is
+   *     online
+   * @throws IllegalStateException if the native library is not available
+   */
+  public static int setForCurrentThread(int[] cores) {
+    if (!LOADED) {
+      throw new IllegalStateException("The thread_affinity library is not available");
+    }
+    return nativeSetAffinity(cores);
+  }
+
+  private static boolean loadLibrary() {
+    try {
+      System.loadLibrary("thread_affinity");
+      return true;
+    } catch (UnsatisfiedLinkError e) {
+      return false;
+    }
+  }
+
+  private static native int nativeSetAffinity(int[] cores);
+
+  private ThreadAffinity() {}
+}
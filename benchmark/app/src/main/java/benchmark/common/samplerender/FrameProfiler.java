@@ -0,0 +1,819 @@
+/*
+ * Copyright 2021, Brown University, Providence, RI.
+ * Rahul Shahi, Sherief Reda, Seif Abdelaziz
+ *
+ *                        All Rights Reserved
+ *
+ * Permission to use, copy, modify, and distribute this software and
+ * its documentation for any purpose other than its incorporation into a
+ * commercial product or service is hereby granted without fee, provided
+ * that the above copyright notice appear in all copies and that both
+ * that copyright notice and this permission notice appear in supporting
+ * documentation, and that the name of Brown University not be used in
+ * advertising or publicity pertaining to distribution of the software
+ * without specific, written prior permission.
+ *
+ * BROWN UNIVERSITY DISCLAIMS ALL WARRANTIES WITH REGARD TO THIS SOFTWARE,
+ * INCLUDING ALL IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR ANY
+ * PARTICULAR PURPOSE.  IN NO EVENT SHALL BROWN UNIVERSITY BE LIABLE FOR
+ * ANY SPECIAL, INDIRECT OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF
+ * OR IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package benchmark.common.samplerender;
+
+import android.content.Context;
+import android.opengl.GLES30;
+import android.os.Build;
+import android.os.Debug;
+import android.os.PowerManager;
+import android.os.Process;
+import android.system.Os;
+import android.system.OsConstants;
+import android.util.Log;
+import benchmark.benchmark.BuildConfig;
+import benchmark.common.framelog.CoreLog;
+import benchmark.common.framelog.FrameLog;
+import benchmark.common.framelog.FrameLogWriter;
+import benchmark.common.framelog.FrameTimer;
+import benchmark.common.framelog.PowerLog;
+import benchmark.common.framelog.StallDetector;
+import benchmark.common.framelog.ThermalLog;
+import benchmark.common.framelog.WriterLog;
+import benchmark.common.helpers.GpuTimestamps;
+import benchmark.common.helpers.SystemTrace;
+import benchmark.common.sampling.BatteryManagerSource;
+import benchmark.common.sampling.CoreSampler;
+import benchmark.common.sampling.PowerSampler;
+import benchmark.common.sampling.ThermalSampler;
+import benchmark.common.sampling.ThreadCpuSampler;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Measures each frame of a benchmark section and writes it to the frame log.
+ *
+ * <p>Every stage of a {@link FrameTimer} is timed on the CPU. Render stages, from {@link
+ * FrameTimer#FIRST_RENDER_STAGE} on, are additionally timed on the GPU with the elapsed-time
+ * queries of the EXT_disjoint_timer_query extension. Sections only declare their stages:
+ *
+ * <pre>
+ *   profiler.beginFrame();
+ *   profiler.begin(FrameTimer.UPDATE);
+ *   frame = session.update();
+ *   profiler.end(FrameTimer.UPDATE);
+ *   ...
+ *   profiler.begin(FrameTimer.OBJECTS);
+ *   drawObjects();
+ *   profiler.end(FrameTimer.OBJECTS);
+ *   profiler.endFrame(currentPhase);
+ * </pre>
+ *
+ * <p>GPU results arrive a few frames late. Each finished frame is therefore kept, tagged with its
+ * frame id, together with the queries it issued, and is only logged once those queries have been
+ * read back. The GPU times in a record always belong to the frame of that record. If the results
+ * of a frame are still missing when its queries are needed again, or the device has no GPU timer,
+ * the frame is logged with {@link FrameLog#UNAVAILABLE} GPU times.
+ *
+ * <p>A disjoint event, e.g. a change of the GPU frequency, invalidates all queries in flight. The
+ * frames that were waiting for them are flagged in {@link FrameLog#GPU_DISJOINT} and logged with
+ * unavailable GPU times.
+ *
+ * <p>When the GPU timeline is enabled, the GPU clock is also read at the start of every frame,
+ * right after the CPU clock, and a timestamp query is issued where every render stage timed on the
+ * GPU starts and where the frame ends. The queries are read back together with the elapsed-time
+ * queries and logged as {@link FrameLog#FIRST_GPU_STAGE_START} and {@link FrameLog#GPU_CLOCK_END},
+ * so that CPU stages and GPU work can be placed on one timeline. Their entry points come from
+ * {@link GpuTimestamps}. The clock read is a round trip to the driver, so the timeline is off
+ * unless {@code BuildConfig.GPU_TIMELINE} is set.
+ *
+ * <p>With {@link #enableStallDetection} every frame is also checked by a {@link StallDetector}, and
+ * stalls are written to a separate log together with the context passed to {@link
+ * #setFrameContext} and the GC and thermal state of the device.
+ *
+ * <p>Besides wall-clock stage times, every frame logs the CPU time used since the previous frame by
+ * the render thread, by the whole process and by the coroutine worker threads, the latter sampled
+ * by a {@link ThreadCpuSampler} while a log is attached, and the garbage collections since the
+ * previous frame. When the app is built with {@code BuildConfig.ALLOC_COUNTING}, the objects and
+ * bytes the render thread allocated are logged too; counting makes every allocation slower, so it
+ * is off by default. The profiler reads the GC counters outside of these counts, so its own
+ * allocations are not logged.
+ *
+ * <p>With {@link #setHud} finished frames are also shown on a {@link PerformanceHud}, and the time
+ * it took to draw is logged as {@link FrameLog#HUD_TIME} so that it can be left out of the frame
+ * times.
+ *
+ * <p>Frames and stages are also marked as {@link SystemTrace} sections, which cost nothing unless
+ * the app is built with tracing enabled.
+ *
+ * <p>Elapsed-time queries cannot overlap, so when render stages are nested only the outermost one
+ * is timed on the GPU. A render stage is timed on the GPU only the first time it is entered in a
+ * frame; render stages that are not timed have a GPU time of zero.
+ *
+ * <p>All methods except {@link #close()} must be called on the GL thread.
+ */
+public class FrameProfiler implements Closeable {
+  private static final String TAG = FrameProfiler.class.getSimpleName();
+
+  // From EXT_disjoint_timer_query, which GLES30 does not define.
+  private static final int GL_TIME_ELAPSED_EXT = 0x88BF;
+  private static final int GL_TIMESTAMP_EXT = 0x8E28;
+  private static final int GL_QUERY_COUNTER_BITS_EXT = 0x8864;
+  private static final int GL_GPU_DISJOINT_EXT = 0x8FBB;
+
+  private static final int RENDER_STAGE_COUNT =
+      FrameTimer.STAGE_NAMES.length - FrameTimer.FIRST_RENDER_STAGE;
+  // Timestamp queries per frame: one per render stage, then one for the end of the frame.
+  private static final int TIMESTAMP_COUNT = RENDER_STAGE_COUNT + 1;
+  private static final int COLUMN_COUNT = FrameLog.COLUMN_NAMES.length;
+  // Number of finished frames that can wait for their GPU results at the same time.
+  private static final int PENDING_FRAMES = 6;
+  // Cached because values() copies the array on every call.
+  private static final GpuMemory.Category[] MEMORY_CATEGORIES = GpuMemory.Category.values();
+
+  private final FrameTimer timer = new FrameTimer();
+  private volatile FrameLogWriter log;
+  private long frameId;
+
+  private boolean hasGpuTimer;
+  // Records of finished frames waiting for their GPU results, and one query per render stage for
+  // each of them. Frames in [oldestPending, next) are waiting, frame next is being measured.
+  private final long[] pendingRecords = new long[PENDING_FRAMES * COLUMN_COUNT];
+  private final int[] queries = new int[PENDING_FRAMES * RENDER_STAGE_COUNT];
+  private final boolean[] issued = new boolean[PENDING_FRAMES * RENDER_STAGE_COUNT];
+  private final int[] queryResult = new int[1];
+  // Frames whose queries were invalidated by a disjoint event, one entry per pending frame.
+  private final boolean[] disjoint = new boolean[PENDING_FRAMES];
+  private int oldestPending;
+  private int next;
+  private int openGpuStage = -1;
+
+  private boolean gpuTimeline = BuildConfig.GPU_TIMELINE;
+  private boolean hasGpuClock;
+  private boolean hasGpuTimestamps;
+  private final long[] gpuClock = new long[1];
+  // Timestamp queries of each pending frame, and whether the frame issued them.
+  private final int[] timestampQueries = new int[PENDING_FRAMES * TIMESTAMP_COUNT];
+  private final boolean[] timestamped = new boolean[PENDING_FRAMES];
+  private long gpuClockBegin = FrameLog.UNAVAILABLE;
+
+  private StallDetector stallDetector;
+  private volatile FrameLogWriter stallLog;
+  private PowerManager powerManager;
+  // State of the last finished frame, checked for a stall once the next frame begins.
+  private boolean frameEnded;
+  private int lastPhase;
+  private long anchorCount = FrameLog.UNAVAILABLE;
+  private long cameraTimestamp;
+  private boolean newCameraImage;
+  // Garbage collections during the last finished frame.
+  private long frameGcCount = FrameLog.UNAVAILABLE;
+
+  private final ThreadCpuSampler threadSampler;
+  private volatile ThermalSampler thermalSampler;
+  private volatile PowerSampler powerSampler;
+  private volatile CoreSampler coreSampler;
+  private volatile FrameLogWriter writerLog;
+  private final boolean countAllocations = BuildConfig.ALLOC_COUNTING;
+  // Resource counters at the end of the previous frame, read from the first frame on.
+  private boolean countersStarted;
+  private long lastThreadCpu;
+  private long lastProcessCpu;
+  private long lastWorkerCpu;
+  // The thread allocation counters are ints; their differences stay right when they wrap.
+  private int lastAllocCount;
+  private int lastAllocSize;
+  private long lastGcCount;
+  private long lastBlockingGcTime;
+
+  private GpuMemory gpuMemory;
+  private PerformanceHud hud;
+
+  // Number of SystemTrace sections this profiler has open on the GL thread.
+  private int traceDepth;
+
+  /**
+   * @param log log to write every measured frame to, or null to only measure. The profiler takes
+   *     ownership of the log and closes it in {@link #close()}.
+   */
+  public FrameProfiler(FrameLogWriter log) {
+    this.log = log;
+    threadSampler = log == null ? null : new ThreadCpuSampler();
+    if (countAllocations) {
+      Debug.startAllocCounting();
+    }
+  }
+
+  /** Creates the query pool. Must be called from {@code onSurfaceCreated}. */
+  public void onSurfaceCreated() {
+    // Queries of a previous context are gone, log what is still waiting for them.
+    openGpuStage = -1;
+    hasGpuTimer = false;
+    hasGpuTimestamps = false;
+    flushPendingFrames();
+    String extensions = GLES30.glGetString(GLES30.GL_EXTENSIONS);
+    hasGpuTimer = extensions != null && extensions.contains("GL_EXT_disjoint_timer_query");
+    if (!hasGpuTimer) {
+      Log.w(TAG, "OpenGL extension EXT_disjoint_timer_query is unavailable, GPU time is not measured");
+      return;
+    }
+    GLES30.glGenQueries(queries.length, queries, 0);
+    GLError.maybeThrowGLException("Failed to generate timer queries", "glGenQueries");
+    // Some implementations support elapsed-time queries but have no readable GPU clock.
+    GLES30.glGetQueryiv(GL_TIMESTAMP_EXT, GL_QUERY_COUNTER_BITS_EXT, queryResult, 0);
+    hasGpuClock = GLES30.glGetError() == GLES30.GL_NO_ERROR && queryResult[0] > 0;
+    if (hasGpuClock) {
+      hasGpuTimestamps = GpuTimestamps.resolve();
+      if (hasGpuTimestamps) {
+        GLES30.glGenQueries(timestampQueries.length, timestampQueries, 0);
+        GLError.maybeThrowGLException("Failed to generate timestamp queries", "glGenQueries");
+      } else {
+        Log.w(TAG, "GPU timestamp queries are unavailable, the GPU timeline has no stage starts");
+      }
+    }
+    // Clear the disjoint flag, the pool has no queries in flight yet.
+    isDisjoint();
+  }
+
+  /**
+   * Enables or disables the GPU timeline, reading the GPU clock at the start of every frame and
+   * timestamping its render stages on the GPU, overriding {@code BuildConfig.GPU_TIMELINE}.
+   */
+  public void setGpuTimeline(boolean enabled) {
+    gpuTimeline = enabled;
+  }
+
+  /**
+   * Checks every frame for stalls and records them in the {@link StallDetector#FILE_NAME} log of
+   * the app's external files directory. The profiler closes that log in {@link #close()}.
+   *
+   * @param threshold multiple of the median frame interval above which a frame is a stall, see
+   *     {@link StallDetector#DEFAULT_THRESHOLD}
+   */
+  public void enableStallDetection(
+      Context context, String sectionName, String recordingName, double threshold) {
+    File logFile = new File(context.getExternalFilesDir(null), StallDetector.FILE_NAME);
+    try {
+      stallLog =
+          new FrameLogWriter(logFile, sectionName, recordingName, StallDetector.COLUMN_NAMES);
+    } catch (IOException e) {
+      Log.e(TAG, "Failed to open stall log, stalls are not recorded", e);
+      return;
+    }
+    stallDetector = new StallDetector(threshold);
+    powerManager = (PowerManager) context.getSystemService(Context.POWER_SERVICE);
+  }
+
+  /**
+   * Samples temperatures and CPU clocks into the {@link ThermalLog#FILE_NAME} log of the app's
+   * external files directory until {@link #close()}.
+   */
+  public void enableThermalSampling(Context context, String sectionName, String recordingName) {
+    if (powerManager == null) {
+      powerManager = (PowerManager) context.getSystemService(Context.POWER_SERVICE);
+    }
+    ThermalSampler sampler =
+        new ThermalSampler(ThermalSampler.SYSFS_ROOT, () -> (int) readThermalStatus());
+    File logFile = new File(context.getExternalFilesDir(null), ThermalLog.FILE_NAME);
+    try {
+      sampler.start(
+          new FrameLogWriter(logFile, sectionName, recordingName, sampler.getColumnNames()),
+          ThermalSampler.DEFAULT_INTERVAL_NANOS);
+    } catch (IOException e) {
+      Log.e(TAG, "Failed to open thermal log, temperatures are not recorded", e);
+      return;
+    }
+    thermalSampler = sampler;
+  }
+
+  /**
+   * Samples the battery's current and voltage into the {@link PowerLog#FILE_NAME} log of the app's
+   * external files directory until {@link #close()}. Reads sysfs where the app may, and falls back
+   * to {@link android.os.BatteryManager}.
+   */
+  public void enablePowerSampling(Context context, String sectionName, String recordingName) {
+    PowerSampler.SysfsSource sysfs = new PowerSampler.SysfsSource(PowerSampler.SysfsSource.BATTERY);
+    PowerSampler sampler =
+        new PowerSampler(sysfs.isReadable() ? sysfs : new BatteryManagerSource(context));
+    File logFile = new File(context.getExternalFilesDir(null), PowerLog.FILE_NAME);
+    try {
+      sampler.start(
+          new FrameLogWriter(logFile, sectionName, recordingName, PowerLog.COLUMN_NAMES),
+          PowerSampler.DEFAULT_INTERVAL_NANOS);
+    } catch (IOException e) {
+      Log.e(TAG, "Failed to open power log, energy is not recorded", e);
+      return;
+    }
+    powerSampler = sampler;
+  }
+
+  /**
+   * Samples on which CPU cores the render thread and the coroutine worker threads run into the
+   * {@link CoreLog#FILE_NAME} log of the app's external files directory until {@link #close()}. The
+   * render thread is the one that calls {@link #beginFrame()}.
+   */
+  public void enableCoreSampling(Context context, String sectionName, String recordingName) {
+    CoreSampler sampler = new CoreSampler(ThermalSampler.SYSFS_ROOT, CoreSampler.TASKS,
+        1_000_000_000L / Os.sysconf(OsConstants._SC_CLK_TCK));
+    File logFile = new File(context.getExternalFilesDir(null), CoreLog.FILE_NAME);
+    try {
+      sampler.start(
+          new FrameLogWriter(logFile, sectionName, recordingName, sampler.getColumnNames()),
+          CoreSampler.DEFAULT_INTERVAL_NANOS);
+    } catch (IOException e) {
+      Log.e(TAG, "Failed to open core log, core placement is not recorded", e);
+      return;
+    }
+    coreSampler = sampler;
+  }
+  /**
+   * Records when the writer thread of the frame log wrote records into the {@link
+   * WriterLog#FILE_NAME} log of the app's external files directory until {@link #close()}. Does
+   * nothing without a frame log.
+   */
+  public void enableWriterLog(Context context, String sectionName, String recordingName) {
+    FrameLogWriter log = this.log;
+    if (log == null) {
+      return;
+    }
+    File logFile = new File(context.getExternalFilesDir(null), WriterLog.FILE_NAME);
+    try {
+      writerLog = new FrameLogWriter(logFile, sectionName, recordingName, WriterLog.COLUMN_NAMES);
+    } catch (IOException e) {
+      Log.e(TAG, "Failed to open writer log, frame log writes are not recorded", e);
+      return;
+    }
+    log.setDrainLog(writerLog);
+  }
+
+
+  /**
+   * Describes the current frame for the stall log. Sections call this after {@code
+   * session.update()}; frames without a call are logged without anchor count.
+   *
+   * @param anchorCount number of anchors the section tracks
+   * @param cameraTimestamp timestamp of the camera image returned by {@code session.update()}
+   */
+  public void setFrameContext(int anchorCount, long cameraTimestamp) {
+    this.anchorCount = anchorCount;
+    newCameraImage = cameraTimestamp != this.cameraTimestamp;
+    this.cameraTimestamp = cameraTimestamp;
+  }
+
+  /** Returns whether GPU time can be measured on this device. */
+  public boolean hasGpuTimer() {
+    return hasGpuTimer;
+  }
+
+  /**
+   * Logs the GPU memory of the given context with every frame. Sections that do not allocate
+   * through a {@link SampleRender} leave it unset and log it as unavailable.
+   */
+  public void setGpuMemory(GpuMemory gpuMemory) {
+    this.gpuMemory = gpuMemory;
+    if (gpuMemory != null) {
+      gpuMemory.takeIntervalPeak();
+    }
+  }
+
+  /** Shows every finished frame on the given HUD, or on none if null. */
+  public void setHud(PerformanceHud hud) {
+    this.hud = hud;
+  }
+
+  /** Returns the HUD set with {@link #setHud}, or null. */
+  public PerformanceHud getHud() {
+    return hud;
+  }
+
+  /** Returns the timer of the CPU stages. */
+  public FrameTimer getTimer() {
+    return timer;
+  }
+
+  /** Starts measuring a frame and logs earlier frames whose GPU results have arrived. */
+  public void beginFrame() {
+    // A frame that returned early may have left its query running.
+    endGpuStage();
+    if (stallDetector != null && frameEnded) {
+      // The timer still holds the stages of the last frame.
+      detectStall(System.nanoTime() - timer.getFrameStart());
+    }
+    frameEnded = false;
+    if (SystemTrace.ENABLED) {
+      endTraceSections();
+      SystemTrace.begin("frame");
+      traceDepth++;
+    }
+    if (!countersStarted) {
+      // Thread counters have to be read on the render thread, so start at the first frame.
+      lastThreadCpu = Debug.threadCpuTimeNanos();
+      lastProcessCpu = Process.getElapsedCpuTime();
+      lastWorkerCpu = getWorkerCpu();
+      lastGcCount = readRuntimeStat("art.gc.gc-count");
+      lastBlockingGcTime = readRuntimeStat("art.gc.blocking-gc-time");
+      lastAllocCount = Debug.getThreadAllocCount();
+      lastAllocSize = Debug.getThreadAllocSize();
+      CoreSampler sampler = coreSampler;
+      if (sampler != null) {
+        sampler.setRenderThread(Process.myTid());
+      }
+      countersStarted = true;
+    }
+    timer.beginFrame();
+    gpuClockBegin = readGpuClock();
+    frameId++;
+    logFinishedFrames(false);
+    if (next - oldestPending == PENDING_FRAMES) {
+      // Out of queries: give up on the oldest frame rather than stall on its results.
+      logOldestFrame(false);
+    }
+    int slot = next % PENDING_FRAMES;
+    Arrays.fill(issued, slot * RENDER_STAGE_COUNT, (slot + 1) * RENDER_STAGE_COUNT, false);
+    disjoint[slot] = false;
+    timestamped[slot] = hasGpuTimestamps && gpuClockBegin != FrameLog.UNAVAILABLE;
+  }
+
+  /** Enters a stage, see {@link FrameTimer#begin(int)}. Render stages are also timed on the GPU. */
+  public void begin(int stage) {
+    if (SystemTrace.ENABLED) {
+      SystemTrace.begin(FrameTimer.STAGE_NAMES[stage]);
+      traceDepth++;
+    }
+    timer.begin(stage);
+    if (!hasGpuTimer || stage < FrameTimer.FIRST_RENDER_STAGE || openGpuStage >= 0) {
+      return;
+    }
+    int slot = next % PENDING_FRAMES;
+    int renderStage = stage - FrameTimer.FIRST_RENDER_STAGE;
+    int query = slot * RENDER_STAGE_COUNT + renderStage;
+    if (!issued[query]) {
+      if (timestamped[slot]) {
+        GpuTimestamps.queryCounter(timestampQueries[slot * TIMESTAMP_COUNT + renderStage]);
+      }
+      GLES30.glBeginQuery(GL_TIME_ELAPSED_EXT, queries[query]);
+      issued[query] = true;
+      openGpuStage = stage;
+    }
+  }
+
+  /** Leaves a stage, see {@link FrameTimer#end(int)}. */
+  public void end(int stage) {
+    if (openGpuStage == stage) {
+      endGpuStage();
+    }
+    timer.end(stage);
+    if (SystemTrace.ENABLED && traceDepth > 0) {
+      SystemTrace.end();
+      traceDepth--;
+    }
+  }
+
+  /**
+   * Finishes the frame. It is logged as soon as its GPU results are available.
+   *
+   * @param phase phase of the recording the frame belongs to
+   */
+  public void endFrame(int phase) {
+    endGpuStage();
+    int slot = next % PENDING_FRAMES;
+    if (timestamped[slot]) {
+      GpuTimestamps.queryCounter(timestampQueries[(slot + 1) * TIMESTAMP_COUNT - 1]);
+    }
+    timer.endFrame();
+    int offset = slot * COLUMN_COUNT;
+    Arrays.fill(pendingRecords, offset, offset + COLUMN_COUNT, 0L);
+    pendingRecords[offset + FrameLog.PHASE] = phase;
+    pendingRecords[offset + FrameLog.FRAME_ID] = frameId;
+    timer.writeTo(pendingRecords, offset);
+    pendingRecords[offset + FrameLog.GPU_CLOCK_BEGIN] = gpuClockBegin;
+    writeResourceCounters(offset);
+    writeGpuMemory(offset);
+    pendingRecords[offset + FrameLog.HUD_TIME] = hud == null ? 0L : hud.takeCost();
+    next++;
+    frameEnded = true;
+    lastPhase = phase;
+    if (!hasGpuTimer) {
+      logFinishedFrames(false);
+    }
+    if (SystemTrace.ENABLED) {
+      endTraceSections();
+    }
+  }
+
+  /**
+   * Waits for the GPU results of all finished frames, logs them and deletes the query pool. Must be
+   * called on the GL thread while the context is current, before {@link #close()}.
+   */
+  public void release() {
+    endGpuStage();
+    logFinishedFrames(true);
+    if (hasGpuTimer) {
+      GLES30.glDeleteQueries(queries.length, queries, 0);
+      hasGpuTimer = false;
+    }
+    if (hasGpuTimestamps) {
+      GLES30.glDeleteQueries(timestampQueries.length, timestampQueries, 0);
+      hasGpuTimestamps = false;
+    }
+  }
+
+  /**
+   * Closes the frame log. May be called from any thread. Frames still waiting for GPU results are
+   * lost unless {@link #release()} was called first.
+   */
+  @Override
+  public void close() throws IOException {
+    // The writer log follows the frame log, whose last writes it records.
+    Closeable[] resources =
+        {log, writerLog, stallLog, threadSampler, thermalSampler, powerSampler, coreSampler};
+    log = null;
+    writerLog = null;
+    stallLog = null;
+    thermalSampler = null;
+    powerSampler = null;
+    coreSampler = null;
+    if (countAllocations) {
+      Debug.stopAllocCounting();
+    }
+    // Close everything even if something fails, and report the first failure.
+    IOException failure = null;
+    for (Closeable resource : resources) {
+      if (resource == null) {
+        continue;
+      }
+      try {
+        resource.close();
+      } catch (IOException e) {
+        if (failure == null) {
+          failure = e;
+        } else {
+          failure.addSuppressed(e);
+        }
+      }
+    }
+    if (failure != null) {
+      throw failure;
+    }
+  }
+
+  /**
+   * Stores the CPU time, allocations and garbage collections since the previous frame in the
+   * pending record at offset.
+   */
+  private void writeResourceCounters(int offset) {
+    long threadCpu = Debug.threadCpuTimeNanos();
+    long processCpu = Process.getElapsedCpuTime();
+    long workerCpu = getWorkerCpu();
+    pendingRecords[offset + FrameLog.THREAD_CPU] = delta(threadCpu, lastThreadCpu);
+    pendingRecords[offset + FrameLog.PROCESS_CPU] = processCpu - lastProcessCpu;
+    pendingRecords[offset + FrameLog.WORKER_CPU] =
+        threadSampler == null ? FrameLog.UNAVAILABLE : workerCpu - lastWorkerCpu;
+    lastThreadCpu = threadCpu;
+    lastProcessCpu = processCpu;
+    lastWorkerCpu = workerCpu;
+
+    if (countAllocations) {
+      int allocCount = Debug.getThreadAllocCount();
+      int allocSize = Debug.getThreadAllocSize();
+      pendingRecords[offset + FrameLog.ALLOC_COUNT] = allocCount - lastAllocCount;
+      pendingRecords[offset + FrameLog.ALLOC_SIZE] = allocSize - lastAllocSize;
+    } else {
+      pendingRecords[offset + FrameLog.ALLOC_COUNT] = FrameLog.UNAVAILABLE;
+      pendingRecords[offset + FrameLog.ALLOC_SIZE] = FrameLog.UNAVAILABLE;
+    }
+
+    long gcCount = readRuntimeStat("art.gc.gc-count");
+    long blockingGcTime = readRuntimeStat("art.gc.blocking-gc-time");
+    frameGcCount = delta(gcCount, lastGcCount);
+    pendingRecords[offset + FrameLog.GC_COUNT] = frameGcCount;
+    pendingRecords[offset + FrameLog.GC_BLOCKING_TIME] = delta(blockingGcTime, lastBlockingGcTime);
+    lastGcCount = gcCount;
+    lastBlockingGcTime = blockingGcTime;
+
+    if (countAllocations) {
+      // Count the next frame from after the runtime stats were read, so that the Strings they
+      // allocate are not logged as allocations of the app.
+      lastAllocCount = Debug.getThreadAllocCount();
+      lastAllocSize = Debug.getThreadAllocSize();
+    }
+  }
+
+  /** Stores the GPU memory of the section in the pending record at offset. */
+  private void writeGpuMemory(int offset) {
+    if (gpuMemory == null) {
+      Arrays.fill(
+          pendingRecords,
+          offset + FrameLog.GPU_MEMORY,
+          offset + FrameLog.FIRST_GPU_MEMORY_CATEGORY + MEMORY_CATEGORIES.length,
+          FrameLog.UNAVAILABLE);
+      return;
+    }
+    pendingRecords[offset + FrameLog.GPU_MEMORY] = gpuMemory.getCurrent();
+    pendingRecords[offset + FrameLog.GPU_MEMORY_PEAK] = gpuMemory.takeIntervalPeak();
+    for (GpuMemory.Category category : MEMORY_CATEGORIES) {
+      pendingRecords[offset + FrameLog.FIRST_GPU_MEMORY_CATEGORY + category.ordinal()] =
+          gpuMemory.getCurrent(category);
+    }
+  }
+
+  /** Returns the growth of a counter, or unavailable if the counter cannot be read (-1). */
+  private static long delta(long value, long lastValue) {
+    return value < 0 || lastValue < 0 ? FrameLog.UNAVAILABLE : value - lastValue;
+  }
+
+  private long getWorkerCpu() {
+    return threadSampler == null ? 0L : threadSampler.getWorkerCpuNanos();
+  }
+
+  /** Checks the last finished frame for a stall and logs it with its context. */
+  private void detectStall(long interval) {
+    if (!stallDetector.onFrame(interval, timer)) {
+      return;
+    }
+    FrameLogWriter stallLog = this.stallLog;
+    if (stallLog == null) {
+      return;
+    }
+    int stage = stallDetector.getStalledStage();
+    try {
+      stallLog.set(StallDetector.PHASE, lastPhase);
+      stallLog.set(StallDetector.FRAME_ID, frameId);
+      stallLog.set(StallDetector.INTERVAL, interval);
+      stallLog.set(StallDetector.MEDIAN_INTERVAL, stallDetector.getMedianInterval());
+      stallLog.set(StallDetector.STAGE, stage);
+      stallLog.set(StallDetector.STAGE_TIME, stage < 0 ? 0L : timer.getStageDuration(stage));
+      stallLog.set(StallDetector.STAGE_MEDIAN, stallDetector.getStalledStageMedian());
+      stallLog.set(StallDetector.ANCHOR_COUNT, anchorCount);
+      stallLog.set(StallDetector.GC_COUNT, frameGcCount);
+      stallLog.set(StallDetector.THERMAL_STATUS, readThermalStatus());
+      stallLog.set(
+          StallDetector.CAMERA_WAIT, stage == FrameTimer.UPDATE && newCameraImage ? 1L : 0L);
+      stallLog.commit();
+    } catch (IOException e) {
+      Log.e(TAG, "Failed to log stall, stall logging stopped", e);
+      this.stallLog = null;
+    }
+  }
+
+  /**
+   * Returns an ART runtime statistic such as the number of garbage collections since the app
+   * started, or -1 if the runtime does not report it. Allocates the String the value is read from,
+   * so it must not be called between reading the allocation counters of a frame and the next.
+   */
+  private static long readRuntimeStat(String name) {
+    String value = Debug.getRuntimeStat(name);
+    try {
+      return value == null ? -1L : Long.parseLong(value);
+    } catch (NumberFormatException e) {
+      return -1L;
+    }
+  }
+
+  /** Returns the PowerManager thermal status, or unavailable before Android 10. */
+  private long readThermalStatus() {
+    if (powerManager == null || Build.VERSION.SDK_INT < Build.VERSION_CODES.Q) {
+      return FrameLog.UNAVAILABLE;
+    }
+    return powerManager.getCurrentThermalStatus();
+  }
+
+  /** Ends the trace sections still open, e.g. after a frame that returned early. */
+  private void endTraceSections() {
+    for (; traceDepth > 0; traceDepth--) {
+      SystemTrace.end();
+    }
+  }
+
+  private void endGpuStage() {
+    if (openGpuStage >= 0) {
+      GLES30.glEndQuery(GL_TIME_ELAPSED_EXT);
+      openGpuStage = -1;
+    }
+  }
+
+  /**
+   * Logs finished frames, oldest first, until one is found whose GPU results are not available yet.
+   * With wait set, blocks until all results are available instead.
+   */
+  private void logFinishedFrames(boolean wait) {
+    if (hasGpuTimer && isDisjoint()) {
+      Log.w(TAG, "GPU disjoint event, discarding GPU times of the last " + (next - oldestPending)
+          + " frames");
+      for (int frame = oldestPending; frame < next; frame++) {
+        disjoint[frame % PENDING_FRAMES] = true;
+      }
+    }
+    while (oldestPending < next) {
+      if (!wait && !isGpuResultAvailable(oldestPending % PENDING_FRAMES)) {
+        // Frames finish in order, so later frames are not available either.
+        return;
+      }
+      logOldestFrame(hasGpuTimer);
+    }
+  }
+
+  /** Logs all finished frames without reading their GPU results. */
+  private void flushPendingFrames() {
+    while (oldestPending < next) {
+      logOldestFrame(false);
+    }
+  }
+
+  /** Returns whether a disjoint event occurred since the last call, and clears the flag. */
+  private boolean isDisjoint() {
+    GLES30.glGetIntegerv(GL_GPU_DISJOINT_EXT, queryResult, 0);
+    return queryResult[0] != 0;
+  }
+
+  /** Returns the current GPU clock, or unavailable if the GPU timeline is not recorded. */
+  private long readGpuClock() {
+    if (!gpuTimeline || !hasGpuClock) {
+      return FrameLog.UNAVAILABLE;
+    }
+    GLES30.glGetInteger64v(GL_TIMESTAMP_EXT, gpuClock, 0);
+    return gpuClock[0];
+  }
+
+  private boolean isGpuResultAvailable(int slot) {
+    if (!hasGpuTimer || disjoint[slot]) {
+      return true;
+    }
+    for (int i = slot * RENDER_STAGE_COUNT; i < (slot + 1) * RENDER_STAGE_COUNT; i++) {
+      if (issued[i] && !isQueryAvailable(queries[i])) {
+        return false;
+      }
+    }
+    // The end of the frame was timestamped last, so the stage timestamps are done as well.
+    return !timestamped[slot]
+        || isQueryAvailable(timestampQueries[(slot + 1) * TIMESTAMP_COUNT - 1]);
+  }
+
+  private boolean isQueryAvailable(int query) {
+    GLES30.glGetQueryObjectuiv(query, GLES30.GL_QUERY_RESULT_AVAILABLE, queryResult, 0);
+    return queryResult[0] == GLES30.GL_TRUE;
+  }
+
+  /**
+   * Fills in the GPU times and timestamps of the oldest finished frame, reading its query results
+   * if readGpu is set and the frame is not disjoint, and marking them unavailable otherwise. Then
+   * writes the frame to the log.
+   */
+  private void logOldestFrame(boolean readGpu) {
+    int slot = oldestPending % PENDING_FRAMES;
+    int offset = slot * COLUMN_COUNT;
+    pendingRecords[offset + FrameLog.GPU_DISJOINT] = disjoint[slot] ? 1L : 0L;
+    if (disjoint[slot]) {
+      readGpu = false;
+      pendingRecords[offset + FrameLog.GPU_CLOCK_BEGIN] = FrameLog.UNAVAILABLE;
+    }
+    boolean readTimestamps = readGpu && timestamped[slot];
+    long clockBegin = pendingRecords[offset + FrameLog.GPU_CLOCK_BEGIN];
+    long gpuTime = readGpu ? 0L : FrameLog.UNAVAILABLE;
+    for (int i = 0; i < RENDER_STAGE_COUNT; i++) {
+      long stageTime = FrameLog.UNAVAILABLE;
+      long stageStart = FrameLog.UNAVAILABLE;
+      if (readGpu) {
+        stageTime = 0L;
+        int query = slot * RENDER_STAGE_COUNT + i;
+        if (issued[query]) {
+          GLES30.glGetQueryObjectuiv(queries[query], GLES30.GL_QUERY_RESULT, queryResult, 0);
+          stageTime = queryResult[0] & 0xFFFFFFFFL;
+          gpuTime += stageTime;
+          if (readTimestamps) {
+            stageStart =
+                GpuTimestamps.getResult(timestampQueries[slot * TIMESTAMP_COUNT + i]) - clockBegin;
+          }
+        }
+      }
+      pendingRecords[offset + FrameLog.FIRST_GPU_STAGE + i] = stageTime;
+      pendingRecords[offset + FrameLog.FIRST_GPU_STAGE_START + i] = stageStart;
+    }
+    pendingRecords[offset + FrameLog.GPU_TIME] = gpuTime;
+    pendingRecords[offset + FrameLog.GPU_CLOCK_END] = readTimestamps
+        ? GpuTimestamps.getResult(timestampQueries[(slot + 1) * TIMESTAMP_COUNT - 1])
+        : FrameLog.UNAVAILABLE;
+    oldestPending++;
+    if (hud != null) {
+      hud.addFrame(pendingRecords, offset);
+    }
+
+    FrameLogWriter log = this.log;
+    if (log == null) {
+      return;
+    }
+    try {
+      for (int column = 0; column < COLUMN_COUNT; column++) {
+        log.set(column, pendingRecords[offset + column]);
+      }
+      log.commit();
+    } catch (IOException e) {
+      Log.e(TAG, "Failed to log frame data, logging stopped", e);
+      this.log = null;
+    }
+  }
+}
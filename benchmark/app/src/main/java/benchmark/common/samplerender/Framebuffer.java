@@ -128,6 +128,8 @@ public class Framebuffer implements Closeable {
         GLES30.GL_UNSIGNED_BYTE,
         /*pixels=*/ null);
     GLError.maybeThrowGLException("Failed to specify color texture format", "glTexImage2D");
+    colorTexture.recordAllocation(
+        GpuMemory.Category.FRAMEBUFFER, GLES30.GL_RGBA, width, height, /*mipLevels=*/ 1);
 
     // Depth texture
     GLES30.glBindTexture(GLES30.GL_TEXTURE_2D, depthTexture.getTextureId());
@@ -143,6 +145,12 @@ public class Framebuffer implements Closeable {
         GLES30.GL_FLOAT,
         /*pixels=*/ null);
     GLError.maybeThrowGLException("Failed to specify depth texture format", "glTexImage2D");
+    depthTexture.recordAllocation(
+        GpuMemory.Category.FRAMEBUFFER,
+        GLES30.GL_DEPTH_COMPONENT32F,
+        width,
+        height,
+        /*mipLevels=*/ 1);
   }
 
   /** Returns the color texture associated with this framebuffer. */
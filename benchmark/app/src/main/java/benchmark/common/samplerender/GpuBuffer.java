@@ -27,13 +27,16 @@ class GpuBuffer {
   public static final int INT_SIZE = 4;
   public static final int FLOAT_SIZE = 4;
 
+  private final GpuMemory memory;
   private final int target;
   private final int numberOfBytesPerEntry;
   private final int[] bufferId = {0};
   private int size;
   private int capacity;
+  // Bytes of the current allocation as reported to the GpuMemory.
+  private long allocatedBytes;
 
-  public GpuBuffer(int target, int numberOfBytesPerEntry, Buffer entries) {
+  public GpuBuffer(SampleRender render, int target, int numberOfBytesPerEntry, Buffer entries) {
     if (entries != null) {
       if (!entries.isDirect()) {
         throw new IllegalArgumentException("If non-null, entries buffer must be a direct buffer");
@@ -45,6 +48,7 @@ class GpuBuffer {
       }
     }
 
+    this.memory = render.getGpuMemory();
     this.target = target;
     this.numberOfBytesPerEntry = numberOfBytesPerEntry;
     if (entries == null) {
@@ -72,6 +76,7 @@ class GpuBuffer {
             target, entries.limit() * numberOfBytesPerEntry, entries, GLES30.GL_DYNAMIC_DRAW);
       }
       GLError.maybeThrowGLException("Failed to populate buffer object", "glBufferData");
+      reportAllocation();
     } catch (Throwable t) {
       free();
       throw t;
@@ -103,6 +108,7 @@ class GpuBuffer {
       GLError.maybeThrowGLException("Failed to populate vertex buffer object", "glBufferData");
       size = entries.limit();
       capacity = entries.limit();
+      reportAllocation();
     }
   }
 
@@ -111,6 +117,8 @@ class GpuBuffer {
       GLES30.glDeleteBuffers(1, bufferId, 0);
       GLError.maybeLogGLError(Log.WARN, TAG, "Failed to free buffer object", "glDeleteBuffers");
       bufferId[0] = 0;
+      memory.update(GpuMemory.Category.BUFFER, allocatedBytes, 0);
+      allocatedBytes = 0;
     }
   }
 
@@ -121,4 +129,10 @@ class GpuBuffer {
   public int getSize() {
     return size;
   }
+
+  private void reportAllocation() {
+    long bytes = (long) capacity * numberOfBytesPerEntry;
+    memory.update(GpuMemory.Category.BUFFER, allocatedBytes, bytes);
+    allocatedBytes = bytes;
+  }
 }
@@ -0,0 +1,156 @@
+/*
+ * Copyright 2021, Brown University, Providence, RI.
+ * Rahul Shahi, Sherief Reda, Seif Abdelaziz
+ *
+ *                        All Rights Reserved
+ *
+ * Permission to use, copy, modify, and distribute this software and
+ * its documentation for any purpose other than its incorporation into a
+ * commercial product or service is hereby granted without fee, provided
+ * that the above copyright notice appear in all copies and that both
+ * that copyright notice and this permission notice appear in supporting
+ * documentation, and that the name of Brown University not be used in
+ * advertising or publicity pertaining to distribution of the software
+ * without specific, written prior permission.
+ *
+ * BROWN UNIVERSITY DISCLAIMS ALL WARRANTIES WITH REGARD TO THIS SOFTWARE,
+ * INCLUDING ALL IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR ANY
+ * PARTICULAR PURPOSE.  IN NO EVENT SHALL BROWN UNIVERSITY BE LIABLE FOR
+ * ANY SPECIAL, INDIRECT OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF
+ * OR IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+
+package benchmark.common.samplerender;
+
+import android.opengl.GLES30;
+
+/**
+ * Bookkeeping of the GPU memory allocated through one {@link SampleRender} context.
+ *
+ * <p>{@link GpuBuffer}s and {@link Texture}s report the size of their storage whenever they
+ * (re)allocate or free it. Sizes are computed from the allocation's format, dimensions and mipmap
+ * levels, so they are what the application asked for; drivers may pad or compress. Not
+ * thread-safe, like the GL context it belongs to.
+ */
+public class GpuMemory {
+  /**
+   * Owners that allocations are attributed to. {@link benchmark.common.framelog.FrameLog} has one
+   * column per category, in this order.
+   */
+  public enum Category {
+    /** Vertex and index buffers. */
+    BUFFER,
+    /** Textures not claimed by another category, e.g. loaded from assets. */
+    TEXTURE,
+    /** Color and depth attachments of {@link Framebuffer}s. */
+    FRAMEBUFFER,
+    /** Radiance and filtered cubemaps of the specular cubemap filter. */
+    CUBEMAP_FILTER,
+    /** Cached label textures of the object recognition section. */
+    LABEL_CACHE,
+  }
+
+  private final long[] current = new long[Category.values().length];
+  private final long[] peak = new long[Category.values().length];
+  private long total;
+  private long totalPeak;
+  private long intervalPeak;
+
+  /**
+   * Replaces an allocation of previousBytes by one of bytes, both 0 for none. Pass 0 as bytes when
+   * the allocation is freed.
+   */
+  public void update(Category category, long previousBytes, long bytes) {
+    long delta = bytes - previousBytes;
+    if (delta == 0) {
+      return;
+    }
+    int index = category.ordinal();
+    current[index] += delta;
+    peak[index] = Math.max(peak[index], current[index]);
+    total += delta;
+    totalPeak = Math.max(totalPeak, total);
+    intervalPeak = Math.max(intervalPeak, total);
+  }
+
+  /** Returns the bytes currently allocated in all categories. */
+  public long getCurrent() {
+    return total;
+  }
+
+  /** Returns the bytes currently allocated in the given category. */
+  public long getCurrent(Category category) {
+    return current[category.ordinal()];
+  }
+
+  /** Returns the most bytes ever allocated at once in all categories. */
+  public long getPeak() {
+    return totalPeak;
+  }
+
+  /** Returns the most bytes ever allocated at once in the given category. */
+  public long getPeak(Category category) {
+    return peak[category.ordinal()];
+  }
+
+  /**
+   * Returns the most bytes allocated at once since the previous call, so that allocations freed
+   * again before they were sampled are not missed.
+   */
+  public long takeIntervalPeak() {
+    long result = intervalPeak;
+    intervalPeak = total;
+    return result;
+  }
+
+  /**
+   * Returns the bytes of a texture allocation.
+   *
+   * @param internalFormat sized internal format, or an unsized one such as {@code GL_RGBA}
+   * @param faces 6 for cubemaps, 1 otherwise
+   * @param mipLevels number of mipmap levels, 1 for the base level only
+   */
+  public static long textureBytes(
+      int internalFormat, int width, int height, int faces, int mipLevels) {
+    long texels = 0;
+    for (int level = 0; level < mipLevels; level++) {
+      texels += (long) Math.max(1, width >> level) * Math.max(1, height >> level);
+    }
+    return texels * faces * bytesPerTexel(internalFormat);
+  }
+
+  /** Returns the number of mipmap levels of a full chain down to 1x1. */
+  public static int fullMipLevels(int width, int height) {
+    return 32 - Integer.numberOfLeadingZeros(Math.max(1, Math.max(width, height)));
+  }
+
+  private static int bytesPerTexel(int internalFormat) {
+    switch (internalFormat) {
+      case GLES30.GL_RED:
+      case GLES30.GL_R8:
+        return 1;
+      case GLES30.GL_RG:
+      case GLES30.GL_RG8:
+      case GLES30.GL_R16F:
+      case GLES30.GL_DEPTH_COMPONENT16:
+        return 2;
+      case GLES30.GL_RGB:
+      case GLES30.GL_RGB8:
+        return 3;
+      case GLES30.GL_RGB16F:
+        return 6;
+      case GLES30.GL_RGBA16F:
+      case GLES30.GL_RG32F:
+        return 8;
+      case GLES30.GL_RGBA32F:
+        return 16;
+      default:
+        // GL_RGBA, GL_RGBA8, GL_SRGB8_ALPHA8, GL_RG16F, GL_R32F, GL_DEPTH_COMPONENT32F and the
+        // 24-bit depth formats, which drivers store in 4 bytes.
+        return 4;
+    }
+  }
+}
@@ -42,7 +42,7 @@ public class IndexBuffer implements Closeable {
    * instead.
    */
   public IndexBuffer(SampleRender render, IntBuffer entries) {
-    buffer = new GpuBuffer(GLES30.GL_ELEMENT_ARRAY_BUFFER, GpuBuffer.INT_SIZE, entries);
+    buffer = new GpuBuffer(render, GLES30.GL_ELEMENT_ARRAY_BUFFER, GpuBuffer.INT_SIZE, entries);
   }
 
   /**
@@ -36,9 +36,12 @@ import javax.microedition.khronos.egl.EGLDisplay;
 import javax.microedition.khronos.egl.EGLSurface;
 import javax.microedition.khronos.opengles.GL10;
 
+import benchmark.common.helpers.SchedulingPolicy;
+import benchmark.common.helpers.SystemTrace;
 import benchmark.common.samplerender.Framebuffer;
 import benchmark.common.samplerender.GLError;
 import benchmark.common.samplerender.Mesh;
+import benchmark.common.samplerender.PerformanceHud;
 import benchmark.common.samplerender.Shader;
 
 /** Renders frames offscreen as frequently as possible. */
@@ -60,6 +63,7 @@ public class OffscreenRender extends SampleRender {
   private static int EGL_CONTEXT_CLIENT_VERSION = 0x3098;
 
   private boolean running = true;
+  private volatile PerformanceHud hud;
 
   /**
    * Constructs and renders to an offscreen EGL context.
@@ -68,16 +72,33 @@ public class OffscreenRender extends SampleRender {
    * @param assetManager AssetManager for loading Android resources
    */
   public OffscreenRender(SurfaceView surfaceView, Renderer renderer, AssetManager assetManager) {
+    this(surfaceView, renderer, assetManager, SchedulingPolicy.DEFAULT);
+  }
+
+  /**
+   * Constructs and renders to an offscreen EGL context from a thread scheduled by the given policy.
+   *
+   * @param renderer Renderer implementation to receive callbacks
+   * @param assetManager AssetManager for loading Android resources
+   * @param schedulingPolicy policy applied to the rendering thread before it sets up EGL
+   */
+  public OffscreenRender(SurfaceView surfaceView, Renderer renderer, AssetManager assetManager,
+      SchedulingPolicy schedulingPolicy) {
     super(assetManager);
 
     renderingThread = new Thread() {
       public void run() {
+        schedulingPolicy.applyToRenderThread();
         setupEGL(surfaceView.getHolder());
         GLES30.glEnable(GLES30.GL_BLEND);
         GLError.maybeThrowGLException("Failed to enable blending", "glEnable");
         renderer.onSurfaceCreated(OffscreenRender.this);
         renderer.onSurfaceChanged(OffscreenRender.this, viewportWidth, viewportHeight);
         loop();
+        PerformanceHud hud = OffscreenRender.this.hud;
+        if (hud != null) {
+          hud.close();
+        }
         shutdownEGL();
       }
     };
@@ -137,19 +158,35 @@ public class OffscreenRender extends SampleRender {
     clear(null,0f, 0f, 0f, 1f);
     long lastPreviewFrameTime = System.currentTimeMillis();
     while (running) {
+        SystemTrace.begin("OffscreenRender.loop");
         renderer.onDrawFrame(this);
         long currentFrameTime = System.currentTimeMillis();
         // Display onscreen preview at approx 30fps
         if (currentFrameTime - lastPreviewFrameTime > 33) {
+          PerformanceHud hud = this.hud;
+          if (hud != null) {
+            hud.draw(this);
+          }
+          SystemTrace.begin("eglSwapBuffers");
           mEGL.eglSwapBuffers(mEGLDisplay, mEGLSurface);
+          SystemTrace.end();
           lastPreviewFrameTime = currentFrameTime;
         }
+        SystemTrace.end();
     }
   }
 
   public int getViewportWidth() { return viewportWidth; }
   public int getViewportHeight() { return viewportHeight; }
 
+  /**
+   * Draws the given HUD over every frame that is presented, or none if null. The rendering thread
+   * closes the HUD when it stops.
+   */
+  public void setHud(PerformanceHud hud) {
+    this.hud = hud;
+  }
+
   public void stop() {
     running = false;
   }
@@ -0,0 +1,360 @@
+/*
+ * Copyright 2021, Brown University, Providence, RI.
+ * Rahul Shahi, Sherief Reda, Seif Abdelaziz
+ *
+ *                        All Rights Reserved
+ *
+ * Permission to use, copy, modify, and distribute this software and
+ * its documentation for any purpose other than its incorporation into a
+ * commercial product or service is hereby granted without fee, provided
+ * that the above copyright notice appear in all copies and that both
+ * that copyright notice and this permission notice appear in supporting
+ * documentation, and that the name of Brown University not be used in
+ * advertising or publicity pertaining to distribution of the software
+ * without specific, written prior permission.
+ *
+ * BROWN UNIVERSITY DISCLAIMS ALL WARRANTIES WITH REGARD TO THIS SOFTWARE,
+ * INCLUDING ALL IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR ANY
+ * PARTICULAR PURPOSE.  IN NO EVENT SHALL BROWN UNIVERSITY BE LIABLE FOR
+ * ANY SPECIAL, INDIRECT OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF
+ * OR IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+
+package benchmark.common.samplerender;
+
+import android.content.Intent;
+import android.util.Log;
+import benchmark.common.framelog.FrameLog;
+import benchmark.common.framelog.FrameTimer;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+
+/**
+ * Live overlay of how a run is going, drawn on top of the frames that {@link OffscreenRender}
+ * presents so that runs can be watched on the device.
+ *
+ * <p>Shows a rolling graph of the last {@link #HISTORY} frame times with the GPU time of each frame
+ * inside its bar and reference lines at 60 and 30 FPS, a bar of the average time of every {@link
+ * FrameTimer} stage in the order of the stages, and the current phase, frame time and GPU time as
+ * numbers. Everything is one mesh of flat-colored quads that is rebuilt on the CPU and drawn with a
+ * single draw call, outside every stage timed on the GPU.
+ *
+ * <p>The HUD gets the frames from a {@link FrameProfiler} once their GPU times are known, a few
+ * frames late. It measures how long it takes to draw, which the profiler logs as {@link
+ * FrameLog#HUD_TIME} with the next frame, so that the analysis subtracts it from the frame
+ * interval. Its vertex buffers count towards the section's GPU buffer memory.
+ *
+ * <p>Off unless the section's intent sets {@link #EXTRA_ENABLED}. All methods must be called on
+ * the GL thread.
+ */
+public class PerformanceHud implements Closeable {
+  private static final String TAG = PerformanceHud.class.getSimpleName();
+
+  /** Intent extra that turns the HUD on for a section. */
+  public static final String EXTRA_ENABLED = "benchmark.SHOW_HUD";
+  /** Number of frames in the frame time graph. */
+  public static final int HISTORY = 120;
+
+  // Layout in HUD units from the top left corner of the panel. The panel is scaled to span the
+  // shorter side of the viewport.
+  private static final float WIDTH = 400f;
+  private static final float HEIGHT = 148f;
+  private static final float MARGIN = 8f;
+  private static final float TEXT_TOP = 8f;
+  private static final float GRAPH_TOP = 32f;
+  private static final float GRAPH_HEIGHT = 80f;
+  private static final float STAGE_TOP = 124f;
+  private static final float STAGE_HEIGHT = 14f;
+  private static final float DIGIT_WIDTH = 8f;
+  private static final float DIGIT_HEIGHT = 16f;
+  private static final float STROKE = 2f;
+  /** Frame time at the top of the graph and at the end of the stage bar. */
+  private static final float FULL_SCALE_MILLIS = 50f;
+  private static final float[] REFERENCE_MILLIS = {1000f / 60, 1000f / 30};
+  // Weight of a new frame in the moving averages of the stage bar.
+  private static final float AVERAGE_WEIGHT = 0.05f;
+
+  private static final float[] PANEL_COLOR = {0f, 0f, 0f, 0.6f};
+  private static final float[] TEXT_COLOR = {1f, 1f, 1f, 1f};
+  private static final float[] LINE_COLOR = {1f, 1f, 1f, 0.4f};
+  private static final float[] FAST_COLOR = {0.3f, 0.8f, 0.3f, 0.9f};
+  private static final float[] SLOW_COLOR = {0.95f, 0.8f, 0.2f, 0.9f};
+  private static final float[] JANK_COLOR = {0.95f, 0.3f, 0.2f, 0.9f};
+  private static final float[] GPU_COLOR = {0.3f, 0.5f, 1f, 0.9f};
+  // One color per FrameTimer stage.
+  private static final float[][] STAGE_COLORS = {
+    {0.95f, 0.55f, 0.1f, 0.9f}, {0.7f, 0.4f, 0.9f, 0.9f}, {0.6f, 0.6f, 0.6f, 0.9f},
+    {0.2f, 0.7f, 0.7f, 0.9f}, {0.95f, 0.5f, 0.7f, 0.9f}, {0.6f, 0.4f, 0.2f, 0.9f},
+    {0.3f, 0.9f, 0.95f, 0.9f}, {0.95f, 0.95f, 0.8f, 0.9f},
+  };
+  // Seven-segment patterns of the digits: bit 0 is the top segment, bits 1 to 5 follow clockwise
+  // and bit 6 is the middle one.
+  private static final int[] DIGIT_SEGMENTS = {
+    0x3F, 0x06, 0x5B, 0x4F, 0x66, 0x6D, 0x7D, 0x07, 0x7F, 0x6F,
+  };
+
+  private static final int MAX_QUADS = 640;
+  private static final int VERTICES_PER_QUAD = 6;
+
+  // Frame and GPU times of the last frames in milliseconds, a ring ending before head.
+  private final float[] frameMillis = new float[HISTORY];
+  private final float[] gpuMillis = new float[HISTORY];
+  private int head;
+  private int frameCount;
+  private final float[] stageMillis = new float[FrameTimer.STAGE_NAMES.length];
+  private long phase = FrameLog.UNAVAILABLE;
+  private long lastFrameStart = FrameLog.UNAVAILABLE;
+  private long pendingCost;
+
+  private final FloatBuffer positions = allocateFloats(MAX_QUADS * VERTICES_PER_QUAD * 2);
+  private final FloatBuffer colors = allocateFloats(MAX_QUADS * VERTICES_PER_QUAD * 4);
+  private VertexBuffer positionBuffer;
+  private VertexBuffer colorBuffer;
+  private Mesh mesh;
+  private Shader shader;
+  private boolean failed;
+  // Scale and offset from HUD units to normalized device coordinates.
+  private float scaleX;
+  private float scaleY;
+  private float offsetX;
+  private float offsetY;
+
+  /** Returns whether the intent that started a section turns the HUD on. */
+  public static boolean isEnabled(Intent intent) {
+    return intent.getBooleanExtra(EXTRA_ENABLED, false);
+  }
+
+  /**
+   * Draws the HUD over the default framebuffer. Called by {@link OffscreenRender} before it
+   * presents a frame.
+   */
+  public void draw(SampleRender render) {
+    if (failed) {
+      return;
+    }
+    long start = System.nanoTime();
+    if (mesh == null) {
+      try {
+        createResources(render);
+      } catch (IOException e) {
+        Log.e(TAG, "Failed to load the HUD shaders, the HUD is not drawn", e);
+        failed = true;
+        return;
+      }
+    }
+    buildQuads(render.viewportWidth, render.viewportHeight);
+    positionBuffer.set(positions);
+    colorBuffer.set(colors);
+    render.draw(mesh, shader);
+    pendingCost += System.nanoTime() - start;
+  }
+
+  /** Frees the GPU resources of the HUD. */
+  @Override
+  public void close() {
+    if (mesh != null) {
+      mesh.close();
+      positionBuffer.close();
+      colorBuffer.close();
+      mesh = null;
+    }
+    if (shader != null) {
+      shader.close();
+      shader = null;
+    }
+  }
+
+  /**
+   * Adds a finished frame, given as a record of {@link FrameLog#COLUMN_NAMES} at offset in
+   * records.
+   */
+  /* package-private */ void addFrame(long[] records, int offset) {
+    long frameStart = records[offset + FrameLog.FRAME_START];
+    phase = records[offset + FrameLog.PHASE];
+    if (lastFrameStart != FrameLog.UNAVAILABLE) {
+      long interval = frameStart - lastFrameStart - records[offset + FrameLog.HUD_TIME];
+      long gpuTime = records[offset + FrameLog.GPU_TIME];
+      frameMillis[head] = interval / 1e6f;
+      gpuMillis[head] = gpuTime == FrameLog.UNAVAILABLE ? 0f : gpuTime / 1e6f;
+      head = (head + 1) % HISTORY;
+      frameCount = Math.min(frameCount + 1, HISTORY);
+    }
+    lastFrameStart = frameStart;
+    for (int i = 0; i < stageMillis.length; i++) {
+      float millis = Math.max(records[offset + FrameLog.FIRST_STAGE + i], 0L) / 1e6f;
+      stageMillis[i] += AVERAGE_WEIGHT * (millis - stageMillis[i]);
+    }
+  }
+
+  /** Returns the time spent drawing the HUD since the last call, in nanoseconds. */
+  /* package-private */ long takeCost() {
+    long cost = pendingCost;
+    pendingCost = 0;
+    return cost;
+  }
+
+  private void createResources(SampleRender render) throws IOException {
+    shader = Shader.createFromAssets(render, "shaders/hud.vert", "shaders/hud.frag", null)
+        .setDepthTest(false)
+        .setDepthWrite(false)
+        .setBlend(Shader.BlendFactor.SRC_ALPHA, Shader.BlendFactor.ONE_MINUS_SRC_ALPHA);
+    // Allocated at full size once, later frames only update the used part.
+    positionBuffer = new VertexBuffer(render, 2, positions);
+    colorBuffer = new VertexBuffer(render, 4, colors);
+    mesh = new Mesh(render, Mesh.PrimitiveMode.TRIANGLES, null,
+        new VertexBuffer[] {positionBuffer, colorBuffer});
+  }
+
+  /** Fills the vertex data with the quads of the current state. */
+  private void buildQuads(int viewportWidth, int viewportHeight) {
+    float unit = Math.min(viewportWidth, viewportHeight) / (WIDTH + 2 * MARGIN);
+    scaleX = 2 * unit / viewportWidth;
+    scaleY = -2 * unit / viewportHeight;
+    offsetX = -1 + MARGIN * scaleX;
+    offsetY = 1 + MARGIN * scaleY;
+    positions.clear();
+    colors.clear();
+
+    quad(0, 0, WIDTH, HEIGHT, PANEL_COLOR);
+
+    // Phase, latest frame time and latest GPU time, each after a swatch of its color.
+    int latest = (head + HISTORY - 1) % HISTORY;
+    float x = MARGIN;
+    if (phase != FrameLog.UNAVAILABLE) {
+      x = number(x, phase, 0, TEXT_COLOR) + 3 * DIGIT_WIDTH;
+    }
+    if (frameCount > 0) {
+      float[] frameColor = frameColor(frameMillis[latest]);
+      quad(x, TEXT_TOP + DIGIT_HEIGHT / 4, x + DIGIT_WIDTH, TEXT_TOP + DIGIT_HEIGHT * 3 / 4,
+          frameColor);
+      x = number(x + 2 * DIGIT_WIDTH, frameMillis[latest], 1, frameColor) + 3 * DIGIT_WIDTH;
+      quad(x, TEXT_TOP + DIGIT_HEIGHT / 4, x + DIGIT_WIDTH, TEXT_TOP + DIGIT_HEIGHT * 3 / 4,
+          GPU_COLOR);
+      number(x + 2 * DIGIT_WIDTH, gpuMillis[latest], 1, GPU_COLOR);
+    }
+
+    // Frame time graph, newest frame on the right, with the GPU time inside each bar.
+    float barWidth = (WIDTH - 2 * MARGIN) / HISTORY;
+    float bottom = GRAPH_TOP + GRAPH_HEIGHT;
+    for (int i = 0; i < frameCount; i++) {
+      int slot = (head + HISTORY - frameCount + i) % HISTORY;
+      float left = MARGIN + (HISTORY - frameCount + i) * barWidth;
+      float right = left + barWidth * 0.8f;
+      quad(left, bottom - graphHeight(frameMillis[slot]), right, bottom,
+          frameColor(frameMillis[slot]));
+      if (gpuMillis[slot] > 0) {
+        quad(left, bottom - graphHeight(gpuMillis[slot]), right, bottom, GPU_COLOR);
+      }
+    }
+    for (float millis : REFERENCE_MILLIS) {
+      float y = bottom - graphHeight(millis);
+      quad(MARGIN, y - STROKE / 4, WIDTH - MARGIN, y + STROKE / 4, LINE_COLOR);
+    }
+
+    // Average stage times, stacked in the order of the stages.
+    float left = MARGIN;
+    for (int i = 0; i < stageMillis.length; i++) {
+      float width = Math.min(stageMillis[i] / FULL_SCALE_MILLIS * (WIDTH - 2 * MARGIN),
+          WIDTH - MARGIN - left);
+      quad(left, STAGE_TOP, left + width, STAGE_TOP + STAGE_HEIGHT,
+          STAGE_COLORS[i % STAGE_COLORS.length]);
+      left += width;
+    }
+
+    positions.flip();
+    colors.flip();
+  }
+
+  /**
+   * Adds a non-negative number with the given decimals as seven-segment digits at x, and returns
+   * the x after it.
+   */
+  private float number(float x, double value, int decimals, float[] color) {
+    long scale = decimals == 0 ? 1L : (long) Math.pow(10, decimals);
+    long digits = Math.min(Math.max(Math.round(value * scale), 0L), 99_999L);
+    // Digits from the most significant one, at least one before the decimal point.
+    long divisor = scale;
+    while (divisor * 10 <= digits) {
+      divisor *= 10;
+    }
+    for (; divisor > 0; divisor /= 10) {
+      if (divisor == scale / 10) {
+        quad(x, TEXT_TOP + DIGIT_HEIGHT - STROKE, x + STROKE, TEXT_TOP + DIGIT_HEIGHT, color);
+        x += 2 * STROKE;
+      }
+      digit(x, (int) (digits / divisor % 10), color);
+      x += DIGIT_WIDTH + 2 * STROKE;
+    }
+    return x;
+  }
+
+  /** Adds the segments of a digit with its top left corner at x. */
+  private void digit(float x, int digit, float[] color) {
+    int segments = DIGIT_SEGMENTS[digit];
+    float top = TEXT_TOP;
+    float middle = TEXT_TOP + DIGIT_HEIGHT / 2;
+    float bottom = TEXT_TOP + DIGIT_HEIGHT;
+    float right = x + DIGIT_WIDTH;
+    if ((segments & 0x01) != 0) {
+      quad(x, top, right, top + STROKE, color);
+    }
+    if ((segments & 0x02) != 0) {
+      quad(right - STROKE, top, right, middle, color);
+    }
+    if ((segments & 0x04) != 0) {
+      quad(right - STROKE, middle, right, bottom, color);
+    }
+    if ((segments & 0x08) != 0) {
+      quad(x, bottom - STROKE, right, bottom, color);
+    }
+    if ((segments & 0x10) != 0) {
+      quad(x, middle, x + STROKE, bottom, color);
+    }
+    if ((segments & 0x20) != 0) {
+      quad(x, top, x + STROKE, middle, color);
+    }
+    if ((segments & 0x40) != 0) {
+      quad(x, middle - STROKE / 2, right, middle + STROKE / 2, color);
+    }
+  }
+
+  /** Adds a rectangle given in HUD units as two triangles. */
+  private void quad(float left, float top, float right, float bottom, float[] color) {
+    if (positions.position() == positions.capacity()) {
+      return;
+    }
+    float x0 = offsetX + left * scaleX;
+    float x1 = offsetX + right * scaleX;
+    float y0 = offsetY + top * scaleY;
+    float y1 = offsetY + bottom * scaleY;
+    positions.put(x0).put(y0).put(x0).put(y1).put(x1).put(y0);
+    positions.put(x1).put(y0).put(x0).put(y1).put(x1).put(y1);
+    for (int i = 0; i < VERTICES_PER_QUAD; i++) {
+      colors.put(color);
+    }
+  }
+
+  private static float graphHeight(float millis) {
+    return Math.min(millis / FULL_SCALE_MILLIS, 1f) * GRAPH_HEIGHT;
+  }
+
+  /** Returns the color of a frame time: under 60 FPS, under 30 FPS or slower. */
+  private static float[] frameColor(float millis) {
+    if (millis <= REFERENCE_MILLIS[0]) {
+      return FAST_COLOR;
+    }
+    return millis <= REFERENCE_MILLIS[1] ? SLOW_COLOR : JANK_COLOR;
+  }
+
+  private static FloatBuffer allocateFloats(int count) {
+    return ByteBuffer.allocateDirect(count * Float.BYTES)
+        .order(ByteOrder.nativeOrder())
+        .asFloatBuffer();
+  }
+}
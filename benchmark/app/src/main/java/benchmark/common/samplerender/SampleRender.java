@@ -26,6 +26,7 @@ public class SampleRender {
   private static final String TAG = SampleRender.class.getSimpleName();
 
   private final AssetManager assetManager;
+  private final GpuMemory gpuMemory = new GpuMemory();
 
   protected int viewportWidth = 1;
   protected int viewportHeight = 1;
@@ -105,6 +106,11 @@ public class SampleRender {
     GLError.maybeThrowGLException("Failed to clear framebuffer", "glClear");
   }
 
+  /** Returns the bookkeeping of the GPU memory allocated through this context. */
+  public GpuMemory getGpuMemory() {
+    return gpuMemory;
+  }
+
   /** Interface to be implemented for rendering callbacks. */
   public static interface Renderer {
     /**
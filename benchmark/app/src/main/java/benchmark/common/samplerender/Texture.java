@@ -30,6 +30,10 @@ public class Texture implements Closeable {
 
   private final int[] textureId = {0};
   private final Target target;
+  private final GpuMemory memory;
+  // Current allocation as reported to the GpuMemory.
+  private GpuMemory.Category memoryCategory = GpuMemory.Category.TEXTURE;
+  private long allocatedBytes;
 
   /**
    * Describes the way the texture's edges are rendered.
@@ -98,6 +102,7 @@ public class Texture implements Closeable {
 
   public Texture(SampleRender render, Target target, WrapMode wrapMode, boolean useMipmaps) {
     this.target = target;
+    this.memory = render.getGpuMemory();
 
     GLES30.glGenTextures(1, textureId, 0);
     GLError.maybeThrowGLException("Texture creation failed", "glGenTextures");
@@ -157,6 +162,12 @@ public class Texture implements Closeable {
       GLError.maybeThrowGLException("Failed to populate texture data", "glTexImage2D");
       GLES30.glGenerateMipmap(GLES30.GL_TEXTURE_2D);
       GLError.maybeThrowGLException("Failed to generate mipmaps", "glGenerateMipmap");
+      texture.recordAllocation(
+          GpuMemory.Category.TEXTURE,
+          colorFormat.glesEnum,
+          bitmap.getWidth(),
+          bitmap.getHeight(),
+          GpuMemory.fullMipLevels(bitmap.getWidth(), bitmap.getHeight()));
     } catch (Throwable t) {
       texture.close();
       throw t;
@@ -174,9 +185,38 @@ public class Texture implements Closeable {
       GLES30.glDeleteTextures(1, textureId, 0);
       GLError.maybeLogGLError(Log.WARN, TAG, "Failed to free texture", "glDeleteTextures");
       textureId[0] = 0;
+      memory.update(memoryCategory, allocatedBytes, 0);
+      allocatedBytes = 0;
     }
   }
 
+  /**
+   * Reports the storage of the texture to the {@link GpuMemory} of its context, replacing the
+   * previous report. Call after every {@code glTexImage2D} on the base level; all six faces of a
+   * cubemap are counted.
+   *
+   * @param category owner the memory is attributed to
+   * @param internalFormat internal format passed to {@code glTexImage2D}
+   * @param mipLevels number of allocated mipmap levels, including those of {@code glGenerateMipmap}
+   */
+  public void recordAllocation(
+      GpuMemory.Category category, int internalFormat, int width, int height, int mipLevels) {
+    int faces = target == Target.TEXTURE_CUBE_MAP ? 6 : 1;
+    long bytes = GpuMemory.textureBytes(internalFormat, width, height, faces, mipLevels);
+    if (category != memoryCategory) {
+      memory.update(memoryCategory, allocatedBytes, 0);
+      allocatedBytes = 0;
+      memoryCategory = category;
+    }
+    memory.update(category, allocatedBytes, bytes);
+    allocatedBytes = bytes;
+  }
+
+  /** Returns the bytes last reported with {@link #recordAllocation}, or 0. */
+  public long getAllocatedBytes() {
+    return allocatedBytes;
+  }
+
   /** Retrieve the native texture ID. */
   public int getTextureId() {
     return textureId[0];
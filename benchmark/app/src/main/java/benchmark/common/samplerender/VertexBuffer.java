@@ -54,7 +54,7 @@ public class VertexBuffer implements Closeable {
     }
 
     this.numberOfEntriesPerVertex = numberOfEntriesPerVertex;
-    buffer = new GpuBuffer(GLES30.GL_ARRAY_BUFFER, GpuBuffer.FLOAT_SIZE, entries);
+    buffer = new GpuBuffer(render, GLES30.GL_ARRAY_BUFFER, GpuBuffer.FLOAT_SIZE, entries);
   }
 
   /**
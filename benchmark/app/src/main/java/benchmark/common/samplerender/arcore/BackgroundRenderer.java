@@ -20,6 +20,7 @@ import android.opengl.GLES30;
 import com.google.ar.core.Coordinates2d;
 import com.google.ar.core.Frame;
 import benchmark.common.samplerender.Framebuffer;
+import benchmark.common.samplerender.GpuMemory;
 import benchmark.common.samplerender.Mesh;
 import benchmark.common.samplerender.SampleRender;
 import benchmark.common.samplerender.Shader;
@@ -205,6 +206,12 @@ public class BackgroundRenderer {
         GLES30.GL_RG,
         GLES30.GL_UNSIGNED_BYTE,
         image.getPlanes()[0].getBuffer());
+    cameraDepthTexture.recordAllocation(
+        GpuMemory.Category.TEXTURE,
+        GLES30.GL_RG8,
+        image.getWidth(),
+        image.getHeight(),
+        /*mipLevels=*/ 1);
     if (useOcclusion) {
       aspectRatio = (float) image.getWidth() / (float) image.getHeight();
       occlusionShader.setFloat("u_DepthAspectRatio", aspectRatio);
@@ -23,6 +23,7 @@ import android.util.Log;
 import com.google.ar.core.ArImage;
 import com.google.ar.core.ImageFormat;
 import benchmark.common.samplerender.GLError;
+import benchmark.common.samplerender.GpuMemory;
 import benchmark.common.samplerender.Mesh;
 import benchmark.common.samplerender.SampleRender;
 import benchmark.common.samplerender.Shader;
@@ -277,6 +278,12 @@ public class SpecularCubemapFilter implements Closeable {
 
       GLES30.glGenerateMipmap(GLES30.GL_TEXTURE_CUBE_MAP);
       GLError.maybeThrowGLException("Failed to generate cubemap mipmaps", "glGenerateMipmap");
+      radianceCubemap.recordAllocation(
+          GpuMemory.Category.CUBEMAP_FILTER,
+          GLES30.GL_RGBA16F,
+          resolution,
+          resolution,
+          numberOfMipmapLevels);
 
       // Do the filtering operation, filling the mipmaps of ldTexture with the roughness filtered
       // cubemap.
@@ -332,6 +339,12 @@ public class SpecularCubemapFilter implements Closeable {
         GLError.maybeThrowGLException("Could not initialize LD cubemap mipmap", "glTexImage2D");
       }
     }
+    ldCubemap.recordAllocation(
+        GpuMemory.Category.CUBEMAP_FILTER,
+        GLES30.GL_RGB16F,
+        resolution,
+        resolution,
+        numberOfMipmapLevels);
   }
 
   private Shader[] createShaders(SampleRender render, ChunkIterable chunks) throws IOException {
@@ -0,0 +1,146 @@
+/*
+ * Copyright 2021, Brown University, Providence, RI.
+ * Rahul Shahi, Sherief Reda, Seif Abdelaziz
+ *
+ *                        All Rights Reserved
+ *
+ * Permission to use, copy, modify, and distribute this software and
+ * its documentation for any purpose other than its incorporation into a
+ * commercial product or service is hereby granted without fee, provided
+ * that the above copyright notice appear in all copies and that both
+ * that copyright notice and this permission notice appear in supporting
+ * documentation, and that the name of Brown University not be used in
+ * advertising or publicity pertaining to distribution of the software
+ * without specific, written prior permission.
+ *
+ * BROWN UNIVERSITY DISCLAIMS ALL WARRANTIES WITH REGARD TO THIS SOFTWARE,
+ * INCLUDING ALL IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR ANY
+ * PARTICULAR PURPOSE.  IN NO EVENT SHALL BROWN UNIVERSITY BE LIABLE FOR
+ * ANY SPECIAL, INDIRECT OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF
+ * OR IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+
+package benchmark.common.sampling;
+
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.os.BatteryManager;
+import android.os.SystemClock;
+import benchmark.common.framelog.FrameLog;
+
+/**
+ * Reads the battery through {@link BatteryManager}, for devices whose {@code power_supply} nodes
+ * apps may not read. The current is a property; the voltage and the plugged state only come with
+ * the sticky battery broadcast, which the framework refreshes rarely, so it is fetched at most once
+ * a second.
+ */
+public class BatteryManagerSource implements PowerSampler.Source {
+  private static final long BROADCAST_INTERVAL_MS = 1000;
+
+  /** The framework calls the source makes, replaced by a fake in tests. */
+  interface Battery {
+    /** Returns {@link BatteryManager#BATTERY_PROPERTY_CURRENT_NOW} as the framework reports it. */
+    long getCurrentNow();
+
+    /** Fetches the sticky battery broadcast and returns false if there is none. */
+    boolean fetchBroadcast();
+
+    /** Returns an int extra of the last fetched battery broadcast, or -1. */
+    int getBroadcastExtra(String name);
+
+    /** Returns {@link SystemClock#elapsedRealtime()}. */
+    long elapsedRealtime();
+  }
+
+  private final Battery battery;
+  private long voltage = FrameLog.UNAVAILABLE;
+  private long plugged = FrameLog.UNAVAILABLE;
+  private boolean fetched;
+  private long broadcastTime;
+
+  public BatteryManagerSource(Context context) {
+    this(new FrameworkBattery(context));
+  }
+
+  /* package-private */ BatteryManagerSource(Battery battery) {
+    this.battery = battery;
+  }
+
+  @Override
+  public long readCurrent() {
+    long current = battery.getCurrentNow();
+    // Devices without a reading return 0 or Long.MIN_VALUE.
+    return current == 0 || current == Long.MIN_VALUE ? FrameLog.UNAVAILABLE : current;
+  }
+
+  @Override
+  public long readVoltage() {
+    readBroadcast();
+    return voltage;
+  }
+
+  @Override
+  public long readPlugged() {
+    readBroadcast();
+    return plugged;
+  }
+
+  /** Fetches the sticky battery broadcast unless it was fetched within the last second. */
+  private void readBroadcast() {
+    long now = battery.elapsedRealtime();
+    if (fetched && now - broadcastTime < BROADCAST_INTERVAL_MS) {
+      return;
+    }
+    fetched = true;
+    broadcastTime = now;
+    if (!battery.fetchBroadcast()) {
+      voltage = FrameLog.UNAVAILABLE;
+      plugged = FrameLog.UNAVAILABLE;
+      return;
+    }
+    int millivolts = battery.getBroadcastExtra(BatteryManager.EXTRA_VOLTAGE);
+    voltage = millivolts > 0 ? millivolts * 1000L : FrameLog.UNAVAILABLE;
+    // EXTRA_PLUGGED is 0 on battery and a BATTERY_PLUGGED_* flag otherwise.
+    int pluggedType = battery.getBroadcastExtra(BatteryManager.EXTRA_PLUGGED);
+    plugged = pluggedType < 0 ? FrameLog.UNAVAILABLE : pluggedType == 0 ? 0L : 1L;
+  }
+
+  /** Reads the battery through {@link BatteryManager} and the sticky battery broadcast. */
+  private static class FrameworkBattery implements Battery {
+    private final Context context;
+    private final BatteryManager batteryManager;
+    private Intent broadcast;
+
+    FrameworkBattery(Context context) {
+      this.context = context.getApplicationContext();
+      batteryManager = (BatteryManager) context.getSystemService(Context.BATTERY_SERVICE);
+    }
+
+    @Override
+    public long getCurrentNow() {
+      return batteryManager == null
+          ? 0
+          : batteryManager.getLongProperty(BatteryManager.BATTERY_PROPERTY_CURRENT_NOW);
+    }
+
+    @Override
+    public boolean fetchBroadcast() {
+      broadcast = context.registerReceiver(null, new IntentFilter(Intent.ACTION_BATTERY_CHANGED));
+      return broadcast != null;
+    }
+
+    @Override
+    public int getBroadcastExtra(String name) {
+      return broadcast == null ? -1 : broadcast.getIntExtra(name, -1);
+    }
+
+    @Override
+    public long elapsedRealtime() {
+      return SystemClock.elapsedRealtime();
+    }
+  }
+}
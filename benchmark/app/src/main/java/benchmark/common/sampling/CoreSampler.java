@@ -0,0 +1,237 @@
+/*
+ * Copyright 2021, Brown University, Providence, RI.
+ * Rahul Shahi, Sherief Reda, Seif Abdelaziz
+ *
+ *                        All Rights Reserved
+ *
+ * Permission to use, copy, modify, and distribute this software and
+ * its documentation for any purpose other than its incorporation into a
+ * commercial product or service is hereby granted without fee, provided
+ * that the above copyright notice appear in all copies and that both
+ * that copyright notice and this permission notice appear in supporting
+ * documentation, and that the name of Brown University not be used in
+ * advertising or publicity pertaining to distribution of the software
+ * without specific, written prior permission.
+ *
+ * BROWN UNIVERSITY DISCLAIMS ALL WARRANTIES WITH REGARD TO THIS SOFTWARE,
+ * INCLUDING ALL IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR ANY
+ * PARTICULAR PURPOSE.  IN NO EVENT SHALL BROWN UNIVERSITY BE LIABLE FOR
+ * ANY SPECIAL, INDIRECT OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF
+ * OR IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+
+package benchmark.common.sampling;
+
+import benchmark.common.framelog.CoreLog;
+import benchmark.common.framelog.FrameLog;
+import benchmark.common.framelog.FrameLogWriter;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Samples on which CPU cores the render thread and the worker threads run, on a background thread
+ * into a {@link CoreLog}.
+ *
+ * <p>On heterogeneous SoCs the same frame takes very different times on a little and on a big
+ * core, and the scheduler decides which one a thread gets. The sampler finds the {@link
+ * CpuClusters} of a sysfs tree once at construction. Every sample it reads the {@code stat} file
+ * of each tracked thread under a {@code /proc/self/task} directory for the core the thread last
+ * ran on, and its {@code schedstat} file for the CPU time it used, falling back to the
+ * clock ticks of {@code stat} where the kernel has no scheduler statistics. The CPU time a thread
+ * used since the previous sample is attributed to the cluster of that core, so a thread that
+ * migrated in between is attributed to where it ended up; shorter intervals make this rarer.
+ *
+ * <p>The render thread is only known once it draws, see {@link #setRenderThread}. Worker threads
+ * are found by their name every {@link #RESCAN_INTERVAL_NANOS}, as they come and go. Both
+ * directories are parameters, so fake trees can stand in. Does not depend on Android.
+ */
+public class CoreSampler extends PeriodicSampler {
+  public static final long DEFAULT_INTERVAL_NANOS = 50_000_000L;
+  /** How often the worker threads are looked up again. */
+  public static final long RESCAN_INTERVAL_NANOS = 1_000_000_000L;
+  /** The threads of this process. */
+  public static final File TASKS = new File("/proc/self/task");
+  /** Name of the thread that recognizes text in the camera translator section. */
+  public static final String OCR_THREAD_NAME = "Tesseract";
+  /**
+   * Prefixes of the names of the worker threads: the kotlinx.coroutines default scheduler, whose
+   * "DefaultDispatcher-worker-1" reads "DefaultDispatch" as thread names in /proc are cut to 15
+   * characters, the dedicated ML thread of {@code benchmark.common.helpers.SchedulingPolicy} and
+   * the text recognition thread. The latter is logged as its own {@link CoreLog#OCR} role.
+   */
+  public static final String[] WORKER_NAME_PREFIXES =
+      {"DefaultDispatch", "MLWorker", OCR_THREAD_NAME};
+
+  // Fields of /proc/<pid>/task/<tid>/stat after the thread name, counted from the state field.
+  private static final int UTIME_FIELD = 11;
+  private static final int STIME_FIELD = 12;
+  private static final int PROCESSOR_FIELD = 36;
+
+  private final File tasks;
+  private final long nanosPerTick;
+  private final List<String> clusterNames = new ArrayList<>();
+  private final CpuClusters clusters;
+  private volatile int renderThreadId = -1;
+
+  // Owned by the sampler thread.
+  private final SysfsReader reader = new SysfsReader(512);
+  // Last CPU time seen per thread id, in nanoseconds.
+  private final Map<Integer, Long> lastRuntimes = new HashMap<>();
+  private final List<Integer> workerIds = new ArrayList<>();
+  private final List<Integer> workerRoles = new ArrayList<>();
+  private final long[] clusterTimes;
+  private boolean scanned;
+  private long lastScan;
+
+  /**
+   * Finds the CPU clusters of a sysfs tree.
+   *
+   * @param sysfsRoot root of the sysfs tree, usually {@link ThermalSampler#SYSFS_ROOT}
+   * @param tasks directory of the threads to sample, usually {@link #TASKS}
+   * @param nanosPerTick length of the kernel clock tick the {@code stat} CPU times count in
+   */
+  public CoreSampler(File sysfsRoot, File tasks, long nanosPerTick) {
+    super("CoreSampler");
+    this.tasks = tasks;
+    this.nanosPerTick = nanosPerTick;
+    clusters = new CpuClusters(sysfsRoot);
+    if (clusters.getCount() == 0) {
+      clusterNames.add("all");
+    }
+    for (int i = 0; i < clusters.getCount(); i++) {
+      clusterNames.add(clusters.getName(i));
+    }
+    clusterTimes = new long[CoreLog.ROLES.length * clusterNames.size()];
+  }
+
+  /** Returns the columns of the log to pass to {@link #start(FrameLogWriter, long)}. */
+  public String[] getColumnNames() {
+    List<String> columnNames = new ArrayList<>();
+    columnNames.add(CoreLog.TIME_COLUMN);
+    for (String role : CoreLog.ROLES) {
+      for (String cluster : clusterNames) {
+        columnNames.add(role + "_" + cluster + CoreLog.CLUSTER_SUFFIX);
+      }
+    }
+    return columnNames.toArray(new String[0]);
+  }
+
+  /**
+   * Sets the thread that renders the section's frames. May be called from any thread.
+   *
+   * @param threadId the Linux thread id, as returned by {@code android.os.Process.myTid()}
+   */
+  public void setRenderThread(int threadId) {
+    renderThreadId = threadId;
+  }
+
+  /** Reads every tracked thread once and commits the CPU time per cluster as one record. */
+  @Override
+  protected void sample(FrameLogWriter log) throws IOException {
+    long now = System.nanoTime();
+    if (!scanned || now - lastScan >= RESCAN_INTERVAL_NANOS) {
+      findWorkers();
+      scanned = true;
+      lastScan = now;
+    }
+    Arrays.fill(clusterTimes, 0L);
+    // Drop threads that exited, so a reused thread id starts from scratch.
+    Map<Integer, Long> seen = new HashMap<>();
+    int renderThread = renderThreadId;
+    if (renderThread >= 0) {
+      sampleThread(renderThread, CoreLog.RENDER, seen);
+    }
+    for (int i = 0; i < workerIds.size(); i++) {
+      sampleThread(workerIds.get(i), workerRoles.get(i), seen);
+    }
+    lastRuntimes.clear();
+    lastRuntimes.putAll(seen);
+
+    log.set(CoreLog.TIME, now);
+    for (int i = 0; i < clusterTimes.length; i++) {
+      log.set(CoreLog.FIRST_CLUSTER + i, clusterTimes[i]);
+    }
+    log.commit();
+  }
+
+  /** Lists the worker threads and their roles. */
+  private void findWorkers() {
+    workerIds.clear();
+    workerRoles.clear();
+    File[] threads = tasks.listFiles();
+    if (threads == null) {
+      return;
+    }
+    for (File thread : threads) {
+      String stat = reader.readLine(new File(thread, "stat"));
+      int nameStart = stat == null ? -1 : stat.indexOf('(');
+      if (nameStart < 0 || !isWorker(stat, nameStart + 1)) {
+        continue;
+      }
+      try {
+        workerIds.add(Integer.parseInt(thread.getName()));
+        workerRoles.add(
+            stat.startsWith(OCR_THREAD_NAME, nameStart + 1) ? CoreLog.OCR : CoreLog.WORKER);
+      } catch (NumberFormatException e) {
+        // Not a thread directory.
+      }
+    }
+  }
+
+  /** Returns whether the thread name starting at the given index of a stat line is a worker's. */
+  static boolean isWorker(String stat, int nameStart) {
+    for (String prefix : WORKER_NAME_PREFIXES) {
+      if (stat.startsWith(prefix, nameStart)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Attributes the CPU time a thread used since the last sample to the cluster it last ran on. The
+   * first sample of a thread only records where it stands.
+   */
+  private void sampleThread(int threadId, int role, Map<Integer, Long> seen) {
+    File thread = new File(tasks, Integer.toString(threadId));
+    String stat = reader.readLine(new File(thread, "stat"));
+    int nameEnd = stat == null ? -1 : stat.lastIndexOf(')');
+    if (nameEnd < 0 || nameEnd + 2 > stat.length()) {
+      return;
+    }
+    String[] fields = stat.substring(nameEnd + 2).split(" ");
+    if (fields.length <= PROCESSOR_FIELD) {
+      return;
+    }
+    long runtime = reader.readLong(new File(thread, "schedstat"));
+    int core;
+    try {
+      core = Integer.parseInt(fields[PROCESSOR_FIELD]);
+      if (runtime == FrameLog.UNAVAILABLE) {
+        runtime = (Long.parseLong(fields[UTIME_FIELD]) + Long.parseLong(fields[STIME_FIELD]))
+            * nanosPerTick;
+      }
+    } catch (NumberFormatException e) {
+      return;
+    }
+    seen.put(threadId, runtime);
+    Long last = lastRuntimes.get(threadId);
+    int cluster = clusterOf(core);
+    if (last != null && runtime >= last && cluster >= 0) {
+      clusterTimes[role * clusterNames.size() + cluster] += runtime - last;
+    }
+  }
+
+  /** Returns the cluster of a core, or -1 if the core was not found at construction. */
+  private int clusterOf(int core) {
+    return clusters.getCount() == 0 ? 0 : clusters.getCluster(core);
+  }
+}
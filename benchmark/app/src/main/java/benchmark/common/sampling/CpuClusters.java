@@ -0,0 +1,124 @@
+/*
+ * Copyright 2021, Brown University, Providence, RI.
+ * Rahul Shahi, Sherief Reda, Seif Abdelaziz
+ *
+ *                        All Rights Reserved
+ *
+ * Permission to use, copy, modify, and distribute this software and
+ * its documentation for any purpose other than its incorporation into a
+ * commercial product or service is hereby granted without fee, provided
+ * that the above copyright notice appear in all copies and that both
+ * that copyright notice and this permission notice appear in supporting
+ * documentation, and that the name of Brown University not be used in
+ * advertising or publicity pertaining to distribution of the software
+ * without specific, written prior permission.
+ *
+ * BROWN UNIVERSITY DISCLAIMS ALL WARRANTIES WITH REGARD TO THIS SOFTWARE,
+ * INCLUDING ALL IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR ANY
+ * PARTICULAR PURPOSE.  IN NO EVENT SHALL BROWN UNIVERSITY BE LIABLE FOR
+ * ANY SPECIAL, INDIRECT OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF
+ * OR IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+
+package benchmark.common.sampling;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.TreeMap;
+
+/**
+ * The CPU cores of a sysfs tree grouped into clusters of equal cores by their highest clock, from
+ * the slowest to the fastest cluster. On heterogeneous SoCs these are the little and big cores.
+ * Does not depend on Android.
+ */
+public class CpuClusters {
+  private final List<String> names = new ArrayList<>();
+  private final List<int[]> cores = new ArrayList<>();
+  // Cluster of every core, indexed by core number, or -1 for numbers without a core.
+  private final int[] clusterOfCore;
+
+  /** @param sysfsRoot root of the sysfs tree, usually {@link ThermalSampler#SYSFS_ROOT} */
+  public CpuClusters(File sysfsRoot) {
+    SysfsReader reader = new SysfsReader();
+    TreeMap<Long, List<Integer>> clusters = new TreeMap<>();
+    int coreCount = 0;
+    for (File core : SysfsReader.listNumbered(new File(sysfsRoot, "devices/system/cpu"), "cpu")) {
+      int number = Integer.parseInt(core.getName().substring("cpu".length()));
+      long maxFrequency = reader.readLong(new File(core, "cpufreq/cpuinfo_max_freq"));
+      clusters.computeIfAbsent(maxFrequency, key -> new ArrayList<>()).add(number);
+      coreCount = Math.max(coreCount, number + 1);
+    }
+    clusterOfCore = new int[coreCount];
+    Arrays.fill(clusterOfCore, -1);
+    String[] tiers = tierNames(clusters.size());
+    for (List<Integer> cluster : clusters.values()) {
+      for (int core : cluster) {
+        clusterOfCore[core] = names.size();
+      }
+      names.add(tiers[names.size()] + "-cpu" + formatCores(cluster));
+      cores.add(cluster.stream().mapToInt(Integer::intValue).toArray());
+    }
+  }
+
+  /** Returns the number of clusters, 0 if the tree lists no cores. */
+  public int getCount() {
+    return names.size();
+  }
+
+  /** Returns the name of a cluster, e.g. "little-cpu0-3" or "big-cpu4-7". */
+  public String getName(int cluster) {
+    return names.get(cluster);
+  }
+
+  /** Returns the numbers of the cores of a cluster in ascending order. */
+  public int[] getCores(int cluster) {
+    return cores.get(cluster).clone();
+  }
+
+  /** Returns the cluster of a core, or -1 if the tree does not list the core. */
+  public int getCluster(int core) {
+    return core >= 0 && core < clusterOfCore.length ? clusterOfCore[core] : -1;
+  }
+
+  /** Returns the names of the given number of clusters, from the slowest to the fastest. */
+  private static String[] tierNames(int count) {
+    switch (count) {
+      case 1:
+        return new String[] {"all"};
+      case 2:
+        return new String[] {"little", "big"};
+      case 3:
+        return new String[] {"little", "mid", "big"};
+      default:
+        String[] names = new String[count];
+        for (int i = 0; i < count; i++) {
+          names[i] = "cluster" + i;
+        }
+        return names;
+    }
+  }
+
+  /** Formats ascending core numbers as ranges, e.g. "0-3" or "0-1+4". */
+  private static String formatCores(List<Integer> cores) {
+    StringBuilder text = new StringBuilder();
+    for (int i = 0; i < cores.size(); i++) {
+      int first = cores.get(i);
+      while (i + 1 < cores.size() && cores.get(i + 1) == cores.get(i) + 1) {
+        i++;
+      }
+      if (text.length() > 0) {
+        text.append('+');
+      }
+      text.append(first);
+      if (cores.get(i) != first) {
+        text.append('-').append(cores.get(i));
+      }
+    }
+    return text.toString();
+  }
+}
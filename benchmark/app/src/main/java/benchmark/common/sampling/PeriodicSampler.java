@@ -0,0 +1,105 @@
+/*
+ * Copyright 2021, Brown University, Providence, RI.
+ * Rahul Shahi, Sherief Reda, Seif Abdelaziz
+ *
+ *                        All Rights Reserved
+ *
+ * Permission to use, copy, modify, and distribute this software and
+ * its documentation for any purpose other than its incorporation into a
+ * commercial product or service is hereby granted without fee, provided
+ * that the above copyright notice appear in all copies and that both
+ * that copyright notice and this permission notice appear in supporting
+ * documentation, and that the name of Brown University not be used in
+ * advertising or publicity pertaining to distribution of the software
+ * without specific, written prior permission.
+ *
+ * BROWN UNIVERSITY DISCLAIMS ALL WARRANTIES WITH REGARD TO THIS SOFTWARE,
+ * INCLUDING ALL IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR ANY
+ * PARTICULAR PURPOSE.  IN NO EVENT SHALL BROWN UNIVERSITY BE LIABLE FOR
+ * ANY SPECIAL, INDIRECT OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF
+ * OR IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+
+package benchmark.common.sampling;
+
+import benchmark.common.framelog.FrameLogWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Base of the samplers that write one record per sample into a side log of the frame log, from a
+ * background thread at a fixed rate.
+ */
+public abstract class PeriodicSampler implements Closeable {
+  private final String name;
+  private FrameLogWriter log;
+  private Thread samplerThread;
+  private volatile boolean closed;
+  private volatile IOException failure;
+
+  /** @param name name of the sampler thread */
+  protected PeriodicSampler(String name) {
+    this.name = name;
+  }
+
+  /**
+   * Starts sampling into the given log on a background thread. The sampler takes ownership of the
+   * log and closes it in {@link #close()}.
+   */
+  public void start(FrameLogWriter log, long intervalNanos) {
+    this.log = log;
+    samplerThread = new Thread(() -> run(intervalNanos), name);
+    samplerThread.setPriority(Thread.MIN_PRIORITY);
+    samplerThread.setDaemon(true);
+    samplerThread.start();
+  }
+
+  /**
+   * Stops sampling and closes the log.
+   *
+   * @throws IOException if the log could not be written or closed
+   */
+  @Override
+  public void close() throws IOException {
+    if (closed) {
+      return;
+    }
+    closed = true;
+    try {
+      if (samplerThread != null) {
+        LockSupport.unpark(samplerThread);
+        samplerThread.join();
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Interrupted while stopping " + name);
+    } finally {
+      if (log != null) {
+        log.close();
+      }
+    }
+    if (failure != null) {
+      throw failure;
+    }
+  }
+
+  /** Takes one sample and commits it to the log as one record. Called on the sampler thread. */
+  protected abstract void sample(FrameLogWriter log) throws IOException;
+
+  /** Body of the sampler thread. */
+  private void run(long intervalNanos) {
+    try {
+      while (!closed) {
+        sample(log);
+        LockSupport.parkNanos(this, intervalNanos);
+      }
+    } catch (IOException e) {
+      failure = e;
+    }
+  }
+}
@@ -0,0 +1,124 @@
+/*
+ * Copyright 2021, Brown University, Providence, RI.
+ * Rahul Shahi, Sherief Reda, Seif Abdelaziz
+ *
+ *                        All Rights Reserved
+ *
+ * Permission to use, copy, modify, and distribute this software and
+ * its documentation for any purpose other than its incorporation into a
+ * commercial product or service is hereby granted without fee, provided
+ * that the above copyright notice appear in all copies and that both
+ * that copyright notice and this permission notice appear in supporting
+ * documentation, and that the name of Brown University not be used in
+ * advertising or publicity pertaining to distribution of the software
+ * without specific, written prior permission.
+ *
+ * BROWN UNIVERSITY DISCLAIMS ALL WARRANTIES WITH REGARD TO THIS SOFTWARE,
+ * INCLUDING ALL IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR ANY
+ * PARTICULAR PURPOSE.  IN NO EVENT SHALL BROWN UNIVERSITY BE LIABLE FOR
+ * ANY SPECIAL, INDIRECT OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF
+ * OR IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+
+package benchmark.common.sampling;
+
+import benchmark.common.framelog.FrameLog;
+import benchmark.common.framelog.FrameLogWriter;
+import benchmark.common.framelog.PowerLog;
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Samples the battery's current and voltage on a background thread into a {@link PowerLog}, from
+ * which the energy of every phase is integrated.
+ *
+ * <p>Readings come from a {@link Source}: {@link SysfsSource} reads a {@code power_supply} node of
+ * sysfs, or a stand-in directory of plain files; {@code BatteryManagerSource} asks the framework
+ * where apps may not read sysfs.
+ */
+public class PowerSampler extends PeriodicSampler {
+  /**
+   * Fuel gauges update their readings every few hundred milliseconds at best, sampling faster only
+   * repeats values.
+   */
+  public static final long DEFAULT_INTERVAL_NANOS = 100_000_000L;
+
+  /** Provides battery readings. Called on the sampler thread only. */
+  public interface Source {
+    /** Returns the battery current in microamperes, or {@link FrameLog#UNAVAILABLE}. */
+    long readCurrent();
+
+    /** Returns the battery voltage in microvolts, or {@link FrameLog#UNAVAILABLE}. */
+    long readVoltage();
+
+    /**
+     * Returns 1 if a charger is plugged in, whether or not it is charging, 0 if the device runs on
+     * battery, or {@link FrameLog#UNAVAILABLE}.
+     */
+    long readPlugged();
+  }
+
+  /**
+   * Reads {@code current_now}, {@code voltage_now} and {@code status} of a {@code power_supply}
+   * directory. Every status but "Discharging", such as "Charging", "Full" or "Not charging", means
+   * a charger is plugged in.
+   */
+  public static class SysfsSource implements Source {
+    /** The battery node of the real sysfs tree. */
+    public static final File BATTERY = new File("/sys/class/power_supply/battery");
+
+    private final File currentFile;
+    private final File voltageFile;
+    private final File statusFile;
+    private final SysfsReader reader = new SysfsReader();
+
+    public SysfsSource(File powerSupply) {
+      currentFile = new File(powerSupply, "current_now");
+      voltageFile = new File(powerSupply, "voltage_now");
+      statusFile = new File(powerSupply, "status");
+    }
+
+    /** Returns whether both readings can be read, which SELinux forbids on some devices. */
+    public boolean isReadable() {
+      return readCurrent() != FrameLog.UNAVAILABLE && readVoltage() != FrameLog.UNAVAILABLE;
+    }
+
+    @Override
+    public long readCurrent() {
+      return reader.readLong(currentFile);
+    }
+
+    @Override
+    public long readVoltage() {
+      return reader.readLong(voltageFile);
+    }
+
+    @Override
+    public long readPlugged() {
+      String status = reader.readLine(statusFile);
+      if (status == null || status.isEmpty() || status.equals("Unknown")) {
+        return FrameLog.UNAVAILABLE;
+      }
+      return status.equals("Discharging") ? 0L : 1L;
+    }
+  }
+
+  private final Source source;
+
+  public PowerSampler(Source source) {
+    super("PowerSampler");
+    this.source = source;
+  }
+
+  @Override
+  protected void sample(FrameLogWriter log) throws IOException {
+    log.set(PowerLog.TIME, System.nanoTime());
+    log.set(PowerLog.CURRENT, source.readCurrent());
+    log.set(PowerLog.VOLTAGE, source.readVoltage());
+    log.set(PowerLog.PLUGGED, source.readPlugged());
+    log.commit();
+  }
+}
@@ -0,0 +1,106 @@
+/*
+ * Copyright 2021, Brown University, Providence, RI.
+ * Rahul Shahi, Sherief Reda, Seif Abdelaziz
+ *
+ *                        All Rights Reserved
+ *
+ * Permission to use, copy, modify, and distribute this software and
+ * its documentation for any purpose other than its incorporation into a
+ * commercial product or service is hereby granted without fee, provided
+ * that the above copyright notice appear in all copies and that both
+ * that copyright notice and this permission notice appear in supporting
+ * documentation, and that the name of Brown University not be used in
+ * advertising or publicity pertaining to distribution of the software
+ * without specific, written prior permission.
+ *
+ * BROWN UNIVERSITY DISCLAIMS ALL WARRANTIES WITH REGARD TO THIS SOFTWARE,
+ * INCLUDING ALL IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR ANY
+ * PARTICULAR PURPOSE.  IN NO EVENT SHALL BROWN UNIVERSITY BE LIABLE FOR
+ * ANY SPECIAL, INDIRECT OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF
+ * OR IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+
+package benchmark.common.sampling;
+
+import benchmark.common.framelog.FrameLog;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/** Reads the small text files of sysfs and procfs into a reused buffer. Not thread-safe. */
+/* package-private */ class SysfsReader {
+  private final byte[] buffer;
+
+  SysfsReader() {
+    this(64);
+  }
+
+  /** @param bufferSize bytes read from the start of every file */
+  SysfsReader(int bufferSize) {
+    buffer = new byte[bufferSize];
+  }
+
+  /** Reads a file holding one integer, or returns {@link FrameLog#UNAVAILABLE}. */
+  long readLong(File file) {
+    int length = read(file);
+    boolean negative = length > 0 && buffer[0] == '-';
+    long value = 0;
+    int digits = 0;
+    for (int i = negative ? 1 : 0; i < length && buffer[i] >= '0' && buffer[i] <= '9'; i++) {
+      value = value * 10 + buffer[i] - '0';
+      digits++;
+    }
+    if (digits == 0) {
+      return FrameLog.UNAVAILABLE;
+    }
+    return negative ? -value : value;
+  }
+
+  /** Reads the first line of a file, or returns null. */
+  String readLine(File file) {
+    int length = read(file);
+    if (length < 0) {
+      return null;
+    }
+    String text = new String(buffer, 0, length, StandardCharsets.US_ASCII);
+    int end = text.indexOf('\n');
+    return (end < 0 ? text : text.substring(0, end)).trim();
+  }
+
+  /** Lists the entries named prefix followed by a number, in the order of that number. */
+  static List<File> listNumbered(File directory, String prefix) {
+    File[] files = directory.listFiles(
+        file -> file.getName().startsWith(prefix)
+            && file.getName().length() > prefix.length()
+            && file.getName().substring(prefix.length()).chars().allMatch(Character::isDigit));
+    if (files == null) {
+      return new ArrayList<>();
+    }
+    Arrays.sort(files, Comparator.comparingLong(
+        (File file) -> Long.parseLong(file.getName().substring(prefix.length()))));
+    return Arrays.asList(files);
+  }
+
+  /** Reads the start of a file into the buffer and returns its length, or -1 on failure. */
+  private int read(File file) {
+    try (FileInputStream in = new FileInputStream(file)) {
+      int length = 0;
+      int read;
+      while (length < buffer.length
+          && (read = in.read(buffer, length, buffer.length - length)) > 0) {
+        length += read;
+      }
+      return length;
+    } catch (IOException e) {
+      return -1;
+    }
+  }
+}
@@ -0,0 +1,104 @@
+/*
+ * Copyright 2021, Brown University, Providence, RI.
+ * Rahul Shahi, Sherief Reda, Seif Abdelaziz
+ *
+ *                        All Rights Reserved
+ *
+ * Permission to use, copy, modify, and distribute this software and
+ * its documentation for any purpose other than its incorporation into a
+ * commercial product or service is hereby granted without fee, provided
+ * that the above copyright notice appear in all copies and that both
+ * that copyright notice and this permission notice appear in supporting
+ * documentation, and that the name of Brown University not be used in
+ * advertising or publicity pertaining to distribution of the software
+ * without specific, written prior permission.
+ *
+ * BROWN UNIVERSITY DISCLAIMS ALL WARRANTIES WITH REGARD TO THIS SOFTWARE,
+ * INCLUDING ALL IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR ANY
+ * PARTICULAR PURPOSE.  IN NO EVENT SHALL BROWN UNIVERSITY BE LIABLE FOR
+ * ANY SPECIAL, INDIRECT OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF
+ * OR IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+
+package benchmark.common.sampling;
+
+import benchmark.common.framelog.FrameLog;
+import benchmark.common.framelog.FrameLogWriter;
+import benchmark.common.framelog.ThermalLog;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.IntSupplier;
+
+/**
+ * Samples temperatures and CPU clocks on a background thread into a {@link ThermalLog}.
+ *
+ * <p>Sections run back to back, so later ones run on a warmer device that may already throttle its
+ * CPU. The sampler reads the temperature of every thermal zone under {@code class/thermal} and the
+ * current clock and clock limit of every core under {@code devices/system/cpu} of a sysfs tree at a
+ * fixed rate. The tree's root is a parameter, so a fake tree can stand in for {@code /sys}. The
+ * sources are found once at construction; a core that goes offline later logs {@link
+ * FrameLog#UNAVAILABLE}. Does not depend on Android, the thermal status is read by the caller.
+ */
+public class ThermalSampler extends PeriodicSampler {
+  public static final long DEFAULT_INTERVAL_NANOS = 250_000_000L;
+  /** Root of the real sysfs tree. */
+  public static final File SYSFS_ROOT = new File("/sys");
+
+  private static final String ZONE_PREFIX = "thermal_zone";
+  private static final String CPU_PREFIX = "cpu";
+
+  private final IntSupplier thermalStatus;
+  private final List<String> columnNames = new ArrayList<>();
+  // File read for each column from ThermalLog.FIRST_SOURCE on.
+  private final List<File> sources = new ArrayList<>();
+  private final SysfsReader reader = new SysfsReader();
+
+  /**
+   * Finds the thermal zones and CPU cores of a sysfs tree.
+   *
+   * @param sysfsRoot root of the sysfs tree, usually {@link #SYSFS_ROOT}
+   * @param thermalStatus returns the current thermal status, see {@link ThermalLog#THERMAL_STATUS},
+   *     or {@link FrameLog#UNAVAILABLE}. Called on the sampler thread.
+   */
+  public ThermalSampler(File sysfsRoot, IntSupplier thermalStatus) {
+    super("ThermalSampler");
+    this.thermalStatus = thermalStatus;
+    columnNames.add(ThermalLog.TIME_COLUMN);
+    columnNames.add(ThermalLog.THERMAL_STATUS_COLUMN);
+    for (File zone : SysfsReader.listNumbered(new File(sysfsRoot, "class/thermal"), ZONE_PREFIX)) {
+      String type = reader.readLine(new File(zone, "type"));
+      columnNames.add(
+          zone.getName() + (type == null ? "" : "-" + type) + ThermalLog.TEMPERATURE_SUFFIX);
+      sources.add(new File(zone, "temp"));
+    }
+    File cpus = new File(sysfsRoot, "devices/system/cpu");
+    for (File cpu : SysfsReader.listNumbered(cpus, CPU_PREFIX)) {
+      File cpufreq = new File(cpu, "cpufreq");
+      columnNames.add(cpu.getName() + ThermalLog.FREQUENCY_SUFFIX);
+      sources.add(new File(cpufreq, "scaling_cur_freq"));
+      columnNames.add(cpu.getName() + ThermalLog.MAX_FREQUENCY_SUFFIX);
+      sources.add(new File(cpufreq, "scaling_max_freq"));
+    }
+  }
+
+  /** Returns the columns of the log to pass to {@link #start(FrameLogWriter, long)}. */
+  public String[] getColumnNames() {
+    return columnNames.toArray(new String[0]);
+  }
+
+  /** Reads every source once and commits the values as one record. */
+  @Override
+  protected void sample(FrameLogWriter log) throws IOException {
+    log.set(ThermalLog.TIME, System.nanoTime());
+    log.set(ThermalLog.THERMAL_STATUS, thermalStatus.getAsInt());
+    for (int i = 0; i < sources.size(); i++) {
+      log.set(ThermalLog.FIRST_SOURCE + i, reader.readLong(sources.get(i)));
+    }
+    log.commit();
+  }
+}
@@ -0,0 +1,183 @@
+/*
+ * Copyright 2021, Brown University, Providence, RI.
+ * Rahul Shahi, Sherief Reda, Seif Abdelaziz
+ *
+ *                        All Rights Reserved
+ *
+ * Permission to use, copy, modify, and distribute this software and
+ * its documentation for any purpose other than its incorporation into a
+ * commercial product or service is hereby granted without fee, provided
+ * that the above copyright notice appear in all copies and that both
+ * that copyright notice and this permission notice appear in supporting
+ * documentation, and that the name of Brown University not be used in
+ * advertising or publicity pertaining to distribution of the software
+ * without specific, written prior permission.
+ *
+ * BROWN UNIVERSITY DISCLAIMS ALL WARRANTIES WITH REGARD TO THIS SOFTWARE,
+ * INCLUDING ALL IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR ANY
+ * PARTICULAR PURPOSE.  IN NO EVENT SHALL BROWN UNIVERSITY BE LIABLE FOR
+ * ANY SPECIAL, INDIRECT OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF
+ * OR IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+
+package benchmark.common.sampling;
+
+import android.system.Os;
+import android.system.OsConstants;
+import android.util.Log;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Samples the CPU time of the app's worker threads on a background thread.
+ *
+ * <p>The CPU time of the render thread and of the whole process can be read cheaply on every frame,
+ * see {@code FrameProfiler}. Threads that do work off the render thread come and go, so they are
+ * found by listing {@code /proc/self/task} and reading the {@code stat} file of each thread, which
+ * also covers native threads. Threads are matched by their name, see {@link
+ * CoreSampler#WORKER_NAME_PREFIXES}; currently the workers of the kotlinx.coroutines default
+ * scheduler, which run {@code Dispatchers.IO} tasks such as the object detector, the dedicated ML
+ * thread and the text recognition thread are tracked. Their accumulated CPU time is published for the frame log.
+ *
+ * <p>The CPU time of a thread that exits between two samples is lost up to the resolution of the
+ * sampling interval.
+ */
+public class ThreadCpuSampler implements Closeable {
+  private static final String TAG = ThreadCpuSampler.class.getSimpleName();
+
+  public static final long DEFAULT_INTERVAL_NANOS = 250_000_000L;
+
+  // Fields of /proc/<pid>/task/<tid>/stat after the thread name, counted from the state field.
+  private static final int UTIME_FIELD = 11;
+  private static final int STIME_FIELD = 12;
+
+  private final long intervalNanos;
+  private final long nanosPerTick;
+  private final Thread samplerThread;
+  private volatile boolean closed;
+  private volatile long workerCpuNanos;
+
+  // Owned by the sampler thread: last CPU time seen per worker thread id, in clock ticks.
+  private final Map<Integer, Long> lastTicks = new HashMap<>();
+  private final byte[] statBuffer = new byte[1024];
+  private long workerTicks;
+
+  public ThreadCpuSampler() {
+    this(DEFAULT_INTERVAL_NANOS);
+  }
+
+  public ThreadCpuSampler(long intervalNanos) {
+    this.intervalNanos = intervalNanos;
+    this.nanosPerTick = 1_000_000_000L / Os.sysconf(OsConstants._SC_CLK_TCK);
+    samplerThread = new Thread(this::run, "ThreadCpuSampler");
+    samplerThread.setPriority(Thread.MIN_PRIORITY);
+    samplerThread.setDaemon(true);
+    samplerThread.start();
+  }
+
+  /**
+   * Returns the CPU time the worker threads used since the sampler started, in nanoseconds. Grows
+   * in steps of the sampling interval and of the kernel clock tick.
+   */
+  public long getWorkerCpuNanos() {
+    return workerCpuNanos;
+  }
+
+  /** Stops sampling and waits for the sampler thread to exit. */
+  @Override
+  public void close() throws IOException {
+    if (closed) {
+      return;
+    }
+    closed = true;
+    LockSupport.unpark(samplerThread);
+    try {
+      samplerThread.join();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Interrupted while stopping the thread sampler");
+    }
+  }
+
+  /** Body of the sampler thread. */
+  private void run() {
+    File tasks = new File("/proc/self/task");
+    boolean baseline = true;
+    while (!closed) {
+      File[] threads = tasks.listFiles();
+      if (threads == null) {
+        Log.w(TAG, "Cannot list " + tasks + ", worker CPU time is not sampled");
+        return;
+      }
+      // Drop threads that exited, so a reused thread id starts from zero.
+      Map<Integer, Long> seen = new HashMap<>();
+      for (File thread : threads) {
+        sampleThread(thread, baseline, seen);
+      }
+      lastTicks.clear();
+      lastTicks.putAll(seen);
+      workerCpuNanos = workerTicks * nanosPerTick;
+      baseline = false;
+      LockSupport.parkNanos(this, intervalNanos);
+    }
+  }
+
+  /**
+   * Adds the CPU time a worker thread used since the last sample. The first sample only records
+   * where each thread stands, so work done before the sampler started is not counted.
+   */
+  private void sampleThread(File thread, boolean baseline, Map<Integer, Long> seen) {
+    String stat = readStat(new File(thread, "stat"));
+    if (stat == null) {
+      return;
+    }
+    int nameStart = stat.indexOf('(');
+    int nameEnd = stat.lastIndexOf(')');
+    if (nameStart < 0 || nameEnd < nameStart
+        || !CoreSampler.isWorker(stat, nameStart + 1)) {
+      return;
+    }
+    String[] fields = stat.substring(nameEnd + 2).split(" ");
+    if (fields.length <= STIME_FIELD) {
+      return;
+    }
+    int tid;
+    long ticks;
+    try {
+      tid = Integer.parseInt(thread.getName());
+      ticks = Long.parseLong(fields[UTIME_FIELD]) + Long.parseLong(fields[STIME_FIELD]);
+    } catch (NumberFormatException e) {
+      return;
+    }
+    seen.put(tid, ticks);
+    Long last = lastTicks.get(tid);
+    if (!baseline) {
+      workerTicks += last == null || last > ticks ? ticks : ticks - last;
+    }
+  }
+
+  /** Reads a stat file, or returns null if the thread exited meanwhile. */
+  private String readStat(File file) {
+    try (FileInputStream in = new FileInputStream(file)) {
+      int length = 0;
+      int read;
+      while (length < statBuffer.length
+          && (read = in.read(statBuffer, length, statBuffer.length - length)) > 0) {
+        length += read;
+      }
+      return new String(statBuffer, 0, length, StandardCharsets.US_ASCII);
+    } catch (IOException e) {
+      return null;
+    }
+  }
+}
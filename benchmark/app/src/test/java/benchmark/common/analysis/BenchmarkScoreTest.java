@@ -0,0 +1,156 @@
+/*
+ * Copyright 2021, Brown University, Providence, RI.
+ * Rahul Shahi, Sherief Reda, Seif Abdelaziz
+ *
+ *                        All Rights Reserved
+ *
+ * Permission to use, copy, modify, and distribute this software and
+ * its documentation for any purpose other than its incorporation into a
+ * commercial product or service is hereby granted without fee, provided
+ * that the above copyright notice appear in all copies and that both
+ * that copyright notice and this permission notice appear in supporting
+ * documentation, and that the name of Brown University not be used in
+ * advertising or publicity pertaining to distribution of the software
+ * without specific, written prior permission.
+ *
+ * BROWN UNIVERSITY DISCLAIMS ALL WARRANTIES WITH REGARD TO THIS SOFTWARE,
+ * INCLUDING ALL IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR ANY
+ * PARTICULAR PURPOSE.  IN NO EVENT SHALL BROWN UNIVERSITY BE LIABLE FOR
+ * ANY SPECIAL, INDIRECT OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF
+ * OR IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package benchmark.common.analysis;
+
+import static benchmark.common.analysis.FakeResults.phase;
+import static benchmark.common.analysis.FakeResults.section;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import benchmark.common.analysis.BenchmarkScore.Category;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import org.junit.Test;
+
+/** Tests how {@link BenchmarkScore} normalizes and weighs phase times against a profile. */
+public class BenchmarkScoreTest {
+  private static final long MS = 1_000_000;
+
+  @Test
+  public void scoresTimeRelativeToReference() throws IOException {
+    ReferenceProfile profile = profile(
+        "recordings=a.mp4",
+        "a.mp4.1.tracking_ns=" + 10 * MS);
+
+    BenchmarkScore score = BenchmarkScore.compute(
+        Collections.singletonList(section("a.mp4", phase(1, Metric.UPDATE_TIME, 5 * MS))),
+        profile);
+
+    // Twice as fast as the reference.
+    assertEquals(2000, score.getPhaseScores().get(0).getScore(Category.TRACKING), 1e-9);
+    assertEquals(2000, score.getScore(Category.TRACKING), 1e-9);
+    assertTrue(Double.isNaN(score.getScore(Category.RENDERING)));
+    // Categories that were not scored are left out.
+    assertEquals(2000, score.getScore(), 1e-9);
+    assertFalse(score.isComplete());
+  }
+
+  @Test
+  public void weighsRecordingsAndSplitsWeightOverPhases() throws IOException {
+    ReferenceProfile profile = profile(
+        "recordings=a.mp4,b.mp4",
+        "a.mp4.tracking_ns=" + 10 * MS,
+        "b.mp4.tracking_ns=" + 10 * MS,
+        "b.mp4.weight=2");
+
+    BenchmarkScore score = BenchmarkScore.compute(Arrays.asList(
+        section("a.mp4",
+            phase(1, Metric.UPDATE_TIME, 10 * MS),
+            phase(2, Metric.UPDATE_TIME, 2_500_000)),
+        section("b.mp4", phase(1, Metric.UPDATE_TIME, 20 * MS))), profile);
+
+    // Phases of a.mp4 score 1000 and 4000 at a weight of 1/2 each, b.mp4 scores 500 at weight 2.
+    double expected =
+        Math.exp((0.5 * Math.log(1000) + 0.5 * Math.log(4000) + 2 * Math.log(500)) / 3);
+    assertEquals(expected, score.getScore(Category.TRACKING), 1e-9);
+    assertTrue(score.getMissingRecordings().isEmpty());
+  }
+
+  @Test
+  public void weighsCategories() throws IOException {
+    ReferenceProfile profile = profile(
+        "recordings=a.mp4",
+        "weight.tracking=1",
+        "weight.rendering=3",
+        "a.mp4.tracking_ns=" + 10 * MS,
+        "a.mp4.rendering_ns=" + 10 * MS,
+        "a.mp4.interaction_ns=" + 10 * MS);
+    PhaseResult phase = phase(1, Metric.UPDATE_TIME, 5 * MS);
+    phase.getHistogram(Metric.GPU_TIME).record(20 * MS);
+
+    BenchmarkScore score =
+        BenchmarkScore.compute(Collections.singletonList(section("a.mp4", phase)), profile);
+
+    assertEquals(2000, score.getScore(Category.TRACKING), 1e-9);
+    assertEquals(500, score.getScore(Category.RENDERING), 1e-9);
+    // The phase handled no taps, so interaction is not scored.
+    assertTrue(Double.isNaN(score.getScore(Category.INTERACTION)));
+    assertEquals(Math.exp((Math.log(2000) + 3 * Math.log(500)) / 4), score.getScore(), 1e-9);
+  }
+
+  @Test
+  public void scoresQuantileOfInteraction() throws IOException {
+    ReferenceProfile profile = profile(
+        "recordings=a.mp4",
+        "a.mp4.interaction_ns=" + 10 * MS);
+    long[] taps = new long[10];
+    Arrays.fill(taps, 1 * MS);
+    // The 90th percentile of ten taps is the second slowest.
+    taps[8] = 10 * MS;
+    taps[9] = 10 * MS;
+
+    BenchmarkScore score = BenchmarkScore.compute(Collections.singletonList(
+        section("a.mp4", phase(1, Metric.INPUT_EVENT_TIME, taps))), profile);
+
+    assertEquals(1000, score.getScore(Category.INTERACTION), 1e-9);
+  }
+
+  @Test
+  public void reportsMissingRecordings() throws IOException {
+    ReferenceProfile profile = profile(
+        "recordings=a.mp4,b.mp4",
+        "a.mp4.tracking_ns=" + 10 * MS);
+
+    BenchmarkScore score = BenchmarkScore.compute(Collections.singletonList(
+        section("a.mp4", phase(1, Metric.UPDATE_TIME, 10 * MS))), profile);
+
+    assertEquals(Collections.singletonList("b.mp4"), score.getMissingRecordings());
+    assertFalse(score.isComplete());
+  }
+
+  @Test
+  public void scoresReferenceRunAtReferenceScore() {
+    PhaseResult phase = phase(1, Metric.UPDATE_TIME, 7 * MS, 8 * MS, 9 * MS);
+    phase.getHistogram(Metric.GPU_TIME).record(4 * MS);
+    phase.getHistogram(Metric.INPUT_EVENT_TIME).record(30 * MS);
+    List<SectionResult> sections = Collections.singletonList(section("a.mp4", phase));
+
+    BenchmarkScore score =
+        BenchmarkScore.compute(sections, ReferenceProfile.fromResults("reference", sections));
+
+    assertEquals(BenchmarkScore.REFERENCE_SCORE, score.getScore(), 1e-9);
+    assertTrue(score.isComplete());
+  }
+
+  private static ReferenceProfile profile(String... lines) throws IOException {
+    return ReferenceProfile.load(new ByteArrayInputStream(
+        String.join("\n", lines).getBytes(StandardCharsets.UTF_8)));
+  }
+}
@@ -0,0 +1,56 @@
+/*
+ * Copyright 2021, Brown University, Providence, RI.
+ * Rahul Shahi, Sherief Reda, Seif Abdelaziz
+ *
+ *                        All Rights Reserved
+ *
+ * Permission to use, copy, modify, and distribute this software and
+ * its documentation for any purpose other than its incorporation into a
+ * commercial product or service is hereby granted without fee, provided
+ * that the above copyright notice appear in all copies and that both
+ * that copyright notice and this permission notice appear in supporting
+ * documentation, and that the name of Brown University not be used in
+ * advertising or publicity pertaining to distribution of the software
+ * without specific, written prior permission.
+ *
+ * BROWN UNIVERSITY DISCLAIMS ALL WARRANTIES WITH REGARD TO THIS SOFTWARE,
+ * INCLUDING ALL IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR ANY
+ * PARTICULAR PURPOSE.  IN NO EVENT SHALL BROWN UNIVERSITY BE LIABLE FOR
+ * ANY SPECIAL, INDIRECT OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF
+ * OR IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package benchmark.common.analysis;
+
+/** Builds the results of runs for the analysis tests without writing a frame log. */
+final class FakeResults {
+  private FakeResults() {}
+
+  /** Returns a section of the given recording with the given phases. */
+  static SectionResult section(String recordingName, PhaseResult... phases) {
+    SectionResult section = new SectionResult("Section", recordingName, 0, 0);
+    for (PhaseResult phase : phases) {
+      section.addPhase(phase);
+    }
+    return section;
+  }
+
+  /** Returns a phase in which the given metric took the given values. */
+  static PhaseResult phase(int number, Metric metric, long... values) {
+    PhaseResult phase = new PhaseResult(number);
+    for (long value : values) {
+      phase.getHistogram(metric).record(value);
+    }
+    return phase;
+  }
+
+  /** Returns a phase of two frames the given time apart, so that it ran at 1e9 / interval FPS. */
+  static PhaseResult phaseWithInterval(int number, long interval) {
+    PhaseResult phase = new PhaseResult(number);
+    phase.addFrame(0, 0);
+    phase.addFrame(interval, 0);
+    return phase;
+  }
+}
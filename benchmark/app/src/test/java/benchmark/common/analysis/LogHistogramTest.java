@@ -0,0 +1,130 @@
+/*
+ * Copyright 2021, Brown University, Providence, RI.
+ * Rahul Shahi, Sherief Reda, Seif Abdelaziz
+ *
+ *                        All Rights Reserved
+ *
+ * Permission to use, copy, modify, and distribute this software and
+ * its documentation for any purpose other than its incorporation into a
+ * commercial product or service is hereby granted without fee, provided
+ * that the above copyright notice appear in all copies and that both
+ * that copyright notice and this permission notice appear in supporting
+ * documentation, and that the name of Brown University not be used in
+ * advertising or publicity pertaining to distribution of the software
+ * without specific, written prior permission.
+ *
+ * BROWN UNIVERSITY DISCLAIMS ALL WARRANTIES WITH REGARD TO THIS SOFTWARE,
+ * INCLUDING ALL IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR ANY
+ * PARTICULAR PURPOSE.  IN NO EVENT SHALL BROWN UNIVERSITY BE LIABLE FOR
+ * ANY SPECIAL, INDIRECT OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF
+ * OR IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package benchmark.common.analysis;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+/** Tests the quantiles and the bucket layout of {@link LogHistogram}. */
+public class LogHistogramTest {
+  @Test
+  public void isExactBelowFirstPowerOfTwo() {
+    LogHistogram histogram = new LogHistogram();
+    for (long value = 1; value <= 100; value++) {
+      histogram.record(value);
+    }
+
+    assertEquals(50, histogram.getValueAtQuantile(0.5));
+    assertEquals(90, histogram.getValueAtQuantile(0.9));
+    assertEquals(99, histogram.getValueAtQuantile(0.99));
+    assertEquals(50.5, histogram.getMean(), 1e-9);
+  }
+
+  @Test
+  public void boundsRelativeErrorOfQuantiles() {
+    LogHistogram histogram = new LogHistogram();
+    for (long i = 1; i <= 10_000; i++) {
+      histogram.record(i * 1_000_000);
+    }
+
+    double maxError = Math.pow(2, -LogHistogram.DEFAULT_PRECISION_BITS);
+    for (double quantile : FrameLogAnalyzer.REPORTED_QUANTILES) {
+      double exact = Math.ceil(quantile * 10_000) * 1_000_000;
+      long value = histogram.getValueAtQuantile(quantile);
+      // The upper bound of the bucket is reported, so the quantile is never underestimated.
+      assertTrue(value >= exact);
+      assertTrue(value <= exact * (1 + maxError));
+    }
+  }
+
+  @Test
+  public void keepsExactMinimumAndMaximum() {
+    LogHistogram histogram = new LogHistogram();
+    histogram.record(16_666_667);
+    histogram.record(33_333_333);
+
+    assertEquals(16_666_667, histogram.getValueAtQuantile(0));
+    // The upper bound of the last bucket is capped by the maximum.
+    assertEquals(33_333_333, histogram.getValueAtQuantile(0.99));
+    assertEquals(33_333_333, histogram.getValueAtQuantile(1));
+    assertEquals(16_666_667, histogram.getMin());
+    assertEquals(33_333_333, histogram.getMax());
+  }
+
+  @Test
+  public void clampsValuesAboveRange() {
+    LogHistogram histogram = new LogHistogram(7, 1_000);
+    histogram.record(5_000);
+    histogram.record(-1);
+
+    assertEquals(1, histogram.getCount());
+    assertEquals(1, histogram.getBucketCountAt(histogram.getBucketCount() - 1));
+    assertEquals(5_000, histogram.getMax());
+    assertEquals(5_000, histogram.getValueAtQuantile(0.5));
+  }
+
+  @Test
+  public void isEmptyWithoutValues() {
+    LogHistogram histogram = new LogHistogram();
+
+    assertEquals(0, histogram.getValueAtQuantile(0.99));
+    assertTrue(Double.isNaN(histogram.getMean()));
+    assertEquals(0, histogram.getBucketCountAt(0));
+    assertEquals(0, histogram.getBucketCountAt(histogram.getBucketCount() - 1));
+  }
+
+  @Test
+  public void addsHistogramsOfDisjointRanges() {
+    LogHistogram low = new LogHistogram();
+    LogHistogram high = new LogHistogram();
+    for (int i = 0; i < 10; i++) {
+      low.record(1_000 + i);
+      high.record(50_000_000 + i);
+    }
+
+    LogHistogram sum = new LogHistogram();
+    sum.add(high);
+    sum.add(low);
+
+    assertEquals(20, sum.getCount());
+    assertEquals(1_000, sum.getMin());
+    assertEquals(low.getValueAtQuantile(0.5), sum.getValueAtQuantile(0.25));
+    assertEquals(high.getValueAtQuantile(0.5), sum.getValueAtQuantile(0.75));
+    long total = 0;
+    for (int bucket = 0; bucket < sum.getBucketCount(); bucket++) {
+      long expected = low.getBucketCountAt(bucket) + high.getBucketCountAt(bucket);
+      assertEquals(expected, sum.getBucketCountAt(bucket));
+      total += sum.getBucketCountAt(bucket);
+    }
+    assertEquals(20, total);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void rejectsAddingOtherPrecision() {
+    new LogHistogram().add(new LogHistogram(5, LogHistogram.DEFAULT_HIGHEST_TRACKABLE_VALUE));
+  }
+}
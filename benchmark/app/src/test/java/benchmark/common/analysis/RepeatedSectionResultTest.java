@@ -0,0 +1,111 @@
+/*
+ * Copyright 2021, Brown University, Providence, RI.
+ * Rahul Shahi, Sherief Reda, Seif Abdelaziz
+ *
+ *                        All Rights Reserved
+ *
+ * Permission to use, copy, modify, and distribute this software and
+ * its documentation for any purpose other than its incorporation into a
+ * commercial product or service is hereby granted without fee, provided
+ * that the above copyright notice appear in all copies and that both
+ * that copyright notice and this permission notice appear in supporting
+ * documentation, and that the name of Brown University not be used in
+ * advertising or publicity pertaining to distribution of the software
+ * without specific, written prior permission.
+ *
+ * BROWN UNIVERSITY DISCLAIMS ALL WARRANTIES WITH REGARD TO THIS SOFTWARE,
+ * INCLUDING ALL IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR ANY
+ * PARTICULAR PURPOSE.  IN NO EVENT SHALL BROWN UNIVERSITY BE LIABLE FOR
+ * ANY SPECIAL, INDIRECT OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF
+ * OR IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package benchmark.common.analysis;
+
+import static benchmark.common.analysis.FakeResults.phaseWithInterval;
+import static benchmark.common.analysis.FakeResults.section;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.Test;
+
+/** Tests the spread of phase frame rates over the passes of a {@link RepeatedSectionResult}. */
+public class RepeatedSectionResultTest {
+  private static final String RECORDING = "recording.mp4";
+
+  @Test
+  public void computesStudentTInterval() {
+    // 16, 20 and 25 FPS.
+    RepeatedSectionResult run = new RepeatedSectionResult(Arrays.asList(
+        section(RECORDING, phaseWithInterval(1, 62_500_000)),
+        section(RECORDING, phaseWithInterval(1, 50_000_000)),
+        section(RECORDING, phaseWithInterval(1, 40_000_000))));
+
+    assertEquals(3, run.getSampleCount(0));
+    assertEquals(61 / 3.0, run.getMean(0), 1e-9);
+    assertEquals(Math.sqrt(61 / 3.0), run.getStandardDeviation(0), 1e-9);
+    assertEquals(1 / Math.sqrt(61 / 3.0), run.getCoefficientOfVariation(0), 1e-9);
+    // t quantile of 2 degrees of freedom.
+    assertEquals(4.303 * Math.sqrt(61) / 3, run.getConfidenceHalfWidth(0), 1e-9);
+  }
+
+  @Test
+  public void usesNormalQuantileBeyondTable() {
+    List<SectionResult> passes = new ArrayList<>();
+    for (int i = 0; i < 32; i++) {
+      passes.add(section(RECORDING, phaseWithInterval(1, i % 2 == 0 ? 50_000_000 : 40_000_000)));
+    }
+    RepeatedSectionResult run = new RepeatedSectionResult(passes);
+
+    assertEquals(1.960 * run.getStandardDeviation(0) / Math.sqrt(32),
+        run.getConfidenceHalfWidth(0), 1e-9);
+  }
+
+  @Test
+  public void leavesOutPhasesThatPassDidNotReach() {
+    RepeatedSectionResult run = new RepeatedSectionResult(Arrays.asList(
+        section(RECORDING, phaseWithInterval(1, 50_000_000), phaseWithInterval(2, 50_000_000)),
+        section(RECORDING, phaseWithInterval(1, 40_000_000))));
+
+    assertEquals(2, run.getPhaseCount());
+    assertEquals(2, run.getPhase(1));
+    assertEquals(2, run.getSampleCount(0));
+    assertEquals(1, run.getSampleCount(1));
+    assertEquals(20, run.getMean(1), 1e-9);
+    assertTrue(Double.isNaN(run.getConfidenceHalfWidth(1)));
+    assertTrue(Double.isNaN(run.getMaxCoefficientOfVariation()));
+  }
+
+  @Test
+  public void isStableOnlyAfterEnoughPasses() {
+    List<SectionResult> passes = new ArrayList<>();
+    passes.add(section(RECORDING, phaseWithInterval(1, 50_000_000)));
+    passes.add(section(RECORDING, phaseWithInterval(1, 50_000_000)));
+    assertFalse(new RepeatedSectionResult(passes).isStable(0.05));
+
+    passes.add(section(RECORDING, phaseWithInterval(1, 50_000_000)));
+    assertTrue(new RepeatedSectionResult(passes).isStable(0.05));
+
+    passes.add(section(RECORDING, phaseWithInterval(1, 40_000_000)));
+    assertFalse(new RepeatedSectionResult(passes).isStable(0.05));
+  }
+
+  @Test
+  public void groupsConsecutivePassesOfRecording() {
+    List<RepeatedSectionResult> runs = RepeatedSectionResult.group(Arrays.asList(
+        section("a.mp4", phaseWithInterval(1, 50_000_000)),
+        section("a.mp4", phaseWithInterval(1, 50_000_000)),
+        section("b.mp4", phaseWithInterval(1, 50_000_000))));
+
+    assertEquals(2, runs.size());
+    assertEquals("a.mp4", runs.get(0).getRecordingName());
+    assertEquals(2, runs.get(0).getPassCount());
+    assertEquals(1, runs.get(1).getPassCount());
+  }
+}
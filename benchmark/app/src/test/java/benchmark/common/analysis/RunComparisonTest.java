@@ -0,0 +1,247 @@
+/*
+ * Copyright 2021, Brown University, Providence, RI.
+ * Rahul Shahi, Sherief Reda, Seif Abdelaziz
+ *
+ *                        All Rights Reserved
+ *
+ * Permission to use, copy, modify, and distribute this software and
+ * its documentation for any purpose other than its incorporation into a
+ * commercial product or service is hereby granted without fee, provided
+ * that the above copyright notice appear in all copies and that both
+ * that copyright notice and this permission notice appear in supporting
+ * documentation, and that the name of Brown University not be used in
+ * advertising or publicity pertaining to distribution of the software
+ * without specific, written prior permission.
+ *
+ * BROWN UNIVERSITY DISCLAIMS ALL WARRANTIES WITH REGARD TO THIS SOFTWARE,
+ * INCLUDING ALL IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR ANY
+ * PARTICULAR PURPOSE.  IN NO EVENT SHALL BROWN UNIVERSITY BE LIABLE FOR
+ * ANY SPECIAL, INDIRECT OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF
+ * OR IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package benchmark.common.analysis;
+
+import static benchmark.common.analysis.FakeResults.phase;
+import static benchmark.common.analysis.FakeResults.section;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+import benchmark.common.analysis.PhaseComparison.MetricComparison;
+import benchmark.common.analysis.PhaseComparison.Verdict;
+import java.util.Collections;
+import java.util.List;
+import java.util.SplittableRandom;
+import org.junit.Test;
+
+/**
+ * Tests the U test, the bootstrap interval and the verdicts of {@link RunComparison} on runs built
+ * from histograms.
+ */
+public class RunComparisonTest {
+  private static final String RECORDING = "recording.mp4";
+  private static final long MS = 1_000_000;
+
+  @Test
+  public void passesIdenticalRuns() {
+    List<SectionResult> run = run(frameTimes(1, 2_000, 16 * MS, 4 * MS));
+
+    List<PhaseComparison> comparisons = compare(seed(1), run, run);
+
+    MetricComparison frameTime = comparisons.get(0).getMetrics().get(0);
+    assertEquals(Metric.FRAME_TIME, frameTime.getMetric());
+    assertEquals(1, frameTime.getPValue(), 1e-6);
+    assertEquals(0.5, frameTime.getProbabilitySlower(), 1e-12);
+    assertEquals(0, frameTime.getRelativeChange(), 1e-12);
+    assertTrue(frameTime.getConfidenceLow() <= 0 && frameTime.getConfidenceHigh() >= 0);
+    assertEquals(Verdict.UNCHANGED, comparisons.get(0).getVerdict());
+    assertTrue(RunComparison.isPassed(comparisons));
+  }
+
+  @Test
+  public void flagsKnownShift() {
+    List<SectionResult> baseline = run(frameTimes(1, 2_000, 16 * MS, 2 * MS));
+    List<SectionResult> slower = run(frameTimes(2, 2_000, 20 * MS, 2 * MS));
+
+    List<PhaseComparison> comparisons = compare(seed(1), baseline, slower);
+
+    MetricComparison frameTime = comparisons.get(0).getMetrics().get(0);
+    assertEquals(0.25, frameTime.getRelativeChange(), 0.01);
+    assertTrue(frameTime.getPValue() < 1e-6);
+    assertTrue(frameTime.getConfidenceLow() > 0.2 && frameTime.getConfidenceHigh() < 0.3);
+    assertEquals(Verdict.REGRESSED, comparisons.get(0).getVerdict());
+    assertFalse(RunComparison.isPassed(comparisons));
+
+    assertEquals(Verdict.IMPROVED, compare(seed(1), slower, baseline).get(0).getVerdict());
+  }
+
+  @Test
+  public void passesShiftBelowThreshold() {
+    List<SectionResult> baseline = run(frameTimes(1, 2_000, 16 * MS, 2 * MS));
+    List<SectionResult> slower = run(frameTimes(2, 2_000, 16_500_000, 2 * MS));
+
+    List<PhaseComparison> comparisons = compare(seed(1), baseline, slower);
+
+    // About 3% slower: significant, but within the 5% threshold.
+    assertTrue(comparisons.get(0).getMetrics().get(0).getPValue() < 0.05);
+    assertEquals(Verdict.UNCHANGED, comparisons.get(0).getVerdict());
+  }
+
+  @Test
+  public void correctsVarianceForTies() {
+    // Every frame falls into one of two buckets: 30 and 30 frames in the baseline, 20 and 40 in
+    // the candidate.
+    List<SectionResult> baseline = run(repeat(30, 10 * MS, 30, 20 * MS));
+    List<SectionResult> candidate = run(repeat(20, 10 * MS, 40, 20 * MS));
+
+    MetricComparison frameTime =
+        compare(seed(1), baseline, candidate).get(0).getMetrics().get(0);
+
+    // U = 20 * 15 + 40 * (30 + 15) = 2100 of 3600 pairs, with the tie corrected variance
+    // 3600 / 12 * (121 - (49 * 50 * 51 + 69 * 70 * 71) / (120 * 119)), giving z = 1.8439.
+    // Without the correction, p would be 0.1154.
+    assertEquals(2100 / 3600.0, frameTime.getProbabilitySlower(), 1e-12);
+    assertEquals(0.0652, frameTime.getPValue(), 1e-4);
+  }
+
+  @Test
+  public void hasNoSpreadWhenAllFramesTie() {
+    List<SectionResult> run = run(repeat(100, 16 * MS, 0, 0));
+
+    MetricComparison frameTime = compare(seed(1), run, run).get(0).getMetrics().get(0);
+
+    assertEquals(1, frameTime.getPValue(), 0);
+    assertEquals(0, frameTime.getConfidenceLow(), 0);
+    assertEquals(0, frameTime.getConfidenceHigh(), 0);
+  }
+
+  @Test
+  public void reproducesIntervalFromSeed() {
+    List<SectionResult> baseline = run(frameTimes(1, 500, 16 * MS, 4 * MS));
+    List<SectionResult> candidate = run(frameTimes(2, 500, 17 * MS, 4 * MS));
+
+    MetricComparison first = compare(seed(7), baseline, candidate).get(0).getMetrics().get(0);
+    MetricComparison second = compare(seed(7), baseline, candidate).get(0).getMetrics().get(0);
+    MetricComparison other = compare(seed(8), baseline, candidate).get(0).getMetrics().get(0);
+
+    assertEquals(first.getConfidenceLow(), second.getConfidenceLow(), 0);
+    assertEquals(first.getConfidenceHigh(), second.getConfidenceHigh(), 0);
+    assertNotEquals(first.getConfidenceLow(), other.getConfidenceLow(), 0);
+  }
+
+  @Test
+  public void scalesIntervalOfLongRunsToTheirLength() {
+    int count = 20 * RunComparison.MAX_RESAMPLE_SIZE;
+    LogHistogram histogram = new LogHistogram();
+    SplittableRandom random = new SplittableRandom(3);
+    for (int i = 0; i < count; i++) {
+      histogram.record(10 * MS + random.nextLong(10 * MS));
+    }
+    List<SectionResult> run = run(histogram);
+
+    MetricComparison frameTime = compare(seed(1), run, run).get(0).getMetrics().get(0);
+
+    // The relative change of two means of count frames has a standard deviation of
+    // sqrt(2 / count) times the coefficient of variation. Resampling only MAX_RESAMPLE_SIZE
+    // frames without scaling would give an interval sqrt(20) times as wide.
+    double deviation = Math.sqrt(2.0 / count) * (10 * MS / Math.sqrt(12)) / (15 * MS);
+    double halfWidth = (frameTime.getConfidenceHigh() - frameTime.getConfidenceLow()) / 2;
+    assertEquals(1.96 * deviation, halfWidth, 0.2 * 1.96 * deviation);
+  }
+
+  @Test
+  public void aliasSamplerDrawsBucketsByWeight() {
+    LogHistogram histogram = new LogHistogram();
+    long[] values = {10 * MS, 20 * MS, 40 * MS};
+    int[] counts = {1, 90, 909};
+    double expected = 0;
+    for (int i = 0; i < values.length; i++) {
+      for (int j = 0; j < counts[i]; j++) {
+        histogram.record(values[i]);
+      }
+      int bucket = bucketOf(histogram, values[i]);
+      expected += counts[i]
+          * (histogram.bucketLowerBound(bucket) + histogram.bucketUpperBound(bucket)) / 2.0;
+    }
+    expected /= histogram.getCount();
+
+    RunComparison.HistogramSampler sampler = new RunComparison.HistogramSampler(histogram);
+    SplittableRandom random = new SplittableRandom(5);
+    double sum = 0;
+    int resamples = 2_000;
+    for (int i = 0; i < resamples; i++) {
+      sum += sampler.resampleMean(random);
+    }
+
+    assertEquals(expected, sum / resamples, 1e-4 * expected);
+  }
+
+  @Test
+  public void failsOnMissingPhase() {
+    List<SectionResult> baseline = Collections.singletonList(section(RECORDING,
+        phase(1, Metric.FRAME_TIME, 16 * MS, 16 * MS),
+        phase(2, Metric.FRAME_TIME, 16 * MS, 16 * MS)));
+    List<SectionResult> candidate = Collections.singletonList(
+        section(RECORDING, phase(1, Metric.FRAME_TIME, 16 * MS, 16 * MS)));
+
+    List<PhaseComparison> comparisons = compare(seed(1), baseline, candidate);
+
+    assertEquals(Verdict.UNCHANGED, comparisons.get(0).getVerdict());
+    assertEquals(Verdict.MISSING, comparisons.get(1).getVerdict());
+    assertFalse(RunComparison.isPassed(comparisons));
+  }
+
+  private static RunComparison.Thresholds seed(long seed) {
+    return new RunComparison.Thresholds()
+        .setMaxIncrease(Metric.FRAME_TIME, 0.05)
+        .setBootstrapSamples(1000)
+        .setSeed(seed);
+  }
+
+  private static List<PhaseComparison> compare(RunComparison.Thresholds thresholds,
+      List<SectionResult> baseline, List<SectionResult> candidate) {
+    return new RunComparison(thresholds).compareResults(baseline, candidate);
+  }
+
+  /** Returns a run of one phase whose frame times are the given histogram. */
+  private static List<SectionResult> run(LogHistogram frameTimes) {
+    PhaseResult phase = phase(1, Metric.FRAME_TIME);
+    phase.getHistogram(Metric.FRAME_TIME).add(frameTimes);
+    return Collections.singletonList(section(RECORDING, phase));
+  }
+
+  /** Returns frame times drawn uniformly from the given mean plus or minus the given spread. */
+  private static LogHistogram frameTimes(long seed, int count, long mean, long spread) {
+    SplittableRandom random = new SplittableRandom(seed);
+    LogHistogram histogram = new LogHistogram();
+    for (int i = 0; i < count; i++) {
+      histogram.record(mean - spread + random.nextLong(2 * spread));
+    }
+    return histogram;
+  }
+
+  /** Returns a histogram holding the first value and the second value the given times. */
+  private static LogHistogram repeat(int firstCount, long first, int secondCount, long second) {
+    LogHistogram histogram = new LogHistogram();
+    for (int i = 0; i < firstCount; i++) {
+      histogram.record(first);
+    }
+    for (int i = 0; i < secondCount; i++) {
+      histogram.record(second);
+    }
+    return histogram;
+  }
+
+  private static int bucketOf(LogHistogram histogram, long value) {
+    for (int bucket = 0; bucket < histogram.getBucketCount(); bucket++) {
+      if (histogram.bucketUpperBound(bucket) >= value) {
+        return bucket;
+      }
+    }
+    return histogram.getBucketCount() - 1;
+  }
+}
@@ -0,0 +1,119 @@
+/*
+ * Copyright 2021, Brown University, Providence, RI.
+ * Rahul Shahi, Sherief Reda, Seif Abdelaziz
+ *
+ *                        All Rights Reserved
+ *
+ * Permission to use, copy, modify, and distribute this software and
+ * its documentation for any purpose other than its incorporation into a
+ * commercial product or service is hereby granted without fee, provided
+ * that the above copyright notice appear in all copies and that both
+ * that copyright notice and this permission notice appear in supporting
+ * documentation, and that the name of Brown University not be used in
+ * advertising or publicity pertaining to distribution of the software
+ * without specific, written prior permission.
+ *
+ * BROWN UNIVERSITY DISCLAIMS ALL WARRANTIES WITH REGARD TO THIS SOFTWARE,
+ * INCLUDING ALL IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR ANY
+ * PARTICULAR PURPOSE.  IN NO EVENT SHALL BROWN UNIVERSITY BE LIABLE FOR
+ * ANY SPECIAL, INDIRECT OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF
+ * OR IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package benchmark.common.sampling;
+
+import static org.junit.Assert.assertEquals;
+
+import android.os.BatteryManager;
+import benchmark.common.framelog.FrameLog;
+import java.util.HashMap;
+import java.util.Map;
+import org.junit.Test;
+
+/** Tests {@link BatteryManagerSource} against a fake battery framework. */
+public class BatteryManagerSourceTest {
+  private final FakeBattery battery = new FakeBattery();
+  private final BatteryManagerSource source = new BatteryManagerSource(battery);
+
+  @Test
+  public void readsBroadcastOnFirstCall() {
+    battery.setBroadcast(4000, 0);
+
+    assertEquals(4_000_000, source.readVoltage());
+    assertEquals(0, source.readPlugged());
+    assertEquals(1, battery.fetchCount);
+  }
+
+  @Test
+  public void fetchesBroadcastAtMostOnceASecond() {
+    battery.setBroadcast(4000, 0);
+    source.readVoltage();
+
+    battery.setBroadcast(3900, BatteryManager.BATTERY_PLUGGED_USB);
+    battery.time = 999;
+    assertEquals(4_000_000, source.readVoltage());
+    assertEquals(0, source.readPlugged());
+
+    battery.time = 1000;
+    assertEquals(3_900_000, source.readVoltage());
+    assertEquals(1, source.readPlugged());
+    assertEquals(2, battery.fetchCount);
+  }
+
+  @Test
+  public void isUnavailableWithoutBroadcast() {
+    assertEquals(FrameLog.UNAVAILABLE, source.readVoltage());
+    assertEquals(FrameLog.UNAVAILABLE, source.readPlugged());
+  }
+
+  @Test
+  public void readsCurrent() {
+    battery.current = -500_000;
+    assertEquals(-500_000, source.readCurrent());
+
+    battery.current = 0;
+    assertEquals(FrameLog.UNAVAILABLE, source.readCurrent());
+
+    battery.current = Long.MIN_VALUE;
+    assertEquals(FrameLog.UNAVAILABLE, source.readCurrent());
+  }
+
+  /** Battery whose readings and clock the tests set. */
+  private static class FakeBattery implements BatteryManagerSource.Battery {
+    private final Map<String, Integer> broadcast = new HashMap<>();
+    private boolean hasBroadcast;
+    long current;
+    long time;
+    int fetchCount;
+
+    void setBroadcast(int millivolts, int pluggedType) {
+      hasBroadcast = true;
+      broadcast.put(BatteryManager.EXTRA_VOLTAGE, millivolts);
+      broadcast.put(BatteryManager.EXTRA_PLUGGED, pluggedType);
+    }
+
+    @Override
+    public long getCurrentNow() {
+      return current;
+    }
+
+    @Override
+    public boolean fetchBroadcast() {
+      fetchCount++;
+      return hasBroadcast;
+    }
+
+    @Override
+    public int getBroadcastExtra(String name) {
+      Integer value = broadcast.get(name);
+      return value == null ? -1 : value;
+    }
+
+    @Override
+    public long elapsedRealtime() {
+      return time;
+    }
+  }
+}
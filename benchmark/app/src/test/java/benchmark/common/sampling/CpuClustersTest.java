@@ -0,0 +1,105 @@
+/*
+ * Copyright 2021, Brown University, Providence, RI.
+ * Rahul Shahi, Sherief Reda, Seif Abdelaziz
+ *
+ *                        All Rights Reserved
+ *
+ * Permission to use, copy, modify, and distribute this software and
+ * its documentation for any purpose other than its incorporation into a
+ * commercial product or service is hereby granted without fee, provided
+ * that the above copyright notice appear in all copies and that both
+ * that copyright notice and this permission notice appear in supporting
+ * documentation, and that the name of Brown University not be used in
+ * advertising or publicity pertaining to distribution of the software
+ * without specific, written prior permission.
+ *
+ * BROWN UNIVERSITY DISCLAIMS ALL WARRANTIES WITH REGARD TO THIS SOFTWARE,
+ * INCLUDING ALL IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR ANY
+ * PARTICULAR PURPOSE.  IN NO EVENT SHALL BROWN UNIVERSITY BE LIABLE FOR
+ * ANY SPECIAL, INDIRECT OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF
+ * OR IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package benchmark.common.sampling;
+
+import static benchmark.common.sampling.FakeSysfs.write;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.io.IOException;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/** Tests {@link CpuClusters} against fake sysfs trees. */
+public class CpuClustersTest {
+  @Rule public TemporaryFolder folder = new TemporaryFolder();
+
+  @Test
+  public void groupsCoresByHighestClock() throws IOException {
+    File sysfs = folder.getRoot();
+    for (int core = 0; core < 8; core++) {
+      addCore(sysfs, core, core < 4 ? 1_800_000 : core < 7 ? 2_400_000 : 3_000_000);
+    }
+
+    CpuClusters clusters = new CpuClusters(sysfs);
+
+    assertEquals(3, clusters.getCount());
+    assertEquals("little-cpu0-3", clusters.getName(0));
+    assertEquals("mid-cpu4-6", clusters.getName(1));
+    assertEquals("big-cpu7", clusters.getName(2));
+    assertArrayEquals(new int[] {4, 5, 6}, clusters.getCores(1));
+    assertEquals(0, clusters.getCluster(3));
+    assertEquals(2, clusters.getCluster(7));
+    assertEquals(-1, clusters.getCluster(8));
+  }
+
+  @Test
+  public void ordersCoresByNumberAndNamesGaps() throws IOException {
+    File sysfs = folder.getRoot();
+    addCore(sysfs, 10, 2_000_000);
+    addCore(sysfs, 0, 1_000_000);
+    addCore(sysfs, 1, 1_000_000);
+    addCore(sysfs, 4, 1_000_000);
+    addCore(sysfs, 2, 2_000_000);
+    // Entries that are not cores.
+    write(new File(sysfs, "devices/system/cpu/cpufreq/policy0/scaling_governor"), "schedutil");
+    write(new File(sysfs, "devices/system/cpu/online"), "0-10");
+
+    CpuClusters clusters = new CpuClusters(sysfs);
+
+    assertEquals(2, clusters.getCount());
+    assertEquals("little-cpu0-1+4", clusters.getName(0));
+    assertEquals("big-cpu2+10", clusters.getName(1));
+    assertEquals(-1, clusters.getCluster(3));
+    assertEquals(1, clusters.getCluster(10));
+  }
+
+  @Test
+  public void putsAllCoresOfOneClockInOneCluster() throws IOException {
+    File sysfs = folder.getRoot();
+    addCore(sysfs, 0, 2_000_000);
+    addCore(sysfs, 1, 2_000_000);
+
+    CpuClusters clusters = new CpuClusters(sysfs);
+
+    assertEquals(1, clusters.getCount());
+    assertEquals("all-cpu0-1", clusters.getName(0));
+  }
+
+  @Test
+  public void findsNoClustersInEmptyTree() {
+    CpuClusters clusters = new CpuClusters(folder.getRoot());
+
+    assertEquals(0, clusters.getCount());
+    assertEquals(-1, clusters.getCluster(0));
+  }
+
+  private static void addCore(File sysfs, int core, long maxFrequency) throws IOException {
+    write(new File(sysfs, "devices/system/cpu/cpu" + core + "/cpufreq/cpuinfo_max_freq"),
+        Long.toString(maxFrequency));
+  }
+}
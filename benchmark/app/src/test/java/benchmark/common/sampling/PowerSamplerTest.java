@@ -0,0 +1,163 @@
+/*
+ * Copyright 2021, Brown University, Providence, RI.
+ * Rahul Shahi, Sherief Reda, Seif Abdelaziz
+ *
+ *                        All Rights Reserved
+ *
+ * Permission to use, copy, modify, and distribute this software and
+ * its documentation for any purpose other than its incorporation into a
+ * commercial product or service is hereby granted without fee, provided
+ * that the above copyright notice appear in all copies and that both
+ * that copyright notice and this permission notice appear in supporting
+ * documentation, and that the name of Brown University not be used in
+ * advertising or publicity pertaining to distribution of the software
+ * without specific, written prior permission.
+ *
+ * BROWN UNIVERSITY DISCLAIMS ALL WARRANTIES WITH REGARD TO THIS SOFTWARE,
+ * INCLUDING ALL IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR ANY
+ * PARTICULAR PURPOSE.  IN NO EVENT SHALL BROWN UNIVERSITY BE LIABLE FOR
+ * ANY SPECIAL, INDIRECT OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF
+ * OR IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package benchmark.common.sampling;
+
+import static benchmark.common.sampling.FakeSysfs.write;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import benchmark.common.analysis.FrameLogAnalyzer;
+import benchmark.common.analysis.PhaseResult;
+import benchmark.common.analysis.PowerLogAnalyzer;
+import benchmark.common.analysis.SectionResult;
+import benchmark.common.framelog.FrameLog;
+import benchmark.common.framelog.FrameLogWriter;
+import benchmark.common.framelog.PowerLog;
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Tests {@link PowerSampler.SysfsSource} against a fake {@code power_supply} node, and the power
+ * log it writes through {@link PowerLogAnalyzer}.
+ */
+public class PowerSamplerTest {
+  private static final String RECORDING = "recording.mp4";
+
+  @Rule public TemporaryFolder folder = new TemporaryFolder();
+
+  @Test
+  public void readsBattery() throws IOException {
+    File battery = addBattery(-500_000, 4_000_000, "Discharging");
+
+    PowerSampler.SysfsSource source = new PowerSampler.SysfsSource(battery);
+
+    assertTrue(source.isReadable());
+    assertEquals(-500_000, source.readCurrent());
+    assertEquals(4_000_000, source.readVoltage());
+    assertEquals(0, source.readPlugged());
+  }
+
+  @Test
+  public void readsPluggedFromStatus() throws IOException {
+    File battery = addBattery(500_000, 4_000_000, "Charging");
+    PowerSampler.SysfsSource source = new PowerSampler.SysfsSource(battery);
+    assertEquals(1, source.readPlugged());
+
+    write(new File(battery, "status"), "Not charging");
+    assertEquals(1, source.readPlugged());
+
+    write(new File(battery, "status"), "Full");
+    assertEquals(1, source.readPlugged());
+
+    write(new File(battery, "status"), "Unknown");
+    assertEquals(FrameLog.UNAVAILABLE, source.readPlugged());
+  }
+
+  @Test
+  public void isNotReadableWithoutFiles() {
+    PowerSampler.SysfsSource source = new PowerSampler.SysfsSource(folder.getRoot());
+
+    assertFalse(source.isReadable());
+    assertEquals(FrameLog.UNAVAILABLE, source.readCurrent());
+    assertEquals(FrameLog.UNAVAILABLE, source.readPlugged());
+  }
+
+  @Test
+  public void averagesPowerOfPhase() throws IOException, InterruptedException {
+    File battery = addBattery(-500_000, 4_000_000, "Discharging");
+
+    PhaseResult phase = samplePhase(battery);
+
+    assertTrue(phase.getPowerSampleCount() >= 2);
+    assertEquals(0, phase.getPluggedSampleCount());
+    assertFalse(phase.wasPlugged());
+    // 0.5 A at 4 V.
+    assertEquals(2.0, phase.getAveragePower(), 1e-9);
+    assertEquals(2.0 / phase.getFps(), phase.getEnergyPerFrame(), 1e-9);
+  }
+
+  @Test
+  public void leavesOutReadingsOnCharger() throws IOException, InterruptedException {
+    File battery = addBattery(800_000, 4_200_000, "Charging");
+
+    PhaseResult phase = samplePhase(battery);
+
+    assertEquals(0, phase.getPowerSampleCount());
+    assertTrue(phase.getPluggedSampleCount() >= 2);
+    assertTrue(phase.wasPlugged());
+    assertTrue(Double.isNaN(phase.getAveragePower()));
+  }
+
+  private File addBattery(long current, long voltage, String status) throws IOException {
+    File battery = new File(folder.getRoot(), "class/power_supply/battery");
+    write(new File(battery, "current_now"), Long.toString(current));
+    write(new File(battery, "voltage_now"), Long.toString(voltage));
+    write(new File(battery, "status"), status);
+    return battery;
+  }
+
+  /**
+   * Samples a battery node during a phase of two frames and returns the phase as analyzed from the
+   * frame log and the power log.
+   */
+  private PhaseResult samplePhase(File battery) throws IOException, InterruptedException {
+    File frameLogFile = new File(folder.getRoot(), FrameLog.FILE_NAME);
+    File powerLogFile = new File(folder.getRoot(), PowerLog.FILE_NAME);
+    try (FrameLogWriter frameLog =
+        new FrameLogWriter(frameLogFile, "Section", RECORDING, FrameLog.COLUMN_NAMES)) {
+      writeFrame(frameLog, 0);
+      PowerSampler sampler = new PowerSampler(new PowerSampler.SysfsSource(battery));
+      sampler.start(
+          new FrameLogWriter(powerLogFile, "Section", RECORDING, PowerLog.COLUMN_NAMES),
+          TimeUnit.MILLISECONDS.toNanos(5));
+      Thread.sleep(50);
+      sampler.close();
+      writeFrame(frameLog, 1);
+    }
+
+    List<SectionResult> sections = new FrameLogAnalyzer().analyze(frameLogFile);
+    new PowerLogAnalyzer().analyze(powerLogFile, sections);
+    assertEquals(1, sections.size());
+    assertEquals(1, sections.get(0).getPhases().size());
+    return sections.get(0).getPhases().get(0);
+  }
+
+  /** Writes a frame of phase 1 that starts now, with nothing else measured. */
+  private static void writeFrame(FrameLogWriter frameLog, long frameId) throws IOException {
+    for (int column = 0; column < FrameLog.COLUMN_NAMES.length; column++) {
+      frameLog.set(column, FrameLog.UNAVAILABLE);
+    }
+    frameLog.set(FrameLog.PHASE, 1);
+    frameLog.set(FrameLog.FRAME_ID, frameId);
+    frameLog.set(FrameLog.FRAME_START, System.nanoTime());
+    frameLog.commit();
+  }
+}
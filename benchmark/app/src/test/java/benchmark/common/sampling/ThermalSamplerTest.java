@@ -0,0 +1,119 @@
+/*
+ * Copyright 2021, Brown University, Providence, RI.
+ * Rahul Shahi, Sherief Reda, Seif Abdelaziz
+ *
+ *                        All Rights Reserved
+ *
+ * Permission to use, copy, modify, and distribute this software and
+ * its documentation for any purpose other than its incorporation into a
+ * commercial product or service is hereby granted without fee, provided
+ * that the above copyright notice appear in all copies and that both
+ * that copyright notice and this permission notice appear in supporting
+ * documentation, and that the name of Brown University not be used in
+ * advertising or publicity pertaining to distribution of the software
+ * without specific, written prior permission.
+ *
+ * BROWN UNIVERSITY DISCLAIMS ALL WARRANTIES WITH REGARD TO THIS SOFTWARE,
+ * INCLUDING ALL IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR ANY
+ * PARTICULAR PURPOSE.  IN NO EVENT SHALL BROWN UNIVERSITY BE LIABLE FOR
+ * ANY SPECIAL, INDIRECT OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF
+ * OR IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package benchmark.common.sampling;
+
+import static benchmark.common.sampling.FakeSysfs.write;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import benchmark.common.framelog.FrameLog;
+import benchmark.common.framelog.FrameLogReader;
+import benchmark.common.framelog.FrameLogWriter;
+import benchmark.common.framelog.ThermalLog;
+import java.io.File;
+import java.io.IOException;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/** Tests {@link ThermalSampler} against fake sysfs trees. */
+public class ThermalSamplerTest {
+  @Rule public TemporaryFolder folder = new TemporaryFolder();
+
+  @Test
+  public void findsZonesAndCoresInNumericOrder() throws IOException {
+    File sysfs = folder.newFolder("sys");
+    addZone(sysfs, 10, "gpu", 51000);
+    addZone(sysfs, 2, "cpu-big", 48500);
+    write(new File(sysfs, "class/thermal/thermal_zone1/temp"), "30000");
+    // Cooling devices share the directory but are not zones.
+    write(new File(sysfs, "class/thermal/cooling_device0/type"), "thermal-cpufreq-0");
+    addCore(sysfs, 1, 1_200_000, 2_000_000);
+    addCore(sysfs, 0, 600_000, 1_800_000);
+
+    ThermalSampler sampler = new ThermalSampler(sysfs, () -> 0);
+
+    assertArrayEquals(new String[] {
+          ThermalLog.TIME_COLUMN,
+          ThermalLog.THERMAL_STATUS_COLUMN,
+          "thermal_zone1_temp_mc",
+          "thermal_zone2-cpu-big_temp_mc",
+          "thermal_zone10-gpu_temp_mc",
+          "cpu0_cur_freq_khz",
+          "cpu0_max_freq_khz",
+          "cpu1_cur_freq_khz",
+          "cpu1_max_freq_khz",
+        },
+        sampler.getColumnNames());
+  }
+
+  @Test
+  public void logsEverySource() throws IOException {
+    File sysfs = folder.newFolder("sys");
+    addZone(sysfs, 0, "battery", 35000);
+    addCore(sysfs, 0, 600_000, 1_800_000);
+    // An offline core keeps its directory but loses its cpufreq files.
+    write(new File(sysfs, "devices/system/cpu/cpu1/online"), "0");
+
+    ThermalSampler sampler = new ThermalSampler(sysfs, () -> 2);
+    File logFile = new File(folder.getRoot(), ThermalLog.FILE_NAME);
+    long start = System.nanoTime();
+    try (FrameLogWriter log =
+        new FrameLogWriter(logFile, "Section", "recording.mp4", sampler.getColumnNames())) {
+      sampler.sample(log);
+    }
+
+    try (FrameLogReader reader = new FrameLogReader(logFile)) {
+      FrameLogReader.Section section = reader.nextSection();
+      assertNotNull(section);
+      assertEquals("recording.mp4", section.getRecordingName());
+      long[] record = new long[section.getColumnCount()];
+      assertTrue(reader.nextRecord(record));
+      assertTrue(record[ThermalLog.TIME] >= start);
+      assertEquals(2, record[ThermalLog.THERMAL_STATUS]);
+      assertEquals(35000, record[section.getColumnIndex("thermal_zone0-battery_temp_mc")]);
+      assertEquals(600_000, record[section.getColumnIndex("cpu0_cur_freq_khz")]);
+      assertEquals(1_800_000, record[section.getColumnIndex("cpu0_max_freq_khz")]);
+      assertEquals(FrameLog.UNAVAILABLE, record[section.getColumnIndex("cpu1_cur_freq_khz")]);
+      assertEquals(FrameLog.UNAVAILABLE, record[section.getColumnIndex("cpu1_max_freq_khz")]);
+    }
+  }
+
+  private static void addZone(File sysfs, int zone, String type, long temperature)
+      throws IOException {
+    File directory = new File(sysfs, "class/thermal/thermal_zone" + zone);
+    write(new File(directory, "type"), type);
+    write(new File(directory, "temp"), Long.toString(temperature));
+  }
+
+  private static void addCore(File sysfs, int core, long frequency, long maxFrequency)
+      throws IOException {
+    File cpufreq = new File(sysfs, "devices/system/cpu/cpu" + core + "/cpufreq");
+    write(new File(cpufreq, "scaling_cur_freq"), Long.toString(frequency));
+    write(new File(cpufreq, "scaling_max_freq"), Long.toString(maxFrequency));
+  }
+}
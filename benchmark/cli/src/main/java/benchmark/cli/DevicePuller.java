@@ -0,0 +1,120 @@
+/*
+ * Copyright 2021, Brown University, Providence, RI.
+ * Rahul Shahi, Sherief Reda, Seif Abdelaziz
+ *
+ *                        All Rights Reserved
+ *
+ * Permission to use, copy, modify, and distribute this software and
+ * its documentation for any purpose other than its incorporation into a
+ * commercial product or service is hereby granted without fee, provided
+ * that the above copyright notice appear in all copies and that both
+ * that copyright notice and this permission notice appear in supporting
+ * documentation, and that the name of Brown University not be used in
+ * advertising or publicity pertaining to distribution of the software
+ * without specific, written prior permission.
+ *
+ * BROWN UNIVERSITY DISCLAIMS ALL WARRANTIES WITH REGARD TO THIS SOFTWARE,
+ * INCLUDING ALL IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR ANY
+ * PARTICULAR PURPOSE.  IN NO EVENT SHALL BROWN UNIVERSITY BE LIABLE FOR
+ * ANY SPECIAL, INDIRECT OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF
+ * OR IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+
+package benchmark.cli;
+
+import benchmark.common.analysis.ResultBundle;
+import benchmark.common.framelog.CoreLog;
+import benchmark.common.framelog.FrameLog;
+import benchmark.common.framelog.PowerLog;
+import benchmark.common.framelog.StallDetector;
+import benchmark.common.framelog.ThermalLog;
+import benchmark.common.framelog.WriterLog;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Copies the frame log, its side logs and the result bundle of the last run off a device with adb.
+ * Every pull goes into a new directory named after the device serial and the time, so that runs
+ * collected over time can be summarized together.
+ */
+class DevicePuller {
+  /** Where the app writes its logs, see {@code Context.getExternalFilesDir(null)}. */
+  static final String DEVICE_DIRECTORY = "/sdcard/Android/data/MARAbenchmark.benchmark/files/";
+  /**
+   * The side logs, which are only written by some sections, and the result bundle, which the app
+   * writes when it shows the results. Missing ones are skipped.
+   */
+  private static final String[] OPTIONAL_FILE_NAMES = {
+    StallDetector.FILE_NAME, ThermalLog.FILE_NAME, PowerLog.FILE_NAME, CoreLog.FILE_NAME,
+    WriterLog.FILE_NAME, ResultBundle.FILE_NAME,
+  };
+
+  private final String adb;
+  private final String serial;
+
+  /**
+   * @param adb the adb executable
+   * @param serial the device to pull from, or null for the only connected device
+   */
+  DevicePuller(String adb, String serial) {
+    this.adb = adb;
+    this.serial = serial;
+  }
+
+  /** Pulls the logs into a new directory under the given one and returns the new directory. */
+  File pull(File outputDirectory) throws IOException, InterruptedException {
+    String deviceSerial = serial != null ? serial : run("get-serialno").trim();
+    String time = new SimpleDateFormat("yyyyMMdd-HHmmss", Locale.US).format(new Date());
+    File runDirectory = new File(outputDirectory, deviceSerial + "-" + time);
+    if (!runDirectory.mkdirs()) {
+      throw new IOException("Failed to create " + runDirectory);
+    }
+    run("pull", DEVICE_DIRECTORY + FrameLog.FILE_NAME,
+        new File(runDirectory, FrameLog.FILE_NAME).getPath());
+    for (String fileName : OPTIONAL_FILE_NAMES) {
+      try {
+        run("pull", DEVICE_DIRECTORY + fileName, new File(runDirectory, fileName).getPath());
+      } catch (IOException e) {
+        // The run did not write this file.
+      }
+    }
+    return runDirectory;
+  }
+
+  /** Runs an adb command and returns its output, or throws if it fails. */
+  private String run(String... arguments) throws IOException, InterruptedException {
+    List<String> command = new ArrayList<>();
+    command.add(adb);
+    if (serial != null) {
+      command.add("-s");
+      command.add(serial);
+    }
+    command.addAll(Arrays.asList(arguments));
+    Process process = new ProcessBuilder(command).redirectErrorStream(true).start();
+    ByteArrayOutputStream output = new ByteArrayOutputStream();
+    try (InputStream in = process.getInputStream()) {
+      byte[] buffer = new byte[8192];
+      int length;
+      while ((length = in.read(buffer)) > 0) {
+        output.write(buffer, 0, length);
+      }
+    }
+    String text = new String(output.toByteArray(), StandardCharsets.UTF_8);
+    if (process.waitFor() != 0) {
+      throw new IOException(String.join(" ", command) + " failed: " + text.trim());
+    }
+    return text;
+  }
+}
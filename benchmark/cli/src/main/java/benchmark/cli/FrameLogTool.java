@@ -0,0 +1,542 @@
+/*
+ * Copyright 2021, Brown University, Providence, RI.
+ * Rahul Shahi, Sherief Reda, Seif Abdelaziz
+ *
+ *                        All Rights Reserved
+ *
+ * Permission to use, copy, modify, and distribute this software and
+ * its documentation for any purpose other than its incorporation into a
+ * commercial product or service is hereby granted without fee, provided
+ * that the above copyright notice appear in all copies and that both
+ * that copyright notice and this permission notice appear in supporting
+ * documentation, and that the name of Brown University not be used in
+ * advertising or publicity pertaining to distribution of the software
+ * without specific, written prior permission.
+ *
+ * BROWN UNIVERSITY DISCLAIMS ALL WARRANTIES WITH REGARD TO THIS SOFTWARE,
+ * INCLUDING ALL IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR ANY
+ * PARTICULAR PURPOSE.  IN NO EVENT SHALL BROWN UNIVERSITY BE LIABLE FOR
+ * ANY SPECIAL, INDIRECT OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF
+ * OR IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+
+package benchmark.cli;
+
+import benchmark.common.analysis.BenchmarkScore;
+import benchmark.common.analysis.FrameLogAnalyzer;
+import benchmark.common.analysis.JsonWriter;
+import benchmark.common.analysis.LogHistogram;
+import benchmark.common.analysis.Metric;
+import benchmark.common.analysis.PhaseComparison;
+import benchmark.common.analysis.PhaseResult;
+import benchmark.common.analysis.ReferenceProfile;
+import benchmark.common.analysis.ResultExporter;
+import benchmark.common.analysis.RunComparison;
+import benchmark.common.analysis.SectionResult;
+import benchmark.common.analysis.TraceExporter;
+import benchmark.common.framelog.FrameLog;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.text.DecimalFormat;
+import java.text.DecimalFormatSymbols;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Command line entry point of the desktop frame log tool. Analyzes the logs written by the app with
+ * the same code as its results screen.
+ *
+ * <p>Exits with 0 on success, 1 if a comparison failed and 2 on errors or wrong usage.
+ */
+public class FrameLogTool {
+  private static final String USAGE = String.join("\n",
+      "Usage: framelog <command> [options]",
+      "",
+      "  pull [--serial SERIAL] [--adb PATH] OUT_DIR",
+      "      Copies the logs of the last run off a device into OUT_DIR/<serial>-<time>.",
+      "  summary [--threads N] [--csv FILE] [--json FILE] [--histograms] PATH...",
+      "      Summarizes every phase of the frame logs found under the paths, analyzing",
+      "      N runs at once (default: one per core).",
+      "  trace LOG OUT",
+      "      Exports a frame log as a Chrome trace for Perfetto or chrome://tracing.",
+      "  compare --baseline PATH... --candidate PATH... [--max-increase METRIC=FRACTION]",
+      "          [--alpha A] [--bootstrap N] [--seed S] [--json FILE]",
+      "      Compares two sets of runs and fails if the candidate regressed.",
+      "  score [--profile FILE] [--threads N] [--json FILE] PATH...",
+      "      Scores every run found under the paths against a reference profile",
+      "      (default: the profile in the app's assets).",
+      "  profile [--name NAME] OUT PATH...",
+      "      Writes a reference profile from the runs of a reference device.",
+      "");
+
+  private static final DecimalFormat PERCENT =
+      new DecimalFormat("0.#", DecimalFormatSymbols.getInstance(Locale.US));
+  private static final int EXIT_FAILED = 1;
+  private static final int EXIT_ERROR = 2;
+
+  public static void main(String[] args) {
+    int status;
+    try {
+      status = run(args);
+    } catch (UsageException e) {
+      System.err.println(e.getMessage());
+      System.err.print(USAGE);
+      status = EXIT_ERROR;
+    } catch (IOException e) {
+      System.err.println("Error: " + e.getMessage());
+      status = EXIT_ERROR;
+    } catch (InterruptedException e) {
+      status = EXIT_ERROR;
+    }
+    System.exit(status);
+  }
+
+  private static int run(String[] args)
+      throws UsageException, IOException, InterruptedException {
+    if (args.length == 0) {
+      throw new UsageException("Missing command");
+    }
+    Arguments arguments = new Arguments(args, 1);
+    switch (args[0]) {
+      case "pull":
+        return pull(arguments);
+      case "summary":
+        return summary(arguments);
+      case "trace":
+        return trace(arguments);
+      case "compare":
+        return compare(arguments);
+      case "score":
+        return score(arguments);
+      case "profile":
+        return profile(arguments);
+      case "help":
+      case "--help":
+        System.out.print(USAGE);
+        return 0;
+      default:
+        throw new UsageException("Unknown command: " + args[0]);
+    }
+  }
+
+  private static int pull(Arguments arguments)
+      throws UsageException, IOException, InterruptedException {
+    String serial = null;
+    String adb = System.getenv("ADB") != null ? System.getenv("ADB") : "adb";
+    List<String> paths = new ArrayList<>();
+    while (arguments.hasNext()) {
+      String argument = arguments.next();
+      if (argument.equals("--serial")) {
+        serial = arguments.value(argument);
+      } else if (argument.equals("--adb")) {
+        adb = arguments.value(argument);
+      } else {
+        paths.add(arguments.positional(argument));
+      }
+    }
+    if (paths.size() != 1) {
+      throw new UsageException("pull takes one output directory");
+    }
+    File runDirectory = new DevicePuller(adb, serial).pull(new File(paths.get(0)));
+    System.out.println(runDirectory.getPath());
+    return 0;
+  }
+
+  private static int summary(Arguments arguments)
+      throws UsageException, IOException, InterruptedException {
+    int threads = Runtime.getRuntime().availableProcessors();
+    File csvFile = null;
+    File jsonFile = null;
+    boolean histograms = false;
+    List<String> paths = new ArrayList<>();
+    while (arguments.hasNext()) {
+      String argument = arguments.next();
+      if (argument.equals("--threads")) {
+        threads = arguments.intValue(argument);
+      } else if (argument.equals("--csv")) {
+        csvFile = new File(arguments.value(argument));
+      } else if (argument.equals("--json")) {
+        jsonFile = new File(arguments.value(argument));
+      } else if (argument.equals("--histograms")) {
+        histograms = true;
+      } else {
+        paths.add(arguments.positional(argument));
+      }
+    }
+    if (paths.isEmpty()) {
+      throw new UsageException("summary takes at least one path");
+    }
+    List<File> logs = findLogs(paths);
+    ResultExporter exporter = new ResultExporter();
+    int[] status = {0};
+    // Every run is printed and exported as soon as it is analyzed, and then dropped.
+    try (Writer csv = csvFile == null ? null : openWriter(csvFile);
+        JsonWriter json = jsonFile == null ? null : new JsonWriter(openWriter(jsonFile), "  ")) {
+      if (csv != null) {
+        exporter.writeCsvHeader(csv);
+      }
+      if (json != null) {
+        json.beginArray();
+      }
+      boolean withHistograms = histograms;
+      new RunAnalyzer(threads).analyze(logs, run -> {
+        if (run.getError() != null) {
+          System.err.println(run.getLogFile() + ": " + run.getError().getMessage());
+          status[0] = EXIT_ERROR;
+        }
+        if (run.getSections() != null) {
+          printRun(run);
+        }
+        if (csv != null && run.getSections() != null) {
+          exporter.writeCsv(run.getName(), run.getSections(), csv);
+        }
+        if (json != null) {
+          json.beginObject();
+          json.name("run").value(run.getName());
+          json.name("log").value(run.getLogFile().getPath());
+          if (run.getError() != null) {
+            json.name("error").value(run.getError().getMessage());
+          }
+          if (run.getSections() != null) {
+            json.name("sections");
+            exporter.writeJson(run.getSections(), withHistograms, json);
+          }
+          json.endObject();
+        }
+      });
+      if (json != null) {
+        json.endArray();
+      }
+    }
+    return status[0];
+  }
+
+  /**
+   * Prints one line per phase, like the results screen of the app, after a warning for sections
+   * that are missing frames because the writer fell behind.
+   */
+  private static void printRun(RunAnalyzer.Run run) {
+    StringBuilder text = new StringBuilder(run.getName()).append('\n');
+    for (SectionResult section : run.getSections()) {
+      text.append("  ").append(section.getSectionName()).append('\n');
+      if (section.getDroppedCount() > 0) {
+        text.append("    Frames missing from log: ").append(section.getDroppedCount())
+            .append(" (").append(section.getOverflowCount()).append(" overflows)\n");
+      }
+      for (PhaseResult phase : section.getPhases()) {
+        LogHistogram frameTimes = phase.getHistogram(Metric.FRAME_TIME);
+        text.append(String.format(Locale.US,
+            "    Phase %d: %d frames, %.2f FPS, frame time", phase.getPhase(),
+            phase.getFrameCount(), phase.getFps()));
+        for (double quantile : FrameLogAnalyzer.REPORTED_QUANTILES) {
+          text.append(String.format(Locale.US, " p%s %.2f", PERCENT.format(quantile * 100),
+              frameTimes.getValueAtQuantile(quantile) / 1e6));
+        }
+        text.append(String.format(Locale.US, " ms, update %.2f ms, GPU %.2f ms\n",
+            phase.getHistogram(Metric.UPDATE_TIME).getMean() / 1e6,
+            phase.getHistogram(Metric.GPU_TIME).getMean() / 1e6));
+      }
+    }
+    System.out.print(text);
+  }
+
+  private static int trace(Arguments arguments) throws UsageException, IOException {
+    List<String> paths = new ArrayList<>();
+    while (arguments.hasNext()) {
+      paths.add(arguments.positional(arguments.next()));
+    }
+    if (paths.size() != 2) {
+      throw new UsageException("trace takes a frame log and an output file");
+    }
+    new TraceExporter().export(new File(paths.get(0)), new File(paths.get(1)));
+    return 0;
+  }
+
+  private static int compare(Arguments arguments) throws UsageException, IOException {
+    RunComparison.Thresholds thresholds = RunComparison.Thresholds.defaults();
+    List<String> baselinePaths = new ArrayList<>();
+    List<String> candidatePaths = new ArrayList<>();
+    List<String> paths = null;
+    File jsonFile = null;
+    while (arguments.hasNext()) {
+      String argument = arguments.next();
+      if (argument.equals("--baseline")) {
+        paths = baselinePaths;
+      } else if (argument.equals("--candidate")) {
+        paths = candidatePaths;
+      } else if (argument.equals("--max-increase")) {
+        String value = arguments.value(argument);
+        int equals = value.indexOf('=');
+        if (equals < 0) {
+          throw new UsageException("--max-increase takes METRIC=FRACTION");
+        }
+        Metric metric = parseMetric(value.substring(0, equals));
+        try {
+          thresholds.setMaxIncrease(metric, parseDouble(value.substring(equals + 1)));
+        } catch (IllegalArgumentException e) {
+          throw new UsageException(e.getMessage());
+        }
+      } else if (argument.equals("--alpha")) {
+        thresholds.setAlpha(parseDouble(arguments.value(argument)));
+      } else if (argument.equals("--bootstrap")) {
+        thresholds.setBootstrapSamples(arguments.intValue(argument));
+      } else if (argument.equals("--seed")) {
+        thresholds.setSeed(arguments.longValue(argument));
+      } else if (argument.equals("--json")) {
+        jsonFile = new File(arguments.value(argument));
+      } else if (paths != null) {
+        paths.add(arguments.positional(argument));
+      } else {
+        throw new UsageException("Paths must follow --baseline or --candidate");
+      }
+    }
+    if (baselinePaths.isEmpty() || candidatePaths.isEmpty()) {
+      throw new UsageException("compare takes --baseline and --candidate paths");
+    }
+    RunComparison comparison = new RunComparison(thresholds);
+    List<PhaseComparison> results = comparison.compare(
+        RunAnalyzer.findLogs(baselinePaths), RunAnalyzer.findLogs(candidatePaths));
+    if (jsonFile != null) {
+      comparison.writeJson(results, jsonFile);
+    }
+    boolean passed = RunComparison.isPassed(results);
+    StringBuilder text = new StringBuilder(passed ? "PASS\n" : "FAIL\n");
+    for (PhaseComparison phase : results) {
+      String phaseName = phase.getSectionName() + " Phase " + phase.getPhase();
+      if (phase.isMissing()) {
+        text.append(phaseName).append(": missing\n");
+      }
+      for (PhaseComparison.MetricComparison metric : phase.getMetrics()) {
+        text.append(String.format(Locale.US,
+            "%s: %s %+.1f%% (CI %+.1f%% to %+.1f%%, p=%.2g) %s\n",
+            phaseName, metric.getMetric().getLabel(), metric.getRelativeChange() * 100,
+            metric.getConfidenceLow() * 100, metric.getConfidenceHigh() * 100,
+            metric.getPValue(), metric.getVerdict().name().toLowerCase(Locale.ROOT)));
+      }
+    }
+    System.out.print(text);
+    return passed ? 0 : EXIT_FAILED;
+  }
+
+  private static int score(Arguments arguments)
+      throws UsageException, IOException, InterruptedException {
+    int threads = Runtime.getRuntime().availableProcessors();
+    File profileFile = null;
+    File jsonFile = null;
+    List<String> paths = new ArrayList<>();
+    while (arguments.hasNext()) {
+      String argument = arguments.next();
+      if (argument.equals("--profile")) {
+        profileFile = new File(arguments.value(argument));
+      } else if (argument.equals("--threads")) {
+        threads = arguments.intValue(argument);
+      } else if (argument.equals("--json")) {
+        jsonFile = new File(arguments.value(argument));
+      } else {
+        paths.add(arguments.positional(argument));
+      }
+    }
+    if (paths.isEmpty()) {
+      throw new UsageException("score takes at least one path");
+    }
+    ReferenceProfile profile = loadProfile(profileFile);
+    List<File> logs = findLogs(paths);
+
+    int[] status = {0};
+    try (JsonWriter json = jsonFile == null ? null : new JsonWriter(openWriter(jsonFile), "  ")) {
+      if (json != null) {
+        json.beginArray();
+      }
+      new RunAnalyzer(threads).analyze(logs, run -> {
+        BenchmarkScore score = null;
+        if (run.getSections() == null) {
+          System.err.println(run.getLogFile() + ": " + run.getError().getMessage());
+          status[0] = EXIT_ERROR;
+        } else {
+          score = BenchmarkScore.compute(run.getSections(), profile);
+          printScore(run, score);
+        }
+        if (json != null) {
+          json.beginObject();
+          json.name("run").value(run.getName());
+          json.name("log").value(run.getLogFile().getPath());
+          if (score != null) {
+            json.name("score");
+            score.writeJson(json);
+          }
+          json.endObject();
+        }
+      });
+      if (json != null) {
+        json.endArray();
+      }
+    }
+    System.out.println("Relative to " + profile.getName());
+    return status[0];
+  }
+
+  /** Prints the score and the category scores of a run on one line. */
+  private static void printScore(RunAnalyzer.Run run, BenchmarkScore score) {
+    StringBuilder text = new StringBuilder(run.getName()).append(": ")
+        .append(formatScore(score.getScore()));
+    for (BenchmarkScore.Category category : BenchmarkScore.Category.values()) {
+      text.append(category.ordinal() == 0 ? " (" : ", ").append(category.getLabel())
+          .append(' ').append(formatScore(score.getScore(category)));
+    }
+    text.append(')');
+    if (!score.isComplete()) {
+      text.append(" incomplete");
+    }
+    System.out.println(text);
+  }
+
+  private static int profile(Arguments arguments)
+      throws UsageException, IOException, InterruptedException {
+    String name = "reference";
+    List<String> paths = new ArrayList<>();
+    while (arguments.hasNext()) {
+      String argument = arguments.next();
+      if (argument.equals("--name")) {
+        name = arguments.value(argument);
+      } else {
+        paths.add(arguments.positional(argument));
+      }
+    }
+    if (paths.size() < 2) {
+      throw new UsageException("profile takes an output file and at least one path");
+    }
+    // The profile pools the phases of all runs, so their sections are kept.
+    List<File> logs = findLogs(paths.subList(1, paths.size()));
+    List<SectionResult> sections = new ArrayList<>();
+    new RunAnalyzer(Runtime.getRuntime().availableProcessors()).analyze(logs, run -> {
+      if (run.getSections() == null) {
+        throw new IOException(run.getLogFile() + ": " + run.getError().getMessage());
+      }
+      sections.addAll(run.getSections());
+    });
+    try (Writer out = openWriter(new File(paths.get(0)))) {
+      ReferenceProfile.fromResults(name, sections).store(out);
+    }
+    return 0;
+  }
+
+  /** Reads the given profile, or the one of the app's assets if null. */
+  private static ReferenceProfile loadProfile(File file) throws IOException {
+    try (InputStream in = file != null
+        ? new FileInputStream(file)
+        : FrameLogTool.class.getResourceAsStream("/" + ReferenceProfile.ASSET_NAME)) {
+      if (in == null) {
+        throw new IOException("No reference profile given or built in");
+      }
+      return ReferenceProfile.load(in);
+    } catch (IllegalArgumentException e) {
+      throw new IOException(e.getMessage(), e);
+    }
+  }
+
+  /** Returns the frame logs found under the paths, failing if there are none. */
+  private static List<File> findLogs(List<String> paths) throws IOException {
+    List<File> logs = RunAnalyzer.findLogs(paths);
+    if (logs.isEmpty()) {
+      throw new IOException("No " + FrameLog.FILE_NAME + " found");
+    }
+    return logs;
+  }
+
+  private static String formatScore(double score) {
+    return Double.isNaN(score) ? "n/a" : String.format(Locale.US, "%.0f", score);
+  }
+
+  private static Metric parseMetric(String name) throws UsageException {
+    try {
+      return Metric.valueOf(name.toUpperCase(Locale.ROOT));
+    } catch (IllegalArgumentException e) {
+      throw new UsageException("Unknown metric: " + name);
+    }
+  }
+
+  private static double parseDouble(String value) throws UsageException {
+    try {
+      return Double.parseDouble(value);
+    } catch (NumberFormatException e) {
+      throw new UsageException("Not a number: " + value);
+    }
+  }
+
+  private static Writer openWriter(File file) throws IOException {
+    return new BufferedWriter(
+        new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8));
+  }
+
+  /** The arguments of a command, read from left to right. */
+  private static class Arguments {
+    private final String[] args;
+    private int next;
+
+    Arguments(String[] args, int first) {
+      this.args = args;
+      this.next = first;
+    }
+
+    boolean hasNext() {
+      return next < args.length;
+    }
+
+    String next() {
+      return args[next++];
+    }
+
+    /** Returns the value following an option. */
+    String value(String option) throws UsageException {
+      if (!hasNext()) {
+        throw new UsageException(option + " takes a value");
+      }
+      return next();
+    }
+
+    int intValue(String option) throws UsageException {
+      long value = longValue(option);
+      if (value != (int) value) {
+        throw new UsageException(option + " is out of range: " + value);
+      }
+      return (int) value;
+    }
+
+    long longValue(String option) throws UsageException {
+      String value = value(option);
+      try {
+        return Long.parseLong(value);
+      } catch (NumberFormatException e) {
+        throw new UsageException(option + " takes an integer: " + value);
+      }
+    }
+
+    /** Returns an argument that is not an option, or throws for unknown options. */
+    String positional(String argument) throws UsageException {
+      if (argument.startsWith("--")) {
+        throw new UsageException("Unknown option: " + argument);
+      }
+      return argument;
+    }
+  }
+
+  /** Thrown for wrong command lines, which are answered with the usage. */
+  private static class UsageException extends Exception {
+    private static final long serialVersionUID = 1L;
+
+    UsageException(String message) {
+      super(message);
+    }
+  }
+}
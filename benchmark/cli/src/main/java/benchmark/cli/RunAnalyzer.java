@@ -0,0 +1,199 @@
+/*
+ * Copyright 2021, Brown University, Providence, RI.
+ * Rahul Shahi, Sherief Reda, Seif Abdelaziz
+ *
+ *                        All Rights Reserved
+ *
+ * Permission to use, copy, modify, and distribute this software and
+ * its documentation for any purpose other than its incorporation into a
+ * commercial product or service is hereby granted without fee, provided
+ * that the above copyright notice appear in all copies and that both
+ * that copyright notice and this permission notice appear in supporting
+ * documentation, and that the name of Brown University not be used in
+ * advertising or publicity pertaining to distribution of the software
+ * without specific, written prior permission.
+ *
+ * BROWN UNIVERSITY DISCLAIMS ALL WARRANTIES WITH REGARD TO THIS SOFTWARE,
+ * INCLUDING ALL IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR ANY
+ * PARTICULAR PURPOSE.  IN NO EVENT SHALL BROWN UNIVERSITY BE LIABLE FOR
+ * ANY SPECIAL, INDIRECT OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF
+ * OR IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+
+package benchmark.cli;
+
+import benchmark.common.analysis.CoreLogAnalyzer;
+import benchmark.common.analysis.FrameLogAnalyzer;
+import benchmark.common.analysis.PowerLogAnalyzer;
+import benchmark.common.analysis.SectionResult;
+import benchmark.common.analysis.SideLogAnalyzer;
+import benchmark.common.analysis.ThermalLogAnalyzer;
+import benchmark.common.framelog.CoreLog;
+import benchmark.common.framelog.FrameLog;
+import benchmark.common.framelog.PowerLog;
+import benchmark.common.framelog.ThermalLog;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Finds the frame logs of many runs and analyzes them in parallel, one run per task. Every log is
+ * read as a stream by {@link FrameLogAnalyzer}, and every run is handed on and dropped as soon as
+ * it is done, so memory grows with the number of threads and phases but not with the number of
+ * runs or frames.
+ */
+class RunAnalyzer {
+  /** The results of one run, or the error that kept it from being analyzed. */
+  static class Run {
+    private final String name;
+    private final File logFile;
+    private final List<SectionResult> sections;
+    private final IOException error;
+
+    Run(String name, File logFile, List<SectionResult> sections, IOException error) {
+      this.name = name;
+      this.logFile = logFile;
+      this.sections = sections;
+      this.error = error;
+    }
+
+    /** Returns the path of the run's directory as it was found. */
+    String getName() {
+      return name;
+    }
+
+    File getLogFile() {
+      return logFile;
+    }
+
+    /** Returns the analyzed sections, or null if the frame log could not be read. */
+    List<SectionResult> getSections() {
+      return sections;
+    }
+
+    /** Returns the error reading the frame log or one of its side logs, or null. */
+    IOException getError() {
+      return error;
+    }
+  }
+
+  /** Receives the runs of {@link #analyze(List, RunHandler)}. */
+  interface RunHandler {
+    void handle(Run run) throws IOException;
+  }
+
+  private final int threads;
+
+  /** @param threads the number of runs analyzed at once */
+  RunAnalyzer(int threads) {
+    this.threads = threads;
+  }
+
+  /**
+   * Returns the frame logs at the given paths: files are taken as they are and directories are
+   * searched recursively for files named {@link FrameLog#FILE_NAME}, in path order.
+   */
+  static List<File> findLogs(List<String> paths) throws IOException {
+    List<File> logs = new ArrayList<>();
+    for (String path : paths) {
+      File file = new File(path);
+      if (!file.exists()) {
+        throw new IOException("No such file or directory: " + path);
+      }
+      if (!file.isDirectory()) {
+        logs.add(file);
+        continue;
+      }
+      try (Stream<Path> walk = Files.walk(file.toPath())) {
+        logs.addAll(walk
+            .filter(p -> p.getFileName().toString().equals(FrameLog.FILE_NAME))
+            .filter(Files::isRegularFile)
+            .sorted()
+            .map(Path::toFile)
+            .collect(Collectors.toList()));
+      }
+    }
+    return logs;
+  }
+
+  /**
+   * Analyzes the given frame logs and hands their runs to the handler in the same order, each as
+   * soon as it and the runs before it are done. At most twice as many runs as threads are analyzed
+   * or waiting for the handler at a time, and the handler runs on the calling thread.
+   */
+  void analyze(List<File> logs, RunHandler handler) throws IOException, InterruptedException {
+    ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, threads));
+    try {
+      int window = 2 * Math.max(1, threads);
+      Deque<Future<Run>> pending = new ArrayDeque<>();
+      int next = 0;
+      while (next < logs.size() || !pending.isEmpty()) {
+        while (next < logs.size() && pending.size() < window) {
+          File log = logs.get(next++);
+          pending.add(executor.submit((Callable<Run>) () -> analyze(log)));
+        }
+        Run run;
+        try {
+          run = pending.remove().get();
+        } catch (ExecutionException e) {
+          throw new IllegalStateException("Failed to analyze a run", e.getCause());
+        }
+        handler.handle(run);
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  /**
+   * Analyzes one frame log together with the side logs next to it, as the results screen of the app
+   * does.
+   */
+  static Run analyze(File logFile) {
+    String name = runName(logFile);
+    List<SectionResult> sections;
+    try {
+      sections = new FrameLogAnalyzer().analyze(logFile);
+    } catch (IOException e) {
+      return new Run(name, logFile, null, e);
+    }
+    try {
+      analyzeSideLog(new ThermalLogAnalyzer(), logFile, ThermalLog.FILE_NAME, sections);
+      analyzeSideLog(new PowerLogAnalyzer(), logFile, PowerLog.FILE_NAME, sections);
+      analyzeSideLog(new CoreLogAnalyzer(), logFile, CoreLog.FILE_NAME, sections);
+    } catch (IOException e) {
+      return new Run(name, logFile, sections, e);
+    }
+    return new Run(name, logFile, sections, null);
+  }
+
+  private static void analyzeSideLog(
+      SideLogAnalyzer analyzer, File logFile, String logName, List<SectionResult> sections)
+      throws IOException {
+    File sideLog = new File(logFile.getAbsoluteFile().getParentFile(), logName);
+    if (sideLog.exists()) {
+      analyzer.analyze(sideLog, sections);
+    }
+  }
+
+  /** Names a run after the directory of its frame log, which holds one run. */
+  private static String runName(File logFile) {
+    String directory = logFile.getParent();
+    return directory == null ? "." : directory;
+  }
+}